@@ -0,0 +1,92 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.benchmarks;
+
+import java.io.Reader;
+import java.sql.Connection;
+import java.util.Date;
+
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Shared in-memory database populated once per trial. Every benchmark runs against both H2 and HSQLDB so that a
+ * regression can be told apart from a driver specific effect.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkDatabase {
+
+  public static final int ROW_COUNT = 10_000;
+
+  private static final String CONFIG = "org/apache/ibatis/benchmarks/mybatis-config.xml";
+  private static final String SCHEMA = "org/apache/ibatis/benchmarks/CreateDB.sql";
+
+  @Param({ "h2", "hsqldb" })
+  public String database;
+
+  public SqlSessionFactory sqlSessionFactory;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader(CONFIG)) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader, database);
+    }
+    try (Connection connection = sqlSessionFactory.getConfiguration().getEnvironment().getDataSource().getConnection();
+        Reader reader = Resources.getResourceAsReader(SCHEMA)) {
+      ScriptRunner runner = new ScriptRunner(connection);
+      runner.setAutoCommit(true);
+      runner.setLogWriter(null);
+      runner.runScript(reader);
+    }
+    try (SqlSession session = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      RowMapper mapper = session.getMapper(RowMapper.class);
+      Date now = new Date();
+      for (int i = 1; i <= ROW_COUNT; i++) {
+        mapper.insert(newRow(i, now));
+      }
+      session.commit();
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    try (Connection connection = sqlSessionFactory.getConfiguration().getEnvironment().getDataSource().getConnection()) {
+      connection.createStatement().execute("drop table bench_row");
+    }
+  }
+
+  public static Row newRow(int id, Date created) {
+    Row row = new Row();
+    row.setId(id);
+    row.setName("name" + id);
+    row.setEmail("user" + id + "@example.com");
+    row.setScore(id % 100);
+    row.setCreated(created);
+    row.setActive(id % 2 == 0);
+    return row;
+  }
+
+}
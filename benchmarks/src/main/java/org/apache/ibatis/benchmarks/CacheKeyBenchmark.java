@@ -0,0 +1,73 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of building a {@link CacheKey} in {@code BaseExecutor.createCacheKey} and of comparing two equal keys, which
+ * every query pays for whether or not a cache is hit.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CacheKeyBenchmark {
+
+  private Executor executor;
+  private BoundSql boundSql;
+  private CacheKey cacheKey;
+
+  @Setup(Level.Trial)
+  public void setUp(SearchState search) {
+    executor = search.configuration.newExecutor(
+        new JdbcTransaction(search.configuration.getEnvironment().getDataSource(), null, false), ExecutorType.SIMPLE);
+    boundSql = search.mappedStatement.getBoundSql(search.parameter);
+    cacheKey = executor.createCacheKey(search.mappedStatement, search.parameter, RowBounds.DEFAULT, boundSql);
+  }
+
+  @Benchmark
+  public CacheKey createCacheKey(SearchState search) {
+    return executor.createCacheKey(search.mappedStatement, search.parameter, RowBounds.DEFAULT, boundSql);
+  }
+
+  @Benchmark
+  public boolean createAndCompareCacheKey(SearchState search) {
+    CacheKey other = executor.createCacheKey(search.mappedStatement, search.parameter, RowBounds.DEFAULT, boundSql);
+    return other.hashCode() == cacheKey.hashCode() && other.equals(cacheKey);
+  }
+
+}
@@ -0,0 +1,108 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.benchmarks;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.executor.parameter.ParameterHandler;
+import org.apache.ibatis.executor.resultset.DefaultResultSetHandler;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Cost of {@code DefaultResultSetHandler.handleResultSets} for flat rows, both auto-mapped and through an explicit
+ * result map. {@link #drainResultSet} executes the same query and reads every column without mapping, so the
+ * difference between the two is the time spent in MyBatis.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ResultSetHandlerBenchmark {
+
+  @Param({ "100", "10000" })
+  public int rows;
+
+  @Param({ "selectFirst", "selectFirstWithResultMap" })
+  public String statementId;
+
+  private Connection connection;
+  private PreparedStatement statement;
+  private MappedStatement mappedStatement;
+  private ParameterHandler parameterHandler;
+  private BoundSql boundSql;
+
+  @Setup(Level.Trial)
+  public void setUp(BenchmarkDatabase db) throws SQLException {
+    Configuration configuration = db.sqlSessionFactory.getConfiguration();
+    mappedStatement = configuration.getMappedStatement("org.apache.ibatis.benchmarks.RowMapper." + statementId);
+    boundSql = mappedStatement.getBoundSql(rows);
+    parameterHandler = configuration.newParameterHandler(mappedStatement, rows, boundSql);
+    connection = configuration.getEnvironment().getDataSource().getConnection();
+    statement = connection.prepareStatement(boundSql.getSql());
+    parameterHandler.setParameters(statement);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws SQLException {
+    statement.close();
+    connection.close();
+  }
+
+  @Benchmark
+  public List<Object> handleResultSets() throws SQLException {
+    statement.execute();
+    DefaultResultSetHandler handler = new DefaultResultSetHandler(null, mappedStatement, parameterHandler, null, boundSql,
+        RowBounds.DEFAULT);
+    return handler.handleResultSets(statement);
+  }
+
+  @Benchmark
+  public void drainResultSet(Blackhole blackhole) throws SQLException {
+    try (ResultSet rs = statement.executeQuery()) {
+      int columns = rs.getMetaData().getColumnCount();
+      while (rs.next()) {
+        for (int i = 1; i <= columns; i++) {
+          blackhole.consume(rs.getObject(i));
+        }
+      }
+    }
+  }
+
+}
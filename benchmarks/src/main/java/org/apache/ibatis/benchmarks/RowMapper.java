@@ -0,0 +1,34 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.benchmarks;
+
+import java.util.List;
+
+import org.apache.ibatis.annotations.Param;
+
+public interface RowMapper {
+
+  Row selectById(int id);
+
+  List<Row> selectFirst(@Param("limit") int limit);
+
+  List<Row> selectFirstWithResultMap(@Param("limit") int limit);
+
+  List<Row> search(SearchCriteria criteria);
+
+  int insert(Row row);
+
+}
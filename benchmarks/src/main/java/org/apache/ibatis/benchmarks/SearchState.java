@@ -0,0 +1,74 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The dynamic {@code search} statement together with a parameter object that switches on none, some or all of its
+ * branches.
+ */
+@State(Scope.Thread)
+public class SearchState {
+
+  public static final String SEARCH = "org.apache.ibatis.benchmarks.RowMapper.search";
+
+  @Param({ "none", "some", "all" })
+  public String criteria;
+
+  public Configuration configuration;
+  public MappedStatement mappedStatement;
+  public SearchCriteria parameter;
+
+  @Setup(Level.Trial)
+  public void setUp(BenchmarkDatabase db) {
+    configuration = db.sqlSessionFactory.getConfiguration();
+    mappedStatement = configuration.getMappedStatement(SEARCH);
+    parameter = newCriteria(criteria);
+  }
+
+  public static SearchCriteria newCriteria(String criteria) {
+    SearchCriteria parameter = new SearchCriteria();
+    switch (criteria) {
+      case "all":
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) {
+          ids.add(i);
+        }
+        parameter.setIds(ids);
+        parameter.setMaxScore(90);
+        parameter.setActive(Boolean.TRUE);
+        // fall through
+      case "some":
+        parameter.setName("name%");
+        parameter.setMinScore(10);
+        break;
+      default:
+        break;
+    }
+    return parameter;
+  }
+
+}
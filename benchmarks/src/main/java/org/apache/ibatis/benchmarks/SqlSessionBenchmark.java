@@ -0,0 +1,76 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.session.SqlSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End to end cost of a query through {@code DefaultSqlSession.selectList} and through a mapper proxy
+ * ({@code MapperProxy.invoke} / {@code MapperMethod.execute}), including session open and close.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SqlSessionBenchmark {
+
+  @Param({ "1", "100", "10000" })
+  public int rows;
+
+  @Benchmark
+  public List<Row> selectList(BenchmarkDatabase db) {
+    try (SqlSession session = db.sqlSessionFactory.openSession()) {
+      return session.selectList("org.apache.ibatis.benchmarks.RowMapper.selectFirst", rows);
+    }
+  }
+
+  @Benchmark
+  public List<Row> mapperSelectList(BenchmarkDatabase db) {
+    try (SqlSession session = db.sqlSessionFactory.openSession()) {
+      return session.getMapper(RowMapper.class).selectFirst(rows);
+    }
+  }
+
+  @Benchmark
+  public List<Row> mapperSelectListWithResultMap(BenchmarkDatabase db) {
+    try (SqlSession session = db.sqlSessionFactory.openSession()) {
+      return session.getMapper(RowMapper.class).selectFirstWithResultMap(rows);
+    }
+  }
+
+  @Benchmark
+  public Row mapperSelectOne(BenchmarkDatabase db) {
+    try (SqlSession session = db.sqlSessionFactory.openSession()) {
+      return session.getMapper(RowMapper.class).selectById(rows);
+    }
+  }
+
+}
@@ -71,6 +71,15 @@ public @interface CacheNamespace {
    */
   long flushInterval() default 0;
 
+  /**
+   * Returns the time to live of each entry in milliseconds. Entries expire one by one, unlike a flush interval.
+   *
+   * @return the time to live, or {@code 0} to keep entries until they are evicted or flushed
+   * @see org.apache.ibatis.cache.decorators.TtlCache
+   * @since 3.5.12
+   */
+  long timeToLive() default 0;
+
   /**
    * Return the cache size.
    *
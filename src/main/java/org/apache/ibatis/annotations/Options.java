@@ -138,6 +138,32 @@ public @interface Options {
    */
   String resultSets() default "";
 
+  /**
+   * Returns the tables the statement reads, for the table invalidation of the 2nd cache.
+   * <p>
+   * If you specify multiple tables, please separate using comma(','). When not specified, they are inferred from the
+   * SQL.
+   * </p>
+   *
+   * @return table names that separate with comma(',')
+   * @see org.apache.ibatis.session.CacheInvalidation#TABLE
+   * @since 3.5.12
+   */
+  String readTables() default "";
+
+  /**
+   * Returns the tables the statement writes, for the table invalidation of the 2nd cache.
+   * <p>
+   * If you specify multiple tables, please separate using comma(','). When not specified, they are inferred from the
+   * SQL.
+   * </p>
+   *
+   * @return table names that separate with comma(',')
+   * @see org.apache.ibatis.session.CacheInvalidation#TABLE
+   * @since 3.5.12
+   */
+  String writeTables() default "";
+
   /**
    * @return A database id that correspond this options
    * @since 3.5.5
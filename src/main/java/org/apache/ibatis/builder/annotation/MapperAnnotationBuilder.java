@@ -33,6 +33,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -186,8 +187,9 @@ public class MapperAnnotationBuilder {
     if (cacheDomain != null) {
       Integer size = cacheDomain.size() == 0 ? null : cacheDomain.size();
       Long flushInterval = cacheDomain.flushInterval() == 0 ? null : cacheDomain.flushInterval();
+      Long timeToLive = cacheDomain.timeToLive() == 0 ? null : cacheDomain.timeToLive();
       Properties props = convertToProperties(cacheDomain.properties());
-      assistant.useNewCache(cacheDomain.implementation(), cacheDomain.eviction(), flushInterval, size, cacheDomain.readWrite(), cacheDomain.blocking(), props);
+      assistant.useNewCache(cacheDomain.implementation(), cacheDomain.eviction(), flushInterval, timeToLive, size, cacheDomain.readWrite(), cacheDomain.blocking(), props);
     }
   }
 
@@ -378,7 +380,9 @@ public class MapperAnnotationBuilder {
           statementAnnotation.getDatabaseId(),
           languageDriver,
           // ResultSets
-          options != null ? nullOrEmpty(options.resultSets()) : null);
+          options != null ? nullOrEmpty(options.resultSets()) : null,
+          options != null ? nullOrEmpty(options.readTables()) : null,
+          options != null ? nullOrEmpty(options.writeTables()) : null);
     });
   }
 
@@ -408,15 +412,18 @@ public class MapperAnnotationBuilder {
   }
 
   private Class<?> getReturnType(Method method) {
-    Class<?> returnType = method.getReturnType();
-    Type resolvedReturnType = TypeParameterResolver.resolveReturnType(method, type);
+    return getReturnType(method, TypeParameterResolver.resolveReturnType(method, type), method.getReturnType());
+  }
+
+  private Class<?> getReturnType(Method method, Type resolvedReturnType, Class<?> defaultReturnType) {
+    Class<?> returnType = defaultReturnType;
     if (resolvedReturnType instanceof Class) {
       returnType = (Class<?>) resolvedReturnType;
       if (returnType.isArray()) {
         returnType = returnType.getComponentType();
       }
       // gcode issue #508
-      if (void.class.equals(returnType)) {
+      if (void.class.equals(returnType) || Void.class.equals(returnType)) {
         ResultType rt = method.getAnnotation(ResultType.class);
         if (rt != null) {
           returnType = rt.value();
@@ -458,6 +465,9 @@ public class MapperAnnotationBuilder {
         if (returnTypeParameter instanceof Class<?>) {
           returnType = (Class<?>) returnTypeParameter;
         }
+      } else if (CompletableFuture.class.equals(rawType)) {
+        // asynchronous mapper method, the result is the type of the future
+        returnType = getReturnType(method, parameterizedType.getActualTypeArguments()[0], Object.class);
       }
     }
 
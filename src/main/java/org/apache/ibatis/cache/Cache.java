@@ -101,4 +101,18 @@ public interface Cache {
     return null;
   }
 
+  /**
+   * Optional. Tells whether this cache can be used by several threads at once without external synchronization. When
+   * it returns {@code true}, the {@code CacheBuilder} does not wrap the cache in a
+   * {@link org.apache.ibatis.cache.decorators.SynchronizedCache}.
+   * <p>
+   * Decorators should return {@code true} only if they are thread safe themselves and so is their delegate.
+   *
+   * @return true if this cache is thread safe
+   * @since 3.5.12
+   */
+  default boolean isThreadSafe() {
+    return false;
+  }
+
 }
@@ -16,8 +16,7 @@
 package org.apache.ibatis.cache;
 
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 import java.util.StringJoiner;
 
 import org.apache.ibatis.reflection.ArrayUtil;
@@ -27,7 +26,7 @@ import org.apache.ibatis.reflection.ArrayUtil;
  */
 public class CacheKey implements Cloneable, Serializable {
 
-  private static final long serialVersionUID = 1146682552656046210L;
+  private static final long serialVersionUID = 1146682552656046211L;
 
   public static final CacheKey NULL_CACHE_KEY = new CacheKey() {
 
@@ -42,22 +41,21 @@ public class CacheKey implements Cloneable, Serializable {
     }
   };
 
-  private static final int DEFAULT_MULTIPLIER = 37;
-  private static final int DEFAULT_HASHCODE = 17;
+  private static final int DEFAULT_CAPACITY = 8;
+  private static final long SEED = 0x5851f42d4c957f2dL;
+  private static final Object[] EMPTY = {};
 
-  private final int multiplier;
-  private int hashcode;
-  private long checksum;
+  // the components are combined into a 64-bit hash as they are added, so equals() rarely has to compare them
+  private long hash;
   private int count;
   // 8/21/2017 - Sonarlint flags this as needing to be marked transient. While true if content is not serializable, this
   // is not always true and thus should not be marked transient.
-  private List<Object> updateList;
+  private Object[] components;
 
   public CacheKey() {
-    this.hashcode = DEFAULT_HASHCODE;
-    this.multiplier = DEFAULT_MULTIPLIER;
+    this.hash = SEED;
     this.count = 0;
-    this.updateList = new ArrayList<>();
+    this.components = EMPTY;
   }
 
   public CacheKey(Object[] objects) {
@@ -66,19 +64,22 @@ public class CacheKey implements Cloneable, Serializable {
   }
 
   public int getUpdateCount() {
-    return updateList.size();
+    return count;
   }
 
   public void update(Object object) {
     int baseHashCode = object == null ? 1 : ArrayUtil.hashCode(object);
 
-    count++;
-    checksum += baseHashCode;
-    baseHashCode *= count;
-
-    hashcode = multiplier * hashcode + baseHashCode;
+    if (count == components.length) {
+      components = Arrays.copyOf(components, Math.max(DEFAULT_CAPACITY, count << 1));
+    }
+    components[count++] = object;
 
-    updateList.add(object);
+    long k = (baseHashCode & 0xffffffffL) | ((long) count << 32);
+    k *= 0x9e3779b97f4a7c15L;
+    k ^= k >>> 29;
+    hash = (hash ^ k) * 0xbf58476d1ce4e5b9L;
+    hash ^= hash >>> 32;
   }
 
   public void updateAll(Object[] objects) {
@@ -98,20 +99,18 @@ public class CacheKey implements Cloneable, Serializable {
 
     final CacheKey cacheKey = (CacheKey) object;
 
-    if (hashcode != cacheKey.hashcode) {
-      return false;
-    }
-    if (checksum != cacheKey.checksum) {
+    if (hash != cacheKey.hash) {
       return false;
     }
     if (count != cacheKey.count) {
       return false;
     }
 
-    for (int i = 0; i < updateList.size(); i++) {
-      Object thisObject = updateList.get(i);
-      Object thatObject = cacheKey.updateList.get(i);
-      if (!ArrayUtil.equals(thisObject, thatObject)) {
+    for (int i = 0; i < count; i++) {
+      Object thisObject = components[i];
+      Object thatObject = cacheKey.components[i];
+      // statement ids and static SQL are usually the very same instances
+      if (thisObject != thatObject && !ArrayUtil.equals(thisObject, thatObject)) {
         return false;
       }
     }
@@ -120,22 +119,24 @@ public class CacheKey implements Cloneable, Serializable {
 
   @Override
   public int hashCode() {
-    return hashcode;
+    return (int) (hash ^ (hash >>> 32));
   }
 
   @Override
   public String toString() {
     StringJoiner returnValue = new StringJoiner(":");
-    returnValue.add(String.valueOf(hashcode));
-    returnValue.add(String.valueOf(checksum));
-    updateList.stream().map(ArrayUtil::toString).forEach(returnValue::add);
+    returnValue.add(String.valueOf(hashCode()));
+    returnValue.add(Long.toHexString(hash));
+    for (int i = 0; i < count; i++) {
+      returnValue.add(ArrayUtil.toString(components[i]));
+    }
     return returnValue.toString();
   }
 
   @Override
   public CacheKey clone() throws CloneNotSupportedException {
     CacheKey clonedCacheKey = (CacheKey) super.clone();
-    clonedCacheKey.updateList = new ArrayList<>(updateList);
+    clonedCacheKey.components = count == 0 ? EMPTY : Arrays.copyOf(components, count);
     return clonedCacheKey;
   }
 
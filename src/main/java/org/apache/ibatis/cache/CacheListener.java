@@ -0,0 +1,91 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+/**
+ * Receives the events of a second level cache, e.g. to bridge them to a metrics library. Events are delivered
+ * synchronously on the thread that caused them, often while the cache is locked, so implementations must be fast and
+ * thread safe.
+ * <p>
+ * The cache decorators that evict entries or serialize values accept a listener through a {@code cacheListener}
+ * property, which the {@link org.apache.ibatis.mapping.CacheBuilder} sets to the {@link CacheMetrics} of the cache.
+ *
+ * @see CacheMetrics#addListener(CacheListener)
+ * @since 3.5.12
+ */
+public interface CacheListener {
+
+  /**
+   * A listener that ignores all events.
+   */
+  CacheListener NO_OP = new CacheListener() {
+  };
+
+  /**
+   * A value was found in the cache.
+   */
+  default void hit() {
+  }
+
+  /**
+   * No value was found in the cache.
+   */
+  default void miss() {
+  }
+
+  /**
+   * A value was put in the cache.
+   */
+  default void put() {
+  }
+
+  /**
+   * An entry was removed to make room for another one.
+   */
+  default void evicted() {
+  }
+
+  /**
+   * An entry was removed because its time to live had elapsed.
+   */
+  default void expired() {
+  }
+
+  /**
+   * A value missing from the cache was read from the database.
+   *
+   * @param loadMicros
+   *          the time it took to read the value, in microseconds
+   */
+  default void loaded(long loadMicros) {
+  }
+
+  /**
+   * A value was serialized to be stored.
+   *
+   * @param bytes
+   *          the size of the serialized value
+   */
+  default void serialized(int bytes) {
+  }
+
+  /**
+   * All entries were removed.
+   */
+  default void cleared() {
+  }
+
+}
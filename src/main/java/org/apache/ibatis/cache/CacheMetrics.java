@@ -0,0 +1,226 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free statistics of a second level cache: hits, misses, puts, evictions, expirations, flushes, the time it
+ * takes to load the missing values and the size of the cache in entries and in bytes.
+ * <p>
+ * There is one instance per cache, available from {@link org.apache.ibatis.session.Configuration#getCacheMetrics(String)}.
+ * The statistics can be read as a {@link CacheStats} snapshot, through JMX (see
+ * {@link org.apache.ibatis.session.Configuration#setCacheJmxEnabled(boolean)}) or forwarded to a {@link CacheListener}.
+ *
+ * @since 3.5.12
+ */
+public class CacheMetrics implements CacheMetricsMXBean, CacheListener {
+
+  private final String id;
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder putCount = new LongAdder();
+  private final LongAdder evictionCount = new LongAdder();
+  private final LongAdder expirationCount = new LongAdder();
+  private final LongAdder clearCount = new LongAdder();
+  private final LongAdder loadCount = new LongAdder();
+  private final LongAdder loadTime = new LongAdder();
+  private final LongAdder serializedCount = new LongAdder();
+  private final LongAdder serializedBytes = new LongAdder();
+  private final List<CacheListener> listeners = new CopyOnWriteArrayList<>();
+  private volatile Cache cache;
+
+  public CacheMetrics(String id) {
+    this.id = id;
+  }
+
+  /**
+   * Sets the cache whose size is reported. It should be the outermost decorator, which is safe to call from any
+   * thread.
+   *
+   * @param cache
+   *          the cache
+   */
+  public void setCache(Cache cache) {
+    this.cache = cache;
+  }
+
+  public void addListener(CacheListener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(CacheListener listener) {
+    listeners.remove(listener);
+  }
+
+  @Override
+  public void hit() {
+    hitCount.increment();
+    for (CacheListener listener : listeners) {
+      listener.hit();
+    }
+  }
+
+  @Override
+  public void miss() {
+    missCount.increment();
+    for (CacheListener listener : listeners) {
+      listener.miss();
+    }
+  }
+
+  @Override
+  public void put() {
+    putCount.increment();
+    for (CacheListener listener : listeners) {
+      listener.put();
+    }
+  }
+
+  @Override
+  public void evicted() {
+    evictionCount.increment();
+    for (CacheListener listener : listeners) {
+      listener.evicted();
+    }
+  }
+
+  @Override
+  public void expired() {
+    expirationCount.increment();
+    for (CacheListener listener : listeners) {
+      listener.expired();
+    }
+  }
+
+  @Override
+  public void loaded(long loadMicros) {
+    loadCount.increment();
+    loadTime.add(loadMicros);
+    for (CacheListener listener : listeners) {
+      listener.loaded(loadMicros);
+    }
+  }
+
+  @Override
+  public void serialized(int bytes) {
+    serializedCount.increment();
+    serializedBytes.add(bytes);
+    for (CacheListener listener : listeners) {
+      listener.serialized(bytes);
+    }
+  }
+
+  @Override
+  public void cleared() {
+    clearCount.increment();
+    for (CacheListener listener : listeners) {
+      listener.cleared();
+    }
+  }
+
+  /**
+   * Takes a snapshot of the statistics. The counters are read one after the other while the cache keeps being used,
+   * so they may be slightly inconsistent with each other.
+   *
+   * @return the statistics
+   */
+  public CacheStats snapshot() {
+    return new CacheStats(id, hitCount.sum(), missCount.sum(), putCount.sum(), evictionCount.sum(),
+        expirationCount.sum(), clearCount.sum(), loadCount.sum(), loadTime.sum(), getSize(), getByteSize());
+  }
+
+  @Override
+  public String getId() {
+    return id;
+  }
+
+  @Override
+  public long getRequestCount() {
+    return hitCount.sum() + missCount.sum();
+  }
+
+  @Override
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+
+  @Override
+  public long getMissCount() {
+    return missCount.sum();
+  }
+
+  @Override
+  public double getHitRatio() {
+    long hits = hitCount.sum();
+    long requests = hits + missCount.sum();
+    return requests == 0 ? 0 : (double) hits / requests;
+  }
+
+  @Override
+  public long getPutCount() {
+    return putCount.sum();
+  }
+
+  @Override
+  public long getEvictionCount() {
+    return evictionCount.sum();
+  }
+
+  @Override
+  public long getExpirationCount() {
+    return expirationCount.sum();
+  }
+
+  @Override
+  public long getClearCount() {
+    return clearCount.sum();
+  }
+
+  @Override
+  public long getLoadCount() {
+    return loadCount.sum();
+  }
+
+  @Override
+  public double getAverageLoadTime() {
+    long loads = loadCount.sum();
+    return loads == 0 ? 0 : (double) loadTime.sum() / loads;
+  }
+
+  @Override
+  public int getSize() {
+    Cache current = cache;
+    return current == null ? 0 : current.getSize();
+  }
+
+  @Override
+  public long getByteSize() {
+    long count = serializedCount.sum();
+    if (count == 0) {
+      return -1;
+    }
+    return serializedBytes.sum() / count * getSize();
+  }
+
+  @Override
+  public String toString() {
+    return snapshot().toString();
+  }
+
+}
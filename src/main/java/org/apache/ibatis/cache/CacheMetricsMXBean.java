@@ -0,0 +1,53 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+/**
+ * The management interface of the statistics of a second level cache, registered when {@code cacheJmxEnabled} is
+ * set. Times are in microseconds.
+ *
+ * @see org.apache.ibatis.session.Configuration#setCacheJmxEnabled(boolean)
+ * @since 3.5.12
+ */
+public interface CacheMetricsMXBean {
+
+  String getId();
+
+  long getRequestCount();
+
+  long getHitCount();
+
+  long getMissCount();
+
+  double getHitRatio();
+
+  long getPutCount();
+
+  long getEvictionCount();
+
+  long getExpirationCount();
+
+  long getClearCount();
+
+  long getLoadCount();
+
+  double getAverageLoadTime();
+
+  int getSize();
+
+  long getByteSize();
+
+}
@@ -0,0 +1,160 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+/**
+ * The statistics of a second level cache at one point in time.
+ *
+ * @see CacheMetrics#snapshot()
+ * @since 3.5.12
+ */
+public class CacheStats {
+
+  private final String id;
+  private final long hitCount;
+  private final long missCount;
+  private final long putCount;
+  private final long evictionCount;
+  private final long expirationCount;
+  private final long clearCount;
+  private final long loadCount;
+  private final long totalLoadTime;
+  private final int size;
+  private final long byteSize;
+
+  public CacheStats(String id, long hitCount, long missCount, long putCount, long evictionCount, long expirationCount,
+      long clearCount, long loadCount, long totalLoadTime, int size, long byteSize) {
+    this.id = id;
+    this.hitCount = hitCount;
+    this.missCount = missCount;
+    this.putCount = putCount;
+    this.evictionCount = evictionCount;
+    this.expirationCount = expirationCount;
+    this.clearCount = clearCount;
+    this.loadCount = loadCount;
+    this.totalLoadTime = totalLoadTime;
+    this.size = size;
+    this.byteSize = byteSize;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public long getRequestCount() {
+    return hitCount + missCount;
+  }
+
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  public long getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * Gets the part of the requests that found a value.
+   *
+   * @return the hit ratio, from 0 to 1, or 0 when there was no request
+   */
+  public double getHitRatio() {
+    long requestCount = getRequestCount();
+    return requestCount == 0 ? 0 : (double) hitCount / requestCount;
+  }
+
+  public long getPutCount() {
+    return putCount;
+  }
+
+  /**
+   * Gets the number of entries removed to make room for others by a size bound eviction policy. A cache that evicts
+   * often is too small for its working set.
+   *
+   * @return the eviction count
+   */
+  public long getEvictionCount() {
+    return evictionCount;
+  }
+
+  /**
+   * Gets the number of entries removed because their time to live had elapsed.
+   *
+   * @return the expiration count
+   */
+  public long getExpirationCount() {
+    return expirationCount;
+  }
+
+  /**
+   * Gets the number of times the whole cache was flushed, by statements or by its flush interval.
+   *
+   * @return the clear count
+   */
+  public long getClearCount() {
+    return clearCount;
+  }
+
+  /**
+   * Gets the number of values read from the database after a miss.
+   *
+   * @return the load count
+   */
+  public long getLoadCount() {
+    return loadCount;
+  }
+
+  /**
+   * Gets the time spent reading values from the database after misses.
+   *
+   * @return the total load time, in microseconds
+   */
+  public long getTotalLoadTime() {
+    return totalLoadTime;
+  }
+
+  /**
+   * Gets the average time it took to read a value from the database after a miss.
+   *
+   * @return the average load time, in microseconds, or 0 when there was no load
+   */
+  public double getAverageLoadTime() {
+    return loadCount == 0 ? 0 : (double) totalLoadTime / loadCount;
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  /**
+   * Gets an estimate of the memory taken by the values, from the average size of the values serialized so far and
+   * the number of entries.
+   *
+   * @return the estimated number of bytes, or -1 when the cache does not serialize its values
+   */
+  public long getByteSize() {
+    return byteSize;
+  }
+
+  @Override
+  public String toString() {
+    return "id=" + id + ", requests=" + getRequestCount() + ", hits=" + hitCount + ", misses=" + missCount
+        + ", hitRatio=" + getHitRatio() + ", puts=" + putCount + ", evictions=" + evictionCount + ", expirations="
+        + expirationCount + ", clears=" + clearCount + ", loads=" + loadCount + ", averageLoadTime="
+        + getAverageLoadTime() + ", size=" + size + ", byteSize=" + byteSize;
+  }
+
+}
@@ -0,0 +1,250 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Finds the tables a SQL statement reads and writes, for the table
+ * {@link org.apache.ibatis.session.CacheInvalidation#TABLE invalidation} of the second level cache.
+ * <p>
+ * This is a lexical scan, not a SQL parser: the tables read are the ones named after {@code FROM}, {@code JOIN} and
+ * {@code USING}, and the tables written the ones named after {@code INSERT INTO}, {@code UPDATE}, {@code DELETE FROM},
+ * {@code MERGE INTO} and the like. Table names are compared in upper case and without their schema, so that the same
+ * table is recognized however it is written. A statement that reads views or calls functions in its {@code FROM}
+ * clause should declare the tables it depends on.
+ *
+ * @since 3.5.12
+ */
+public final class SqlTables {
+
+  private static final String[] NO_TABLES = {};
+
+  private static final Set<String> CLAUSE_KEYWORDS = new HashSet<>(Arrays.asList("WHERE", "GROUP", "ORDER", "HAVING",
+      "LIMIT", "OFFSET", "FETCH", "UNION", "EXCEPT", "INTERSECT", "MINUS", "JOIN", "INNER", "LEFT", "RIGHT", "FULL",
+      "OUTER", "CROSS", "NATURAL", "STRAIGHT_JOIN", "ON", "FROM", "USING", "SET", "VALUES", "SELECT", "FOR", "WINDOW", "AS",
+      "INTO", "RETURNING", "START", "CONNECT", "WHEN", "DEFAULT", "OUTPUT", "PARTITION", "WITH"));
+
+  private static final Set<String> TABLE_MODIFIERS = new HashSet<>(
+      Arrays.asList("ONLY", "LOW_PRIORITY", "DELAYED", "HIGH_PRIORITY", "QUICK", "IGNORE", "TABLE", "TOP", "LATERAL"));
+
+  private SqlTables() {
+    // Prevent Instantiation of Static Class
+  }
+
+  /**
+   * Finds the tables a statement reads.
+   *
+   * @param sql
+   *          the SQL of the statement
+   * @return the tables read, or only {@link TableVersions#ANY_TABLE} when the statement reads no table or reads from a
+   *         function, whose tables are unknown
+   */
+  public static String[] readTables(String sql) {
+    List<String> tokens = tokenize(sql);
+    Set<String> tables = new LinkedHashSet<>();
+    for (int i = 0; i < tokens.size(); i++) {
+      String token = tokens.get(i);
+      if ("FROM".equals(token) || "USING".equals(token)) {
+        readTableList(tokens, i + 1, true, true, tables);
+      } else if ("JOIN".equals(token) || "STRAIGHT_JOIN".equals(token)) {
+        readTableList(tokens, i + 1, false, true, tables);
+      }
+    }
+    return tables.isEmpty() ? new String[] { TableVersions.ANY_TABLE } : tables.toArray(NO_TABLES);
+  }
+
+  /**
+   * Finds the tables a statement writes.
+   *
+   * @param sql
+   *          the SQL of the statement
+   * @return the tables written, or {@code null} when the statement is not a recognized {@code INSERT}, {@code UPDATE},
+   *         {@code DELETE}, {@code MERGE} or {@code TRUNCATE}, e.g. a call to a stored procedure
+   */
+  public static String[] writeTables(String sql) {
+    List<String> tokens = tokenize(sql);
+    Set<String> tables = new LinkedHashSet<>();
+    int depth = 0;
+    String verb = null;
+    for (int i = 0; i < tokens.size(); i++) {
+      String token = tokens.get(i);
+      if ("(".equals(token)) {
+        depth++;
+      } else if (")".equals(token)) {
+        depth--;
+      } else if (";".equals(token)) {
+        verb = null;
+      } else if (depth == 0 && verb == null
+          && ("INSERT".equals(token) || "UPDATE".equals(token) || "DELETE".equals(token) || "MERGE".equals(token)
+              || "REPLACE".equals(token) || "UPSERT".equals(token) || "TRUNCATE".equals(token))) {
+        verb = token;
+        if ("UPDATE".equals(token) || "DELETE".equals(token) || "TRUNCATE".equals(token)) {
+          int next = skipModifiers(tokens, i + 1);
+          if ("FROM".equals(token(tokens, next))) {
+            next = skipModifiers(tokens, next + 1);
+          }
+          readTableList(tokens, next, "UPDATE".equals(token), false, tables);
+        }
+      } else if (depth == 0 && verb != null && !"UPDATE".equals(verb) && !"DELETE".equals(verb)
+          && "INTO".equals(token)) {
+        // INSERT INTO, REPLACE INTO, MERGE INTO and the several INTO of an INSERT ALL
+        readTableList(tokens, i + 1, false, false, tables);
+      }
+    }
+    return tables.isEmpty() ? null : tables.toArray(NO_TABLES);
+  }
+
+  /**
+   * Parses a list of table names declared by a statement.
+   *
+   * @param tables
+   *          table names separated by commas
+   * @return the normalized table names, or {@code null} when none is declared
+   */
+  public static String[] parseTables(String tables) {
+    if (tables == null || tables.trim().isEmpty()) {
+      return null;
+    }
+    Set<String> result = new LinkedHashSet<>();
+    for (String table : tables.split(",")) {
+      String name = table.trim();
+      if (!name.isEmpty()) {
+        result.add(normalize(name.substring(name.lastIndexOf('.') + 1)));
+      }
+    }
+    return result.toArray(NO_TABLES);
+  }
+
+  private static void readTableList(List<String> tokens, int start, boolean list, boolean source,
+      Set<String> tables) {
+    int i = skipModifiers(tokens, start);
+    if (source && i > start && "TABLE".equals(tokens.get(i - 1)) && "(".equals(token(tokens, i))) {
+      // a collection or function wrapped in TABLE(...), which may read any table
+      tables.add(TableVersions.ANY_TABLE);
+      return;
+    }
+    while (i < tokens.size()) {
+      String token = tokens.get(i);
+      if (!isIdentifier(token) || CLAUSE_KEYWORDS.contains(token)) {
+        // a derived table: the tables of its query are found by the caller
+        return;
+      }
+      String table = token;
+      i++;
+      while (".".equals(token(tokens, i)) && isIdentifier(token(tokens, i + 1))) {
+        table = tokens.get(i + 1);
+        i += 2;
+      }
+      if (source && "(".equals(token(tokens, i))) {
+        // a table function, which may read any table
+        tables.add(TableVersions.ANY_TABLE);
+        return;
+      }
+      tables.add(unquote(table));
+      if ("AS".equals(token(tokens, i))) {
+        i += 2;
+      } else if (isIdentifier(token(tokens, i)) && !CLAUSE_KEYWORDS.contains(token(tokens, i))) {
+        i++;
+      }
+      if (!list || !",".equals(token(tokens, i))) {
+        return;
+      }
+      i++;
+    }
+  }
+
+  private static int skipModifiers(List<String> tokens, int start) {
+    int i = start;
+    while (TABLE_MODIFIERS.contains(token(tokens, i))) {
+      i++;
+    }
+    return i;
+  }
+
+  private static String token(List<String> tokens, int index) {
+    return index < tokens.size() ? tokens.get(index) : null;
+  }
+
+  private static boolean isIdentifier(String token) {
+    return token != null && (token.charAt(0) == '"' || Character.isLetter(token.charAt(0)) || token.charAt(0) == '_');
+  }
+
+  private static String unquote(String token) {
+    return token.charAt(0) == '"' ? token.substring(1) : token;
+  }
+
+  private static String normalize(String identifier) {
+    String name = identifier;
+    if (name.length() > 1 && (name.charAt(0) == '"' || name.charAt(0) == '`' || name.charAt(0) == '[')) {
+      name = name.substring(1, name.length() - 1);
+    }
+    return name.toUpperCase(Locale.ENGLISH);
+  }
+
+  /**
+   * Splits SQL into upper case words, quoted identifiers (prefixed with a double quote) and the punctuation that
+   * matters here. Literals, comments, numbers and operators are dropped.
+   */
+  private static List<String> tokenize(String sql) {
+    List<String> tokens = new ArrayList<>();
+    int length = sql.length();
+    int i = 0;
+    while (i < length) {
+      char c = sql.charAt(i);
+      char next = i + 1 < length ? sql.charAt(i + 1) : 0;
+      if (c == '\'') {
+        i = sql.indexOf('\'', i + 1);
+        i = i < 0 ? length : i + 1;
+      } else if (c == '-' && next == '-') {
+        i = sql.indexOf('\n', i);
+        i = i < 0 ? length : i + 1;
+      } else if (c == '/' && next == '*') {
+        i = sql.indexOf("*/", i + 2);
+        i = i < 0 ? length : i + 2;
+      } else if (c == '"' || c == '`' || c == '[') {
+        int end = sql.indexOf(c == '[' ? ']' : c, i + 1);
+        end = end < 0 ? length : end;
+        tokens.add('"' + sql.substring(i + 1, end).toUpperCase(Locale.ENGLISH));
+        i = end + 1;
+      } else if (Character.isLetter(c) || c == '_') {
+        int start = i;
+        while (i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '_'
+            || sql.charAt(i) == '$' || sql.charAt(i) == '#')) {
+          i++;
+        }
+        tokens.add(sql.substring(start, i).toUpperCase(Locale.ENGLISH));
+      } else if (Character.isDigit(c)) {
+        while (i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+          i++;
+        }
+      } else {
+        if (c == '(' || c == ')' || c == ',' || c == ';' || c == '.') {
+          tokens.add(String.valueOf(c));
+        }
+        i++;
+      }
+    }
+    return tokens;
+  }
+
+}
@@ -0,0 +1,94 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The version of each table read or written by the cached statements of a configuration, used by the table
+ * {@link org.apache.ibatis.session.CacheInvalidation#TABLE invalidation} of the second level cache. A cached entry
+ * records the versions of the tables it was read from, and is stale as soon as one of them changed.
+ *
+ * @since 3.5.12
+ */
+public class TableVersions {
+
+  /**
+   * The pseudo table of the entries whose tables are unknown: it changes whenever any table does.
+   */
+  public static final String ANY_TABLE = "*";
+
+  private final ConcurrentMap<String, AtomicLong> versions = new ConcurrentHashMap<>();
+  private final AtomicLong anyTableVersion = new AtomicLong();
+
+  /**
+   * Gets the current versions of tables.
+   *
+   * @param tables
+   *          the table names, as returned by {@link SqlTables}
+   * @return the version of each table
+   */
+  public long[] getVersions(String[] tables) {
+    long[] result = new long[tables.length];
+    for (int i = 0; i < tables.length; i++) {
+      result[i] = version(tables[i]).get();
+    }
+    return result;
+  }
+
+  /**
+   * Checks that none of the tables changed since their versions were taken.
+   *
+   * @param tables
+   *          the table names
+   * @param tableVersions
+   *          the versions returned by {@link #getVersions(String[])} for these tables
+   * @return true if all the tables are still at these versions
+   */
+  public boolean isCurrent(String[] tables, long[] tableVersions) {
+    for (int i = 0; i < tables.length; i++) {
+      if (version(tables[i]).get() != tableVersions[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Records that tables were written, which makes the cached entries read from them stale.
+   *
+   * @param tables
+   *          the written table names
+   */
+  public void invalidate(Collection<String> tables) {
+    for (String table : tables) {
+      version(table).incrementAndGet();
+    }
+    anyTableVersion.incrementAndGet();
+  }
+
+  private AtomicLong version(String table) {
+    if (ANY_TABLE.equals(table)) {
+      return anyTableVersion;
+    }
+    AtomicLong version = versions.get(table);
+    return version != null ? version : versions.computeIfAbsent(table, k -> new AtomicLong());
+  }
+
+}
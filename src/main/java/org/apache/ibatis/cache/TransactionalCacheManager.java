@@ -15,8 +15,12 @@
  */
 package org.apache.ibatis.cache;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
 
 import org.apache.ibatis.cache.decorators.TransactionalCache;
 import org.apache.ibatis.util.MapUtil;
@@ -27,33 +31,84 @@ import org.apache.ibatis.util.MapUtil;
 public class TransactionalCacheManager {
 
   private final Map<Cache, TransactionalCache> transactionalCaches = new HashMap<>();
+  private final TableVersions tableVersions;
+  private final Set<String> writtenTables = new HashSet<>();
+
+  public TransactionalCacheManager() {
+    this(null);
+  }
+
+  /**
+   * Creates a manager for the table {@link org.apache.ibatis.session.CacheInvalidation#TABLE invalidation}.
+   *
+   * @param tableVersions
+   *          the table versions of the configuration, or {@code null} to clear whole caches
+   * @since 3.5.12
+   */
+  public TransactionalCacheManager(TableVersions tableVersions) {
+    this.tableVersions = tableVersions;
+  }
 
   public void clear(Cache cache) {
     getTransactionalCache(cache).clear();
   }
 
+  /**
+   * Records that the session wrote tables. On commit, the entries read from them become stale in all the caches.
+   *
+   * @param tables
+   *          the written tables
+   * @since 3.5.12
+   */
+  public void invalidate(String[] tables) {
+    writtenTables.addAll(Arrays.asList(tables));
+  }
+
   public Object getObject(Cache cache, CacheKey key) {
     return getTransactionalCache(cache).getObject(key);
   }
 
+  /**
+   * Gets an entry read from tables, see {@link TransactionalCache#getObject(Object, Supplier)}.
+   *
+   * @param cache
+   *          the cache
+   * @param key
+   *          the key
+   * @param tables
+   *          supplies the tables the entry is read from
+   * @return the cached entry or {@code null}
+   * @since 3.5.12
+   */
+  public Object getObject(Cache cache, CacheKey key, Supplier<String[]> tables) {
+    return getTransactionalCache(cache).getObject(key, tables);
+  }
+
   public void putObject(Cache cache, CacheKey key, Object value) {
     getTransactionalCache(cache).putObject(key, value);
   }
 
   public void commit() {
+    if (!writtenTables.isEmpty()) {
+      // before the entries of the session are put, so that the ones read before the writes are stale
+      tableVersions.invalidate(writtenTables);
+      writtenTables.clear();
+    }
     for (TransactionalCache txCache : transactionalCaches.values()) {
       txCache.commit();
     }
   }
 
   public void rollback() {
+    writtenTables.clear();
     for (TransactionalCache txCache : transactionalCaches.values()) {
       txCache.rollback();
     }
   }
 
   private TransactionalCache getTransactionalCache(Cache cache) {
-    return MapUtil.computeIfAbsent(transactionalCaches, cache, TransactionalCache::new);
+    return MapUtil.computeIfAbsent(transactionalCaches, cache,
+        c -> new TransactionalCache(c, tableVersions, writtenTables));
   }
 
 }
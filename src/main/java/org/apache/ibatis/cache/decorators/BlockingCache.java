@@ -15,12 +15,20 @@
  */
 package org.apache.ibatis.cache.decorators;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
 
 /**
  * <p>Simple blocking decorator
@@ -31,14 +39,26 @@ import org.apache.ibatis.cache.CacheException;
  *
  * <p>By its nature, this implementation can cause deadlock when used incorrectly.
  *
+ * <p>In loading mode ({@code loading} property), no lock is held across the calls to the cache. Instead, the callers
+ * of {@link #getObject(Object, Callable, Callable, Executor)} that miss the same key share a single load: the first one runs
+ * the loader and puts its value, the others wait for it. With {@code refreshAfter}, a value older than that is
+ * still returned, while one refresh is run in the background.
+ *
  * @author Eduardo Macarron
  *
  */
 public class BlockingCache implements Cache {
 
+  private static final Log log = LogFactory.getLog(BlockingCache.class);
+
   private long timeout;
   private final Cache delegate;
   private final ConcurrentHashMap<Object, CountDownLatch> locks;
+  private final ConcurrentHashMap<Object, CompletableFuture<Object>> loads = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<Object, Long> loadTimes = new ConcurrentHashMap<>();
+  private boolean loading;
+  private long refreshAfter;
+  private volatile long generation;
 
   public BlockingCache(Cache delegate) {
     this.delegate = delegate;
@@ -57,6 +77,13 @@ public class BlockingCache implements Cache {
 
   @Override
   public void putObject(Object key, Object value) {
+    if (loading) {
+      // a null value only releases the lock of a miss, and no lock is taken in loading mode
+      if (value != null) {
+        putLoaded(key, value);
+      }
+      return;
+    }
     try {
       delegate.putObject(key, value);
     } finally {
@@ -66,6 +93,9 @@ public class BlockingCache implements Cache {
 
   @Override
   public Object getObject(Object key) {
+    if (loading) {
+      return delegate.getObject(key);
+    }
     acquireLock(key);
     Object value = delegate.getObject(key);
     if (value != null) {
@@ -74,8 +104,99 @@ public class BlockingCache implements Cache {
     return value;
   }
 
+  /**
+   * Gets a value in loading mode, loading it when it is missing.
+   * <p>
+   * Concurrent misses of a key share one load, which is run by the first caller. The others wait for it, at most
+   * {@code timeout} milliseconds when set, and then get the value from the cache; a caller that waited too long runs
+   * the loader itself. A hit on a value loaded more than {@code refreshAfter} milliseconds ago returns it and starts one
+   * refresh with the executor.
+   *
+   * @param key
+   *          the key
+   * @param loader
+   *          loads the value to put for the key
+   * @param executor
+   *          runs the refreshes
+   * @return the cached value, or {@code null} when the calling thread ran the loader, in which case it already has
+   *         the value
+   * @throws Exception
+   *           if the loader run by the calling thread fails
+   * @since 3.5.12
+   */
+  public Object getObject(Object key, Callable<?> loader, Executor executor) throws Exception {
+    return getObject(key, loader, loader, executor);
+  }
+
+  /**
+   * Gets a value in loading mode like {@link #getObject(Object, Callable, Executor)}, with another loader for the
+   * refreshes, which run on another thread than the caller's.
+   *
+   * @param key
+   *          the key
+   * @param loader
+   *          loads the value to put for the key, on the calling thread
+   * @param refresher
+   *          loads the value of a stale key with the executor, or {@code null} to not refresh
+   * @param executor
+   *          runs the refreshes
+   * @return the cached value, or {@code null} when the calling thread ran the loader, in which case it already has
+   *         the value
+   * @throws Exception
+   *           if the loader run by the calling thread fails
+   * @since 3.5.12
+   */
+  public Object getObject(Object key, Callable<?> loader, Callable<?> refresher, Executor executor) throws Exception {
+    while (true) {
+      Object value = delegate.getObject(key);
+      if (value != null) {
+        if (refreshAfter > 0 && refresher != null && isStale(key)) {
+          refresh(key, refresher, executor);
+        }
+        return value;
+      }
+      loadTimes.remove(key);
+      CompletableFuture<Object> load = new CompletableFuture<>();
+      CompletableFuture<Object> currentLoad = loads.putIfAbsent(key, load);
+      if (currentLoad == null) {
+        try {
+          value = delegate.getObject(key);
+          if (value != null) {
+            // loaded by a load that ended in the meantime
+            load.complete(null);
+            return value;
+          }
+          load(key, loader, load);
+          return null;
+        } finally {
+          loads.remove(key, load);
+        }
+      }
+      try {
+        if (timeout > 0) {
+          currentLoad.get(timeout, TimeUnit.MILLISECONDS);
+        } else {
+          currentLoad.get();
+        }
+      } catch (TimeoutException e) {
+        putLoaded(key, loader.call());
+        return null;
+      } catch (ExecutionException e) {
+        // the load failed, the next attempt decides who loads again
+        loads.remove(key, currentLoad);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new CacheException("Got interrupted while waiting for the load of key " + key, e);
+      }
+    }
+  }
+
   @Override
   public Object removeObject(Object key) {
+    if (loading) {
+      // only called to release locks
+      return null;
+    }
     // despite its name, this method is called only to release locks
     releaseLock(key);
     return null;
@@ -83,9 +204,96 @@ public class BlockingCache implements Cache {
 
   @Override
   public void clear() {
+    generation++;
+    loadTimes.clear();
     delegate.clear();
   }
 
+  public boolean isLoading() {
+    return loading;
+  }
+
+  /**
+   * Sets whether loads are shared through {@link #getObject(Object, Callable, Callable, Executor)} instead of locking keys.
+   *
+   * @param loading
+   *          {@code true} for loading mode
+   * @since 3.5.12
+   */
+  public void setLoading(boolean loading) {
+    this.loading = loading;
+  }
+
+  public long getRefreshAfter() {
+    return refreshAfter;
+  }
+
+  /**
+   * Sets the age after which a value is refreshed in the background in loading mode. It should be shorter than the
+   * time the value stays in the cache.
+   *
+   * @param refreshAfter
+   *          the age in milliseconds, or {@code 0} to never refresh
+   * @since 3.5.12
+   */
+  public void setRefreshAfter(long refreshAfter) {
+    this.refreshAfter = refreshAfter;
+  }
+
+  private void load(Object key, Callable<?> loader, CompletableFuture<Object> load) throws Exception {
+    long loadGeneration = generation;
+    try {
+      Object value = loader.call();
+      if (generation == loadGeneration) {
+        // not cleared during the load, which may have read data the clear was for
+        putLoaded(key, value);
+      }
+      load.complete(null);
+    } catch (Exception | Error e) {
+      load.completeExceptionally(e);
+      throw e;
+    }
+  }
+
+  private void refresh(Object key, Callable<?> loader, Executor executor) {
+    CompletableFuture<Object> load = new CompletableFuture<>();
+    if (loads.putIfAbsent(key, load) != null) {
+      return;
+    }
+    try {
+      executor.execute(() -> {
+        try {
+          load(key, loader, load);
+        } catch (Exception e) {
+          log.warn("Could not refresh the key " + key + " of the cache " + getId() + ". Cause: " + e);
+        } finally {
+          loads.remove(key, load);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      loads.remove(key, load);
+      load.complete(null);
+    }
+  }
+
+  private void putLoaded(Object key, Object value) {
+    delegate.putObject(key, value);
+    if (refreshAfter > 0) {
+      if (loadTimes.size() > 1024 && loadTimes.size() > 2 * delegate.getSize()) {
+        // keys evicted by the delegate are never removed one by one; the values that lose their time are seen as
+        // just loaded, which only delays their refresh
+        loadTimes.clear();
+      }
+      loadTimes.put(key, System.nanoTime());
+    }
+  }
+
+  private boolean isStale(Object key) {
+    long now = System.nanoTime();
+    Long loadTime = loadTimes.putIfAbsent(key, now);
+    return loadTime != null && now - loadTime >= TimeUnit.MILLISECONDS.toNanos(refreshAfter);
+  }
+
   private void acquireLock(Object key) {
     CountDownLatch newLatch = new CountDownLatch(1);
     while (true) {
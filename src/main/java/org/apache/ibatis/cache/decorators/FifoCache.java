@@ -19,6 +19,7 @@ import java.util.Deque;
 import java.util.LinkedList;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheListener;
 
 /**
  * FIFO (first in, first out) cache decorator.
@@ -30,6 +31,7 @@ public class FifoCache implements Cache {
   private final Cache delegate;
   private final Deque<Object> keyList;
   private int size;
+  private CacheListener cacheListener = CacheListener.NO_OP;
 
   public FifoCache(Cache delegate) {
     this.delegate = delegate;
@@ -51,6 +53,17 @@ public class FifoCache implements Cache {
     this.size = size;
   }
 
+  /**
+   * Sets the listener notified of the entries this cache evicts.
+   *
+   * @param cacheListener
+   *          the listener
+   * @since 3.5.12
+   */
+  public void setCacheListener(CacheListener cacheListener) {
+    this.cacheListener = cacheListener;
+  }
+
   @Override
   public void putObject(Object key, Object value) {
     cycleKeyList(key);
@@ -78,6 +91,7 @@ public class FifoCache implements Cache {
     if (keyList.size() > size) {
       Object oldestKey = keyList.removeFirst();
       delegate.removeObject(oldestKey);
+      cacheListener.evicted();
     }
   }
 
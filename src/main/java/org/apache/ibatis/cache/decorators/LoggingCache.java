@@ -16,21 +16,55 @@
 package org.apache.ibatis.cache.decorators;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheMetrics;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
 
 /**
+ * Counts the hits, misses, puts and flushes of the cache in its {@link CacheMetrics}, and logs the hit ratio at debug
+ * level.
+ *
  * @author Clinton Begin
  */
 public class LoggingCache implements Cache {
 
   private final Log log;
   private final Cache delegate;
+  protected final CacheMetrics metrics;
+  /**
+   * The number of requests, kept for subclasses and only counted in them. It is not updated atomically, so it is
+   * approximate when the cache is thread safe and not wrapped in a {@link SynchronizedCache}.
+   *
+   * @deprecated use {@link #getMetrics()}
+   */
+  @Deprecated
   protected int requests = 0;
+  /**
+   * The number of hits, kept for subclasses, with the same limits as {@link #requests}.
+   *
+   * @deprecated use {@link #getMetrics()}
+   */
+  @Deprecated
   protected int hits = 0;
+  // the plain counters are shared by all threads, so they are only kept up to date for subclasses that may read them
+  private final boolean legacyCounters = getClass() != LoggingCache.class;
 
   public LoggingCache(Cache delegate) {
+    this(delegate, new CacheMetrics(delegate.getId()));
+  }
+
+  /**
+   * Instantiates a new logging cache.
+   *
+   * @param delegate
+   *          the cache
+   * @param metrics
+   *          the statistics to record in
+   * @since 3.5.12
+   */
+  public LoggingCache(Cache delegate, CacheMetrics metrics) {
     this.delegate = delegate;
+    this.metrics = metrics;
     this.log = LogFactory.getLog(getId());
   }
 
@@ -47,17 +81,28 @@ public class LoggingCache implements Cache {
   @Override
   public void putObject(Object key, Object object) {
     delegate.putObject(key, object);
+    if (object != null) {
+      // null values only release the locks of a blocking cache
+      metrics.put();
+    }
   }
 
   @Override
   public Object getObject(Object key) {
-    requests++;
     final Object value = delegate.getObject(key);
+    if (legacyCounters) {
+      requests++;
+      if (value != null) {
+        hits++;
+      }
+    }
     if (value != null) {
-      hits++;
+      metrics.hit();
+    } else {
+      metrics.miss();
     }
     if (log.isDebugEnabled()) {
-      log.debug("Cache Hit Ratio [" + getId() + "]: " + getHitRatio());
+      log.debug("Cache Hit Ratio [" + getId() + "]: " + metrics.getHitRatio());
     }
     return value;
   }
@@ -70,6 +115,12 @@ public class LoggingCache implements Cache {
   @Override
   public void clear() {
     delegate.clear();
+    metrics.cleared();
+  }
+
+  @Override
+  public boolean isThreadSafe() {
+    return delegate.isThreadSafe();
   }
 
   @Override
@@ -82,8 +133,14 @@ public class LoggingCache implements Cache {
     return delegate.equals(obj);
   }
 
-  private double getHitRatio() {
-    return (double) hits / (double) requests;
+  /**
+   * Gets the statistics of this cache.
+   *
+   * @return the statistics
+   * @since 3.5.12
+   */
+  public CacheMetrics getMetrics() {
+    return metrics;
   }
 
 }
@@ -19,6 +19,7 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheListener;
 
 /**
  * Lru (least recently used) cache decorator.
@@ -30,6 +31,7 @@ public class LruCache implements Cache {
   private final Cache delegate;
   private Map<Object, Object> keyMap;
   private Object eldestKey;
+  private CacheListener cacheListener = CacheListener.NO_OP;
 
   public LruCache(Cache delegate) {
     this.delegate = delegate;
@@ -61,6 +63,17 @@ public class LruCache implements Cache {
     };
   }
 
+  /**
+   * Sets the listener notified of the entries this cache evicts.
+   *
+   * @param cacheListener
+   *          the listener
+   * @since 3.5.12
+   */
+  public void setCacheListener(CacheListener cacheListener) {
+    this.cacheListener = cacheListener;
+  }
+
   @Override
   public void putObject(Object key, Object value) {
     delegate.putObject(key, value);
@@ -89,6 +102,7 @@ public class LruCache implements Cache {
     if (eldestKey != null) {
       delegate.removeObject(eldestKey);
       eldestKey = null;
+      cacheListener.evicted();
     }
   }
 
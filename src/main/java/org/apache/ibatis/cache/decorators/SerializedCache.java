@@ -15,29 +15,53 @@
  */
 package org.apache.ibatis.cache.decorators;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.ObjectStreamClass;
 import java.io.Serializable;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheListener;
 import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.serializer.CacheSerializer;
+import org.apache.ibatis.cache.serializer.JavaCacheSerializer;
 import org.apache.ibatis.io.Resources;
-import org.apache.ibatis.io.SerialFilterChecker;
 
 /**
+ * Cache decorator that stores copies of the values and returns a new copy on every hit, so that callers can modify
+ * what they get.
+ * <p>
+ * The copies are made by a {@link CacheSerializer}, chosen with the {@code serializer} property ({@code JAVA} by
+ * default, {@code BINARY} or a class name). By default values are stored serialized. When the {@code snapshot}
+ * property is {@code true}, they are stored as private deep copies instead, and hits are served by
+ * {@link CacheSerializer#copy(Object)}, which the binary serializer does without going through bytes.
+ *
  * @author Clinton Begin
  */
 public class SerializedCache implements Cache {
 
   private final Cache delegate;
+  private CacheSerializer serializer;
+  private boolean snapshot;
+  private CacheListener cacheListener = CacheListener.NO_OP;
 
   public SerializedCache(Cache delegate) {
+    this(delegate, new JavaCacheSerializer());
+  }
+
+  /**
+   * Instantiates a new serialized cache.
+   *
+   * @param delegate
+   *          the cache that stores the copies
+   * @param serializer
+   *          the serializer that makes the copies
+   * @since 3.5.12
+   */
+  public SerializedCache(Cache delegate, CacheSerializer serializer) {
     this.delegate = delegate;
+    this.serializer = serializer;
   }
 
   @Override
@@ -50,10 +74,59 @@ public class SerializedCache implements Cache {
     return delegate.getSize();
   }
 
+  /**
+   * Sets the serializer that makes the copies.
+   *
+   * @param serializer
+   *          {@code JAVA}, {@code BINARY} or the name of a {@link CacheSerializer} class
+   * @since 3.5.12
+   */
+  public void setSerializer(String serializer) {
+    this.serializer = CacheSerializer.forName(serializer);
+  }
+
+  /**
+   * Returns whether values are stored as deep copies rather than serialized.
+   *
+   * @return {@code true} if values are stored as deep copies
+   * @since 3.5.12
+   */
+  public boolean isSnapshot() {
+    return snapshot;
+  }
+
+  /**
+   * Sets whether values are stored as deep copies rather than serialized. It should be set before any value is put.
+   *
+   * @param snapshot
+   *          {@code true} to store deep copies
+   * @since 3.5.12
+   */
+  public void setSnapshot(boolean snapshot) {
+    this.snapshot = snapshot;
+  }
+
+  /**
+   * Sets the listener notified of the entries this cache serializes, to report their size.
+   *
+   * @param cacheListener
+   *          the listener
+   * @since 3.5.12
+   */
+  public void setCacheListener(CacheListener cacheListener) {
+    this.cacheListener = cacheListener;
+  }
+
   @Override
   public void putObject(Object key, Object object) {
     if (object == null || object instanceof Serializable) {
-      delegate.putObject(key, serialize((Serializable) object));
+      if (snapshot) {
+        delegate.putObject(key, serializer.copy(object));
+      } else {
+        byte[] bytes = serializer.serialize(object);
+        cacheListener.serialized(bytes.length);
+        delegate.putObject(key, bytes);
+      }
     } else {
       throw new CacheException("SharedCache failed to make a copy of a non-serializable object: " + object);
     }
@@ -62,9 +135,11 @@ public class SerializedCache implements Cache {
   @Override
   public Object getObject(Object key) {
     Object object = delegate.getObject(key);
-    return object == null ? null : deserialize((byte[]) object);
+    if (object == null) {
+      return null;
+    }
+    return snapshot ? serializer.copy(object) : serializer.deserialize((byte[]) object);
   }
-
   @Override
   public Object removeObject(Object key) {
     return delegate.removeObject(key);
@@ -75,6 +150,11 @@ public class SerializedCache implements Cache {
     delegate.clear();
   }
 
+  @Override
+  public boolean isThreadSafe() {
+    return delegate.isThreadSafe();
+  }
+
   @Override
   public int hashCode() {
     return delegate.hashCode();
@@ -85,29 +165,6 @@ public class SerializedCache implements Cache {
     return delegate.equals(obj);
   }
 
-  private byte[] serialize(Serializable value) {
-    try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        ObjectOutputStream oos = new ObjectOutputStream(bos)) {
-      oos.writeObject(value);
-      oos.flush();
-      return bos.toByteArray();
-    } catch (Exception e) {
-      throw new CacheException("Error serializing object.  Cause: " + e, e);
-    }
-  }
-
-  private Serializable deserialize(byte[] value) {
-    SerialFilterChecker.check();
-    Serializable result;
-    try (ByteArrayInputStream bis = new ByteArrayInputStream(value);
-        ObjectInputStream ois = new CustomObjectInputStream(bis)) {
-      result = (Serializable) ois.readObject();
-    } catch (Exception e) {
-      throw new CacheException("Error deserializing object.  Cause: " + e, e);
-    }
-    return result;
-  }
-
   public static class CustomObjectInputStream extends ObjectInputStream {
 
     public CustomObjectInputStream(InputStream in) throws IOException {
@@ -0,0 +1,124 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.io.Serializable;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.TableVersions;
+
+/**
+ * Hides the entries made stale by a write to one of the tables they were read from, for the table
+ * {@link org.apache.ibatis.session.CacheInvalidation#TABLE invalidation} of the second level cache. The entries are
+ * put as {@link Entry} by the {@link TransactionalCache}, and the stale ones are removed when they are read.
+ *
+ * @since 3.5.12
+ */
+public class TableDependencyCache implements Cache {
+
+  private final Cache delegate;
+  private final TableVersions tableVersions;
+
+  public TableDependencyCache(Cache delegate, TableVersions tableVersions) {
+    this.delegate = delegate;
+    this.tableVersions = tableVersions;
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    return delegate.getSize();
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    delegate.putObject(key, value);
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    Object value = delegate.getObject(key);
+    if (value instanceof Entry) {
+      Entry entry = (Entry) value;
+      if (tableVersions.isCurrent(entry.tables, entry.versions)) {
+        return entry.value;
+      }
+      delegate.removeObject(key);
+      return null;
+    }
+    return value;
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    return delegate.removeObject(key);
+  }
+
+  @Override
+  public void clear() {
+    delegate.clear();
+  }
+
+  @Override
+  public boolean isThreadSafe() {
+    return delegate.isThreadSafe();
+  }
+
+  public TableVersions getTableVersions() {
+    return tableVersions;
+  }
+
+  /**
+   * A cached value with the versions of the tables it was read from.
+   */
+  public static final class Entry implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String[] tables;
+    private final long[] versions;
+    private final Object value;
+
+    private Entry() {
+      // for the binary cache serializer, which creates objects with their default constructor
+      this(null, null, null);
+    }
+
+    public Entry(String[] tables, long[] versions, Object value) {
+      this.tables = tables;
+      this.versions = versions;
+      this.value = value;
+    }
+
+    public String[] getTables() {
+      return tables;
+    }
+
+    public long[] getVersions() {
+      return versions;
+    }
+
+    public Object getValue() {
+      return value;
+    }
+
+  }
+
+}
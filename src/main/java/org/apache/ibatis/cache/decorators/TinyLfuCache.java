@@ -0,0 +1,345 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheListener;
+
+/**
+ * Concurrent W-TinyLFU (window TinyLFU) cache decorator.
+ * <p>
+ * New keys enter a small LRU window. Keys leaving the window compete with the eldest key of a segmented LRU main area
+ * (probation and protected segments), and the one used more often according to a count-min frequency sketch is kept.
+ * <p>
+ * Reads do not take a lock: they go straight to the delegate and record the key in a striped buffer. The buffers are
+ * replayed against the policy by whichever thread manages to take the policy lock, and reads are dropped while the
+ * lock is busy. Writes take the lock. When the delegate is thread safe (e.g. {@code ConcurrentPerpetualCache}), so is
+ * this decorator, and the {@code CacheBuilder} does not add a {@link SynchronizedCache}.
+ *
+ * @since 3.5.12
+ */
+public class TinyLfuCache implements Cache {
+
+  private static final int READ_BUFFER_SIZE = 16;
+  private static final int READ_BUFFER_STRIPES = stripes();
+
+  private final Cache delegate;
+  private final ReentrantLock policyLock = new ReentrantLock();
+  private final ReadBuffer[] readBuffers = new ReadBuffer[READ_BUFFER_STRIPES];
+  private final Map<Object, Object> window = new LinkedHashMap<>(16, .75F, true);
+  private final Map<Object, Object> probation = new LinkedHashMap<>(16, .75F, true);
+  private final Map<Object, Object> protectedSegment = new LinkedHashMap<>(16, .75F, true);
+  private FrequencySketch sketch;
+  private int windowSize;
+  private int mainSize;
+  private int protectedSize;
+  private CacheListener cacheListener = CacheListener.NO_OP;
+
+  public TinyLfuCache(Cache delegate) {
+    this.delegate = delegate;
+    for (int i = 0; i < readBuffers.length; i++) {
+      readBuffers[i] = new ReadBuffer();
+    }
+    setSize(1024);
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    return delegate.getSize();
+  }
+
+  public void setSize(final int size) {
+    policyLock.lock();
+    try {
+      int maximum = Math.max(size, 2);
+      this.windowSize = Math.max(1, maximum / 100);
+      this.mainSize = maximum - windowSize;
+      this.protectedSize = (int) (mainSize * 0.8);
+      this.sketch = new FrequencySketch(maximum);
+      clearPolicy();
+      delegate.clear();
+    } finally {
+      policyLock.unlock();
+    }
+  }
+
+  /**
+   * Sets the listener notified of the entries this cache evicts.
+   *
+   * @param cacheListener
+   *          the listener
+   * @since 3.5.12
+   */
+  public void setCacheListener(CacheListener cacheListener) {
+    this.cacheListener = cacheListener;
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    policyLock.lock();
+    try {
+      delegate.putObject(key, value);
+      drainReadBuffers();
+      sketch.increment(key);
+      if (!onAccess(key)) {
+        admit(key);
+      }
+    } finally {
+      policyLock.unlock();
+    }
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    Object value = delegate.getObject(key);
+    ReadBuffer buffer = readBuffers[(int) Thread.currentThread().getId() & (READ_BUFFER_STRIPES - 1)];
+    if (!buffer.offer(key) && policyLock.tryLock()) {
+      try {
+        drainReadBuffers();
+      } finally {
+        policyLock.unlock();
+      }
+    }
+    return value;
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    return delegate.removeObject(key);
+  }
+
+  @Override
+  public void clear() {
+    policyLock.lock();
+    try {
+      delegate.clear();
+      clearPolicy();
+    } finally {
+      policyLock.unlock();
+    }
+  }
+
+  @Override
+  public boolean isThreadSafe() {
+    return delegate.isThreadSafe();
+  }
+
+  private void clearPolicy() {
+    for (ReadBuffer buffer : readBuffers) {
+      buffer.clear();
+    }
+    window.clear();
+    probation.clear();
+    protectedSegment.clear();
+  }
+
+  private void drainReadBuffers() {
+    for (ReadBuffer buffer : readBuffers) {
+      buffer.drainTo(this);
+    }
+  }
+
+  private void onRead(Object key) {
+    // misses are counted too, so that keys requested often are admitted once they are loaded
+    sketch.increment(key);
+    onAccess(key);
+  }
+
+  private boolean onAccess(Object key) {
+    if (window.get(key) != null || protectedSegment.get(key) != null) {
+      return true;
+    }
+    if (probation.remove(key) != null) {
+      protectedSegment.put(key, key);
+      if (protectedSegment.size() > protectedSize) {
+        Object demoted = eldest(protectedSegment);
+        protectedSegment.remove(demoted);
+        probation.put(demoted, demoted);
+      }
+      return true;
+    }
+    return false;
+  }
+
+  private void admit(Object key) {
+    window.put(key, key);
+    if (window.size() <= windowSize) {
+      return;
+    }
+    Object candidate = eldest(window);
+    window.remove(candidate);
+    if (probation.size() + protectedSegment.size() < mainSize) {
+      probation.put(candidate, candidate);
+      return;
+    }
+    Map<Object, Object> victimSegment = probation.isEmpty() ? protectedSegment : probation;
+    Object victim = eldest(victimSegment);
+    if (sketch.frequency(candidate) > sketch.frequency(victim)) {
+      victimSegment.remove(victim);
+      delegate.removeObject(victim);
+      probation.put(candidate, candidate);
+    } else {
+      delegate.removeObject(candidate);
+    }
+    cacheListener.evicted();
+  }
+
+  private static Object eldest(Map<Object, Object> segment) {
+    Iterator<Object> iterator = segment.keySet().iterator();
+    return iterator.next();
+  }
+
+  private static int stripes() {
+    int stripes = 1;
+    while (stripes < Runtime.getRuntime().availableProcessors() && stripes < 64) {
+      stripes <<= 1;
+    }
+    return stripes;
+  }
+
+  /**
+   * Bounded lossy buffer of keys that were read.
+   */
+  private static final class ReadBuffer {
+
+    private final AtomicReferenceArray<Object> keys = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+    private final AtomicInteger writeIndex = new AtomicInteger();
+
+    /**
+     * Records a read.
+     *
+     * @return false if the buffer is full and should be drained
+     */
+    boolean offer(Object key) {
+      int index = writeIndex.getAndIncrement();
+      if (index >= READ_BUFFER_SIZE) {
+        return false;
+      }
+      keys.lazySet(index, key);
+      return true;
+    }
+
+    void drainTo(TinyLfuCache cache) {
+      int count = Math.min(writeIndex.get(), READ_BUFFER_SIZE);
+      for (int i = 0; i < count; i++) {
+        Object key = keys.getAndSet(i, null);
+        if (key != null) {
+          cache.onRead(key);
+        }
+      }
+      writeIndex.set(0);
+    }
+
+    void clear() {
+      for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+        keys.lazySet(i, null);
+      }
+      writeIndex.set(0);
+    }
+
+  }
+
+  /**
+   * Count-min sketch of 4-bit counters that are halved once the number of increments reaches ten times the cache size,
+   * so that the frequencies follow recent usage.
+   */
+  private static final class FrequencySketch {
+
+    private static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+        0xcbf29ce484222325L };
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int maximumSize) {
+      int length = 1;
+      while (length < maximumSize && length < (1 << 24)) {
+        length <<= 1;
+      }
+      this.table = new long[length];
+      this.tableMask = length - 1;
+      this.sampleSize = 10 * maximumSize;
+    }
+
+    int frequency(Object key) {
+      int hash = spread(key.hashCode());
+      int frequency = Integer.MAX_VALUE;
+      for (int i = 0; i < 4; i++) {
+        int index = indexOf(hash, i);
+        int offset = counterOffset(hash, i);
+        frequency = Math.min(frequency, (int) ((table[index] >>> offset) & 0xfL));
+      }
+      return frequency;
+    }
+
+    void increment(Object key) {
+      int hash = spread(key.hashCode());
+      boolean added = false;
+      for (int i = 0; i < 4; i++) {
+        int index = indexOf(hash, i);
+        int offset = counterOffset(hash, i);
+        long mask = 0xfL << offset;
+        if ((table[index] & mask) != mask) {
+          table[index] += 1L << offset;
+          added = true;
+        }
+      }
+      if (added && ++additions == sampleSize) {
+        reset();
+      }
+    }
+
+    private void reset() {
+      for (int i = 0; i < table.length; i++) {
+        table[i] = (table[i] >>> 1) & RESET_MASK;
+      }
+      additions /= 2;
+    }
+
+    private int indexOf(int hash, int row) {
+      long h = (hash + SEEDS[row]) * SEEDS[row];
+      h += h >>> 32;
+      return (int) h & tableMask;
+    }
+
+    private static int counterOffset(int hash, int row) {
+      // each long holds 16 counters; every row uses its own nibble of the hash to pick one
+      return (((hash >>> (row << 3)) & 3) << 2) + (row << 4);
+    }
+
+    private static int spread(int hash) {
+      int h = hash * 0x9e3779b9;
+      return h ^ (h >>> 16);
+    }
+
+  }
+
+}
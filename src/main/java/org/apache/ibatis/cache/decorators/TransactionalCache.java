@@ -15,12 +15,16 @@
  */
 package org.apache.ibatis.cache.decorators;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Supplier;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.TableVersions;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
 
@@ -31,6 +35,10 @@ import org.apache.ibatis.logging.LogFactory;
  * Entries are sent to the cache when commit is called or discarded if the Session is rolled back.
  * Blocking cache support has been added. Therefore any get() that returns a cache miss
  * will be followed by a put() so any lock associated with the key can be released.
+ * <p>
+ * With the table {@link org.apache.ibatis.session.CacheInvalidation#TABLE invalidation}, an entry missed in the cache
+ * is put with the versions its tables had when it was missed, see {@link TableDependencyCache}, and the entries read
+ * from tables written by the session are neither read from the cache nor put into it.
  *
  * @author Clinton Begin
  * @author Eduardo Macarron
@@ -43,12 +51,35 @@ public class TransactionalCache implements Cache {
   private boolean clearOnCommit;
   private final Map<Object, Object> entriesToAddOnCommit;
   private final Set<Object> entriesMissedInCache;
+  private final TableVersions tableVersions;
+  private final Set<String> writtenTables;
+  private final Map<Object, TableDependencyCache.Entry> tablesOfMissedEntries;
+  private final Set<Object> entriesNotToAdd;
 
   public TransactionalCache(Cache delegate) {
+    this(delegate, null, Collections.emptySet());
+  }
+
+  /**
+   * Creates the transactional buffer of a cache with the table invalidation.
+   *
+   * @param delegate
+   *          the cache
+   * @param tableVersions
+   *          the table versions of the configuration
+   * @param writtenTables
+   *          the tables written by the session, which are shared by all its transactional caches
+   * @since 3.5.12
+   */
+  public TransactionalCache(Cache delegate, TableVersions tableVersions, Set<String> writtenTables) {
     this.delegate = delegate;
     this.clearOnCommit = false;
     this.entriesToAddOnCommit = new HashMap<>();
     this.entriesMissedInCache = new HashSet<>();
+    this.tableVersions = tableVersions;
+    this.writtenTables = writtenTables;
+    this.tablesOfMissedEntries = new HashMap<>();
+    this.entriesNotToAdd = new HashSet<>();
   }
 
   @Override
@@ -76,9 +107,41 @@ public class TransactionalCache implements Cache {
     }
   }
 
+  /**
+   * Gets an entry read from tables, for the table invalidation.
+   *
+   * @param key
+   *          the key
+   * @param tables
+   *          supplies the tables the entry is read from, only called when they are needed
+   * @return the cached entry, or {@code null} when it is missing, stale or read from a table the session wrote
+   * @since 3.5.12
+   */
+  public Object getObject(Object key, Supplier<String[]> tables) {
+    Object object = getObject(key);
+    if (tableVersions == null) {
+      return object;
+    }
+    if (object != null && !writtenTables.isEmpty()
+        && !Collections.disjoint(writtenTables, Arrays.asList(tables.get()))) {
+      // the entry does not show the changes of the session: it is bypassed and not replaced
+      entriesNotToAdd.add(key);
+      return null;
+    }
+    if (object == null) {
+      // the versions are taken before the entry is loaded, so that a write committed meanwhile makes it stale
+      String[] readTables = tables.get();
+      tablesOfMissedEntries.put(key,
+          new TableDependencyCache.Entry(readTables, tableVersions.getVersions(readTables), null));
+    }
+    return object;
+  }
+
   @Override
   public void putObject(Object key, Object object) {
-    entriesToAddOnCommit.put(key, object);
+    if (!entriesNotToAdd.contains(key)) {
+      entriesToAddOnCommit.put(key, object);
+    }
   }
 
   @Override
@@ -109,11 +172,18 @@ public class TransactionalCache implements Cache {
     clearOnCommit = false;
     entriesToAddOnCommit.clear();
     entriesMissedInCache.clear();
+    tablesOfMissedEntries.clear();
+    entriesNotToAdd.clear();
   }
 
   private void flushPendingEntries() {
     for (Map.Entry<Object, Object> entry : entriesToAddOnCommit.entrySet()) {
-      delegate.putObject(entry.getKey(), entry.getValue());
+      Object value = entry.getValue();
+      TableDependencyCache.Entry tables = tablesOfMissedEntries.get(entry.getKey());
+      if (tables != null && value != null) {
+        value = new TableDependencyCache.Entry(tables.getTables(), tables.getVersions(), value);
+      }
+      delegate.putObject(entry.getKey(), value);
     }
     for (Object entry : entriesMissedInCache) {
       if (!entriesToAddOnCommit.containsKey(entry)) {
@@ -0,0 +1,293 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheListener;
+import org.apache.ibatis.cache.CacheException;
+
+/**
+ * Time to live (TTL) decorator: every entry expires on its own, some time after it was put.
+ * <p>
+ * Unlike {@link ScheduledCache}, which clears the whole cache at once, each entry gets its own deadline, shortened by a
+ * random part of up to {@code jitter} times the time to live, so that entries put together do not all expire together.
+ * An expired entry is never returned. Expired entries are also removed by a hashed timing wheel that is advanced by
+ * the calls to the cache, so that they do not stay in memory until they are asked for.
+ * <p>
+ * With {@code refreshAhead}, the first hit in the last part of the life of an entry is reported as a miss, so that one
+ * caller reloads the entry from the database before it expires, while the other callers keep getting the cached
+ * value.
+ *
+ * @since 3.5.12
+ */
+public class TtlCache implements Cache {
+
+  private static final int WHEEL_SIZE = 64;
+  private static final long MIN_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final Cache delegate;
+  private final ConcurrentMap<Object, Expiry> expiries = new ConcurrentHashMap<>();
+  private final ReentrantLock wheelLock = new ReentrantLock();
+  private final Deque<Expiry>[] wheel;
+  private final long origin = System.nanoTime();
+  private long timeToLive = TimeUnit.HOURS.toMillis(1);
+  private double jitter;
+  private double refreshAhead;
+  private CacheListener cacheListener = CacheListener.NO_OP;
+  private long tickNanos;
+  private long processedTick;
+  private volatile long nextTickDeadline;
+
+  @SuppressWarnings("unchecked")
+  public TtlCache(Cache delegate) {
+    this.delegate = delegate;
+    this.wheel = new Deque[WHEEL_SIZE];
+    for (int i = 0; i < WHEEL_SIZE; i++) {
+      wheel[i] = new ArrayDeque<>();
+    }
+    resetWheel();
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  public long getTimeToLive() {
+    return timeToLive;
+  }
+
+  /**
+   * Sets the time to live of the entries. It should be set before any value is put.
+   *
+   * @param timeToLive
+   *          the time to live in milliseconds
+   */
+  public void setTimeToLive(long timeToLive) {
+    if (timeToLive <= 0) {
+      throw new CacheException("The time to live of the cache '" + getId() + "' must be positive: " + timeToLive);
+    }
+    this.timeToLive = timeToLive;
+    clear();
+  }
+
+  public double getJitter() {
+    return jitter;
+  }
+
+  /**
+   * Sets the largest part of the time to live that is randomly taken off the life of each entry.
+   *
+   * @param jitter
+   *          a fraction from 0 (the default, no jitter) to 1 excluded
+   */
+  public void setJitter(double jitter) {
+    if (jitter < 0 || jitter >= 1) {
+      throw new CacheException("The jitter of the cache '" + getId() + "' must be between 0 and 1: " + jitter);
+    }
+    this.jitter = jitter;
+  }
+
+  public double getRefreshAhead() {
+    return refreshAhead;
+  }
+
+  /**
+   * Sets the last part of the life of an entry in which its first hit is reported as a miss, so that it is reloaded
+   * before it expires.
+   *
+   * @param refreshAhead
+   *          a fraction from 0 (the default, no refresh ahead) to 1 excluded
+   */
+  public void setRefreshAhead(double refreshAhead) {
+    if (refreshAhead < 0 || refreshAhead >= 1) {
+      throw new CacheException(
+          "The refresh ahead of the cache '" + getId() + "' must be between 0 and 1: " + refreshAhead);
+    }
+    this.refreshAhead = refreshAhead;
+  }
+
+  /**
+   * Sets the listener notified of the entries this cache expires.
+   *
+   * @param cacheListener
+   *          the listener
+   * @since 3.5.12
+   */
+  public void setCacheListener(CacheListener cacheListener) {
+    this.cacheListener = cacheListener;
+  }
+
+  @Override
+  public int getSize() {
+    expireEntries(System.nanoTime());
+    return delegate.getSize();
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    long now = System.nanoTime();
+    expireEntries(now);
+    long life = TimeUnit.MILLISECONDS.toNanos(timeToLive);
+    if (jitter > 0) {
+      life -= (long) (life * jitter * ThreadLocalRandom.current().nextDouble());
+    }
+    long refreshAt = now + life - (long) (life * refreshAhead);
+    Expiry expiry = new Expiry(key, now + life, refreshAt);
+    delegate.putObject(key, value);
+    expiries.put(key, expiry);
+    schedule(expiry);
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    long now = System.nanoTime();
+    expireEntries(now);
+    Expiry expiry = expiries.get(key);
+    if (expiry != null) {
+      if (now - expiry.deadline >= 0) {
+        expire(expiry);
+        return null;
+      }
+      if (now - expiry.refreshAt >= 0 && Expiry.REFRESHING.compareAndSet(expiry, 0, 1)) {
+        // this caller reloads the entry while the others still get the cached value
+        return null;
+      }
+    }
+    return delegate.getObject(key);
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    expireEntries(System.nanoTime());
+    expiries.remove(key);
+    return delegate.removeObject(key);
+  }
+
+  @Override
+  public void clear() {
+    wheelLock.lock();
+    try {
+      expiries.clear();
+      delegate.clear();
+      for (Deque<Expiry> bucket : wheel) {
+        bucket.clear();
+      }
+      resetWheel();
+    } finally {
+      wheelLock.unlock();
+    }
+  }
+
+  @Override
+  public boolean isThreadSafe() {
+    return delegate.isThreadSafe();
+  }
+
+  @Override
+  public int hashCode() {
+    return delegate.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return delegate.equals(obj);
+  }
+
+  private void resetWheel() {
+    tickNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(timeToLive) / WHEEL_SIZE, MIN_TICK_NANOS);
+    processedTick = tick(System.nanoTime());
+    nextTickDeadline = origin + (processedTick + 1) * tickNanos;
+  }
+
+  private long tick(long nanoTime) {
+    return (nanoTime - origin) / tickNanos;
+  }
+
+  private void schedule(Expiry expiry) {
+    wheelLock.lock();
+    try {
+      long tick = Math.max(tick(expiry.deadline), processedTick);
+      wheel[(int) (tick % WHEEL_SIZE)].add(expiry);
+    } finally {
+      wheelLock.unlock();
+    }
+  }
+
+  /**
+   * Removes the entries of the ticks that have fully elapsed. Skipped when another thread is already doing it.
+   */
+  private void expireEntries(long now) {
+    if (now - nextTickDeadline < 0 || !wheelLock.tryLock()) {
+      return;
+    }
+    try {
+      long currentTick = tick(now);
+      long ticks = Math.min(currentTick - processedTick, WHEEL_SIZE);
+      for (long i = 0; i < ticks; i++) {
+        Iterator<Expiry> bucket = wheel[(int) ((processedTick + i) % WHEEL_SIZE)].iterator();
+        while (bucket.hasNext()) {
+          Expiry expiry = bucket.next();
+          if (now - expiry.deadline >= 0) {
+            bucket.remove();
+            expire(expiry);
+          } else if (expiries.get(expiry.key) != expiry) {
+            // replaced by a later put
+            bucket.remove();
+          }
+        }
+      }
+      processedTick = currentTick;
+      nextTickDeadline = origin + (currentTick + 1) * tickNanos;
+    } finally {
+      wheelLock.unlock();
+    }
+  }
+
+  private void expire(Expiry expiry) {
+    if (expiries.remove(expiry.key, expiry)) {
+      delegate.removeObject(expiry.key);
+      cacheListener.expired();
+    }
+  }
+
+  private static final class Expiry {
+    private static final AtomicIntegerFieldUpdater<Expiry> REFRESHING = AtomicIntegerFieldUpdater
+        .newUpdater(Expiry.class, "refreshing");
+
+    private final Object key;
+    private final long deadline;
+    private final long refreshAt;
+    private volatile int refreshing;
+
+    Expiry(Object key, long deadline, long refreshAt) {
+      this.key = key;
+      this.deadline = deadline;
+      this.refreshAt = refreshAt;
+    }
+  }
+
+}
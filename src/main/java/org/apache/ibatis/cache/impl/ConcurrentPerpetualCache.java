@@ -0,0 +1,114 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+
+/**
+ * Thread safe variant of {@link PerpetualCache}, backed by a {@link ConcurrentHashMap}.
+ * <p>
+ * It is the store the {@link org.apache.ibatis.mapping.CacheBuilder} uses for a second level cache of type
+ * {@code PERPETUAL}, which is shared by all sessions, so that thread safe decorators need no
+ * {@link org.apache.ibatis.cache.decorators.SynchronizedCache}. The local caches of the sessions, which are confined to
+ * one thread, keep the plain {@link PerpetualCache}.
+ *
+ * @since 3.5.12
+ */
+public class ConcurrentPerpetualCache implements Cache {
+
+  private final String id;
+
+  private static final Object NULL = new Object();
+
+  private final Map<Object, Object> cache = new ConcurrentHashMap<>();
+
+  public ConcurrentPerpetualCache(String id) {
+    this.id = id;
+  }
+
+  @Override
+  public String getId() {
+    return id;
+  }
+
+  @Override
+  public int getSize() {
+    return cache.size();
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    cache.put(wrap(key), wrap(value));
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    return unwrap(cache.get(wrap(key)));
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    return unwrap(cache.remove(wrap(key)));
+  }
+
+  @Override
+  public void clear() {
+    cache.clear();
+  }
+
+  @Override
+  public boolean isThreadSafe() {
+    return true;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Cache)) {
+      return false;
+    }
+
+    Cache otherCache = (Cache) o;
+    return getId().equals(otherCache.getId());
+  }
+
+  @Override
+  public int hashCode() {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    return getId().hashCode();
+  }
+
+  // ConcurrentHashMap does not accept null keys or values
+  private static Object wrap(Object object) {
+    return object == null ? NULL : object;
+  }
+
+  private static Object unwrap(Object object) {
+    return object == NULL ? null : object;
+  }
+
+}
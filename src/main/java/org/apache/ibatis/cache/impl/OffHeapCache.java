@@ -0,0 +1,310 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.io.Serializable;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheListener;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.serializer.CacheSerializer;
+import org.apache.ibatis.cache.serializer.JavaCacheSerializer;
+
+/**
+ * Cache that keeps serialized values outside the Java heap, in direct {@link ByteBuffer} segments.
+ * <p>
+ * The capacity is a byte budget ({@link #setSize(int)} or {@link #setMaxBytes(long)}) rather than a number of entries.
+ * Memory is reserved lazily in segments that are split into fixed size blocks; a value occupies as many blocks as its
+ * serialized form needs. When a value does not fit, the least recently used entries are evicted. Values larger than
+ * the whole budget are not cached. Keys and block tables stay on the heap.
+ * <p>
+ * Values must be {@link Serializable}. Every read returns a fresh copy, so this cache never needs a
+ * {@link org.apache.ibatis.cache.decorators.SerializedCache}. Like {@link PerpetualCache}, it is not thread safe by
+ * itself.
+ *
+ * @since 3.5.12
+ */
+public class OffHeapCache implements Cache {
+
+  private static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+  private static final int DEFAULT_BLOCK_SIZE = 512;
+  private static final int MAX_SEGMENT_SIZE = 4 * 1024 * 1024;
+
+  private final String id;
+
+  private final Map<Object, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final List<ByteBuffer> segments = new ArrayList<>();
+  private final Deque<Integer> freeBlocks = new ArrayDeque<>();
+  private long maxBytes = DEFAULT_MAX_BYTES;
+  private int blockSize = DEFAULT_BLOCK_SIZE;
+  private int blocksPerSegment;
+  private long allocatedBytes;
+  private long usedBytes;
+  private CacheSerializer serializer = new JavaCacheSerializer();
+  private CacheListener cacheListener = CacheListener.NO_OP;
+
+  public OffHeapCache(String id) {
+    this.id = id;
+  }
+
+  @Override
+  public String getId() {
+    return id;
+  }
+
+  @Override
+  public int getSize() {
+    return entries.size();
+  }
+
+  /**
+   * Sets the byte budget. This is the value of the {@code size} attribute of the {@code <cache>} element.
+   *
+   * @param size
+   *          the maximum number of bytes used for values
+   */
+  public void setSize(int size) {
+    setMaxBytes(size);
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  public void setMaxBytes(long maxBytes) {
+    if (maxBytes <= 0) {
+      throw new CacheException("The maximum bytes of the off-heap cache '" + id + "' must be positive: " + maxBytes);
+    }
+    if (maxBytes < allocatedBytes) {
+      releaseSegments();
+    }
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Sets the serializer of the values.
+   *
+   * @param serializer
+   *          {@code JAVA} (the default), {@code BINARY} or the name of a {@link CacheSerializer} class
+   * @since 3.5.12
+   */
+  public void setSerializer(String serializer) {
+    this.serializer = CacheSerializer.forName(serializer);
+  }
+
+  /**
+   * Sets the listener notified of the entries this cache evicts and of the size of the values it serializes.
+   *
+   * @param cacheListener
+   *          the listener
+   * @since 3.5.12
+   */
+  public void setCacheListener(CacheListener cacheListener) {
+    this.cacheListener = cacheListener;
+  }
+
+  public int getBlockSize() {
+    return blockSize;
+  }
+
+  public void setBlockSize(int blockSize) {
+    if (blockSize <= 0) {
+      throw new CacheException("The block size of the off-heap cache '" + id + "' must be positive: " + blockSize);
+    }
+    if (blockSize != this.blockSize) {
+      releaseSegments();
+      this.blockSize = blockSize;
+    }
+  }
+
+  /**
+   * Gets the number of bytes occupied by the serialized values currently cached.
+   *
+   * @return the number of bytes in use
+   */
+  public long getUsedBytes() {
+    return usedBytes;
+  }
+
+  /**
+   * Gets the number of bytes of direct memory reserved so far.
+   *
+   * @return the number of bytes reserved
+   */
+  public long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    if (value != null && !(value instanceof Serializable)) {
+      throw new CacheException("OffHeapCache failed to store a non-serializable object: " + value);
+    }
+    byte[] bytes = serializer.serialize(value);
+    cacheListener.serialized(bytes.length);
+    release(entries.remove(key));
+    int blockCount = (bytes.length + blockSize - 1) / blockSize;
+    if ((long) blockCount * blockSize > maxBytes) {
+      return;
+    }
+    int[] blocks = new int[blockCount];
+    for (int i = 0; i < blockCount; i++) {
+      blocks[i] = nextFreeBlock();
+      write(blocks[i], bytes, i * blockSize, Math.min(blockSize, bytes.length - i * blockSize));
+    }
+    entries.put(key, new Entry(blocks, bytes.length));
+    usedBytes += bytes.length;
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    byte[] bytes = new byte[entry.length];
+    for (int i = 0; i < entry.blocks.length; i++) {
+      read(entry.blocks[i], bytes, i * blockSize, Math.min(blockSize, entry.length - i * blockSize));
+    }
+    return serializer.deserialize(bytes);
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    Object value = getObject(key);
+    release(entries.remove(key));
+    return value;
+  }
+
+  @Override
+  public void clear() {
+    entries.clear();
+    freeBlocks.clear();
+    for (int segment = 0; segment < segments.size(); segment++) {
+      int blocks = segments.get(segment).capacity() / blockSize;
+      for (int i = blocks - 1; i >= 0; i--) {
+        freeBlocks.push(segment * blocksPerSegment + i);
+      }
+    }
+    usedBytes = 0;
+  }
+
+  private int nextFreeBlock() {
+    if (freeBlocks.isEmpty() && !addSegment()) {
+      Iterator<Entry> eldest = entries.values().iterator();
+      while (freeBlocks.isEmpty()) {
+        Entry entry = eldest.next();
+        eldest.remove();
+        release(entry);
+        cacheListener.evicted();
+      }
+    }
+    return freeBlocks.pop();
+  }
+
+  private boolean addSegment() {
+    if (segments.isEmpty()) {
+      blocksPerSegment = Math.max(1, MAX_SEGMENT_SIZE / blockSize);
+    }
+    long remaining = (maxBytes / blockSize) * blockSize - allocatedBytes;
+    int blocks = (int) Math.min(blocksPerSegment, remaining / blockSize);
+    if (blocks <= 0) {
+      return false;
+    }
+    int first = segments.size() * blocksPerSegment;
+    segments.add(ByteBuffer.allocateDirect(blocks * blockSize));
+    allocatedBytes += (long) blocks * blockSize;
+    for (int i = blocks - 1; i >= 0; i--) {
+      freeBlocks.push(first + i);
+    }
+    return true;
+  }
+
+  private void releaseSegments() {
+    entries.clear();
+    segments.clear();
+    freeBlocks.clear();
+    allocatedBytes = 0;
+    usedBytes = 0;
+  }
+
+  private void release(Entry entry) {
+    if (entry != null) {
+      for (int block : entry.blocks) {
+        freeBlocks.push(block);
+      }
+      usedBytes -= entry.length;
+    }
+  }
+
+  private void write(int block, byte[] source, int offset, int length) {
+    ByteBuffer segment = segments.get(block / blocksPerSegment);
+    ((Buffer) segment).position((block % blocksPerSegment) * blockSize);
+    segment.put(source, offset, length);
+  }
+
+  private void read(int block, byte[] target, int offset, int length) {
+    ByteBuffer segment = segments.get(block / blocksPerSegment);
+    ((Buffer) segment).position((block % blocksPerSegment) * blockSize);
+    segment.get(target, offset, length);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Cache)) {
+      return false;
+    }
+
+    Cache otherCache = (Cache) o;
+    return getId().equals(otherCache.getId());
+  }
+
+  @Override
+  public int hashCode() {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    return getId().hashCode();
+  }
+
+  private static final class Entry {
+
+    private final int[] blocks;
+    private final int length;
+
+    Entry(int[] blocks, int length) {
+      this.blocks = blocks;
+      this.length = length;
+    }
+
+  }
+
+}
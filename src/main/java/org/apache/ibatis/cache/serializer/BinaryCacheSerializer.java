@@ -0,0 +1,685 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.serializer;
+
+import java.io.Externalizable;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.reflection.DefaultReflectorFactory;
+import org.apache.ibatis.reflection.Reflector;
+import org.apache.ibatis.reflection.ReflectorFactory;
+
+/**
+ * Compact serializer for the values MyBatis caches: lists and maps of result objects.
+ * <p>
+ * Strings, numbers, dates, enums, arrays and the common collections have a binary form of their own. Result objects
+ * are written as the values of their fields, without names or class descriptors, when their class is a plain bean:
+ * {@link Serializable}, with a default constructor and without custom serialization methods. Any other value is
+ * written with Java serialization. Shared and cyclic references are kept.
+ * <p>
+ * Unlike Java serialization, beans are created with their default constructor, so the initial values of their
+ * transient fields are the ones the constructor gives. The bytes are only meant to be read back by the same
+ * application: the fields of a bean are written in a fixed order that depends on its class.
+ * <p>
+ * {@link #copy(Object)} copies values directly, without going through bytes.
+ *
+ * @since 3.5.12
+ */
+public class BinaryCacheSerializer implements CacheSerializer {
+
+  private static final byte NULL = 0;
+  private static final byte REFERENCE = 1;
+  private static final byte STRING = 2;
+  private static final byte INTEGER = 3;
+  private static final byte LONG = 4;
+  private static final byte SHORT = 5;
+  private static final byte BYTE = 6;
+  private static final byte TRUE = 7;
+  private static final byte FALSE = 8;
+  private static final byte CHARACTER = 9;
+  private static final byte DOUBLE = 10;
+  private static final byte FLOAT = 11;
+  private static final byte BIG_DECIMAL = 12;
+  private static final byte BIG_INTEGER = 13;
+  private static final byte DATE = 14;
+  private static final byte SQL_DATE = 15;
+  private static final byte TIME = 16;
+  private static final byte TIMESTAMP = 17;
+  private static final byte BYTES = 18;
+  private static final byte LOCAL_DATE = 19;
+  private static final byte LOCAL_TIME = 20;
+  private static final byte LOCAL_DATE_TIME = 21;
+  private static final byte INSTANT = 22;
+  private static final byte ENUM = 23;
+  private static final byte ARRAY_LIST = 24;
+  private static final byte LINKED_LIST = 25;
+  private static final byte HASH_SET = 26;
+  private static final byte LINKED_HASH_SET = 27;
+  private static final byte HASH_MAP = 28;
+  private static final byte LINKED_HASH_MAP = 29;
+  private static final byte ARRAY = 30;
+  private static final byte BEAN = 31;
+  private static final byte JAVA = 32;
+
+  private static final Shape NOT_A_BEAN = new Shape(null, null);
+
+  private final ReflectorFactory reflectorFactory = new DefaultReflectorFactory();
+  private final ConcurrentMap<Class<?>, Shape> shapes = new ConcurrentHashMap<>();
+  private final JavaCacheSerializer javaSerializer = new JavaCacheSerializer();
+
+  @Override
+  public byte[] serialize(Object value) {
+    Output output = new Output();
+    try {
+      output.writeValue(value);
+    } catch (CacheException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new CacheException("Error serializing object.  Cause: " + e, e);
+    }
+    return output.toByteArray();
+  }
+
+  @Override
+  public Object deserialize(byte[] bytes) {
+    try {
+      return new Input(bytes).readValue();
+    } catch (CacheException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new CacheException("Error deserializing object.  Cause: " + e, e);
+    }
+  }
+
+  @Override
+  public Object copy(Object value) {
+    try {
+      return copy(value, new IdentityHashMap<>());
+    } catch (CacheException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new CacheException("Error copying object.  Cause: " + e, e);
+    }
+  }
+
+  private Object copy(Object value, Map<Object, Object> copies) throws ReflectiveOperationException {
+    if (value == null || isImmutable(value)) {
+      return value;
+    }
+    Object copy = copies.get(value);
+    if (copy != null) {
+      return copy;
+    }
+    Class<?> type = value.getClass();
+    if (type == Date.class) {
+      copy = new Date(((Date) value).getTime());
+    } else if (type == java.sql.Date.class) {
+      copy = new java.sql.Date(((Date) value).getTime());
+    } else if (type == Time.class) {
+      copy = new Time(((Date) value).getTime());
+    } else if (type == Timestamp.class) {
+      copy = ((Timestamp) value).clone();
+    } else if (type.isArray()) {
+      int length = Array.getLength(value);
+      copy = Array.newInstance(type.getComponentType(), length);
+      copies.put(value, copy);
+      if (type.getComponentType().isPrimitive()) {
+        System.arraycopy(value, 0, copy, 0, length);
+      } else {
+        Object[] source = (Object[]) value;
+        Object[] target = (Object[]) copy;
+        for (int i = 0; i < length; i++) {
+          target[i] = copy(source[i], copies);
+        }
+      }
+    } else if (collectionTag(type) != NULL) {
+      Collection<Object> collection = newCollection(collectionTag(type), ((Collection<?>) value).size());
+      copies.put(value, collection);
+      for (Object element : (Collection<?>) value) {
+        collection.add(copy(element, copies));
+      }
+      copy = collection;
+    } else if (type == HashMap.class || type == LinkedHashMap.class) {
+      Map<?, ?> source = (Map<?, ?>) value;
+      Map<Object, Object> map = type == HashMap.class ? new HashMap<>(capacity(source.size()))
+          : new LinkedHashMap<>(capacity(source.size()));
+      copies.put(value, map);
+      for (Map.Entry<?, ?> entry : source.entrySet()) {
+        map.put(copy(entry.getKey(), copies), copy(entry.getValue(), copies));
+      }
+      copy = map;
+    } else {
+      Shape shape = shapeOf(type);
+      if (shape == NOT_A_BEAN) {
+        copy = javaSerializer.copy(value);
+      } else {
+        copy = shape.constructor.newInstance();
+        copies.put(value, copy);
+        for (Field field : shape.fields) {
+          field.set(copy, copy(field.get(value), copies));
+        }
+      }
+    }
+    copies.put(value, copy);
+    return copy;
+  }
+
+  private static boolean isImmutable(Object value) {
+    Class<?> type = value.getClass();
+    return type == String.class || type == Integer.class || type == Long.class || type == Boolean.class
+        || type == Short.class || type == Byte.class || type == Character.class || type == Double.class
+        || type == Float.class || type == BigDecimal.class || type == BigInteger.class || type == LocalDate.class
+        || type == LocalTime.class || type == LocalDateTime.class || type == Instant.class || value instanceof Enum;
+  }
+
+  private static byte collectionTag(Class<?> type) {
+    if (type == ArrayList.class) {
+      return ARRAY_LIST;
+    } else if (type == LinkedList.class) {
+      return LINKED_LIST;
+    } else if (type == HashSet.class) {
+      return HASH_SET;
+    } else if (type == LinkedHashSet.class) {
+      return LINKED_HASH_SET;
+    } else {
+      return NULL;
+    }
+  }
+
+  private static Collection<Object> newCollection(byte tag, int size) {
+    switch (tag) {
+      case ARRAY_LIST:
+        return new ArrayList<>(size);
+      case LINKED_LIST:
+        return new LinkedList<>();
+      case HASH_SET:
+        return new HashSet<>(capacity(size));
+      default:
+        return new LinkedHashSet<>(capacity(size));
+    }
+  }
+
+  private static int capacity(int size) {
+    return Math.max((int) (size / .75f) + 1, 16);
+  }
+
+  private Shape shapeOf(Class<?> type) {
+    return shapes.computeIfAbsent(type, this::newShape);
+  }
+
+  private Shape newShape(Class<?> type) {
+    if (!Serializable.class.isAssignableFrom(type) || Externalizable.class.isAssignableFrom(type)
+        || !Reflector.canControlMemberAccessible()) {
+      return NOT_A_BEAN;
+    }
+    Reflector reflector = reflectorFactory.findForClass(type);
+    if (!reflector.hasDefaultConstructor()) {
+      return NOT_A_BEAN;
+    }
+    List<Field> fields = new ArrayList<>();
+    for (Class<?> c = type; c != null && Serializable.class.isAssignableFrom(c); c = c.getSuperclass()) {
+      if (hasSerializationMethods(c)) {
+        return NOT_A_BEAN;
+      }
+      Field[] declaredFields = c.getDeclaredFields();
+      Arrays.sort(declaredFields, Comparator.comparing(Field::getName));
+      for (Field field : declaredFields) {
+        int modifiers = field.getModifiers();
+        if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers)) {
+          fields.add(field);
+        }
+      }
+    }
+    Constructor<?> constructor = reflector.getDefaultConstructor();
+    try {
+      constructor.setAccessible(true);
+      for (Field field : fields) {
+        field.setAccessible(true);
+      }
+    } catch (RuntimeException e) {
+      // a class of a module that is not open to MyBatis
+      return NOT_A_BEAN;
+    }
+    return new Shape(constructor, fields.toArray(new Field[0]));
+  }
+
+  private static boolean hasSerializationMethods(Class<?> type) {
+    return hasMethod(type, "writeObject", ObjectOutputStream.class)
+        || hasMethod(type, "readObject", ObjectInputStream.class) || hasMethod(type, "readObjectNoData")
+        || hasMethod(type, "writeReplace") || hasMethod(type, "readResolve");
+  }
+
+  private static boolean hasMethod(Class<?> type, String name, Class<?>... parameterTypes) {
+    try {
+      type.getDeclaredMethod(name, parameterTypes);
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  private static final class Shape {
+    private final Constructor<?> constructor;
+    private final Field[] fields;
+
+    Shape(Constructor<?> constructor, Field[] fields) {
+      this.constructor = constructor;
+      this.fields = fields;
+    }
+  }
+
+  private final class Output {
+    private byte[] buffer = new byte[256];
+    private int position;
+    private final Map<Object, Integer> objects = new IdentityHashMap<>();
+    private final Map<Class<?>, Integer> classes = new HashMap<>();
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(buffer, position);
+    }
+
+    void writeValue(Object value) throws ReflectiveOperationException {
+      if (value == null) {
+        writeByte(NULL);
+        return;
+      }
+      Class<?> type = value.getClass();
+      if (type == String.class) {
+        writeByte(STRING);
+        writeString((String) value);
+      } else if (type == Integer.class) {
+        writeByte(INTEGER);
+        writeVarLong((Integer) value);
+      } else if (type == Long.class) {
+        writeByte(LONG);
+        writeVarLong((Long) value);
+      } else if (type == Boolean.class) {
+        writeByte((Boolean) value ? TRUE : FALSE);
+      } else if (type == Short.class) {
+        writeByte(SHORT);
+        writeVarLong((Short) value);
+      } else if (type == Byte.class) {
+        writeByte(BYTE);
+        writeByte((Byte) value);
+      } else if (type == Character.class) {
+        writeByte(CHARACTER);
+        writeVarLong((Character) value);
+      } else if (type == Double.class) {
+        writeByte(DOUBLE);
+        writeFixedLong(Double.doubleToRawLongBits((Double) value));
+      } else if (type == Float.class) {
+        writeByte(FLOAT);
+        writeVarLong(Float.floatToRawIntBits((Float) value));
+      } else if (type == BigDecimal.class) {
+        writeByte(BIG_DECIMAL);
+        writeBytes(((BigDecimal) value).unscaledValue().toByteArray());
+        writeVarLong(((BigDecimal) value).scale());
+      } else if (type == BigInteger.class) {
+        writeByte(BIG_INTEGER);
+        writeBytes(((BigInteger) value).toByteArray());
+      } else if (type == Date.class) {
+        writeByte(DATE);
+        writeVarLong(((Date) value).getTime());
+      } else if (type == java.sql.Date.class) {
+        writeByte(SQL_DATE);
+        writeVarLong(((Date) value).getTime());
+      } else if (type == Time.class) {
+        writeByte(TIME);
+        writeVarLong(((Date) value).getTime());
+      } else if (type == Timestamp.class) {
+        writeByte(TIMESTAMP);
+        writeVarLong(((Date) value).getTime());
+        writeVarLong(((Timestamp) value).getNanos());
+      } else if (type == byte[].class) {
+        writeByte(BYTES);
+        writeBytes((byte[]) value);
+      } else if (type == LocalDate.class) {
+        writeByte(LOCAL_DATE);
+        writeVarLong(((LocalDate) value).toEpochDay());
+      } else if (type == LocalTime.class) {
+        writeByte(LOCAL_TIME);
+        writeVarLong(((LocalTime) value).toNanoOfDay());
+      } else if (type == LocalDateTime.class) {
+        writeByte(LOCAL_DATE_TIME);
+        writeVarLong(((LocalDateTime) value).toLocalDate().toEpochDay());
+        writeVarLong(((LocalDateTime) value).toLocalTime().toNanoOfDay());
+      } else if (type == Instant.class) {
+        writeByte(INSTANT);
+        writeVarLong(((Instant) value).getEpochSecond());
+        writeVarLong(((Instant) value).getNano());
+      } else if (value instanceof Enum) {
+        writeByte(ENUM);
+        writeClass(((Enum<?>) value).getDeclaringClass());
+        writeVarLong(((Enum<?>) value).ordinal());
+      } else {
+        writeObject(value, type);
+      }
+    }
+
+    private void writeObject(Object value, Class<?> type) throws ReflectiveOperationException {
+      Integer reference = objects.get(value);
+      if (reference != null) {
+        writeByte(REFERENCE);
+        writeVarLong(reference);
+        return;
+      }
+      objects.put(value, objects.size());
+      byte collectionTag = collectionTag(type);
+      if (collectionTag != NULL) {
+        writeByte(collectionTag);
+        writeVarLong(((Collection<?>) value).size());
+        for (Object element : (Collection<?>) value) {
+          writeValue(element);
+        }
+      } else if (type == HashMap.class || type == LinkedHashMap.class) {
+        writeByte(type == HashMap.class ? HASH_MAP : LINKED_HASH_MAP);
+        writeVarLong(((Map<?, ?>) value).size());
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+          writeValue(entry.getKey());
+          writeValue(entry.getValue());
+        }
+      } else if (type.isArray()) {
+        writeByte(ARRAY);
+        writeClass(type);
+        int length = Array.getLength(value);
+        writeVarLong(length);
+        for (int i = 0; i < length; i++) {
+          writeValue(Array.get(value, i));
+        }
+      } else {
+        Shape shape = shapeOf(type);
+        if (shape == NOT_A_BEAN) {
+          writeByte(JAVA);
+          writeBytes(javaSerializer.serialize(value));
+        } else {
+          writeByte(BEAN);
+          writeClass(type);
+          for (Field field : shape.fields) {
+            writeValue(field.get(value));
+          }
+        }
+      }
+    }
+
+    private void writeClass(Class<?> type) {
+      Integer index = classes.get(type);
+      if (index != null) {
+        writeVarLong(index + 1L);
+      } else {
+        classes.put(type, classes.size());
+        writeVarLong(0);
+        writeString(type.getName());
+      }
+    }
+
+    private void writeString(String value) {
+      writeBytes(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void writeBytes(byte[] value) {
+      writeVarLong(value.length);
+      ensureCapacity(value.length);
+      System.arraycopy(value, 0, buffer, position, value.length);
+      position += value.length;
+    }
+
+    private void writeByte(int value) {
+      ensureCapacity(1);
+      buffer[position++] = (byte) value;
+    }
+
+    private void writeVarLong(long value) {
+      // zig-zag encoding keeps small negative numbers short
+      long bits = (value << 1) ^ (value >> 63);
+      ensureCapacity(10);
+      while ((bits & ~0x7FL) != 0) {
+        buffer[position++] = (byte) ((bits & 0x7F) | 0x80);
+        bits >>>= 7;
+      }
+      buffer[position++] = (byte) bits;
+    }
+
+    private void writeFixedLong(long value) {
+      ensureCapacity(8);
+      for (int shift = 56; shift >= 0; shift -= 8) {
+        buffer[position++] = (byte) (value >>> shift);
+      }
+    }
+
+    private void ensureCapacity(int length) {
+      if (position + length > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + length));
+      }
+    }
+  }
+
+  private final class Input {
+    private final byte[] buffer;
+    private int position;
+    private final List<Object> objects = new ArrayList<>();
+    private final List<Class<?>> classes = new ArrayList<>();
+
+    Input(byte[] buffer) {
+      this.buffer = buffer;
+    }
+
+    Object readValue() throws ReflectiveOperationException {
+      byte tag = buffer[position++];
+      switch (tag) {
+        case NULL:
+          return null;
+        case REFERENCE:
+          return objects.get((int) readVarLong());
+        case STRING:
+          return readString();
+        case INTEGER:
+          return (int) readVarLong();
+        case LONG:
+          return readVarLong();
+        case TRUE:
+          return Boolean.TRUE;
+        case FALSE:
+          return Boolean.FALSE;
+        case SHORT:
+          return (short) readVarLong();
+        case BYTE:
+          return buffer[position++];
+        case CHARACTER:
+          return (char) readVarLong();
+        case DOUBLE:
+          return Double.longBitsToDouble(readFixedLong());
+        case FLOAT:
+          return Float.intBitsToFloat((int) readVarLong());
+        case BIG_DECIMAL:
+          return new BigDecimal(new BigInteger(readBytes()), (int) readVarLong());
+        case BIG_INTEGER:
+          return new BigInteger(readBytes());
+        case DATE:
+          return new Date(readVarLong());
+        case SQL_DATE:
+          return new java.sql.Date(readVarLong());
+        case TIME:
+          return new Time(readVarLong());
+        case TIMESTAMP:
+          Timestamp timestamp = new Timestamp(readVarLong());
+          timestamp.setNanos((int) readVarLong());
+          return timestamp;
+        case BYTES:
+          return readBytes();
+        case LOCAL_DATE:
+          return LocalDate.ofEpochDay(readVarLong());
+        case LOCAL_TIME:
+          return LocalTime.ofNanoOfDay(readVarLong());
+        case LOCAL_DATE_TIME:
+          return LocalDateTime.of(LocalDate.ofEpochDay(readVarLong()), LocalTime.ofNanoOfDay(readVarLong()));
+        case INSTANT:
+          return Instant.ofEpochSecond(readVarLong(), readVarLong());
+        case ENUM:
+          return readEnum();
+        case ARRAY_LIST:
+        case LINKED_LIST:
+        case HASH_SET:
+        case LINKED_HASH_SET:
+          return readCollection(tag);
+        case HASH_MAP:
+        case LINKED_HASH_MAP:
+          return readMap(tag);
+        case ARRAY:
+          return readArray();
+        case BEAN:
+          return readBean();
+        case JAVA:
+          Object value = javaSerializer.deserialize(readBytes());
+          objects.add(value);
+          return value;
+        default:
+          throw new CacheException("Unknown type " + tag + " at position " + (position - 1) + " of the cached value.");
+      }
+    }
+
+    private Object readEnum() {
+      return readClass().getEnumConstants()[(int) readVarLong()];
+    }
+
+    private Object readCollection(byte tag) throws ReflectiveOperationException {
+      int size = (int) readVarLong();
+      Collection<Object> collection = newCollection(tag, size);
+      objects.add(collection);
+      for (int i = 0; i < size; i++) {
+        collection.add(readValue());
+      }
+      return collection;
+    }
+
+    private Object readMap(byte tag) throws ReflectiveOperationException {
+      int size = (int) readVarLong();
+      Map<Object, Object> map = tag == HASH_MAP ? new HashMap<>(capacity(size)) : new LinkedHashMap<>(capacity(size));
+      objects.add(map);
+      for (int i = 0; i < size; i++) {
+        Object key = readValue();
+        map.put(key, readValue());
+      }
+      return map;
+    }
+
+    private Object readArray() throws ReflectiveOperationException {
+      Class<?> type = readClass();
+      int length = (int) readVarLong();
+      Object array = Array.newInstance(type.getComponentType(), length);
+      objects.add(array);
+      for (int i = 0; i < length; i++) {
+        Array.set(array, i, readValue());
+      }
+      return array;
+    }
+
+    private Object readBean() throws ReflectiveOperationException {
+      Class<?> type = readClass();
+      Shape shape = shapeOf(type);
+      if (shape == NOT_A_BEAN) {
+        throw new CacheException("The cached value contains an instance of " + type + " that is not a plain bean.");
+      }
+      Object bean = shape.constructor.newInstance();
+      objects.add(bean);
+      for (Field field : shape.fields) {
+        field.set(bean, readValue());
+      }
+      return bean;
+    }
+
+    private Class<?> readClass() {
+      int index = (int) readVarLong();
+      if (index > 0) {
+        return classes.get(index - 1);
+      }
+      String name = readString();
+      try {
+        Class<?> type = Resources.classForName(name);
+        classes.add(type);
+        return type;
+      } catch (ClassNotFoundException e) {
+        throw new CacheException("Could not find the class " + name + " of a cached value.", e);
+      }
+    }
+
+    private String readString() {
+      int length = (int) readVarLong();
+      String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+      position += length;
+      return value;
+    }
+
+    private byte[] readBytes() {
+      int length = (int) readVarLong();
+      byte[] value = Arrays.copyOfRange(buffer, position, position + length);
+      position += length;
+      return value;
+    }
+
+    private long readVarLong() {
+      long bits = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = buffer[position++];
+        bits |= (long) (b & 0x7F) << shift;
+        shift += 7;
+      } while ((b & 0x80) != 0);
+      return (bits >>> 1) ^ -(bits & 1);
+    }
+
+    private long readFixedLong() {
+      long value = 0;
+      for (int i = 0; i < 8; i++) {
+        value = (value << 8) | (buffer[position++] & 0xFF);
+      }
+      return value;
+    }
+  }
+
+}
@@ -0,0 +1,82 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.serializer;
+
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.io.Resources;
+
+/**
+ * Turns cached values into bytes and back, so that every cache hit returns a copy that the caller can modify.
+ * <p>
+ * It is selected with the {@code serializer} property of the {@code <cache>} element, whose value is {@code JAVA},
+ * {@code BINARY} or the name of a class implementing this interface with a default constructor. Implementations
+ * must be thread safe.
+ *
+ * @since 3.5.12
+ * @see org.apache.ibatis.cache.decorators.SerializedCache
+ */
+public interface CacheSerializer {
+
+  /**
+   * Serializes a value.
+   *
+   * @param value
+   *          the value to serialize, may be {@code null}
+   * @return the serialized value
+   */
+  byte[] serialize(Object value);
+
+  /**
+   * Deserializes a value.
+   *
+   * @param bytes
+   *          bytes returned by {@link #serialize(Object)}
+   * @return a new copy of the value
+   */
+  Object deserialize(byte[] bytes);
+
+  /**
+   * Makes a deep copy of a value. The default implementation serializes and deserializes it.
+   *
+   * @param value
+   *          the value to copy, may be {@code null}
+   * @return a copy that shares no mutable object with the value
+   */
+  default Object copy(Object value) {
+    return deserialize(serialize(value));
+  }
+
+  /**
+   * Gets the serializer for a name.
+   *
+   * @param name
+   *          {@code JAVA}, {@code BINARY} or a class name
+   * @return a new serializer
+   */
+  static CacheSerializer forName(String name) {
+    if ("JAVA".equalsIgnoreCase(name)) {
+      return new JavaCacheSerializer();
+    } else if ("BINARY".equalsIgnoreCase(name)) {
+      return new BinaryCacheSerializer();
+    }
+    try {
+      return (CacheSerializer) Resources.classForName(name).getDeclaredConstructor().newInstance();
+    } catch (Exception e) {
+      throw new CacheException("Error creating cache serializer '" + name + "'.  Cause: " + e, e);
+    }
+  }
+
+}
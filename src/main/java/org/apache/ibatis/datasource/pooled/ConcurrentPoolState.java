@@ -0,0 +1,96 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of a {@link ConcurrentPooledDataSource}. Counters are {@link LongAdder}s updated without a lock, so the
+ * getters never block a thread checking out or returning a connection.
+ */
+class ConcurrentPoolState extends PoolState {
+
+  private final ConnectionBag bag;
+
+  final LongAdder concurrentRequestCount = new LongAdder();
+  final LongAdder concurrentAccumulatedRequestTime = new LongAdder();
+  final LongAdder concurrentAccumulatedCheckoutTime = new LongAdder();
+  final LongAdder concurrentClaimedOverdueConnectionCount = new LongAdder();
+  final LongAdder concurrentAccumulatedCheckoutTimeOfOverdueConnections = new LongAdder();
+  final LongAdder concurrentAccumulatedWaitTime = new LongAdder();
+  final LongAdder concurrentHadToWaitCount = new LongAdder();
+  final LongAdder concurrentBadConnectionCount = new LongAdder();
+
+  ConcurrentPoolState(ConcurrentPooledDataSource dataSource, ConnectionBag bag) {
+    super(dataSource);
+    this.bag = bag;
+  }
+
+  @Override
+  public long getRequestCount() {
+    return concurrentRequestCount.sum();
+  }
+
+  @Override
+  public long getAverageRequestTime() {
+    long requests = concurrentRequestCount.sum();
+    return requests == 0 ? 0 : concurrentAccumulatedRequestTime.sum() / requests;
+  }
+
+  @Override
+  public long getAverageWaitTime() {
+    long waits = concurrentHadToWaitCount.sum();
+    return waits == 0 ? 0 : concurrentAccumulatedWaitTime.sum() / waits;
+  }
+
+  @Override
+  public long getHadToWaitCount() {
+    return concurrentHadToWaitCount.sum();
+  }
+
+  @Override
+  public long getBadConnectionCount() {
+    return concurrentBadConnectionCount.sum();
+  }
+
+  @Override
+  public long getClaimedOverdueConnectionCount() {
+    return concurrentClaimedOverdueConnectionCount.sum();
+  }
+
+  @Override
+  public long getAverageOverdueCheckoutTime() {
+    long claimed = concurrentClaimedOverdueConnectionCount.sum();
+    return claimed == 0 ? 0 : concurrentAccumulatedCheckoutTimeOfOverdueConnections.sum() / claimed;
+  }
+
+  @Override
+  public long getAverageCheckoutTime() {
+    long requests = concurrentRequestCount.sum();
+    return requests == 0 ? 0 : concurrentAccumulatedCheckoutTime.sum() / requests;
+  }
+
+  @Override
+  public int getIdleConnectionCount() {
+    return bag.getIdleCount();
+  }
+
+  @Override
+  public int getActiveConnectionCount() {
+    return bag.getActiveCount();
+  }
+
+}
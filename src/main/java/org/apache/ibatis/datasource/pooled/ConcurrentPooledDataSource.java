@@ -0,0 +1,421 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * A connection pool that checks connections out and in without a global lock.
+ * <p>
+ * Idle connections are kept in a {@link ConnectionBag}: a thread first reuses a connection it returned itself, then
+ * claims any idle connection with a CAS, and only when the pool is exhausted waits for a returning thread to hand a
+ * connection over, in arrival order. New physical connections are opened outside of any lock.
+ * <p>
+ * It accepts the same properties as {@link PooledDataSource}, so an existing configuration can switch to it by changing
+ * the data source type from {@code POOLED} to {@code CONCURRENT_POOLED}. Of the limits on waiting threads, only
+ * {@code poolMaximumWaitTime} applies; {@code poolMaximumWaiters} is ignored, and so is
+ * {@code poolLeakDetectionThreshold}.
+ *
+ * @since 3.5.12
+ */
+public class ConcurrentPooledDataSource extends PooledDataSource {
+
+  private static final Log log = LogFactory.getLog(ConcurrentPooledDataSource.class);
+
+  private final ConnectionBag bag = new ConnectionBag();
+  private final ConcurrentPoolState concurrentState = new ConcurrentPoolState(this, bag);
+  private final AtomicInteger totalConnections = new AtomicInteger();
+
+  public ConcurrentPooledDataSource() {
+  }
+
+  public ConcurrentPooledDataSource(UnpooledDataSource dataSource) {
+    super(dataSource);
+  }
+
+  public ConcurrentPooledDataSource(String driver, String url, String username, String password) {
+    super(driver, url, username, password);
+  }
+
+  public ConcurrentPooledDataSource(String driver, String url, Properties driverProperties) {
+    super(driver, url, driverProperties);
+  }
+
+  public ConcurrentPooledDataSource(ClassLoader driverClassLoader, String driver, String url, String username,
+      String password) {
+    super(driverClassLoader, driver, url, username, password);
+  }
+
+  public ConcurrentPooledDataSource(ClassLoader driverClassLoader, String driver, String url,
+      Properties driverProperties) {
+    super(driverClassLoader, driver, url, driverProperties);
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    return popConnection(expectedConnectionTypeCode).getProxyConnection();
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    return popConnection(assembleConnectionTypeCode(getUrl(), username, password)).getProxyConnection();
+  }
+
+  @Override
+  public PoolState getPoolState() {
+    return concurrentState;
+  }
+
+  /**
+   * Closes all active and idle connections in the pool.
+   */
+  @Override
+  public void forceCloseAll() {
+    super.forceCloseAll();
+    for (ConnectionBag.Entry entry : bag.values()) {
+      if (!bag.remove(entry)) {
+        continue;
+      }
+      totalConnections.decrementAndGet();
+      PooledConnection active = entry.active.getAndSet(null);
+      if (active != null) {
+        active.invalidate();
+      }
+      closeQuietly(entry);
+    }
+  }
+
+  /**
+   * Background maintenance is not supported by this pool: the maintenance properties are accepted but ignored.
+   */
+  @Override
+  protected void maintainPool() {
+    // no idle list to maintain
+  }
+
+  @Override
+  protected void pushConnection(PooledConnection conn) throws SQLException {
+    ConnectionBag.Entry entry = ((BagConnection) conn).entry;
+    if (!entry.active.compareAndSet(conn, null)) {
+      if (log.isDebugEnabled()) {
+        log.debug("A bad connection (" + conn.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
+      }
+      concurrentState.concurrentBadConnectionCount.increment();
+      metrics.badConnection();
+      return;
+    }
+    concurrentState.concurrentAccumulatedCheckoutTime.add(conn.getCheckoutTime());
+    metrics.connectionReleased(System.nanoTime() - conn.checkoutNanoTime);
+    // the connection is pinged at its next checkout
+    if (!conn.isReusable()) {
+      if (log.isDebugEnabled()) {
+        log.debug("A bad connection (" + conn.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
+      }
+      concurrentState.concurrentBadConnectionCount.increment();
+      metrics.badConnection();
+      discard(entry);
+      return;
+    }
+    Connection realConnection = conn.getRealConnection();
+    conn.invalidate();
+    try {
+      conn.rollbackOpenTransaction();
+    } catch (SQLException e) {
+      discard(entry);
+      closeQuietly(entry);
+      throw e;
+    }
+    if (bag.getIdleCount() < poolMaximumIdleConnections && conn.getConnectionTypeCode() == expectedConnectionTypeCode) {
+      entry.lastUsedTimestamp = conn.getLastUsedTimestamp();
+      if (log.isDebugEnabled()) {
+        log.debug("Returned connection " + conn.getRealHashCode() + " to pool.");
+      }
+      bag.requite(entry);
+    } else {
+      if (discard(entry)) {
+        realConnection.close();
+      }
+      if (log.isDebugEnabled()) {
+        log.debug("Closed connection " + conn.getRealHashCode() + ".");
+      }
+    }
+  }
+
+  private PooledConnection popConnection(int connectionTypeCode) throws SQLException {
+    boolean countedWait = false;
+    PooledConnection conn = null;
+    long t = System.currentTimeMillis();
+    long startNanos = System.nanoTime();
+    long deadline = poolMaximumWaitTime > 0 ? startNanos + TimeUnit.MILLISECONDS.toNanos(poolMaximumWaitTime) : 0;
+    int localBadConnectionCount = 0;
+
+    while (conn == null) {
+      ConnectionBag.Entry entry = bag.borrowLocal();
+      if (entry == null) {
+        entry = bag.borrowShared();
+      }
+      if (entry == null) {
+        // not registered as a waiter yet, so that returning threads do not wait for a connection being opened here
+        entry = createOrClaimOverdue();
+      }
+      if (entry == null) {
+        if (!countedWait) {
+          concurrentState.concurrentHadToWaitCount.increment();
+          countedWait = true;
+        }
+        if (log.isDebugEnabled()) {
+          log.debug("Waiting as long as " + poolTimeToWait + " milliseconds for connection.");
+        }
+        long timeToWait = poolTimeToWait;
+        if (deadline != 0) {
+          long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+          if (remaining <= 0) {
+            throw new SQLTransientConnectionException("ConcurrentPooledDataSource: Timed out after "
+                + poolMaximumWaitTime + " milliseconds waiting for a connection.");
+          }
+          timeToWait = Math.min(timeToWait, remaining);
+        }
+        bag.enterWait();
+        try {
+          // scanned again once registered, as a connection returned before is not handed off
+          entry = bag.borrowShared();
+          if (entry == null) {
+            long wt = System.currentTimeMillis();
+            metrics.waitStarted();
+            try {
+              entry = bag.poll(timeToWait);
+            } catch (InterruptedException e) {
+              // set interrupt flag
+              Thread.currentThread().interrupt();
+              break;
+            } finally {
+              metrics.waitEnded();
+              concurrentState.concurrentAccumulatedWaitTime.add(System.currentTimeMillis() - wt);
+            }
+            if (entry == null) {
+              metrics.acquireTimedOut();
+            }
+          }
+        } finally {
+          bag.exitWait();
+        }
+      }
+      if (entry == null) {
+        continue;
+      }
+
+      conn = new BagConnection(entry, this);
+      // ping to server and check the connection is valid or not
+      if (conn.isValid()) {
+        conn.rollbackOpenTransaction();
+        conn.setConnectionTypeCode(connectionTypeCode);
+        conn.setCheckoutTimestamp(System.currentTimeMillis());
+        conn.setLastUsedTimestamp(System.currentTimeMillis());
+        conn.checkoutNanoTime = System.nanoTime();
+        entry.active.set(conn);
+        concurrentState.concurrentRequestCount.increment();
+        concurrentState.concurrentAccumulatedRequestTime.add(System.currentTimeMillis() - t);
+        metrics.connectionAcquired(conn.checkoutNanoTime - startNanos);
+      } else {
+        if (log.isDebugEnabled()) {
+          log.debug("A bad connection (" + conn.getRealHashCode() + ") was returned from the pool, getting another connection.");
+        }
+        discard(entry);
+        concurrentState.concurrentBadConnectionCount.increment();
+        metrics.badConnection();
+        localBadConnectionCount++;
+        conn = null;
+        if (localBadConnectionCount > (poolMaximumIdleConnections + poolMaximumLocalBadConnectionTolerance)) {
+          if (log.isDebugEnabled()) {
+            log.debug("ConcurrentPooledDataSource: Could not get a good connection to the database.");
+          }
+          throw new SQLException("ConcurrentPooledDataSource: Could not get a good connection to the database.");
+        }
+      }
+    }
+
+    if (conn == null) {
+      if (log.isDebugEnabled()) {
+        log.debug("ConcurrentPooledDataSource: Unknown severe error condition.  The connection pool returned a null connection.");
+      }
+      throw new SQLException("ConcurrentPooledDataSource: Unknown severe error condition.  The connection pool returned a null connection.");
+    }
+
+    return conn;
+  }
+
+  /**
+   * Opens a new connection if the pool is not full yet, otherwise takes over the connection that has been checked out
+   * for longer than {@code poolMaximumCheckoutTime}.
+   */
+  private ConnectionBag.Entry createOrClaimOverdue() throws SQLException {
+    int total;
+    while ((total = totalConnections.get()) < poolMaximumActiveConnections) {
+      if (totalConnections.compareAndSet(total, total + 1)) {
+        Connection realConnection;
+        long start = System.nanoTime();
+        try {
+          realConnection = openRealConnection();
+          metrics.connectionCreated(System.nanoTime() - start);
+        } catch (SQLException | RuntimeException e) {
+          totalConnections.decrementAndGet();
+          throw e;
+        }
+        ConnectionBag.Entry entry = new ConnectionBag.Entry(realConnection);
+        bag.add(entry);
+        if (log.isDebugEnabled()) {
+          log.debug("Created connection " + realConnection.hashCode() + ".");
+        }
+        return entry;
+      }
+    }
+
+    PooledConnection oldestActiveConnection = null;
+    for (ConnectionBag.Entry entry : bag.values()) {
+      PooledConnection active = entry.active.get();
+      if (active != null && (oldestActiveConnection == null
+          || active.getCheckoutTimestamp() < oldestActiveConnection.getCheckoutTimestamp())) {
+        oldestActiveConnection = active;
+      }
+    }
+    if (oldestActiveConnection == null) {
+      return null;
+    }
+    long longestCheckoutTime = oldestActiveConnection.getCheckoutTime();
+    ConnectionBag.Entry entry = ((BagConnection) oldestActiveConnection).entry;
+    if (longestCheckoutTime <= poolMaximumCheckoutTime || !entry.active.compareAndSet(oldestActiveConnection, null)) {
+      return null;
+    }
+    // Can claim overdue connection
+    concurrentState.concurrentClaimedOverdueConnectionCount.increment();
+    concurrentState.concurrentAccumulatedCheckoutTimeOfOverdueConnections.add(longestCheckoutTime);
+    concurrentState.concurrentAccumulatedCheckoutTime.add(longestCheckoutTime);
+    oldestActiveConnection.invalidate();
+    try {
+      entry.connectionState.rollbackOpenTransaction(entry.realConnection);
+    } catch (SQLException e) {
+      // the connection is checked again before it is handed out
+      log.debug("Bad connection. Could not roll back");
+    }
+    entry.lastUsedTimestamp = oldestActiveConnection.getLastUsedTimestamp();
+    if (log.isDebugEnabled()) {
+      log.debug("Claimed overdue connection " + oldestActiveConnection.getRealHashCode() + ".");
+    }
+    return entry;
+  }
+
+  private Connection openRealConnection() throws SQLException {
+    Connection realConnection = dataSource.getConnection();
+    try {
+      initializeConnection(realConnection);
+    } catch (SQLException | RuntimeException e) {
+      try {
+        realConnection.close();
+      } catch (SQLException e2) {
+        // ignore
+      }
+      throw e;
+    }
+    return realConnection;
+  }
+
+  @Override
+  int reserveWarmUpConnections() {
+    int target = Math.min(poolWarmUpConnections, Math.min(poolMaximumIdleConnections, poolMaximumActiveConnections));
+    int total;
+    int count;
+    do {
+      total = totalConnections.get();
+      count = Math.max(0, Math.min(target - bag.getIdleCount(), poolMaximumActiveConnections - total));
+    } while (count > 0 && !totalConnections.compareAndSet(total, total + count));
+    return count;
+  }
+
+  @Override
+  boolean warmUpConnection(int typeCode) {
+    Connection realConnection;
+    long start = System.nanoTime();
+    try {
+      realConnection = openRealConnection();
+      metrics.connectionCreated(System.nanoTime() - start);
+    } catch (SQLException | RuntimeException e) {
+      totalConnections.decrementAndGet();
+      log.warn("Could not open a connection to warm up the pool: " + e.getMessage());
+      return false;
+    }
+    ConnectionBag.Entry entry = new ConnectionBag.Entry(realConnection);
+    bag.add(entry);
+    PooledConnection conn = new BagConnection(entry, this);
+    boolean valid = validateIdleConnection(conn);
+    conn.invalidate();
+    if (!valid || typeCode != expectedConnectionTypeCode) {
+      if (!valid) {
+        concurrentState.concurrentBadConnectionCount.increment();
+        metrics.badConnection();
+      }
+      discard(entry);
+      closeQuietly(entry);
+      return false;
+    }
+    bag.requite(entry);
+    return true;
+  }
+
+  private boolean discard(ConnectionBag.Entry entry) {
+    if (bag.remove(entry)) {
+      totalConnections.decrementAndGet();
+      return true;
+    }
+    return false;
+  }
+
+  private void closeQuietly(ConnectionBag.Entry entry) {
+    try {
+      entry.connectionState.rollbackOpenTransaction(entry.realConnection);
+      entry.realConnection.close();
+    } catch (Exception e) {
+      // ignore
+    }
+  }
+
+  /**
+   * The connection handed out for one checkout of an {@link ConnectionBag.Entry}.
+   */
+  static final class BagConnection extends PooledConnection {
+
+    private final ConnectionBag.Entry entry;
+
+    BagConnection(ConnectionBag.Entry entry, ConcurrentPooledDataSource dataSource) {
+      super(entry.realConnection, dataSource);
+      this.entry = entry;
+      setStatementCache(entry.statementCache);
+      setConnectionState(entry.connectionState);
+      setCreatedTimestamp(entry.createdTimestamp);
+      setLastUsedTimestamp(entry.lastUsedTimestamp);
+    }
+
+  }
+
+}
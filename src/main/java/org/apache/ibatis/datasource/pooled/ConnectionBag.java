@@ -0,0 +1,210 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.lang.ref.WeakReference;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free holder of the physical connections of a {@link ConcurrentPooledDataSource}.
+ * <p>
+ * Every connection is an {@link Entry} whose state is switched with a CAS. A borrowing thread first looks at the
+ * connections it returned itself, then scans the shared list, and finally waits on a fair hand-off queue where a
+ * returning thread passes its connection directly to the longest waiting borrower.
+ */
+final class ConnectionBag {
+
+  static final int STATE_NOT_IN_USE = 0;
+  static final int STATE_IN_USE = 1;
+  static final int STATE_REMOVED = -1;
+
+  private static final int MAX_THREAD_LOCAL_ENTRIES = 16;
+
+  private final CopyOnWriteArrayList<Entry> sharedList = new CopyOnWriteArrayList<>();
+  private final ThreadLocal<List<WeakReference<Entry>>> threadList = ThreadLocal.withInitial(ArrayList::new);
+  private final SynchronousQueue<Entry> handoffQueue = new SynchronousQueue<>(true);
+  private final AtomicInteger waiters = new AtomicInteger();
+  private final AtomicInteger inUse = new AtomicInteger();
+
+  /**
+   * Claims one of the connections the current thread returned most recently.
+   *
+   * @return the claimed entry, or null if none of them is idle
+   */
+  Entry borrowLocal() {
+    List<WeakReference<Entry>> list = threadList.get();
+    for (int i = list.size() - 1; i >= 0; i--) {
+      Entry entry = list.remove(i).get();
+      if (entry != null && claim(entry)) {
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Claims any idle connection. A caller about to {@link #poll(long)} must scan again once registered through
+   * {@link #enterWait()}, so that a connection returned concurrently is either seen by that scan or handed off to it.
+   * Only the threads in {@link #poll(long)} should be registered, as returning threads spin until a waiter takes their
+   * connection.
+   *
+   * @return the claimed entry, or null if none is idle
+   */
+  Entry borrowShared() {
+    for (Entry entry : sharedList) {
+      if (claim(entry)) {
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Waits for a connection handed off by a returning thread.
+   *
+   * @param timeout
+   *          the maximum time to wait in milliseconds
+   * @return the claimed entry, or null if the timeout elapsed
+   * @throws InterruptedException
+   *           if the current thread was interrupted while waiting
+   */
+  Entry poll(long timeout) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+    long remaining;
+    while ((remaining = deadline - System.nanoTime()) > 0) {
+      Entry entry = handoffQueue.poll(remaining, TimeUnit.NANOSECONDS);
+      if (entry != null && claim(entry)) {
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  void enterWait() {
+    waiters.incrementAndGet();
+  }
+
+  void exitWait() {
+    waiters.decrementAndGet();
+  }
+
+  /**
+   * Gives a connection back, handing it to a waiting borrower if there is one.
+   *
+   * @param entry
+   *          the entry to return
+   */
+  void requite(Entry entry) {
+    entry.state.set(STATE_NOT_IN_USE);
+    inUse.decrementAndGet();
+    for (int i = 0; waiters.get() > 0; i++) {
+      if (entry.state.get() != STATE_NOT_IN_USE || handoffQueue.offer(entry)) {
+        return;
+      } else if ((i & 0xff) == 0xff) {
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(10));
+      } else {
+        Thread.yield();
+      }
+    }
+    List<WeakReference<Entry>> list = threadList.get();
+    if (list.size() < MAX_THREAD_LOCAL_ENTRIES) {
+      list.add(new WeakReference<>(entry));
+    }
+  }
+
+  /**
+   * Adds a newly opened connection that is already in use by the thread that opened it.
+   *
+   * @param entry
+   *          the entry to add
+   */
+  void add(Entry entry) {
+    inUse.incrementAndGet();
+    sharedList.add(entry);
+  }
+
+  /**
+   * Removes a connection from the bag for good.
+   *
+   * @param entry
+   *          the entry to remove
+   * @return true if the entry was still in the bag
+   */
+  boolean remove(Entry entry) {
+    int previous = entry.state.getAndSet(STATE_REMOVED);
+    if (previous == STATE_REMOVED || !sharedList.remove(entry)) {
+      return false;
+    }
+    if (previous == STATE_IN_USE) {
+      inUse.decrementAndGet();
+    }
+    return true;
+  }
+
+  List<Entry> values() {
+    return new ArrayList<>(sharedList);
+  }
+
+  int getActiveCount() {
+    return inUse.get();
+  }
+
+  int getIdleCount() {
+    return Math.max(0, sharedList.size() - inUse.get());
+  }
+
+  int getWaitingCount() {
+    return waiters.get();
+  }
+
+  private boolean claim(Entry entry) {
+    if (entry.state.compareAndSet(STATE_NOT_IN_USE, STATE_IN_USE)) {
+      inUse.incrementAndGet();
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * A physical connection and the bookkeeping that outlives the {@link PooledConnection} handed out for each checkout.
+   */
+  static final class Entry {
+
+    final Connection realConnection;
+    final AtomicInteger state = new AtomicInteger(STATE_IN_USE);
+    final AtomicReference<PooledConnection> active = new AtomicReference<>();
+    final StatementCache statementCache = new StatementCache();
+    final ConnectionState connectionState = new ConnectionState();
+    final long createdTimestamp;
+    volatile long lastUsedTimestamp;
+
+    Entry(Connection realConnection) {
+      this.realConnection = realConnection;
+      this.createdTimestamp = System.currentTimeMillis();
+      this.lastUsedTimestamp = createdTimestamp;
+    }
+
+  }
+
+}
@@ -0,0 +1,188 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Objects;
+
+import org.apache.ibatis.reflection.ExceptionUtil;
+
+/**
+ * What the pool knows about the state of one physical connection, so that it does not have to ask the driver, which
+ * may take a round trip to the database.
+ * <p>
+ * The state is learned from the calls made through the pooled connections that wrap the physical connection, and is
+ * shared by all of them. A value is unknown ({@code null}) until it is read or set once, and setting a known value again
+ * does not call the driver.
+ * <p>
+ * A setter that changes a value calls the driver right away, as enabling the auto-commit mode commits the current
+ * transaction and some drivers refuse to change e.g. the isolation level within a transaction.
+ * <p>
+ * As soon as the physical connection is handed out unwrapped, the state is no longer tracked and every call goes to the
+ * driver. A connection is only used by one thread at a time, so the state needs no synchronization.
+ *
+ * @since 3.5.12
+ */
+final class ConnectionState {
+
+  private Boolean autoCommit;
+  private Integer transactionIsolation;
+  private Boolean readOnly;
+  private String catalog;
+  private String schema;
+  private boolean catalogKnown;
+  private boolean schemaKnown;
+  private boolean untracked;
+
+  /**
+   * Runs a method of the physical connection, answering the getters of the tracked state without calling the driver.
+   *
+   * @param connection
+   *          the physical connection
+   * @param method
+   *          the method called on the pooled connection
+   * @param args
+   *          the arguments of the method
+   * @return the result of the method
+   * @throws Throwable
+   *           if the method fails
+   */
+  Object invoke(Connection connection, Method method, Object[] args) throws Throwable {
+    if (untracked) {
+      return doInvoke(connection, method, args);
+    }
+    try {
+      switch (method.getName()) {
+        case "getAutoCommit":
+          if (autoCommit == null) {
+            autoCommit = connection.getAutoCommit();
+          }
+          return autoCommit;
+        case "setAutoCommit":
+          if (!args[0].equals(autoCommit)) {
+            connection.setAutoCommit((Boolean) args[0]);
+            autoCommit = (Boolean) args[0];
+          }
+          return null;
+        case "getTransactionIsolation":
+          if (transactionIsolation == null) {
+            transactionIsolation = connection.getTransactionIsolation();
+          }
+          return transactionIsolation;
+        case "setTransactionIsolation":
+          if (!args[0].equals(transactionIsolation)) {
+            connection.setTransactionIsolation((Integer) args[0]);
+            transactionIsolation = (Integer) args[0];
+          }
+          return null;
+        case "isReadOnly":
+          if (readOnly == null) {
+            readOnly = connection.isReadOnly();
+          }
+          return readOnly;
+        case "setReadOnly":
+          if (!args[0].equals(readOnly)) {
+            connection.setReadOnly((Boolean) args[0]);
+            readOnly = (Boolean) args[0];
+          }
+          return null;
+        case "getCatalog":
+          if (!catalogKnown) {
+            catalog = connection.getCatalog();
+            catalogKnown = true;
+          }
+          return catalog;
+        case "setCatalog":
+          if (!catalogKnown || !Objects.equals(catalog, args[0])) {
+            connection.setCatalog((String) args[0]);
+            catalog = (String) args[0];
+            catalogKnown = true;
+          }
+          return null;
+        case "getSchema":
+          if (!schemaKnown) {
+            schema = connection.getSchema();
+            schemaKnown = true;
+          }
+          return schema;
+        case "setSchema":
+          if (!schemaKnown || !Objects.equals(schema, args[0])) {
+            connection.setSchema((String) args[0]);
+            schema = (String) args[0];
+            schemaKnown = true;
+          }
+          return null;
+        case "unwrap":
+          untracked = true;
+          return doInvoke(connection, method, args);
+        default:
+          return doInvoke(connection, method, args);
+      }
+    } catch (SQLException e) {
+      forget();
+      throw e;
+    }
+  }
+
+  private static Object doInvoke(Connection connection, Method method, Object[] args) throws Throwable {
+    try {
+      return method.invoke(connection, args);
+    } catch (Throwable t) {
+      throw ExceptionUtil.unwrapThrowable(t);
+    }
+  }
+
+  /**
+   * Rolls back the transaction the connection may have left open. The driver is not called when the connection is known
+   * to be in auto-commit mode, e.g. because a {@code JdbcTransaction} enabled it again when it closed the connection.
+   *
+   * @param connection
+   *          the physical connection
+   * @throws SQLException
+   *           if the rollback fails
+   */
+  void rollbackOpenTransaction(Connection connection) throws SQLException {
+    try {
+      if (autoCommit == null || untracked) {
+        autoCommit = connection.getAutoCommit();
+      }
+      if (!autoCommit) {
+        connection.rollback();
+      }
+    } catch (SQLException e) {
+      forget();
+      throw e;
+    }
+  }
+
+  /**
+   * Stops tracking the state, because the physical connection is used without its pooled connection.
+   */
+  void untrack() {
+    untracked = true;
+  }
+
+  private void forget() {
+    autoCommit = null;
+    transactionIsolation = null;
+    readOnly = null;
+    catalogKnown = false;
+    schemaKnown = false;
+  }
+
+}
@@ -0,0 +1,84 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+/**
+ * Receives the events of a pooled data source, e.g. to bridge them to a metrics library. Events are delivered
+ * synchronously on the thread that caused them, so implementations must be fast and thread safe.
+ *
+ * @see PoolMetrics#addListener(PoolListener)
+ * @since 3.5.12
+ */
+public interface PoolListener {
+
+  /**
+   * A physical connection was opened.
+   *
+   * @param creationMicros
+   *          the time it took to open the connection, in microseconds
+   */
+  default void connectionCreated(long creationMicros) {
+  }
+
+  /**
+   * A connection was checked out.
+   *
+   * @param waitMicros
+   *          the time the caller waited for the connection, in microseconds
+   */
+  default void connectionAcquired(long waitMicros) {
+  }
+
+  /**
+   * A connection was returned to the pool.
+   *
+   * @param checkoutMicros
+   *          the time the connection was checked out, in microseconds
+   */
+  default void connectionReleased(long checkoutMicros) {
+  }
+
+  /**
+   * A thread waited for a connection for the whole {@code poolTimeToWait} without getting one.
+   */
+  default void acquireTimedOut() {
+  }
+
+  /**
+   * A thread was refused a connection without waiting because {@code poolMaximumWaiters} threads were already waiting.
+   */
+  default void acquireRejected() {
+  }
+
+  /**
+   * A connection has been checked out for longer than {@code poolLeakDetectionThreshold}. It is reported once per
+   * checkout, by the pool maintenance thread.
+   *
+   * @param checkoutMicros
+   *          the time the connection has been checked out, in microseconds
+   * @param checkoutSite
+   *          holds the stack of the caller that checked the connection out
+   */
+  default void connectionLeaked(long checkoutMicros, Throwable checkoutSite) {
+  }
+
+  /**
+   * A connection was found to be broken and discarded.
+   */
+  default void badConnection() {
+  }
+
+}
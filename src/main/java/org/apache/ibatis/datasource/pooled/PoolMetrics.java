@@ -0,0 +1,225 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free metrics of a pooled data source: latency histograms of connection acquisition, checkout and creation,
+ * gauges of the connections and waiting threads, and counters of timeouts and bad connections.
+ * <p>
+ * Unlike the averages of {@link PoolState}, the histograms report the tail latencies. The metrics can be read directly,
+ * through JMX (see {@link PooledDataSource#setPoolJmxName(String)}) or forwarded to a {@link PoolListener}.
+ *
+ * @since 3.5.12
+ */
+public class PoolMetrics implements PoolMetricsMXBean {
+
+  private final PooledDataSource dataSource;
+  private final LatencyHistogram acquireTime = new LatencyHistogram();
+  private final LatencyHistogram checkoutTime = new LatencyHistogram();
+  private final LatencyHistogram creationTime = new LatencyHistogram();
+  private final LongAdder timeoutCount = new LongAdder();
+  private final LongAdder rejectedCount = new LongAdder();
+  private final LongAdder badConnectionCount = new LongAdder();
+  private final LongAdder leakCount = new LongAdder();
+  private final AtomicInteger waitingThreads = new AtomicInteger();
+  private final List<PoolListener> listeners = new CopyOnWriteArrayList<>();
+
+  PoolMetrics(PooledDataSource dataSource) {
+    this.dataSource = dataSource;
+  }
+
+  public void addListener(PoolListener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(PoolListener listener) {
+    listeners.remove(listener);
+  }
+
+  void connectionCreated(long nanos) {
+    long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+    creationTime.record(micros);
+    for (PoolListener listener : listeners) {
+      listener.connectionCreated(micros);
+    }
+  }
+
+  void connectionAcquired(long nanos) {
+    long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+    acquireTime.record(micros);
+    for (PoolListener listener : listeners) {
+      listener.connectionAcquired(micros);
+    }
+  }
+
+  void connectionReleased(long nanos) {
+    long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+    checkoutTime.record(micros);
+    for (PoolListener listener : listeners) {
+      listener.connectionReleased(micros);
+    }
+  }
+
+  void acquireTimedOut() {
+    timeoutCount.increment();
+    for (PoolListener listener : listeners) {
+      listener.acquireTimedOut();
+    }
+  }
+
+  void acquireRejected() {
+    rejectedCount.increment();
+    for (PoolListener listener : listeners) {
+      listener.acquireRejected();
+    }
+  }
+
+  void badConnection() {
+    badConnectionCount.increment();
+    for (PoolListener listener : listeners) {
+      listener.badConnection();
+    }
+  }
+
+  void connectionLeaked(long nanos, Throwable checkoutSite) {
+    leakCount.increment();
+    long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+    for (PoolListener listener : listeners) {
+      listener.connectionLeaked(micros, checkoutSite);
+    }
+  }
+
+  void waitStarted() {
+    waitingThreads.incrementAndGet();
+  }
+
+  void waitEnded() {
+    waitingThreads.decrementAndGet();
+  }
+
+  /**
+   * Gets the histogram of the time callers waited for a connection, in microseconds.
+   *
+   * @return the acquisition time histogram
+   */
+  public LatencyHistogram getAcquireTimeHistogram() {
+    return acquireTime;
+  }
+
+  /**
+   * Gets the histogram of the time connections were checked out, in microseconds.
+   *
+   * @return the checkout time histogram
+   */
+  public LatencyHistogram getCheckoutTimeHistogram() {
+    return checkoutTime;
+  }
+
+  /**
+   * Gets the histogram of the time it took to open physical connections, in microseconds.
+   *
+   * @return the creation time histogram
+   */
+  public LatencyHistogram getCreationTimeHistogram() {
+    return creationTime;
+  }
+
+  @Override
+  public int getActiveConnections() {
+    return dataSource.getPoolState().getActiveConnectionCount();
+  }
+
+  @Override
+  public int getIdleConnections() {
+    return dataSource.getPoolState().getIdleConnectionCount();
+  }
+
+  @Override
+  public int getPendingConnections() {
+    return dataSource.getPoolState().getPendingConnectionCount();
+  }
+
+  @Override
+  public int getWaitingThreads() {
+    return waitingThreads.get();
+  }
+
+  @Override
+  public boolean isReady() {
+    return dataSource.isPoolReady();
+  }
+
+  @Override
+  public long getRequestCount() {
+    return acquireTime.getCount();
+  }
+
+  @Override
+  public long getTimeoutCount() {
+    return timeoutCount.sum();
+  }
+
+  @Override
+  public long getRejectedCount() {
+    return rejectedCount.sum();
+  }
+
+  @Override
+  public long getBadConnectionCount() {
+    return badConnectionCount.sum();
+  }
+
+  @Override
+  public long getLeakCount() {
+    return leakCount.sum();
+  }
+
+  @Override
+  public List<String> getLeakSuspects() {
+    return dataSource.getLeakSuspects();
+  }
+
+  @Override
+  public LatencyHistogram.Snapshot getAcquireTime() {
+    return acquireTime.snapshot();
+  }
+
+  @Override
+  public LatencyHistogram.Snapshot getCheckoutTime() {
+    return checkoutTime.snapshot();
+  }
+
+  @Override
+  public LatencyHistogram.Snapshot getCreationTime() {
+    return creationTime.snapshot();
+  }
+
+  @Override
+  public String toString() {
+    return "active=" + getActiveConnections() + ", idle=" + getIdleConnections() + ", pending="
+        + getPendingConnections() + ", waiting=" + getWaitingThreads() + ", timeouts=" + getTimeoutCount()
+        + ", rejected=" + getRejectedCount() + ", badConnections=" + getBadConnectionCount() + ", leaks="
+        + getLeakCount() + ", acquireTime=[" + getAcquireTime() + "], checkoutTime=[" + getCheckoutTime()
+        + "], creationTime=[" + getCreationTime() + "]";
+  }
+
+}
@@ -0,0 +1,57 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.util.List;
+
+/**
+ * The management interface of the metrics of a pooled data source, registered when {@code poolJmxName} is set. Times
+ * are in microseconds.
+ *
+ * @see PooledDataSource#setPoolJmxName(String)
+ * @since 3.5.12
+ */
+public interface PoolMetricsMXBean {
+
+  int getActiveConnections();
+
+  int getIdleConnections();
+
+  int getPendingConnections();
+
+  int getWaitingThreads();
+
+  boolean isReady();
+
+  long getRequestCount();
+
+  long getTimeoutCount();
+
+  long getRejectedCount();
+
+  long getBadConnectionCount();
+
+  long getLeakCount();
+
+  List<String> getLeakSuspects();
+
+  LatencyHistogram.Snapshot getAcquireTime();
+
+  LatencyHistogram.Snapshot getCheckoutTime();
+
+  LatencyHistogram.Snapshot getCreationTime();
+
+}
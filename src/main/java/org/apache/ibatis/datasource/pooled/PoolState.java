@@ -35,6 +35,7 @@ public class PoolState {
   protected long accumulatedWaitTime = 0;
   protected long hadToWaitCount = 0;
   protected long badConnectionCount = 0;
+  protected int pendingConnectionCount = 0;
 
   public PoolState(PooledDataSource dataSource) {
     this.dataSource = dataSource;
@@ -81,6 +82,17 @@ public class PoolState {
     return activeConnections.size();
   }
 
+  /**
+   * Gets the number of connections being opened or validated for a checkout, which count towards the maximum of
+   * active connections.
+   *
+   * @return the number of pending connections
+   * @since 3.5.12
+   */
+  public synchronized int getPendingConnectionCount() {
+    return pendingConnectionCount;
+  }
+
   @Override
   public synchronized String toString() {
     StringBuilder builder = new StringBuilder();
@@ -96,9 +108,20 @@ public class PoolState {
     builder.append("\n poolPingEnabled                ").append(dataSource.poolPingEnabled);
     builder.append("\n poolPingQuery                  ").append(dataSource.poolPingQuery);
     builder.append("\n poolPingConnectionsNotUsedFor  ").append(dataSource.poolPingConnectionsNotUsedFor);
+    builder.append("\n poolMaintenanceInterval        ").append(dataSource.poolMaintenanceInterval);
+    builder.append("\n poolMinIdleConnections         ").append(dataSource.poolMinimumIdleConnections);
+    builder.append("\n poolMaxConnectionLifetime      ").append(dataSource.poolMaximumConnectionLifetime);
+    builder.append("\n poolMaxIdleTime                ").append(dataSource.poolMaximumIdleTime);
+    builder.append("\n poolKeepaliveTime              ").append(dataSource.poolKeepaliveTime);
+    builder.append("\n poolStatementCacheSize         ").append(dataSource.poolStatementCacheSize);
+    builder.append("\n poolMaxWaiters                 ").append(dataSource.poolMaximumWaiters);
+    builder.append("\n poolMaxWaitTime                ").append(dataSource.poolMaximumWaitTime);
+    builder.append("\n poolLeakDetectionThreshold     ").append(dataSource.poolLeakDetectionThreshold);
+    builder.append("\n poolWarmUpConnections          ").append(dataSource.poolWarmUpConnections);
     builder.append("\n ---STATUS-----------------------------------------------------");
     builder.append("\n activeConnections              ").append(getActiveConnectionCount());
     builder.append("\n idleConnections                ").append(getIdleConnectionCount());
+    builder.append("\n pendingConnections             ").append(getPendingConnectionCount());
     builder.append("\n requestCount                   ").append(getRequestCount());
     builder.append("\n averageRequestTime             ").append(getAverageRequestTime());
     builder.append("\n averageCheckoutTime            ").append(getAverageCheckoutTime());
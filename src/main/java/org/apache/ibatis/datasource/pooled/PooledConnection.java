@@ -29,6 +29,8 @@ import org.apache.ibatis.reflection.ExceptionUtil;
 class PooledConnection implements InvocationHandler {
 
   private static final String CLOSE = "close";
+  private static final String PREPARE_STATEMENT = "prepareStatement";
+  private static final String PREPARE_CALL = "prepareCall";
   private static final Class<?>[] IFACES = new Class<?>[] { Connection.class };
 
   private final int hashCode;
@@ -36,10 +38,16 @@ class PooledConnection implements InvocationHandler {
   private final Connection realConnection;
   private final Connection proxyConnection;
   private long checkoutTimestamp;
+  long checkoutNanoTime;
+  Throwable checkoutSite;
+  boolean leakReported;
   private long createdTimestamp;
   private long lastUsedTimestamp;
+  private long lastValidatedTimestamp;
   private int connectionTypeCode;
   private boolean valid;
+  private StatementCache statementCache;
+  private ConnectionState connectionState;
 
   /**
    * Constructor for SimplePooledConnection that uses the Connection and PooledDataSource passed in.
@@ -55,6 +63,7 @@ class PooledConnection implements InvocationHandler {
     this.dataSource = dataSource;
     this.createdTimestamp = System.currentTimeMillis();
     this.lastUsedTimestamp = System.currentTimeMillis();
+    this.lastValidatedTimestamp = lastUsedTimestamp;
     this.valid = true;
     this.proxyConnection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), IFACES, this);
   }
@@ -159,6 +168,25 @@ class PooledConnection implements InvocationHandler {
     this.lastUsedTimestamp = lastUsedTimestamp;
   }
 
+  /**
+   * Getter for the time that the connection was last validated while idle, or wrapped for the pool.
+   *
+   * @return the timestamp
+   */
+  public long getLastValidatedTimestamp() {
+    return lastValidatedTimestamp;
+  }
+
+  /**
+   * Setter for the time that the connection was last validated.
+   *
+   * @param lastValidatedTimestamp
+   *          - the timestamp
+   */
+  public void setLastValidatedTimestamp(long lastValidatedTimestamp) {
+    this.lastValidatedTimestamp = lastValidatedTimestamp;
+  }
+
   /**
    * Getter for the time since this connection was last used.
    *
@@ -205,6 +233,70 @@ class PooledConnection implements InvocationHandler {
     return System.currentTimeMillis() - checkoutTimestamp;
   }
 
+  /**
+   * Gets the cache of the statements prepared on the real connection, shared by all the pooled connections that wrap it.
+   *
+   * @return the statement cache
+   */
+  StatementCache getStatementCache() {
+    if (statementCache == null) {
+      statementCache = new StatementCache();
+    }
+    return statementCache;
+  }
+
+  /**
+   * Sets the cache of the statements prepared on the real connection, e.g. the one of a previous wrapper.
+   *
+   * @param statementCache
+   *          the statement cache
+   */
+  void setStatementCache(StatementCache statementCache) {
+    this.statementCache = statementCache;
+  }
+
+  /**
+   * Gets the state of the real connection known to the pool, shared by all the pooled connections that wrap it.
+   *
+   * @return the connection state
+   */
+  ConnectionState getConnectionState() {
+    if (connectionState == null) {
+      connectionState = new ConnectionState();
+    }
+    return connectionState;
+  }
+
+  /**
+   * Sets the state of the real connection known to the pool, e.g. the one of a previous wrapper.
+   *
+   * @param connectionState
+   *          the connection state
+   */
+  void setConnectionState(ConnectionState connectionState) {
+    this.connectionState = connectionState;
+  }
+
+  /**
+   * Rolls back the transaction left open on the real connection, if any. The auto-commit mode is only asked to the
+   * driver when the pool does not know it.
+   *
+   * @throws SQLException
+   *           if the rollback fails
+   */
+  void rollbackOpenTransaction() throws SQLException {
+    getConnectionState().rollbackOpenTransaction(realConnection);
+  }
+
+  /**
+   * Checks whether the connection can be kept in the pool without pinging it, which is left to the next checkout.
+   *
+   * @return True if the connection has not been invalidated
+   */
+  boolean isReusable() {
+    return valid && realConnection != null;
+  }
+
   @Override
   public int hashCode() {
     return hashCode;
@@ -252,7 +344,15 @@ class PooledConnection implements InvocationHandler {
         // throw an SQLException instead of a Runtime
         checkConnection();
       }
-      return method.invoke(realConnection, args);
+      if ((PREPARE_STATEMENT.equals(methodName) || PREPARE_CALL.equals(methodName))
+          && dataSource.poolStatementCacheSize > 0) {
+        return getStatementCache().prepare(realConnection, proxyConnection, method, args,
+            dataSource.poolStatementCacheSize);
+      }
+      if (Object.class.equals(method.getDeclaringClass())) {
+        return method.invoke(realConnection, args);
+      }
+      return getConnectionState().invoke(realConnection, method, args);
     } catch (Throwable t) {
       throw ExceptionUtil.unwrapThrowable(t);
     }
@@ -16,21 +16,39 @@
 package org.apache.ibatis.datasource.pooled;
 
 import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
 import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.sql.DataSource;
 
+import org.apache.ibatis.datasource.DataSourceException;
 import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
@@ -44,9 +62,13 @@ public class PooledDataSource implements DataSource {
 
   private static final Log log = LogFactory.getLog(PooledDataSource.class);
 
+  private static final int KEEPALIVE_VALIDATION_TIMEOUT_SECONDS = 5;
+
   private final PoolState state = new PoolState(this);
 
-  private final UnpooledDataSource dataSource;
+  final PoolMetrics metrics = new PoolMetrics(this);
+
+  final UnpooledDataSource dataSource;
 
   // OPTIONAL CONFIGURATION FIELDS
   protected int poolMaximumActiveConnections = 10;
@@ -57,11 +79,28 @@ public class PooledDataSource implements DataSource {
   protected String poolPingQuery = "NO PING QUERY SET";
   protected boolean poolPingEnabled;
   protected int poolPingConnectionsNotUsedFor;
-
-  private int expectedConnectionTypeCode;
+  protected boolean poolBackgroundConnectionCreation;
+  protected int poolMaintenanceInterval;
+  protected int poolMinimumIdleConnections;
+  protected int poolMaximumConnectionLifetime;
+  protected int poolMaximumIdleTime;
+  protected int poolKeepaliveTime;
+  protected int poolStatementCacheSize;
+  protected int poolMaximumWaiters;
+  protected int poolMaximumWaitTime;
+  protected int poolLeakDetectionThreshold;
+  protected int poolWarmUpConnections;
+  protected String poolConnectionInitSql;
+
+  int expectedConnectionTypeCode;
 
   private final Lock lock = new ReentrantLock();
-  private final Condition condition = lock.newCondition();
+  private final Deque<Waiter> waiters = new ArrayDeque<>();
+  private ThreadPoolExecutor connectionCreator;
+  private boolean backgroundConnectionPending;
+  private ScheduledExecutorService maintenanceScheduler;
+  private ObjectName jmxName;
+  private CompletableFuture<Void> warmUp;
 
   public PooledDataSource() {
     dataSource = new UnpooledDataSource();
@@ -69,6 +108,7 @@ public class PooledDataSource implements DataSource {
 
   public PooledDataSource(UnpooledDataSource dataSource) {
     this.dataSource = dataSource;
+    expectedConnectionTypeCode = assembleConnectionTypeCode(dataSource.getUrl(), dataSource.getUsername(), dataSource.getPassword());
   }
 
   public PooledDataSource(String driver, String url, String username, String password) {
@@ -93,12 +133,12 @@ public class PooledDataSource implements DataSource {
 
   @Override
   public Connection getConnection() throws SQLException {
-    return popConnection(dataSource.getUsername(), dataSource.getPassword()).getProxyConnection();
+    return popConnection(expectedConnectionTypeCode).getProxyConnection();
   }
 
   @Override
   public Connection getConnection(String username, String password) throws SQLException {
-    return popConnection(username, password).getProxyConnection();
+    return popConnection(assembleConnectionTypeCode(dataSource.getUrl(), username, password)).getProxyConnection();
   }
 
   @Override
@@ -261,6 +301,222 @@ public class PooledDataSource implements DataSource {
     forceCloseAll();
   }
 
+  /**
+   * Determines if a connection should be opened on a background thread whenever a checkout leaves the pool without
+   * idle connections, so that the next request does not have to wait for the database login.
+   *
+   * @param poolBackgroundConnectionCreation
+   *          True to open connections ahead of requests
+   * @since 3.5.12
+   */
+  public void setPoolBackgroundConnectionCreation(boolean poolBackgroundConnectionCreation) {
+    this.poolBackgroundConnectionCreation = poolBackgroundConnectionCreation;
+  }
+
+  /**
+   * How often, in milliseconds, a background thread maintains the pool: it retires connections older than
+   * {@link #setPoolMaximumConnectionLifetime(int)}, evicts connections idle for longer than
+   * {@link #setPoolMaximumIdleTime(int)}, validates idle connections as configured by {@link #setPoolKeepaliveTime(int)}
+   * and opens connections until {@link #setPoolMinimumIdleConnections(int)} are idle. Maintenance is disabled when 0,
+   * which is the default.
+   *
+   * @param milliseconds
+   *          the interval between two maintenance runs
+   * @since 3.5.12
+   */
+  public void setPoolMaintenanceInterval(int milliseconds) {
+    lock.lock();
+    try {
+      this.poolMaintenanceInterval = milliseconds;
+      scheduleMaintenance();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * (Re)starts the maintenance thread, which runs every {@code poolMaintenanceInterval}, or every
+   * {@code poolLeakDetectionThreshold} when only leak detection is enabled. Must be called while holding the pool lock.
+   */
+  private void scheduleMaintenance() {
+    if (maintenanceScheduler != null) {
+      maintenanceScheduler.shutdownNow();
+      maintenanceScheduler = null;
+    }
+    int interval = poolMaintenanceInterval > 0 ? poolMaintenanceInterval : poolLeakDetectionThreshold;
+    if (interval > 0) {
+      ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "mybatis-pooled-data-source-maintenance");
+        thread.setDaemon(true);
+        return thread;
+      });
+      scheduler.scheduleWithFixedDelay(new MaintenanceTask(this, scheduler), interval, interval, TimeUnit.MILLISECONDS);
+      maintenanceScheduler = scheduler;
+    }
+  }
+
+  /**
+   * The number of idle connections the pool maintenance keeps open, bounded by the maximum numbers of idle and active
+   * connections. Only used when {@link #setPoolMaintenanceInterval(int)} is set.
+   *
+   * @param poolMinimumIdleConnections
+   *          The minimum number of idle connections
+   * @since 3.5.12
+   */
+  public void setPoolMinimumIdleConnections(int poolMinimumIdleConnections) {
+    this.poolMinimumIdleConnections = poolMinimumIdleConnections;
+  }
+
+  /**
+   * The maximum time, in milliseconds, a physical connection is kept open. Older connections are closed instead of
+   * being returned to the pool, and idle ones are retired by the pool maintenance. 0 means no limit.
+   *
+   * @param milliseconds
+   *          the maximum lifetime of a connection
+   * @since 3.5.12
+   */
+  public void setPoolMaximumConnectionLifetime(int milliseconds) {
+    this.poolMaximumConnectionLifetime = milliseconds;
+  }
+
+  /**
+   * The time, in milliseconds, after which the pool maintenance closes a connection that has not been checked out,
+   * as long as more than {@link #setPoolMinimumIdleConnections(int)} connections are idle. 0 means never.
+   *
+   * @param milliseconds
+   *          the maximum idle time of a connection
+   * @since 3.5.12
+   */
+  public void setPoolMaximumIdleTime(int milliseconds) {
+    this.poolMaximumIdleTime = milliseconds;
+  }
+
+  /**
+   * The time, in milliseconds, after which the pool maintenance validates an idle connection, with the ping query
+   * when {@link #setPoolPingEnabled(boolean)} is set and with {@link Connection#isValid(int)} otherwise. This keeps
+   * firewalls and the database from dropping idle connections and detects the ones that were. 0 means never.
+   *
+   * @param milliseconds
+   *          the time between two validations of an idle connection
+   * @since 3.5.12
+   */
+  public void setPoolKeepaliveTime(int milliseconds) {
+    this.poolKeepaliveTime = milliseconds;
+  }
+
+  /**
+   * The number of prepared and callable statements each connection keeps open for reuse after they are closed, so that
+   * later checkouts, e.g. by another {@code SqlSession}, do not prepare the same SQL again. 0, the default, disables the
+   * cache.
+   *
+   * @param poolStatementCacheSize
+   *          the maximum number of cached statements per connection
+   * @since 3.5.12
+   */
+  public void setPoolStatementCacheSize(int poolStatementCacheSize) {
+    this.poolStatementCacheSize = poolStatementCacheSize;
+  }
+
+  /**
+   * The maximum number of threads that may wait for a connection when the pool is exhausted. Further requests fail
+   * immediately with a {@link SQLTransientConnectionException} instead of queueing up behind a database that is not
+   * keeping up. 0, the default, means no limit.
+   *
+   * @param poolMaximumWaiters
+   *          the maximum number of waiting threads
+   * @since 3.5.12
+   */
+  public void setPoolMaximumWaiters(int poolMaximumWaiters) {
+    this.poolMaximumWaiters = poolMaximumWaiters;
+  }
+
+  /**
+   * The maximum time, in milliseconds, a request waits for a connection in total, across all the
+   * {@link #setPoolTimeToWait(int)} rounds. When it elapses the request gives up its place in the queue and fails with
+   * a {@link SQLTransientConnectionException}. 0, the default, means the request waits until it gets a connection.
+   *
+   * @param milliseconds
+   *          the maximum time to wait for a connection
+   * @since 3.5.12
+   */
+  public void setPoolMaximumWaitTime(int milliseconds) {
+    this.poolMaximumWaitTime = milliseconds;
+  }
+
+  /**
+   * Enables leak detection: the stack of the caller is recorded at each checkout, and a connection checked out for
+   * longer than this many milliseconds is reported by the pool maintenance with a warning showing where it was checked
+   * out, through {@link PoolListener#connectionLeaked(long, Throwable)} and in {@link PoolMetrics#getLeakSuspects()}.
+   * When {@link #setPoolMaintenanceInterval(int)} is not set, the maintenance runs at this interval. 0, the default,
+   * disables leak detection and records nothing at checkout.
+   *
+   * @param milliseconds
+   *          the checkout time after which a connection is reported as leaked
+   * @since 3.5.12
+   */
+  public void setPoolLeakDetectionThreshold(int milliseconds) {
+    lock.lock();
+    try {
+      this.poolLeakDetectionThreshold = milliseconds;
+      scheduleMaintenance();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * The number of connections {@link #warmUp()} opens, bounded by the maximum numbers of idle and active connections.
+   * When set, the pool does not report itself ready through {@link #isPoolReady()} until the warm-up completed. A
+   * {@link PooledDataSourceFactory} starts the warm-up once all the properties are set. 0, the default, disables the
+   * warm-up.
+   *
+   * @param poolWarmUpConnections
+   *          the number of connections to open at startup
+   * @since 3.5.12
+   */
+  public void setPoolWarmUpConnections(int poolWarmUpConnections) {
+    this.poolWarmUpConnections = poolWarmUpConnections;
+  }
+
+  /**
+   * Statements run on every physical connection the pool opens, before it is used, e.g. {@code SET} statements for
+   * session variables. Statements are separated by semicolons, and committed when the connection is not in auto-commit
+   * mode.
+   *
+   * @param poolConnectionInitSql
+   *          the statements to run on new connections
+   * @since 3.5.12
+   */
+  public void setPoolConnectionInitSql(String poolConnectionInitSql) {
+    this.poolConnectionInitSql = poolConnectionInitSql;
+  }
+
+  /**
+   * Registers the {@link PoolMetrics} of this data source with the platform MBean server as
+   * {@code org.apache.ibatis:type=PooledDataSource,name=<poolJmxName>}. Setting another name moves the registration,
+   * {@code null} removes it.
+   *
+   * @param poolJmxName
+   *          the name under which the pool metrics are published
+   * @since 3.5.12
+   */
+  public void setPoolJmxName(String poolJmxName) {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      if (jmxName != null && server.isRegistered(jmxName)) {
+        server.unregisterMBean(jmxName);
+      }
+      jmxName = null;
+      if (poolJmxName != null) {
+        ObjectName name = new ObjectName("org.apache.ibatis:type=PooledDataSource,name=" + ObjectName.quote(poolJmxName));
+        server.registerMBean(metrics, name);
+        jmxName = name;
+      }
+    } catch (JMException e) {
+      throw new DataSourceException("Error registering the metrics of the pool as '" + poolJmxName + "'. Cause: " + e, e);
+    }
+  }
+
   public String getDriver() {
     return dataSource.getDriver();
   }
@@ -331,6 +587,64 @@ public class PooledDataSource implements DataSource {
     return poolPingConnectionsNotUsedFor;
   }
 
+  /**
+   * Gets whether connections are opened on a background thread ahead of requests.
+   *
+   * @return true if connections are opened ahead of requests
+   * @since 3.5.12
+   */
+  public boolean isPoolBackgroundConnectionCreation() {
+    return poolBackgroundConnectionCreation;
+  }
+
+  public int getPoolMaintenanceInterval() {
+    return poolMaintenanceInterval;
+  }
+
+  public int getPoolMinimumIdleConnections() {
+    return poolMinimumIdleConnections;
+  }
+
+  public int getPoolMaximumConnectionLifetime() {
+    return poolMaximumConnectionLifetime;
+  }
+
+  public int getPoolMaximumIdleTime() {
+    return poolMaximumIdleTime;
+  }
+
+  public int getPoolKeepaliveTime() {
+    return poolKeepaliveTime;
+  }
+
+  public int getPoolStatementCacheSize() {
+    return poolStatementCacheSize;
+  }
+
+  public int getPoolMaximumWaiters() {
+    return poolMaximumWaiters;
+  }
+
+  public int getPoolMaximumWaitTime() {
+    return poolMaximumWaitTime;
+  }
+
+  public int getPoolLeakDetectionThreshold() {
+    return poolLeakDetectionThreshold;
+  }
+
+  public int getPoolWarmUpConnections() {
+    return poolWarmUpConnections;
+  }
+
+  public String getPoolConnectionInitSql() {
+    return poolConnectionInitSql;
+  }
+
+  public String getPoolJmxName() {
+    return jmxName == null ? null : ObjectName.unquote(jmxName.getKeyProperty("name"));
+  }
+
   /**
    * Closes all active and idle connections in the pool.
    */
@@ -343,11 +657,8 @@ public class PooledDataSource implements DataSource {
           PooledConnection conn = state.activeConnections.remove(i - 1);
           conn.invalidate();
 
-          Connection realConn = conn.getRealConnection();
-          if (!realConn.getAutoCommit()) {
-            realConn.rollback();
-          }
-          realConn.close();
+          conn.rollbackOpenTransaction();
+          conn.getRealConnection().close();
         } catch (Exception e) {
           // ignore
         }
@@ -357,15 +668,13 @@ public class PooledDataSource implements DataSource {
           PooledConnection conn = state.idleConnections.remove(i - 1);
           conn.invalidate();
 
-          Connection realConn = conn.getRealConnection();
-          if (!realConn.getAutoCommit()) {
-            realConn.rollback();
-          }
-          realConn.close();
+          conn.rollbackOpenTransaction();
+          conn.getRealConnection().close();
         } catch (Exception e) {
           // ignore
         }
       }
+      serveWaiters();
     } finally {
       lock.unlock();
     }
@@ -378,22 +687,183 @@ public class PooledDataSource implements DataSource {
     return state;
   }
 
-  private int assembleConnectionTypeCode(String url, String username, String password) {
+  /**
+   * Opens {@code poolWarmUpConnections} connections in parallel and adds them to the idle connections, so that the
+   * first requests do not wait for the database login. Each connection runs the {@code poolConnectionInitSql}
+   * statements and is validated like an idle connection kept alive by the pool, see {@link #setPoolKeepaliveTime(int)}.
+   * Calling this method while a warm-up runs returns the running warm-up.
+   *
+   * @return a future completed once the warmed-up connections are in the pool, or completed exceptionally when some of
+   *         them could not be opened or validated
+   * @see #isPoolReady()
+   * @since 3.5.12
+   */
+  public CompletableFuture<Void> warmUp() {
+    CompletableFuture<Void> future;
+    int count;
+    int typeCode;
+    lock.lock();
+    try {
+      if (warmUp != null && !warmUp.isDone()) {
+        return warmUp;
+      }
+      future = new CompletableFuture<>();
+      warmUp = future;
+      typeCode = expectedConnectionTypeCode;
+      count = reserveWarmUpConnections();
+    } finally {
+      lock.unlock();
+    }
+    if (count == 0) {
+      future.complete(null);
+      return future;
+    }
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(count, count, 0, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<>(), runnable -> {
+          Thread thread = new Thread(runnable, "mybatis-pooled-connection-warm-up");
+          thread.setDaemon(true);
+          return thread;
+        });
+    AtomicInteger remaining = new AtomicInteger(count);
+    AtomicInteger failed = new AtomicInteger();
+    for (int i = 0; i < count; i++) {
+      executor.execute(() -> {
+        if (!warmUpConnection(typeCode)) {
+          failed.incrementAndGet();
+        }
+        if (remaining.decrementAndGet() == 0) {
+          if (failed.get() == 0) {
+            if (log.isDebugEnabled()) {
+              log.debug("Warmed up " + count + " connections.");
+            }
+            future.complete(null);
+          } else {
+            future.completeExceptionally(new SQLException(
+                "PooledDataSource: Could not warm up " + failed.get() + " of " + count + " connections."));
+          }
+        }
+      });
+    }
+    executor.shutdown();
+    return future;
+  }
+
+  /**
+   * Tells whether the pool can serve requests without opening connections first: true once the last
+   * {@link #warmUp()} completed normally, and when {@code poolWarmUpConnections} is not set. This is meant for
+   * readiness probes.
+   *
+   * @return True if the pool is ready
+   * @since 3.5.12
+   */
+  public boolean isPoolReady() {
+    CompletableFuture<Void> future;
+    lock.lock();
+    try {
+      future = warmUp;
+    } finally {
+      lock.unlock();
+    }
+    if (future == null) {
+      return poolWarmUpConnections <= 0;
+    }
+    return future.isDone() && !future.isCompletedExceptionally();
+  }
+
+  /**
+   * Reserves the slots of the connections to open for {@link #warmUp()}. Must be called while holding the pool lock.
+   *
+   * @return the number of connections to open
+   */
+  int reserveWarmUpConnections() {
+    int target = Math.min(poolWarmUpConnections, Math.min(poolMaximumIdleConnections, poolMaximumActiveConnections));
+    int count = Math.min(target - state.idleConnections.size(),
+        poolMaximumActiveConnections - state.activeConnections.size() - state.pendingConnectionCount);
+    count = Math.max(0, count);
+    state.pendingConnectionCount += count;
+    return count;
+  }
+
+  /**
+   * Opens, validates and pools one connection reserved by {@link #reserveWarmUpConnections()}.
+   *
+   * @param typeCode
+   *          the connection type of the pool when the warm-up started
+   * @return True if the connection was added to the pool
+   */
+  boolean warmUpConnection(int typeCode) {
+    PooledConnection conn = null;
+    boolean valid = false;
+    try {
+      conn = openConnection();
+      conn.setConnectionTypeCode(typeCode);
+      valid = validateIdleConnection(conn);
+    } catch (SQLException | RuntimeException e) {
+      log.warn("Could not open a connection to warm up the pool: " + e.getMessage());
+    }
+    return offerIdleConnection(conn, valid, typeCode);
+  }
+
+  /**
+   * Gets the latency histograms, gauges and counters of this pool.
+   *
+   * @return the pool metrics
+   * @since 3.5.12
+   */
+  public PoolMetrics getPoolMetrics() {
+    return metrics;
+  }
+
+  int assembleConnectionTypeCode(String url, String username, String password) {
     return ("" + url + username + password).hashCode();
   }
 
   protected void pushConnection(PooledConnection conn) throws SQLException {
+    lock.lock();
+    try {
+      // a connection that is no longer active was claimed as overdue by another thread
+      if (!state.activeConnections.remove(conn)) {
+        discardBadConnection(conn);
+        return;
+      }
+      // the slot stays reserved while the connection is rolled back outside the pool lock, where it can no longer be
+      // claimed by another thread
+      state.pendingConnectionCount++;
+    } finally {
+      lock.unlock();
+    }
 
+    // the connection is pinged at its next checkout
+    boolean valid = conn.isReusable();
+    if (valid) {
+      try {
+        conn.rollbackOpenTransaction();
+      } catch (SQLException e) {
+        closeQuietly(conn);
+        lock.lock();
+        try {
+          state.pendingConnectionCount--;
+          discardBadConnection(conn);
+        } finally {
+          lock.unlock();
+        }
+        throw e;
+      }
+    }
+
+    PooledConnection connectionToClose = null;
     lock.lock();
     try {
-      state.activeConnections.remove(conn);
-      if (conn.isValid()) {
-        if (state.idleConnections.size() < poolMaximumIdleConnections && conn.getConnectionTypeCode() == expectedConnectionTypeCode) {
-          state.accumulatedCheckoutTime += conn.getCheckoutTime();
-          if (!conn.getRealConnection().getAutoCommit()) {
-            conn.getRealConnection().rollback();
-          }
+      state.pendingConnectionCount--;
+      if (valid) {
+        state.accumulatedCheckoutTime += conn.getCheckoutTime();
+        metrics.connectionReleased(System.nanoTime() - conn.checkoutNanoTime);
+        // a connection that a thread is waiting for is handed over even if the idle list is full
+        if ((!waiters.isEmpty() || state.idleConnections.size() < poolMaximumIdleConnections)
+            && conn.getConnectionTypeCode() == expectedConnectionTypeCode && !isRetired(conn)) {
           PooledConnection newConn = new PooledConnection(conn.getRealConnection(), this);
+          newConn.setStatementCache(conn.getStatementCache());
+          newConn.setConnectionState(conn.getConnectionState());
           state.idleConnections.add(newConn);
           newConn.setCreatedTimestamp(conn.getCreatedTimestamp());
           newConn.setLastUsedTimestamp(conn.getLastUsedTimestamp());
@@ -401,124 +871,196 @@ public class PooledDataSource implements DataSource {
           if (log.isDebugEnabled()) {
             log.debug("Returned connection " + newConn.getRealHashCode() + " to pool.");
           }
-          condition.signal();
         } else {
-          state.accumulatedCheckoutTime += conn.getCheckoutTime();
-          if (!conn.getRealConnection().getAutoCommit()) {
-            conn.getRealConnection().rollback();
-          }
-          conn.getRealConnection().close();
-          if (log.isDebugEnabled()) {
-            log.debug("Closed connection " + conn.getRealHashCode() + ".");
-          }
           conn.invalidate();
+          connectionToClose = conn;
         }
+        serveWaiters();
       } else {
-        if (log.isDebugEnabled()) {
-          log.debug("A bad connection (" + conn.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
-        }
-        state.badConnectionCount++;
+        discardBadConnection(conn);
       }
     } finally {
       lock.unlock();
     }
+
+    if (connectionToClose != null) {
+      connectionToClose.getRealConnection().close();
+      if (log.isDebugEnabled()) {
+        log.debug("Closed connection " + connectionToClose.getRealHashCode() + ".");
+      }
+    }
+  }
+
+  /**
+   * Counts a connection that could not be returned to the pool. Must be called while holding the pool lock.
+   */
+  private void discardBadConnection(PooledConnection conn) {
+    if (log.isDebugEnabled()) {
+      log.debug("A bad connection (" + conn.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
+    }
+    state.badConnectionCount++;
+    metrics.badConnection();
+    serveWaiters();
   }
 
-  private PooledConnection popConnection(String username, String password) throws SQLException {
-    boolean countedWait = false;
+  private PooledConnection popConnection(int connectionTypeCode) throws SQLException {
+    Waiter waiter = null;
     PooledConnection conn = null;
     long t = System.currentTimeMillis();
+    long startNanos = System.nanoTime();
+    long deadline = poolMaximumWaitTime > 0 ? startNanos + TimeUnit.MILLISECONDS.toNanos(poolMaximumWaitTime) : 0;
     int localBadConnectionCount = 0;
 
     while (conn == null) {
+      // only the choice of a connection (or of a slot for a new one) is made under the pool lock; opening, rolling
+      // back and validating the connection happen outside of it so that a slow database does not stall other threads
+      boolean create = false;
+      boolean handedOver = false;
+      PooledConnection overdueConnection = null;
+      PooledConnection retiredConnection = null;
       lock.lock();
       try {
-        if (!state.idleConnections.isEmpty()) {
+        if (waiter != null && waiter.isServed()) {
+          // another thread handed over a returned connection or a free slot
+          conn = waiter.connection;
+          create = conn == null;
+          handedOver = true;
+          waiter = null;
+          if (conn != null && log.isDebugEnabled()) {
+            log.debug("Checked out connection " + conn.getRealHashCode() + " handed over by the pool.");
+          }
+        } else if (waiter == null ? !waiters.isEmpty() : waiters.peek() != waiter) {
+          // threads that have been waiting longer are served first
+          waiter = await(waiter, deadline);
+        } else if (!state.idleConnections.isEmpty() && isRetired(state.idleConnections.get(0))) {
+          retiredConnection = state.idleConnections.remove(0);
+        } else if (!state.idleConnections.isEmpty()) {
           // Pool has available connection
           conn = state.idleConnections.remove(0);
+          state.pendingConnectionCount++;
           if (log.isDebugEnabled()) {
             log.debug("Checked out connection " + conn.getRealHashCode() + " from pool.");
           }
+        } else if (state.activeConnections.size() + state.pendingConnectionCount < poolMaximumActiveConnections) {
+          // Can create new connection, reserve its slot
+          state.pendingConnectionCount++;
+          create = true;
+        } else if (!state.activeConnections.isEmpty()
+            && state.activeConnections.get(0).getCheckoutTime() > poolMaximumCheckoutTime) {
+          // Can claim overdue connection
+          overdueConnection = state.activeConnections.get(0);
+          long longestCheckoutTime = overdueConnection.getCheckoutTime();
+          state.claimedOverdueConnectionCount++;
+          state.accumulatedCheckoutTimeOfOverdueConnections += longestCheckoutTime;
+          state.accumulatedCheckoutTime += longestCheckoutTime;
+          state.activeConnections.remove(overdueConnection);
+          state.pendingConnectionCount++;
+          conn = new PooledConnection(overdueConnection.getRealConnection(), this);
+          conn.setStatementCache(overdueConnection.getStatementCache());
+          conn.setConnectionState(overdueConnection.getConnectionState());
+          conn.setCreatedTimestamp(overdueConnection.getCreatedTimestamp());
+          conn.setLastUsedTimestamp(overdueConnection.getLastUsedTimestamp());
+          overdueConnection.invalidate();
+          if (log.isDebugEnabled()) {
+            log.debug("Claimed overdue connection " + conn.getRealHashCode() + ".");
+          }
         } else {
-          // Pool does not have available connection
-          if (state.activeConnections.size() < poolMaximumActiveConnections) {
-            // Can create new connection
-            conn = new PooledConnection(dataSource.getConnection(), this);
-            if (log.isDebugEnabled()) {
-              log.debug("Created connection " + conn.getRealHashCode() + ".");
-            }
-          } else {
-            // Cannot create new connection
-            PooledConnection oldestActiveConnection = state.activeConnections.get(0);
-            long longestCheckoutTime = oldestActiveConnection.getCheckoutTime();
-            if (longestCheckoutTime > poolMaximumCheckoutTime) {
-              // Can claim overdue connection
-              state.claimedOverdueConnectionCount++;
-              state.accumulatedCheckoutTimeOfOverdueConnections += longestCheckoutTime;
-              state.accumulatedCheckoutTime += longestCheckoutTime;
-              state.activeConnections.remove(oldestActiveConnection);
-              if (!oldestActiveConnection.getRealConnection().getAutoCommit()) {
-                try {
-                  oldestActiveConnection.getRealConnection().rollback();
-                } catch (SQLException e) {
-                  /*
-                     Just log a message for debug and continue to execute the following
-                     statement like nothing happened.
-                     Wrap the bad connection with a new PooledConnection, this will help
-                     to not interrupt current executing thread and give current thread a
-                     chance to join the next competition for another valid/good database
-                     connection. At the end of this loop, bad {@link @conn} will be set as null.
-                   */
-                  log.debug("Bad connection. Could not roll back");
-                }
-              }
-              conn = new PooledConnection(oldestActiveConnection.getRealConnection(), this);
-              conn.setCreatedTimestamp(oldestActiveConnection.getCreatedTimestamp());
-              conn.setLastUsedTimestamp(oldestActiveConnection.getLastUsedTimestamp());
-              oldestActiveConnection.invalidate();
-              if (log.isDebugEnabled()) {
-                log.debug("Claimed overdue connection " + conn.getRealHashCode() + ".");
-              }
-            } else {
-              // Must wait
-              try {
-                if (!countedWait) {
-                  state.hadToWaitCount++;
-                  countedWait = true;
-                }
-                if (log.isDebugEnabled()) {
-                  log.debug("Waiting as long as " + poolTimeToWait + " milliseconds for connection.");
-                }
-                long wt = System.currentTimeMillis();
-                condition.await(poolTimeToWait, TimeUnit.MILLISECONDS);
-                state.accumulatedWaitTime += System.currentTimeMillis() - wt;
-              } catch (InterruptedException e) {
-                // set interrupt flag
-                Thread.currentThread().interrupt();
-                break;
-              }
-            }
+          // Must wait
+          waiter = await(waiter, deadline);
+        }
+        if (waiter != null && (conn != null || create)) {
+          // the first waiter helped itself after its poolTimeToWait elapsed
+          waiters.remove(waiter);
+          waiter = null;
+          serveWaiters();
+        }
+      } catch (InterruptedException e) {
+        // set interrupt flag
+        Thread.currentThread().interrupt();
+        break;
+      } finally {
+        lock.unlock();
+      }
+
+      if (handedOver && conn != null && isRetired(conn)) {
+        // the slot of a retired connection is used to open a new one
+        closeQuietly(conn);
+        conn = null;
+        create = true;
+      }
+      if (retiredConnection != null) {
+        closeQuietly(retiredConnection);
+        continue;
+      }
+      if (create) {
+        try {
+          conn = openConnection();
+        } catch (SQLException | RuntimeException e) {
+          releasePendingConnection();
+          throw e;
+        }
+        if (log.isDebugEnabled()) {
+          log.debug("Created connection " + conn.getRealHashCode() + ".");
+        }
+      }
+      if (overdueConnection != null && overdueConnection.checkoutSite != null) {
+        log.warn("Claimed connection " + overdueConnection.getRealHashCode() + " after it was checked out for "
+            + overdueConnection.getCheckoutTime() + " milliseconds at:" + describeCheckoutSite(overdueConnection));
+      }
+      if (overdueConnection != null) {
+        try {
+          overdueConnection.rollbackOpenTransaction();
+        } catch (SQLException e) {
+          /*
+             Just log a message for debug and continue to execute the following
+             statement like nothing happened.
+             Wrap the bad connection with a new PooledConnection, this will help
+             to not interrupt current executing thread and give current thread a
+             chance to join the next competition for another valid/good database
+             connection. At the end of this loop, bad {@link @conn} will be set as null.
+           */
+          log.debug("Bad connection. Could not roll back");
+        }
+      }
+      if (conn != null) {
+        // ping to server and check the connection is valid or not
+        boolean valid;
+        try {
+          valid = conn.isValid();
+          if (valid) {
+            conn.rollbackOpenTransaction();
           }
+        } catch (SQLException | RuntimeException e) {
+          releasePendingConnection();
+          throw e;
         }
-        if (conn != null) {
-          // ping to server and check the connection is valid or not
-          if (conn.isValid()) {
-            if (!conn.getRealConnection().getAutoCommit()) {
-              conn.getRealConnection().rollback();
-            }
-            conn.setConnectionTypeCode(assembleConnectionTypeCode(dataSource.getUrl(), username, password));
+        if (valid && poolLeakDetectionThreshold > 0) {
+          conn.checkoutSite = new Throwable("Connection checked out");
+        }
+        lock.lock();
+        try {
+          state.pendingConnectionCount--;
+          if (valid) {
+            conn.setConnectionTypeCode(connectionTypeCode);
             conn.setCheckoutTimestamp(System.currentTimeMillis());
             conn.setLastUsedTimestamp(System.currentTimeMillis());
+            conn.checkoutNanoTime = System.nanoTime();
             state.activeConnections.add(conn);
             state.requestCount++;
             state.accumulatedRequestTime += System.currentTimeMillis() - t;
+            metrics.connectionAcquired(conn.checkoutNanoTime - startNanos);
+            if (poolBackgroundConnectionCreation) {
+              createConnectionInBackground();
+            }
           } else {
             if (log.isDebugEnabled()) {
               log.debug("A bad connection (" + conn.getRealHashCode() + ") was returned from the pool, getting another connection.");
             }
             state.badConnectionCount++;
+            metrics.badConnection();
             localBadConnectionCount++;
             conn = null;
+            serveWaiters();
             if (localBadConnectionCount > (poolMaximumIdleConnections + poolMaximumLocalBadConnectionTolerance)) {
               if (log.isDebugEnabled()) {
                 log.debug("PooledDataSource: Could not get a good connection to the database.");
@@ -526,9 +1068,9 @@ public class PooledDataSource implements DataSource {
               throw new SQLException("PooledDataSource: Could not get a good connection to the database.");
             }
           }
+        } finally {
+          lock.unlock();
         }
-      } finally {
-        lock.unlock();
       }
 
     }
@@ -543,6 +1085,363 @@ public class PooledDataSource implements DataSource {
     return conn;
   }
 
+  /**
+   * Queues the calling thread, unless it is already queued, and waits until it is handed a connection or a slot, or
+   * until {@code poolTimeToWait} elapses. Must be called while holding the pool lock.
+   */
+  private Waiter await(Waiter waiter, long deadline) throws SQLException, InterruptedException {
+    if (waiter == null) {
+      if (poolMaximumWaiters > 0 && waiters.size() >= poolMaximumWaiters) {
+        metrics.acquireRejected();
+        if (log.isDebugEnabled()) {
+          log.debug("PooledDataSource: Too many threads waiting for a connection.");
+        }
+        throw new SQLTransientConnectionException("PooledDataSource: Too many threads (" + waiters.size()
+            + ") waiting for a connection.");
+      }
+      waiter = new Waiter(lock.newCondition());
+      waiters.add(waiter);
+      state.hadToWaitCount++;
+    }
+    long timeToWait = TimeUnit.MILLISECONDS.toNanos(poolTimeToWait);
+    if (deadline != 0) {
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        leaveQueue(waiter);
+        if (log.isDebugEnabled()) {
+          log.debug("PooledDataSource: Timed out waiting for a connection.");
+        }
+        throw new SQLTransientConnectionException("PooledDataSource: Timed out after " + poolMaximumWaitTime
+            + " milliseconds waiting for a connection.");
+      }
+      timeToWait = Math.min(timeToWait, remaining);
+    }
+    if (log.isDebugEnabled()) {
+      log.debug("Waiting as long as " + TimeUnit.NANOSECONDS.toMillis(timeToWait) + " milliseconds for connection.");
+    }
+    long wt = System.currentTimeMillis();
+    metrics.waitStarted();
+    try {
+      if (waiter.condition.awaitNanos(timeToWait) <= 0 && !waiter.isServed()) {
+        metrics.acquireTimedOut();
+      }
+    } catch (InterruptedException e) {
+      leaveQueue(waiter);
+      throw e;
+    } finally {
+      metrics.waitEnded();
+      state.accumulatedWaitTime += System.currentTimeMillis() - wt;
+    }
+    return waiter;
+  }
+
+  /**
+   * Removes a thread that gives up waiting from the queue, passing on whatever it was handed in the meantime. Must be
+   * called while holding the pool lock.
+   */
+  private void leaveQueue(Waiter waiter) {
+    if (!waiters.remove(waiter) && waiter.isServed()) {
+      state.pendingConnectionCount--;
+      if (waiter.connection != null) {
+        state.idleConnections.add(0, waiter.connection);
+      }
+      serveWaiters();
+    }
+  }
+
+  /**
+   * Hands idle connections, then free slots for new connections, to the waiting threads in the order they arrived, and
+   * wakes up only the threads that were served. Must be called while holding the pool lock.
+   */
+  private void serveWaiters() {
+    Waiter waiter;
+    while ((waiter = waiters.peek()) != null) {
+      if (!state.idleConnections.isEmpty()) {
+        waiter.connection = state.idleConnections.remove(0);
+      } else if (state.activeConnections.size() + state.pendingConnectionCount < poolMaximumActiveConnections) {
+        waiter.slotReserved = true;
+      } else {
+        return;
+      }
+      waiters.poll();
+      state.pendingConnectionCount++;
+      waiter.condition.signal();
+    }
+  }
+
+  /**
+   * Opens a physical connection, recording the time it took in the pool metrics.
+   */
+  private PooledConnection openConnection() throws SQLException {
+    long start = System.nanoTime();
+    Connection realConnection = dataSource.getConnection();
+    try {
+      initializeConnection(realConnection);
+    } catch (SQLException | RuntimeException e) {
+      try {
+        realConnection.close();
+      } catch (SQLException e2) {
+        // ignore
+      }
+      throw e;
+    }
+    metrics.connectionCreated(System.nanoTime() - start);
+    return new PooledConnection(realConnection, this);
+  }
+
+  /**
+   * Runs the {@code poolConnectionInitSql} statements on a connection the pool has just opened.
+   */
+  void initializeConnection(Connection connection) throws SQLException {
+    if (poolConnectionInitSql == null) {
+      return;
+    }
+    try (Statement statement = connection.createStatement()) {
+      for (String sql : poolConnectionInitSql.split(";")) {
+        if (!sql.trim().isEmpty()) {
+          statement.execute(sql.trim());
+        }
+      }
+    }
+    if (!connection.getAutoCommit()) {
+      connection.commit();
+    }
+  }
+
+  private void releasePendingConnection() {
+    lock.lock();
+    try {
+      state.pendingConnectionCount--;
+      serveWaiters();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Opens a connection on a background thread so that the next request finds it idle. Must be called while holding the
+   * pool lock.
+   */
+  private void createConnectionInBackground() {
+    if (backgroundConnectionPending || !state.idleConnections.isEmpty()
+        || state.activeConnections.size() + state.pendingConnectionCount >= poolMaximumActiveConnections
+        || poolMaximumIdleConnections <= 0) {
+      return;
+    }
+    if (connectionCreator == null) {
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+          runnable -> {
+            Thread thread = new Thread(runnable, "mybatis-pooled-connection-creator");
+            thread.setDaemon(true);
+            return thread;
+          });
+      executor.allowCoreThreadTimeOut(true);
+      connectionCreator = executor;
+    }
+    final int typeCode = expectedConnectionTypeCode;
+    state.pendingConnectionCount++;
+    backgroundConnectionPending = true;
+    connectionCreator.execute(() -> {
+      PooledConnection created = null;
+      try {
+        created = openConnection();
+        created.setConnectionTypeCode(typeCode);
+      } catch (Exception e) {
+        log.debug("Could not create a connection in background: " + e.getMessage());
+      }
+      lock.lock();
+      try {
+        backgroundConnectionPending = false;
+      } finally {
+        lock.unlock();
+      }
+      offerIdleConnection(created, created != null, typeCode);
+    });
+  }
+
+  /**
+   * Maintains the pool in the background, see {@link #setPoolMaintenanceInterval(int)}.
+   *
+   * @since 3.5.12
+   */
+  protected void maintainPool() {
+    List<PooledConnection> retired = new ArrayList<>();
+    List<PooledConnection> keepalive = new ArrayList<>();
+    List<PooledConnection> leaked = new ArrayList<>();
+    int missing;
+    int typeCode;
+    lock.lock();
+    try {
+      typeCode = expectedConnectionTypeCode;
+      if (poolLeakDetectionThreshold > 0) {
+        for (PooledConnection conn : state.activeConnections) {
+          if (!conn.leakReported && conn.checkoutSite != null && conn.getCheckoutTime() > poolLeakDetectionThreshold) {
+            conn.leakReported = true;
+            leaked.add(conn);
+          }
+        }
+      }
+      int minimumIdle = Math.min(poolMinimumIdleConnections, poolMaximumIdleConnections);
+      // the first idle connections are the ones returned the longest time ago
+      for (Iterator<PooledConnection> it = state.idleConnections.iterator(); it.hasNext();) {
+        PooledConnection conn = it.next();
+        int idleCount = state.idleConnections.size() + keepalive.size();
+        if (isRetired(conn) || poolMaximumIdleTime > 0 && conn.getTimeElapsedSinceLastUse() > poolMaximumIdleTime
+            && idleCount > minimumIdle) {
+          it.remove();
+          retired.add(conn);
+        } else if (poolKeepaliveTime > 0
+            && System.currentTimeMillis() - conn.getLastValidatedTimestamp() > poolKeepaliveTime) {
+          it.remove();
+          keepalive.add(conn);
+        }
+      }
+      state.pendingConnectionCount += keepalive.size();
+      missing = minimumIdle - state.idleConnections.size() - keepalive.size();
+      missing = Math.max(0, Math.min(missing,
+          poolMaximumActiveConnections - state.activeConnections.size() - state.pendingConnectionCount));
+      state.pendingConnectionCount += missing;
+    } finally {
+      lock.unlock();
+    }
+
+    for (PooledConnection conn : leaked) {
+      long checkoutNanos = System.nanoTime() - conn.checkoutNanoTime;
+      log.warn("Connection " + conn.getRealHashCode() + " has been checked out for "
+          + TimeUnit.NANOSECONDS.toMillis(checkoutNanos) + " milliseconds, it may have leaked. Checked out at:"
+          + describeCheckoutSite(conn));
+      metrics.connectionLeaked(checkoutNanos, conn.checkoutSite);
+    }
+    for (PooledConnection conn : retired) {
+      if (log.isDebugEnabled()) {
+        log.debug("Retiring connection " + conn.getRealHashCode() + ".");
+      }
+      closeQuietly(conn);
+    }
+    for (PooledConnection conn : keepalive) {
+      offerIdleConnection(conn, validateIdleConnection(conn), typeCode);
+    }
+    for (int i = 0; i < missing; i++) {
+      PooledConnection created;
+      try {
+        created = openConnection();
+        created.setConnectionTypeCode(typeCode);
+      } catch (SQLException e) {
+        log.warn("Could not open an idle connection: " + e.getMessage());
+        lock.lock();
+        try {
+          state.pendingConnectionCount -= missing - i;
+          serveWaiters();
+        } finally {
+          lock.unlock();
+        }
+        break;
+      }
+      if (log.isDebugEnabled()) {
+        log.debug("Created idle connection " + created.getRealHashCode() + ".");
+      }
+      offerIdleConnection(created, true, typeCode);
+    }
+  }
+
+  /**
+   * Hands a connection opened or validated without the pool lock over to the idle list, releasing its pending slot. The
+   * connection is closed when it is not valid or no longer fits in the pool.
+   *
+   * @return True if the connection was added to the pool
+   */
+  private boolean offerIdleConnection(PooledConnection conn, boolean valid, int typeCode) {
+    boolean pooled = false;
+    lock.lock();
+    try {
+      state.pendingConnectionCount--;
+      // the pool may have been reset or filled in the meantime
+      if (valid && typeCode == expectedConnectionTypeCode
+          && (!waiters.isEmpty() || state.idleConnections.size() < poolMaximumIdleConnections)) {
+        state.idleConnections.add(conn);
+        pooled = true;
+      } else if (conn != null && !valid) {
+        state.badConnectionCount++;
+        metrics.badConnection();
+      }
+      serveWaiters();
+    } finally {
+      lock.unlock();
+    }
+    if (conn != null && !pooled) {
+      closeQuietly(conn);
+    }
+    return pooled;
+  }
+
+  boolean validateIdleConnection(PooledConnection conn) {
+    Connection realConn = conn.getRealConnection();
+    try {
+      boolean valid;
+      if (poolPingEnabled) {
+        try (Statement statement = realConn.createStatement()) {
+          statement.executeQuery(poolPingQuery).close();
+        }
+        conn.rollbackOpenTransaction();
+        valid = true;
+      } else {
+        valid = realConn.isValid(KEEPALIVE_VALIDATION_TIMEOUT_SECONDS);
+      }
+      conn.setLastValidatedTimestamp(System.currentTimeMillis());
+      return valid;
+    } catch (SQLException e) {
+      if (log.isDebugEnabled()) {
+        log.debug("Connection " + conn.getRealHashCode() + " is BAD: " + e.getMessage());
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Describes the connections reported as leaked that are still checked out.
+   */
+  List<String> getLeakSuspects() {
+    List<String> suspects = new ArrayList<>();
+    lock.lock();
+    try {
+      for (PooledConnection conn : state.activeConnections) {
+        if (conn.leakReported) {
+          suspects.add("Connection " + conn.getRealHashCode() + " checked out for " + conn.getCheckoutTime()
+              + " milliseconds at:" + describeCheckoutSite(conn));
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+    return suspects;
+  }
+
+  /**
+   * Formats the stack recorded at checkout, leaving out the frames of the pool itself.
+   */
+  private static String describeCheckoutSite(PooledConnection conn) {
+    StringBuilder builder = new StringBuilder();
+    for (StackTraceElement element : conn.checkoutSite.getStackTrace()) {
+      if (builder.length() > 0 || !element.getClassName().equals(PooledDataSource.class.getName())) {
+        builder.append("\n\tat ").append(element);
+      }
+    }
+    return builder.toString();
+  }
+
+  private boolean isRetired(PooledConnection conn) {
+    return poolMaximumConnectionLifetime > 0 && conn.getAge() > poolMaximumConnectionLifetime;
+  }
+
+  private void closeQuietly(PooledConnection conn) {
+    conn.invalidate();
+    try {
+      conn.getRealConnection().close();
+    } catch (SQLException e) {
+      // ignore
+    }
+  }
+
   /**
    * Method to check to see if a connection is still usable
    *
@@ -572,9 +1471,7 @@ public class PooledDataSource implements DataSource {
         try (Statement statement = realConn.createStatement()) {
           statement.executeQuery(poolPingQuery).close();
         }
-        if (!realConn.getAutoCommit()) {
-          realConn.rollback();
-        }
+        conn.rollbackOpenTransaction();
         result = true;
         if (log.isDebugEnabled()) {
           log.debug("Connection " + conn.getRealHashCode() + " is GOOD!");
@@ -606,7 +1503,10 @@ public class PooledDataSource implements DataSource {
     if (Proxy.isProxyClass(conn.getClass())) {
       InvocationHandler handler = Proxy.getInvocationHandler(conn);
       if (handler instanceof PooledConnection) {
-        return ((PooledConnection) handler).getRealConnection();
+        PooledConnection pooledConnection = (PooledConnection) handler;
+        // the pool can no longer tell what is done with the real connection
+        pooledConnection.getConnectionState().untrack();
+        return pooledConnection.getRealConnection();
       }
     }
     return conn;
@@ -614,6 +1514,13 @@ public class PooledDataSource implements DataSource {
 
   @Override
   protected void finalize() throws Throwable {
+    ScheduledExecutorService scheduler = maintenanceScheduler;
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+    if (jmxName != null) {
+      setPoolJmxName(null);
+    }
     forceCloseAll();
     super.finalize();
   }
@@ -633,4 +1540,52 @@ public class PooledDataSource implements DataSource {
     return Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
   }
 
+  /**
+   * A thread waiting for a connection, with its own condition so that only the thread that is served wakes up.
+   */
+  private static final class Waiter {
+
+    private final Condition condition;
+    private PooledConnection connection;
+    private boolean slotReserved;
+
+    Waiter(Condition condition) {
+      this.condition = condition;
+    }
+
+    boolean isServed() {
+      return connection != null || slotReserved;
+    }
+
+  }
+
+  /**
+   * Runs the maintenance without keeping the data source reachable, so that an abandoned pool is still finalized.
+   */
+  private static final class MaintenanceTask implements Runnable {
+
+    private final WeakReference<PooledDataSource> dataSource;
+    private final ScheduledExecutorService scheduler;
+
+    MaintenanceTask(PooledDataSource dataSource, ScheduledExecutorService scheduler) {
+      this.dataSource = new WeakReference<>(dataSource);
+      this.scheduler = scheduler;
+    }
+
+    @Override
+    public void run() {
+      PooledDataSource pooledDataSource = dataSource.get();
+      if (pooledDataSource == null) {
+        scheduler.shutdown();
+        return;
+      }
+      try {
+        pooledDataSource.maintainPool();
+      } catch (RuntimeException e) {
+        log.error("Pool maintenance failed: " + e, e);
+      }
+    }
+
+  }
+
 }
@@ -0,0 +1,328 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.reflection.ExceptionUtil;
+
+/**
+ * The prepared and callable statements of one physical connection that are not in use, kept open across checkouts of
+ * the connection so that the database does not parse and plan the same SQL again.
+ * <p>
+ * Statements are keyed by the method that created them and its arguments (the SQL, result set type, concurrency, ...).
+ * A statement taken from the cache is handed out wrapped in a logical statement whose {@code close()} closes the result
+ * sets left open and returns it to the cache, and is never shared by two logical statements. A statement whose settings
+ * cannot be restored (e.g. {@code closeOnCompletion()} or {@code setCursorName()} was called) is closed instead. The
+ * least recently used statements are closed when the cache is full.
+ *
+ * @since 3.5.12
+ */
+final class StatementCache {
+
+  private final Map<Key, PreparedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+  /**
+   * Prepares a statement through the cache.
+   *
+   * @param realConnection
+   *          the physical connection
+   * @param proxyConnection
+   *          the connection returned by the logical statements' {@code getConnection()}
+   * @param method
+   *          the {@code prepareStatement} or {@code prepareCall} method
+   * @param args
+   *          the arguments of the method
+   * @param maxSize
+   *          the maximum number of cached statements
+   * @return the logical statement
+   * @throws Throwable
+   *           if the statement could not be prepared
+   */
+  Object prepare(Connection realConnection, Connection proxyConnection, Method method, Object[] args, int maxSize)
+      throws Throwable {
+    Key key = new Key(method.getName(), args);
+    PreparedStatement statement;
+    synchronized (this) {
+      statement = statements.remove(key);
+    }
+    if (statement == null) {
+      try {
+        statement = (PreparedStatement) method.invoke(realConnection, args);
+      } catch (Throwable t) {
+        throw ExceptionUtil.unwrapThrowable(t);
+      }
+    }
+    LogicalStatement handler = new LogicalStatement(this, key, statement, proxyConnection, maxSize);
+    return Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class<?>[] { method.getReturnType() },
+        handler);
+  }
+
+  /**
+   * Gets the number of cached statements.
+   *
+   * @return the number of cached statements
+   */
+  synchronized int size() {
+    return statements.size();
+  }
+
+  private void checkIn(Key key, PreparedStatement statement, int maxSize) {
+    PreparedStatement evicted = statement;
+    synchronized (this) {
+      if (!statements.containsKey(key)) {
+        statements.put(key, statement);
+        evicted = null;
+        if (statements.size() > maxSize) {
+          Iterator<PreparedStatement> eldest = statements.values().iterator();
+          evicted = eldest.next();
+          eldest.remove();
+        }
+      }
+    }
+    if (evicted != null) {
+      closeQuietly(evicted);
+    }
+  }
+
+  private static void closeQuietly(PreparedStatement statement) {
+    try {
+      statement.close();
+    } catch (SQLException e) {
+      // ignore
+    }
+  }
+
+  private static final class Key {
+
+    private final String methodName;
+    private final Object[] args;
+    private final int hashCode;
+
+    Key(String methodName, Object[] args) {
+      this.methodName = methodName;
+      this.args = args.clone();
+      this.hashCode = 31 * methodName.hashCode() + Arrays.deepHashCode(args);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return hashCode == other.hashCode && methodName.equals(other.methodName) && Arrays.deepEquals(args, other.args);
+    }
+
+  }
+
+  private static final class LogicalStatement implements InvocationHandler {
+
+    private final StatementCache cache;
+    private final Key key;
+    private final PreparedStatement statement;
+    private final Connection proxyConnection;
+    private final int maxSize;
+    private boolean closed;
+    private boolean batched;
+    private boolean reusable = true;
+    // the result sets of the last execution, closed with the logical statement
+    private List<ResultSet> resultSets;
+    // settings changed through this logical statement, with the values to restore before caching it again
+    private Map<String, Integer> originalSettings;
+
+    LogicalStatement(StatementCache cache, Key key, PreparedStatement statement, Connection proxyConnection,
+        int maxSize) {
+      this.cache = cache;
+      this.key = key;
+      this.statement = statement;
+      this.proxyConnection = proxyConnection;
+      this.maxSize = maxSize;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      String methodName = method.getName();
+      switch (methodName) {
+        case "toString":
+          return statement.toString();
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        case "equals":
+          return proxy == args[0];
+        case "close":
+          close();
+          return null;
+        case "isClosed":
+          return closed || statement.isClosed();
+        case "getConnection":
+          checkOpen();
+          return proxyConnection;
+        case "addBatch":
+          batched = true;
+          break;
+        case "setFetchSize":
+        case "setMaxRows":
+        case "setQueryTimeout":
+        case "setFetchDirection":
+        case "setMaxFieldSize":
+          checkOpen();
+          rememberSetting(methodName);
+          break;
+        case "setLargeMaxRows":
+          checkOpen();
+          // the same limit as setMaxRows
+          rememberSetting("setMaxRows");
+          break;
+        case "closeOnCompletion":
+        case "setEscapeProcessing":
+        case "setPoolable":
+        case "setCursorName":
+          // these cannot be reset portably, so the statement is not cached again
+          reusable = false;
+          break;
+        default:
+          break;
+      }
+      checkOpen();
+      if (resultSets != null && methodName.startsWith("execute")) {
+        // executing the statement again closes the result sets of the previous execution
+        resultSets.clear();
+      }
+      Object result;
+      try {
+        result = method.invoke(statement, args);
+      } catch (Throwable t) {
+        throw ExceptionUtil.unwrapThrowable(t);
+      }
+      if (result instanceof ResultSet) {
+        if (resultSets == null) {
+          resultSets = new ArrayList<>();
+        }
+        if (!resultSets.contains(result)) {
+          resultSets.add((ResultSet) result);
+        }
+      }
+      return result;
+    }
+
+    private void checkOpen() throws SQLException {
+      if (closed) {
+        throw new SQLException("Statement is closed.");
+      }
+    }
+
+    private void rememberSetting(String setter) throws SQLException {
+      if (originalSettings == null) {
+        originalSettings = new HashMap<>();
+      } else if (originalSettings.containsKey(setter)) {
+        return;
+      }
+      originalSettings.put(setter, getSetting(setter));
+    }
+
+    private int getSetting(String setter) throws SQLException {
+      switch (setter) {
+        case "setFetchSize":
+          return statement.getFetchSize();
+        case "setMaxRows":
+          return statement.getMaxRows();
+        case "setQueryTimeout":
+          return statement.getQueryTimeout();
+        case "setFetchDirection":
+          return statement.getFetchDirection();
+        default:
+          return statement.getMaxFieldSize();
+      }
+    }
+
+    private void restoreSetting(String setter, int value) throws SQLException {
+      switch (setter) {
+        case "setFetchSize":
+          statement.setFetchSize(value);
+          break;
+        case "setMaxRows":
+          statement.setMaxRows(value);
+          break;
+        case "setQueryTimeout":
+          statement.setQueryTimeout(value);
+          break;
+        case "setFetchDirection":
+          statement.setFetchDirection(value);
+          break;
+        default:
+          statement.setMaxFieldSize(value);
+          break;
+      }
+    }
+
+    private void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      try {
+        if (resultSets != null) {
+          for (ResultSet resultSet : resultSets) {
+            resultSet.close();
+          }
+        }
+        if (!reusable) {
+          closeQuietly(statement);
+          return;
+        }
+        if (statement.isClosed()) {
+          return;
+        }
+        // leave the statement as the next user would get it from the connection
+        if (batched) {
+          statement.clearBatch();
+        }
+        statement.clearParameters();
+        statement.clearWarnings();
+        if (originalSettings != null) {
+          for (Map.Entry<String, Integer> setting : originalSettings.entrySet()) {
+            restoreSetting(setting.getKey(), setting.getValue());
+          }
+        }
+      } catch (SQLException e) {
+        closeQuietly(statement);
+        return;
+      }
+      cache.checkIn(key, statement, maxSize);
+    }
+
+  }
+
+}
@@ -0,0 +1,40 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.routing;
+
+/**
+ * How a {@link RoutingDataSource} picks the replica that serves a read.
+ *
+ * @since 3.5.12
+ */
+public enum LoadBalancing {
+
+  /**
+   * Replicas take turns.
+   */
+  ROUND_ROBIN,
+
+  /**
+   * The replica with the fewest connections checked out through the routing data source is picked.
+   */
+  LEAST_OUTSTANDING,
+
+  /**
+   * Replicas are picked at random, with a probability inversely proportional to their recent latency.
+   */
+  LATENCY_WEIGHTED
+
+}
@@ -0,0 +1,116 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.routing;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.reflection.ExceptionUtil;
+
+/**
+ * A replica of a {@link RoutingDataSource}, with the state used to balance reads and to eject it when it is unhealthy.
+ *
+ * @since 3.5.12
+ */
+class Replica {
+
+  private static final double LATENCY_SMOOTHING = 0.2;
+
+  private final DataSource dataSource;
+  private final AtomicInteger outstanding = new AtomicInteger();
+  // updated without synchronization, a lost sample does not matter for an estimate
+  private volatile long latencyNanos;
+  private volatile long ejectedUntil;
+  private volatile boolean ejected;
+
+  Replica(DataSource dataSource) {
+    this.dataSource = dataSource;
+  }
+
+  DataSource getDataSource() {
+    return dataSource;
+  }
+
+  int getOutstanding() {
+    return outstanding.get();
+  }
+
+  long getLatencyNanos() {
+    return latencyNanos;
+  }
+
+  void recordLatency(long nanos) {
+    long current = latencyNanos;
+    latencyNanos = current == 0 ? nanos : (long) (current + LATENCY_SMOOTHING * (nanos - current));
+  }
+
+  boolean isAvailable() {
+    return !ejected || System.nanoTime() - ejectedUntil >= 0;
+  }
+
+  void eject(long milliseconds) {
+    ejectedUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(milliseconds);
+    ejected = true;
+  }
+
+  void readmit() {
+    ejected = false;
+  }
+
+  /**
+   * Wraps a connection of this replica so that closing it decrements the count of outstanding connections.
+   */
+  Connection track(Connection connection) {
+    outstanding.incrementAndGet();
+    return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+        new TrackedConnection(connection));
+  }
+
+  private final class TrackedConnection implements InvocationHandler {
+
+    private final Connection connection;
+    private boolean closed;
+
+    TrackedConnection(Connection connection) {
+      this.connection = connection;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      if ("close".equals(method.getName()) && method.getParameterCount() == 0) {
+        synchronized (this) {
+          if (!closed) {
+            closed = true;
+            outstanding.decrementAndGet();
+          }
+        }
+      }
+      try {
+        return method.invoke(connection, args);
+      } catch (Throwable t) {
+        throw ExceptionUtil.unwrapThrowable(t);
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,392 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.routing;
+
+import java.io.PrintWriter;
+import java.lang.ref.WeakReference;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.executor.keygen.SelectKeyGenerator;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.mapping.StatementType;
+
+/**
+ * A data source that hands out connections to a primary database and, for reads, to its replicas.
+ * <p>
+ * {@link #getConnection()} always returns a connection to the primary. {@link #getReadConnection()} returns a
+ * connection to one of the replicas, picked as configured by {@link #setLoadBalancing(LoadBalancing)}, and falls back
+ * to the primary when no replica is available. A {@link RoutingTransaction} over this data source uses the latter for
+ * the statements that {@link #isReplicaRead(MappedStatement)} accepts, when its session is in auto-commit mode.
+ * <p>
+ * A replica that fails to hand out a connection is ejected for {@link #setReplicaEjectionTime(int)}. When
+ * {@link #setHealthCheckInterval(int)} is set, a background thread also validates the replicas, ejecting the ones that
+ * fail or respond slower than {@link #setMaximumReplicaLatency(int)} and readmitting the ones that recovered.
+ *
+ * @since 3.5.12
+ */
+public class RoutingDataSource implements DataSource {
+
+  private static final Log log = LogFactory.getLog(RoutingDataSource.class);
+
+  private DataSource primary;
+  private final List<Replica> replicas = new ArrayList<>();
+  private final AtomicInteger nextReplica = new AtomicInteger();
+  private LoadBalancing loadBalancing = LoadBalancing.ROUND_ROBIN;
+  private int healthCheckInterval;
+  private int healthCheckTimeout = 5;
+  private int maximumReplicaLatency;
+  private int replicaEjectionTime = 30000;
+  private ScheduledExecutorService healthChecker;
+
+  public RoutingDataSource() {
+  }
+
+  public RoutingDataSource(DataSource primary, List<DataSource> replicas) {
+    this.primary = primary;
+    for (DataSource replica : replicas) {
+      addReplica(replica);
+    }
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    return primary.getConnection();
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    return primary.getConnection(username, password);
+  }
+
+  /**
+   * Checks whether a statement may run on a replica. Only {@code select} statements do, except select key statements,
+   * which read a sequence or the key just generated, and callable statements, which may write.
+   *
+   * @param ms
+   *          the statement
+   * @return true if the statement only reads
+   */
+  public boolean isReplicaRead(MappedStatement ms) {
+    return ms.getSqlCommandType() == SqlCommandType.SELECT && ms.getStatementType() != StatementType.CALLABLE
+        && !ms.getId().endsWith(SelectKeyGenerator.SELECT_KEY_SUFFIX);
+  }
+
+  /**
+   * Gets a connection for reading, from a replica if one is available and from the primary otherwise.
+   *
+   * @return the connection
+   * @throws SQLException
+   *           if the primary cannot hand out a connection either
+   */
+  public Connection getReadConnection() throws SQLException {
+    for (int attempt = 0; attempt < replicas.size(); attempt++) {
+      Replica replica = selectReplica();
+      if (replica == null) {
+        break;
+      }
+      long start = System.nanoTime();
+      try {
+        Connection connection = replica.getDataSource().getConnection();
+        replica.recordLatency(System.nanoTime() - start);
+        return replica.track(connection);
+      } catch (SQLException e) {
+        log.warn("Ejecting replica " + replicas.indexOf(replica) + " for " + replicaEjectionTime
+            + " milliseconds, it failed to hand out a connection: " + e.getMessage());
+        replica.eject(replicaEjectionTime);
+      }
+    }
+    if (!replicas.isEmpty() && log.isDebugEnabled()) {
+      log.debug("No replica is available, reading from the primary.");
+    }
+    return primary.getConnection();
+  }
+
+  private Replica selectReplica() {
+    int size = replicas.size();
+    int start = Math.floorMod(nextReplica.getAndIncrement(), Math.max(size, 1));
+    Replica selected = null;
+    double totalWeight = 0;
+    for (int i = 0; i < size; i++) {
+      Replica replica = replicas.get((start + i) % size);
+      if (!replica.isAvailable()) {
+        continue;
+      }
+      switch (loadBalancing) {
+        case LEAST_OUTSTANDING:
+          if (selected == null || replica.getOutstanding() < selected.getOutstanding()) {
+            selected = replica;
+          }
+          break;
+        case LATENCY_WEIGHTED:
+          // weighted reservoir sampling: each replica wins with a probability proportional to its weight
+          double weight = 1.0 / (TimeUnit.NANOSECONDS.toMicros(replica.getLatencyNanos()) + 1);
+          totalWeight += weight;
+          if (ThreadLocalRandom.current().nextDouble() * totalWeight < weight) {
+            selected = replica;
+          }
+          break;
+        default:
+          return replica;
+      }
+    }
+    return selected;
+  }
+
+  /**
+   * Validates each replica, ejecting the ones that fail or respond too slowly and readmitting the others.
+   */
+  protected void checkReplicas() {
+    for (int i = 0; i < replicas.size(); i++) {
+      Replica replica = replicas.get(i);
+      boolean valid;
+      long latency;
+      try (Connection connection = replica.getDataSource().getConnection()) {
+        long start = System.nanoTime();
+        valid = connection.isValid(healthCheckTimeout);
+        latency = System.nanoTime() - start;
+      } catch (SQLException e) {
+        if (log.isDebugEnabled()) {
+          log.debug("Health check of replica " + i + " failed: " + e.getMessage());
+        }
+        valid = false;
+        latency = 0;
+      }
+      if (valid) {
+        replica.recordLatency(latency);
+      }
+      if (!valid || maximumReplicaLatency > 0
+          && replica.getLatencyNanos() > TimeUnit.MILLISECONDS.toNanos(maximumReplicaLatency)) {
+        if (replica.isAvailable()) {
+          log.warn("Ejecting replica " + i + ", it " + (valid ? "responds too slowly." : "is not valid."));
+        }
+        replica.eject(replicaEjectionTime);
+      } else {
+        replica.readmit();
+      }
+    }
+  }
+
+  public DataSource getPrimary() {
+    return primary;
+  }
+
+  public void setPrimary(DataSource primary) {
+    this.primary = primary;
+  }
+
+  public List<DataSource> getReplicas() {
+    List<DataSource> dataSources = new ArrayList<>();
+    for (Replica replica : replicas) {
+      dataSources.add(replica.getDataSource());
+    }
+    return Collections.unmodifiableList(dataSources);
+  }
+
+  /**
+   * Adds a replica. Replicas must be added before the data source is used.
+   *
+   * @param replica
+   *          the data source of the replica
+   */
+  public void addReplica(DataSource replica) {
+    replicas.add(new Replica(replica));
+  }
+
+  /**
+   * Gets the number of replicas currently not ejected.
+   *
+   * @return the number of available replicas
+   */
+  public int getAvailableReplicaCount() {
+    int count = 0;
+    for (Replica replica : replicas) {
+      if (replica.isAvailable()) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  public LoadBalancing getLoadBalancing() {
+    return loadBalancing;
+  }
+
+  public void setLoadBalancing(LoadBalancing loadBalancing) {
+    this.loadBalancing = loadBalancing;
+  }
+
+  public int getHealthCheckInterval() {
+    return healthCheckInterval;
+  }
+
+  /**
+   * How often, in milliseconds, a background thread validates the replicas. 0, the default, disables the health check:
+   * replicas are then only ejected when they fail to hand out a connection.
+   *
+   * @param milliseconds
+   *          the interval between two health checks
+   */
+  public synchronized void setHealthCheckInterval(int milliseconds) {
+    this.healthCheckInterval = milliseconds;
+    if (healthChecker != null) {
+      healthChecker.shutdownNow();
+      healthChecker = null;
+    }
+    if (milliseconds > 0) {
+      ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "mybatis-routing-data-source-health-check");
+        thread.setDaemon(true);
+        return thread;
+      });
+      scheduler.scheduleWithFixedDelay(new HealthCheckTask(this, scheduler), milliseconds, milliseconds,
+          TimeUnit.MILLISECONDS);
+      healthChecker = scheduler;
+    }
+  }
+
+  public int getHealthCheckTimeout() {
+    return healthCheckTimeout;
+  }
+
+  /**
+   * The time, in seconds, the health check waits for a replica to validate a connection. Default: 5.
+   *
+   * @param seconds
+   *          the validation timeout
+   */
+  public void setHealthCheckTimeout(int seconds) {
+    this.healthCheckTimeout = seconds;
+  }
+
+  public int getMaximumReplicaLatency() {
+    return maximumReplicaLatency;
+  }
+
+  /**
+   * The latency, in milliseconds, above which the health check ejects a replica. The latency is a moving average of the
+   * time the replica takes to hand out and validate connections. 0, the default, means no limit.
+   *
+   * @param milliseconds
+   *          the maximum latency
+   */
+  public void setMaximumReplicaLatency(int milliseconds) {
+    this.maximumReplicaLatency = milliseconds;
+  }
+
+  public int getReplicaEjectionTime() {
+    return replicaEjectionTime;
+  }
+
+  /**
+   * The time, in milliseconds, an ejected replica receives no reads unless the health check readmits it earlier.
+   * Default: 30000.
+   *
+   * @param milliseconds
+   *          the ejection time
+   */
+  public void setReplicaEjectionTime(int milliseconds) {
+    this.replicaEjectionTime = milliseconds;
+  }
+
+  @Override
+  public PrintWriter getLogWriter() throws SQLException {
+    return primary.getLogWriter();
+  }
+
+  @Override
+  public void setLogWriter(PrintWriter out) throws SQLException {
+    primary.setLogWriter(out);
+  }
+
+  @Override
+  public void setLoginTimeout(int seconds) throws SQLException {
+    primary.setLoginTimeout(seconds);
+  }
+
+  @Override
+  public int getLoginTimeout() throws SQLException {
+    return primary.getLoginTimeout();
+  }
+
+  @Override
+  public Logger getParentLogger() {
+    return Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+  }
+
+  @Override
+  public <T> T unwrap(Class<T> iface) throws SQLException {
+    throw new SQLException(getClass().getName() + " is not a wrapper.");
+  }
+
+  @Override
+  public boolean isWrapperFor(Class<?> iface) {
+    return false;
+  }
+
+  @Override
+  protected void finalize() throws Throwable {
+    ScheduledExecutorService scheduler = healthChecker;
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+    super.finalize();
+  }
+
+  /**
+   * Runs the health check without keeping the data source reachable.
+   */
+  private static final class HealthCheckTask implements Runnable {
+
+    private final WeakReference<RoutingDataSource> dataSource;
+    private final ScheduledExecutorService scheduler;
+
+    HealthCheckTask(RoutingDataSource dataSource, ScheduledExecutorService scheduler) {
+      this.dataSource = new WeakReference<>(dataSource);
+      this.scheduler = scheduler;
+    }
+
+    @Override
+    public void run() {
+      RoutingDataSource routingDataSource = dataSource.get();
+      if (routingDataSource == null) {
+        scheduler.shutdown();
+        return;
+      }
+      try {
+        routingDataSource.checkReplicas();
+      } catch (RuntimeException e) {
+        log.error("Replica health check failed: " + e, e);
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,118 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.routing;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.datasource.DataSourceException;
+import org.apache.ibatis.datasource.DataSourceFactory;
+import org.apache.ibatis.datasource.pooled.PooledDataSourceFactory;
+
+/**
+ * Creates a {@link RoutingDataSource} whose primary and replicas are pooled data sources.
+ * <p>
+ * Properties prefixed with {@code primary.} configure the primary, and properties prefixed with {@code replica.<n>.}
+ * the replica {@code n}, with the names accepted by {@link PooledDataSourceFactory}. Other properties of the pooled
+ * data sources, e.g. {@code driver} or {@code username}, apply to the primary and all the replicas unless they are
+ * overridden with a prefix. The remaining properties, {@code loadBalancing}, {@code healthCheckInterval},
+ * {@code healthCheckTimeout}, {@code maximumReplicaLatency} and {@code replicaEjectionTime}, configure the routing.
+ *
+ * @since 3.5.12
+ */
+public class RoutingDataSourceFactory implements DataSourceFactory {
+
+  private static final String PRIMARY_PREFIX = "primary.";
+  private static final String REPLICA_PREFIX = "replica.";
+
+  protected RoutingDataSource dataSource = new RoutingDataSource();
+
+  @Override
+  public void setProperties(Properties properties) {
+    Properties shared = new Properties();
+    Properties primary = new Properties();
+    Map<Integer, Properties> replicas = new TreeMap<>();
+    for (String name : properties.stringPropertyNames()) {
+      String value = properties.getProperty(name);
+      if (name.startsWith(PRIMARY_PREFIX)) {
+        primary.setProperty(name.substring(PRIMARY_PREFIX.length()), value);
+      } else if (name.startsWith(REPLICA_PREFIX)) {
+        int dot = name.indexOf('.', REPLICA_PREFIX.length());
+        if (dot < 0) {
+          throw new DataSourceException("Invalid replica property: " + name + ", expected replica.<n>.<property>");
+        }
+        Integer index;
+        try {
+          index = Integer.valueOf(name.substring(REPLICA_PREFIX.length(), dot));
+        } catch (NumberFormatException e) {
+          throw new DataSourceException("Invalid replica property: " + name + ", expected replica.<n>.<property>");
+        }
+        replicas.computeIfAbsent(index, k -> new Properties()).setProperty(name.substring(dot + 1), value);
+      } else if (!setRoutingProperty(name, value)) {
+        shared.setProperty(name, value);
+      }
+    }
+    dataSource.setPrimary(newPooledDataSource(shared, primary));
+    for (Properties replica : replicas.values()) {
+      dataSource.addReplica(newPooledDataSource(shared, replica));
+    }
+  }
+
+  private boolean setRoutingProperty(String name, String value) {
+    try {
+      switch (name) {
+        case "loadBalancing":
+          dataSource.setLoadBalancing(LoadBalancing.valueOf(value.toUpperCase(Locale.ENGLISH)));
+          return true;
+        case "healthCheckInterval":
+          dataSource.setHealthCheckInterval(Integer.parseInt(value));
+          return true;
+        case "healthCheckTimeout":
+          dataSource.setHealthCheckTimeout(Integer.parseInt(value));
+          return true;
+        case "maximumReplicaLatency":
+          dataSource.setMaximumReplicaLatency(Integer.parseInt(value));
+          return true;
+        case "replicaEjectionTime":
+          dataSource.setReplicaEjectionTime(Integer.parseInt(value));
+          return true;
+        default:
+          return false;
+      }
+    } catch (IllegalArgumentException e) {
+      throw new DataSourceException("Invalid value '" + value + "' for the DataSource property " + name + ". Cause: " + e, e);
+    }
+  }
+
+  private DataSource newPooledDataSource(Properties shared, Properties specific) {
+    Properties properties = new Properties();
+    properties.putAll(shared);
+    properties.putAll(specific);
+    DataSourceFactory factory = new PooledDataSourceFactory();
+    factory.setProperties(properties);
+    return factory.getDataSource();
+  }
+
+  @Override
+  public DataSource getDataSource() {
+    return dataSource;
+  }
+
+}
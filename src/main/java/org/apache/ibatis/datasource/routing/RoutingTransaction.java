@@ -0,0 +1,96 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.routing;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.TransactionIsolationLevel;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+
+/**
+ * A {@link JdbcTransaction} that runs reads on a replica of a {@link RoutingDataSource}.
+ * <p>
+ * Only a transaction in auto-commit mode uses a replica: within a transaction, a read may lock the rows it is about to
+ * update (e.g. {@code select ... for update}) or must see the rows read before. The statements accepted by
+ * {@link RoutingDataSource#isReplicaRead(MappedStatement)} then run on a replica connection opened by
+ * {@link #openReadConnection()}, unless a statement has written to the primary since the last commit or rollback, so
+ * that the session reads its own writes. All other statements run on the connection of {@link #getConnection()}.
+ *
+ * @since 3.5.12
+ */
+public class RoutingTransaction extends JdbcTransaction {
+
+  private static final Log log = LogFactory.getLog(RoutingTransaction.class);
+
+  protected Connection readConnection;
+  protected boolean writing;
+
+  public RoutingTransaction(RoutingDataSource ds, TransactionIsolationLevel desiredLevel, boolean desiredAutoCommit,
+      boolean skipSetAutoCommitOnClose) {
+    super(ds, desiredLevel, desiredAutoCommit, skipSetAutoCommitOnClose);
+  }
+
+  @Override
+  public Connection getConnection(MappedStatement ms) throws SQLException {
+    if (autoCommit && !writing && ((RoutingDataSource) dataSource).isReplicaRead(ms)) {
+      if (readConnection == null) {
+        openReadConnection();
+      }
+      return readConnection;
+    }
+    writing = true;
+    return getConnection();
+  }
+
+  @Override
+  public void commit() throws SQLException {
+    writing = false;
+    super.commit();
+  }
+
+  @Override
+  public void rollback() throws SQLException {
+    writing = false;
+    super.rollback();
+  }
+
+  @Override
+  public void close() throws SQLException {
+    if (readConnection != null) {
+      if (log.isDebugEnabled()) {
+        log.debug("Closing JDBC Connection [" + readConnection + "]");
+      }
+      readConnection.close();
+      readConnection = null;
+    }
+    super.close();
+  }
+
+  protected void openReadConnection() throws SQLException {
+    if (log.isDebugEnabled()) {
+      log.debug("Opening JDBC Connection for reading");
+    }
+    readConnection = ((RoutingDataSource) dataSource).getReadConnection();
+    if (!readConnection.getAutoCommit()) {
+      readConnection.setAutoCommit(true);
+    }
+  }
+
+}
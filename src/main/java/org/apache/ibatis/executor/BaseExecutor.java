@@ -34,6 +34,7 @@ import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.mapping.ResultMap;
 import org.apache.ibatis.mapping.StatementType;
 import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.reflection.factory.ObjectFactory;
@@ -61,6 +62,7 @@ public abstract class BaseExecutor implements Executor {
 
   protected int queryStack;
   private boolean closed;
+  private BoundSql updateBoundSql;
 
   protected BaseExecutor(Configuration configuration, Transaction transaction) {
     this.transaction = transaction;
@@ -114,9 +116,33 @@ public abstract class BaseExecutor implements Executor {
       throw new ExecutorException("Executor was closed.");
     }
     clearLocalCache();
+    updateBoundSql = null;
     return doUpdate(ms, parameter);
   }
 
+  /**
+   * Gets the SQL of the last update, so that a {@link CachingExecutor} can find the tables it writes without building
+   * the SQL again.
+   *
+   * @return the SQL of the last update, or {@code null} if {@link #doUpdate} did not report it
+   * @since 3.5.12
+   */
+  protected BoundSql getUpdateBoundSql() {
+    return updateBoundSql;
+  }
+
+  /**
+   * Reports the SQL of the running update. Implementations of {@link #doUpdate} should call it once they built the
+   * SQL; when they do not, a {@link CachingExecutor} builds it again to find the tables the update writes.
+   *
+   * @param boundSql
+   *          the SQL of the running update
+   * @since 3.5.12
+   */
+  protected void setUpdateBoundSql(BoundSql boundSql) {
+    this.updateBoundSql = boundSql;
+  }
+
   @Override
   public List<BatchResult> flushStatements() throws SQLException {
     return flushStatements(false);
@@ -132,7 +158,7 @@ public abstract class BaseExecutor implements Executor {
   @Override
   public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler) throws SQLException {
     BoundSql boundSql = ms.getBoundSql(parameter);
-    CacheKey key = createCacheKey(ms, parameter, rowBounds, boundSql);
+    CacheKey key = isLocalCacheKeyRequired(ms) ? createCacheKey(ms, parameter, rowBounds, boundSql) : CacheKey.NULL_CACHE_KEY;
     return query(ms, parameter, rowBounds, resultHandler, key, boundSql);
   }
 
@@ -301,6 +327,24 @@ public abstract class BaseExecutor implements Executor {
     StatementUtil.applyTransactionTimeout(statement, statement.getQueryTimeout(), transaction.getTimeout());
   }
 
+  /**
+   * With {@code localCacheScope=STATEMENT} the local cache is cleared as soon as the top level query ends, so the key of
+   * that query is only needed when nested queries of the same statement may look it up (e.g. circular references) or
+   * when output parameters are cached.
+   */
+  private boolean isLocalCacheKeyRequired(MappedStatement ms) {
+    if (queryStack > 0 || configuration.getLocalCacheScope() != LocalCacheScope.STATEMENT
+        || ms.getStatementType() == StatementType.CALLABLE || ms.hasNestedResultMaps()) {
+      return true;
+    }
+    for (ResultMap resultMap : ms.getResultMaps()) {
+      if (resultMap.hasNestedQueries() || resultMap.getDiscriminator() != null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   private void handleLocallyCachedOutputParameters(MappedStatement ms, CacheKey key, Object parameter, BoundSql boundSql) {
     if (ms.getStatementType() == StatementType.CALLABLE) {
       final Object cachedParameter = localOutputParameterCache.getObject(key);
@@ -334,7 +378,19 @@ public abstract class BaseExecutor implements Executor {
   }
 
   protected Connection getConnection(Log statementLog) throws SQLException {
-    Connection connection = transaction.getConnection();
+    return wrapConnection(transaction.getConnection(), statementLog);
+  }
+
+  /**
+   * Gets the connection the statement runs on, which the transaction may pick according to the statement.
+   *
+   * @since 3.5.12
+   */
+  protected Connection getConnection(MappedStatement ms) throws SQLException {
+    return wrapConnection(transaction.getConnection(ms), ms.getStatementLog());
+  }
+
+  private Connection wrapConnection(Connection connection, Log statementLog) {
     if (statementLog.isDebugEnabled()) {
       return ConnectionLogger.newInstance(connection, statementLog, queryStack);
     } else {
@@ -17,6 +17,7 @@ package org.apache.ibatis.executor;
 
 import java.sql.BatchUpdateException;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
@@ -30,6 +31,9 @@ import org.apache.ibatis.executor.keygen.NoKeyGenerator;
 import org.apache.ibatis.executor.statement.StatementHandler;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.mapping.StatementType;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
@@ -47,6 +51,15 @@ public class BatchExecutor extends BaseExecutor {
   private String currentSql;
   private MappedStatement currentStatement;
 
+  // consecutive inserts waiting to be sent as one multi-row insert (see batchInsertRowsPerStatement), and the SQL and
+  // statement of the last update, whose rows are merged only when pendingInsert is set
+  private final List<StatementHandler> pendingRows = new ArrayList<>();
+  private final List<Object> pendingParameters = new ArrayList<>();
+  private MultiRowInsert pendingInsert;
+  private String pendingSql;
+  private MappedStatement pendingStatement;
+  private int pendingRowLimit;
+
   public BatchExecutor(Configuration configuration, Transaction transaction) {
     super(configuration, transaction);
   }
@@ -56,7 +69,26 @@ public class BatchExecutor extends BaseExecutor {
     final Configuration configuration = ms.getConfiguration();
     final StatementHandler handler = configuration.newStatementHandler(this, ms, parameterObject, RowBounds.DEFAULT, null, null);
     final BoundSql boundSql = handler.getBoundSql();
+    setUpdateBoundSql(boundSql);
     final String sql = boundSql.getSql();
+    if (!(sql.equals(pendingSql) && ms.equals(pendingStatement))) {
+      flushPendingRows();
+      clearPendingRows();
+      // remembered even when the rows cannot be merged, so that the next rows are not checked again
+      pendingSql = sql;
+      pendingStatement = ms;
+      if (isMultiRowInsertCandidate(ms)) {
+        startPendingRows(sql, boundSql);
+      }
+    }
+    if (pendingInsert != null) {
+      pendingRows.add(handler);
+      pendingParameters.add(parameterObject);
+      if (pendingRows.size() >= pendingRowLimit) {
+        flushPendingRows();
+      }
+      return BATCH_UPDATE_RETURN_VALUE;
+    }
     final Statement stmt;
     if (sql.equals(currentSql) && ms.equals(currentStatement)) {
       int last = statementList.size() - 1;
@@ -66,7 +98,7 @@ public class BatchExecutor extends BaseExecutor {
       BatchResult batchResult = batchResultList.get(last);
       batchResult.addParameterObject(parameterObject);
     } else {
-      Connection connection = getConnection(ms.getStatementLog());
+      Connection connection = getConnection(ms);
       stmt = handler.prepare(connection, transaction.getTimeout());
       handler.parameterize(stmt);    // fix Issues 322
       currentSql = sql;
@@ -78,6 +110,83 @@ public class BatchExecutor extends BaseExecutor {
     return BATCH_UPDATE_RETURN_VALUE;
   }
 
+  private boolean isMultiRowInsertCandidate(MappedStatement ms) {
+    if (configuration.getBatchInsertRowsPerStatement() <= 1 || ms.getSqlCommandType() != SqlCommandType.INSERT
+        || ms.getStatementType() != StatementType.PREPARED) {
+      return false;
+    }
+    // other key generators work on the statement of a single row
+    Class<?> keyGeneratorType = ms.getKeyGenerator().getClass();
+    return NoKeyGenerator.class.equals(keyGeneratorType) || Jdbc3KeyGenerator.class.equals(keyGeneratorType);
+  }
+
+  private void startPendingRows(String sql, BoundSql boundSql) {
+    MultiRowInsert insert = MultiRowInsert.parse(sql);
+    int parameterCount = boundSql.getParameterMappings().size();
+    if (insert == null || insert.getParameterCount() != parameterCount) {
+      return;
+    }
+    int rowLimit = configuration.getBatchInsertRowsPerStatement();
+    int maxParameters = configuration.getBatchInsertMaxParameters();
+    if (maxParameters > 0 && parameterCount > 0) {
+      rowLimit = Math.min(rowLimit, Math.max(1, maxParameters / parameterCount));
+    }
+    pendingInsert = insert;
+    pendingRowLimit = rowLimit;
+  }
+
+  private void flushPendingRows() throws SQLException {
+    if (pendingRows.isEmpty()) {
+      return;
+    }
+    try {
+      final MappedStatement ms = pendingStatement;
+      final int rows = pendingRows.size();
+      final String sql = pendingInsert.sql(rows);
+      final List<ParameterMapping> rowMappings = pendingRows.get(0).getBoundSql().getParameterMappings();
+      final List<ParameterMapping> parameterMappings = new ArrayList<>(rowMappings.size() * rows);
+      for (int i = 0; i < rows; i++) {
+        parameterMappings.addAll(rowMappings);
+      }
+      final BoundSql boundSql = new BoundSql(configuration, sql, parameterMappings, pendingParameters.get(0));
+      final StatementHandler handler = configuration.newStatementHandler(this, ms, pendingParameters.get(0),
+          RowBounds.DEFAULT, null, boundSql);
+      final Statement stmt;
+      final BatchResult batchResult;
+      if (sql.equals(currentSql) && ms.equals(currentStatement)) {
+        int last = statementList.size() - 1;
+        stmt = statementList.get(last);
+        applyTransactionTimeout(stmt);
+        batchResult = batchResultList.get(last);
+      } else {
+        Connection connection = getConnection(ms);
+        stmt = handler.prepare(connection, transaction.getTimeout());
+        currentSql = sql;
+        currentStatement = ms;
+        statementList.add(stmt);
+        batchResult = new BatchResult(ms, sql);
+        batchResultList.add(batchResult);
+      }
+      for (int i = 0; i < rows; i++) {
+        // each row binds its own values, shifted behind the parameters of the preceding rows
+        pendingRows.get(i).parameterize(MultiRowInsert.shiftParameters((PreparedStatement) stmt, i * rowMappings.size()));
+        batchResult.addParameterObject(pendingParameters.get(i));
+      }
+      handler.batch(stmt);
+    } finally {
+      pendingRows.clear();
+      pendingParameters.clear();
+    }
+  }
+
+  private void clearPendingRows() {
+    pendingRows.clear();
+    pendingParameters.clear();
+    pendingInsert = null;
+    pendingSql = null;
+    pendingStatement = null;
+  }
+
   @Override
   public <E> List<E> doQuery(MappedStatement ms, Object parameterObject, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql)
       throws SQLException {
@@ -86,7 +195,7 @@ public class BatchExecutor extends BaseExecutor {
       flushStatements();
       Configuration configuration = ms.getConfiguration();
       StatementHandler handler = configuration.newStatementHandler(wrapper, ms, parameterObject, rowBounds, resultHandler, boundSql);
-      Connection connection = getConnection(ms.getStatementLog());
+      Connection connection = getConnection(ms);
       stmt = handler.prepare(connection, transaction.getTimeout());
       handler.parameterize(stmt);
       return handler.query(stmt, resultHandler);
@@ -100,7 +209,7 @@ public class BatchExecutor extends BaseExecutor {
     flushStatements();
     Configuration configuration = ms.getConfiguration();
     StatementHandler handler = configuration.newStatementHandler(wrapper, ms, parameter, rowBounds, null, boundSql);
-    Connection connection = getConnection(ms.getStatementLog());
+    Connection connection = getConnection(ms);
     Statement stmt = handler.prepare(connection, transaction.getTimeout());
     handler.parameterize(stmt);
     Cursor<E> cursor = handler.queryCursor(stmt);
@@ -115,6 +224,7 @@ public class BatchExecutor extends BaseExecutor {
       if (isRollback) {
         return Collections.emptyList();
       }
+      flushPendingRows();
       for (int i = 0, n = statementList.size(); i < n; i++) {
         Statement stmt = statementList.get(i);
         applyTransactionTimeout(stmt);
@@ -156,6 +266,7 @@ public class BatchExecutor extends BaseExecutor {
         closeStatement(stmt);
       }
       currentSql = null;
+      clearPendingRows();
       statementList.clear();
       batchResultList.clear();
     }
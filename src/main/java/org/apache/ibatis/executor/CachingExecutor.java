@@ -17,17 +17,27 @@ package org.apache.ibatis.executor;
 
 import java.sql.SQLException;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cache.CacheMetrics;
+import org.apache.ibatis.cache.TableVersions;
 import org.apache.ibatis.cache.TransactionalCacheManager;
+import org.apache.ibatis.cache.decorators.BlockingCache;
+import org.apache.ibatis.cache.decorators.TableDependencyCache;
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.Environment;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.mapping.SqlCommandType;
 import org.apache.ibatis.mapping.StatementType;
+import org.apache.ibatis.plugin.Interceptor;
 import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.transaction.Transaction;
@@ -38,11 +48,34 @@ import org.apache.ibatis.transaction.Transaction;
  */
 public class CachingExecutor implements Executor {
 
+  private static final String[] ANY_TABLE = { TableVersions.ANY_TABLE };
+
   private final Executor delegate;
-  private final TransactionalCacheManager tcm = new TransactionalCacheManager();
+  private final TransactionalCacheManager tcm;
+  private final TableVersions tableVersions;
+  private final boolean tableInvalidation;
+  // whether this transaction may have written data, which loads outside of it would not see
+  private boolean dirty;
 
   public CachingExecutor(Executor delegate) {
+    this(delegate, null);
+  }
+
+  /**
+   * Creates an executor that invalidates cached entries by the tables they are read from.
+   *
+   * @param delegate
+   *          the executor
+   * @param tableVersions
+   *          the table versions of the configuration, or {@code null} to flush the cache of the namespace
+   * @see org.apache.ibatis.session.CacheInvalidation#TABLE
+   * @since 3.5.12
+   */
+  public CachingExecutor(Executor delegate, TableVersions tableVersions) {
     this.delegate = delegate;
+    this.tcm = new TransactionalCacheManager(tableVersions);
+    this.tableVersions = tableVersions;
+    this.tableInvalidation = tableVersions != null;
     delegate.setExecutorWrapper(this);
   }
 
@@ -72,8 +105,25 @@ public class CachingExecutor implements Executor {
 
   @Override
   public int update(MappedStatement ms, Object parameterObject) throws SQLException {
-    flushCacheIfRequired(ms);
-    return delegate.update(ms, parameterObject);
+    dirty = true;
+    if (!tableInvalidation || !ms.isFlushCacheRequired() || ms.getSqlCommandType() == SqlCommandType.SELECT) {
+      flushCacheIfRequired(ms);
+      return delegate.update(ms, parameterObject);
+    }
+    boolean updated = false;
+    try {
+      int count = delegate.update(ms, parameterObject);
+      updated = true;
+      return count;
+    } finally {
+      if (updated) {
+        // after the update, whose SQL is then built
+        invalidateWrittenTables(ms, parameterObject);
+      } else {
+        // the update failed, possibly before its SQL was built
+        flushCacheIfRequired(ms);
+      }
+    }
   }
 
   @Override
@@ -84,6 +134,10 @@ public class CachingExecutor implements Executor {
 
   @Override
   public <E> List<E> query(MappedStatement ms, Object parameterObject, RowBounds rowBounds, ResultHandler resultHandler) throws SQLException {
+    if (ms.getCache() == null) {
+      // no second level cache, let the delegate decide whether it needs a key at all
+      return delegate.query(ms, parameterObject, rowBounds, resultHandler);
+    }
     BoundSql boundSql = ms.getBoundSql(parameterObject);
     CacheKey key = createCacheKey(ms, parameterObject, rowBounds, boundSql);
     return query(ms, parameterObject, rowBounds, resultHandler, key, boundSql);
@@ -97,10 +151,16 @@ public class CachingExecutor implements Executor {
       flushCacheIfRequired(ms);
       if (ms.isUseCache() && resultHandler == null) {
         ensureNoOutParams(ms, boundSql);
+        if (!dirty && cache instanceof BlockingCache && ((BlockingCache) cache).isLoading()) {
+          return queryLoading(ms, parameterObject, rowBounds, key, boundSql, (BlockingCache) cache);
+        }
         @SuppressWarnings("unchecked")
-        List<E> list = (List<E>) tcm.getObject(cache, key);
+        List<E> list = (List<E>) (tableInvalidation ? tcm.getObject(cache, key, () -> getReadTables(ms, boundSql))
+            : tcm.getObject(cache, key));
         if (list == null) {
+          long start = System.nanoTime();
           list = delegate.query(ms, parameterObject, rowBounds, resultHandler, key, boundSql);
+          recordLoad(ms, cache, start);
           tcm.putObject(cache, key, list); // issue #578 and #116
         }
         return list;
@@ -118,6 +178,7 @@ public class CachingExecutor implements Executor {
   public void commit(boolean required) throws SQLException {
     delegate.commit(required);
     tcm.commit();
+    dirty = false;
   }
 
   @Override
@@ -127,10 +188,76 @@ public class CachingExecutor implements Executor {
     } finally {
       if (required) {
         tcm.rollback();
+        dirty = false;
       }
     }
   }
 
+  /**
+   * Gets a result from a cache in loading mode, whose misses are shared by the sessions and put as soon as they are
+   * loaded, so that a session waits for a load no longer than the query takes. A miss is loaded by the session, with
+   * its own connection and transaction. A refresh runs in the background, after the session may be closed, so it uses
+   * a connection of the environment for the time of the query; the session does not wait for it.
+   */
+  private <E> List<E> queryLoading(MappedStatement ms, Object parameterObject, RowBounds rowBounds, CacheKey key,
+      BoundSql boundSql, BlockingCache cache) throws SQLException {
+    Object[] loaded = new Object[1];
+    Configuration configuration = ms.getConfiguration();
+    Callable<Object> refresher = configuration.getEnvironment() == null ? null : () -> {
+      Executor executor = newRefreshExecutor(configuration);
+      try {
+        return load(ms, parameterObject, rowBounds, key, boundSql, cache, executor, new Object[1]);
+      } finally {
+        executor.close(false);
+      }
+    };
+    Object value;
+    try {
+      value = cache.getObject(key, () -> load(ms, parameterObject, rowBounds, key, boundSql, cache, delegate, loaded),
+          refresher, configuration.getAsyncExecutor());
+    } catch (SQLException | RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new ExecutorException("Error loading the cache " + cache.getId() + ".  Cause: " + e, e);
+    }
+    @SuppressWarnings("unchecked")
+    List<E> list = (List<E>) (value == null ? loaded[0] : value);
+    return list;
+  }
+
+  private Object load(MappedStatement ms, Object parameterObject, RowBounds rowBounds, CacheKey key,
+      BoundSql boundSql, Cache cache, Executor executor, Object[] loaded) throws SQLException {
+    String[] tables = null;
+    long[] versions = null;
+    if (tableInvalidation) {
+      // the versions read before the query, so that a write during the query makes the result stale
+      tables = getReadTables(ms, boundSql);
+      versions = tableVersions.getVersions(tables);
+    }
+    long start = System.nanoTime();
+    List<Object> list = executor.query(ms, parameterObject, rowBounds, Executor.NO_RESULT_HANDLER, key, boundSql);
+    recordLoad(ms, cache, start);
+    loaded[0] = list;
+    return tableInvalidation ? new TableDependencyCache.Entry(tables, versions, list) : list;
+  }
+
+  private static Executor newRefreshExecutor(Configuration configuration) {
+    Environment environment = configuration.getEnvironment();
+    Transaction tx = environment.getTransactionFactory().newTransaction(environment.getDataSource(), null, true);
+    Executor executor = new SimpleExecutor(configuration, tx);
+    for (Interceptor interceptor : configuration.getInterceptors()) {
+      executor = (Executor) interceptor.plugin(executor);
+    }
+    return executor;
+  }
+
+  private void recordLoad(MappedStatement ms, Cache cache, long start) {
+    CacheMetrics metrics = ms.getConfiguration().getCacheMetrics(cache.getId());
+    if (metrics != null) {
+      metrics.loaded(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+    }
+  }
+
   private void ensureNoOutParams(MappedStatement ms, BoundSql boundSql) {
     if (ms.getStatementType() == StatementType.CALLABLE) {
       for (ParameterMapping parameterMapping : boundSql.getParameterMappings()) {
@@ -161,10 +288,40 @@ public class CachingExecutor implements Executor {
     delegate.clearLocalCache();
   }
 
+  private String[] getReadTables(MappedStatement ms, BoundSql boundSql) {
+    if (ms.getReadTables() == null && ms.getStatementType() == StatementType.CALLABLE) {
+      return ANY_TABLE;
+    }
+    return ms.findReadTables(boundSql.getSql());
+  }
+
+  /**
+   * Invalidates the tables an update wrote: the declared ones, or the ones found in its SQL. The SQL is the one the
+   * delegate reported through {@link BaseExecutor#setUpdateBoundSql}, or is built again for the delegates that do not
+   * report it. The whole namespace is flushed instead when the tables cannot be found, e.g. for a callable statement.
+   */
+  private void invalidateWrittenTables(MappedStatement ms, Object parameterObject) {
+    String[] tables = ms.getWriteTables();
+    if (tables == null && ms.getStatementType() != StatementType.CALLABLE) {
+      BoundSql boundSql = delegate instanceof BaseExecutor ? ((BaseExecutor) delegate).getUpdateBoundSql() : null;
+      if (boundSql == null) {
+        boundSql = ms.getBoundSql(parameterObject);
+      }
+      tables = ms.findWriteTables(boundSql.getSql());
+    }
+    if (tables == null) {
+      // the written tables are unknown
+      flushCacheIfRequired(ms);
+    } else {
+      tcm.invalidate(tables);
+    }
+  }
+
   private void flushCacheIfRequired(MappedStatement ms) {
     Cache cache = ms.getCache();
     if (cache != null && ms.isFlushCacheRequired()) {
       tcm.clear(cache);
+      dirty = true;
     }
   }
 
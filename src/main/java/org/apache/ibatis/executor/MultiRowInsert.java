@@ -0,0 +1,183 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+
+import org.apache.ibatis.reflection.ExceptionUtil;
+
+/**
+ * The {@code INSERT ... VALUES (...)} shape of a statement, split around its single row of values so that several rows
+ * can be sent in one {@code INSERT ... VALUES (...), (...)} statement.
+ *
+ * @since 3.5.12
+ */
+final class MultiRowInsert {
+
+  private final String prefix;
+  private final String row;
+  private final String suffix;
+  private final int parameterCount;
+
+  private MultiRowInsert(String prefix, String row, String suffix, int parameterCount) {
+    this.prefix = prefix;
+    this.row = row;
+    this.suffix = suffix;
+    this.parameterCount = parameterCount;
+  }
+
+  /**
+   * Splits an insert statement around its row of values.
+   *
+   * @param sql
+   *          the SQL of an insert statement
+   * @return the multi-row form, or {@code null} when the statement has no single {@code VALUES (...)} row holding all of
+   *         its parameters (e.g. {@code INSERT ... SELECT} or a statement that already inserts several rows)
+   */
+  static MultiRowInsert parse(String sql) {
+    int length = sql.length();
+    int rowStart = -1;
+    int rowEnd = -1;
+    int depth = 0;
+    int parameters = 0;
+    for (int i = 0; i < length; i++) {
+      char c = sql.charAt(i);
+      if (c == '\'' || c == '"' || c == '`') {
+        i = skipQuoted(sql, i, c);
+        if (i < 0) {
+          return null;
+        }
+      } else if (c == '(') {
+        if (depth == 0 && rowStart < 0 && isValuesKeywordBefore(sql, i)) {
+          rowStart = i;
+        }
+        depth++;
+      } else if (c == ')') {
+        depth--;
+        if (depth == 0 && rowStart >= 0 && rowEnd < 0) {
+          rowEnd = i + 1;
+        }
+      } else if (c == '?') {
+        if (rowStart < 0 || rowEnd >= 0) {
+          // parameters outside the row would be shifted by the added rows
+          return null;
+        }
+        parameters++;
+      } else if (c == ',' && depth == 0 && rowEnd >= 0 && sql.substring(rowEnd, i).trim().isEmpty()) {
+        return null;
+      }
+    }
+    if (rowStart < 0 || rowEnd < 0 || depth != 0) {
+      return null;
+    }
+    return new MultiRowInsert(sql.substring(0, rowStart), sql.substring(rowStart, rowEnd), sql.substring(rowEnd), parameters);
+  }
+
+  private static int skipQuoted(String sql, int start, char quote) {
+    for (int i = start + 1; i < sql.length(); i++) {
+      if (sql.charAt(i) == quote) {
+        if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+          i++;
+        } else {
+          return i;
+        }
+      }
+    }
+    return -1;
+  }
+
+  private static boolean isValuesKeywordBefore(String sql, int parenthesis) {
+    int end = parenthesis;
+    while (end > 0 && Character.isWhitespace(sql.charAt(end - 1))) {
+      end--;
+    }
+    int start = end - "VALUES".length();
+    return start > 0 && sql.regionMatches(true, start, "VALUES", 0, "VALUES".length())
+        && !Character.isJavaIdentifierPart(sql.charAt(start - 1));
+  }
+
+  /**
+   * Gets the number of parameters of one row.
+   *
+   * @return the number of parameters of one row
+   */
+  int getParameterCount() {
+    return parameterCount;
+  }
+
+  /**
+   * Builds the statement inserting the given number of rows.
+   *
+   * @param rows
+   *          the number of rows
+   * @return the SQL
+   */
+  String sql(int rows) {
+    StringBuilder sql = new StringBuilder(prefix.length() + suffix.length() + rows * (row.length() + 2));
+    sql.append(prefix).append(row);
+    for (int i = 1; i < rows; i++) {
+      sql.append(", ").append(row);
+    }
+    return sql.append(suffix).toString();
+  }
+
+  /**
+   * Wraps a statement so that parameter indexes set through it are shifted, letting a parameter handler bind the values
+   * of one row at that row's position.
+   *
+   * @param statement
+   *          the multi-row statement
+   * @param offset
+   *          the number of parameters of the preceding rows
+   * @return the wrapped statement
+   */
+  static PreparedStatement shiftParameters(PreparedStatement statement, int offset) {
+    if (offset == 0) {
+      return statement;
+    }
+    InvocationHandler handler = new ParameterShifter(statement, offset);
+    return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+        new Class<?>[] { PreparedStatement.class }, handler);
+  }
+
+  private static final class ParameterShifter implements InvocationHandler {
+
+    private final PreparedStatement statement;
+    private final int offset;
+
+    ParameterShifter(PreparedStatement statement, int offset) {
+      this.statement = statement;
+      this.offset = offset;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      if (args != null && args.length > 1 && args[0] instanceof Integer && method.getName().startsWith("set")) {
+        args[0] = (Integer) args[0] + offset;
+      }
+      try {
+        return method.invoke(statement, args);
+      } catch (Throwable t) {
+        throw ExceptionUtil.unwrapThrowable(t);
+      }
+    }
+
+  }
+
+}
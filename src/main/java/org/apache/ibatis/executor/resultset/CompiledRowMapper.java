@@ -0,0 +1,164 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.apache.ibatis.reflection.ExceptionUtil;
+import org.apache.ibatis.reflection.Reflector;
+import org.apache.ibatis.reflection.ReflectionException;
+import org.apache.ibatis.reflection.factory.ObjectFactory;
+import org.apache.ibatis.reflection.invoker.Invoker;
+import org.apache.ibatis.reflection.invoker.MethodInvoker;
+import org.apache.ibatis.reflection.invoker.SetFieldInvoker;
+import org.apache.ibatis.type.TypeHandler;
+
+/**
+ * Maps a row of a flat result map for one fixed column layout. Values are read by column index with the type handlers
+ * resolved at compile time and assigned through {@link MethodHandle}s, so no {@code MetaObject}, property tokenizing or
+ * column name lookup happens per row.
+ *
+ * @see CompiledRowMappers
+ */
+final class CompiledRowMapper {
+
+  /**
+   * Marks a result map and column layout that must be mapped by {@link DefaultResultSetHandler} itself.
+   */
+  static final CompiledRowMapper UNSUPPORTED = new CompiledRowMapper(null, null, new Column[0], false);
+
+  private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+  private final Class<?> type;
+  private final ObjectFactory objectFactory;
+  private final Column[] columns;
+  private final boolean returnInstanceForEmptyRow;
+
+  CompiledRowMapper(Class<?> type, ObjectFactory objectFactory, Column[] columns, boolean returnInstanceForEmptyRow) {
+    this.type = type;
+    this.objectFactory = objectFactory;
+    this.columns = columns;
+    this.returnInstanceForEmptyRow = returnInstanceForEmptyRow;
+  }
+
+  Object map(ResultSet rs) throws SQLException {
+    Object rowValue = objectFactory.create(type);
+    boolean foundValues = false;
+    for (Column column : columns) {
+      Object value = column.typeHandler.getResult(rs, column.index);
+      if (value != null) {
+        foundValues = true;
+        column.set(rowValue, value);
+      } else if (column.callSetterOnNull) {
+        column.set(rowValue, null);
+      }
+    }
+    return foundValues || returnInstanceForEmptyRow ? rowValue : null;
+  }
+
+  /**
+   * Creates a column assignment for a simple property.
+   *
+   * @param reflector
+   *          the reflector of the result type
+   * @param property
+   *          the property to assign
+   * @param index
+   *          the column index, starting at 1
+   * @param typeHandler
+   *          the type handler reading the column
+   * @param callSettersOnNulls
+   *          whether nulls should be assigned to non primitive properties
+   * @return the column assignment
+   */
+  static Column column(Reflector reflector, String property, int index, TypeHandler<?> typeHandler,
+      boolean callSettersOnNulls) {
+    Invoker invoker = reflector.getSetInvoker(property);
+    boolean primitive = reflector.getSetterType(property).isPrimitive();
+    return new Column(property, index, typeHandler, setterHandle(invoker), invoker, callSettersOnNulls && !primitive);
+  }
+
+  private static MethodHandle setterHandle(Invoker invoker) {
+    try {
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      // subclasses such as AmbiguousMethodInvoker must keep their own behavior
+      if (invoker.getClass() == MethodInvoker.class) {
+        Method method = ((MethodInvoker) invoker).getMethod();
+        makeAccessible(method);
+        return lookup.unreflect(method).asType(SETTER_TYPE);
+      } else if (invoker.getClass() == SetFieldInvoker.class) {
+        Field field = ((SetFieldInvoker) invoker).getField();
+        makeAccessible(field);
+        return lookup.unreflectSetter(field).asType(SETTER_TYPE);
+      }
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      // fall back to the invoker
+    }
+    return null;
+  }
+
+  private static void makeAccessible(AccessibleObject member) {
+    if (Reflector.canControlMemberAccessible()) {
+      member.setAccessible(true);
+    }
+  }
+
+  static final class Column {
+
+    private final String property;
+    private final int index;
+    private final TypeHandler<?> typeHandler;
+    private final MethodHandle setter;
+    private final Invoker invoker;
+    private final boolean callSetterOnNull;
+
+    private Column(String property, int index, TypeHandler<?> typeHandler, MethodHandle setter, Invoker invoker,
+        boolean callSetterOnNull) {
+      this.property = property;
+      this.index = index;
+      this.typeHandler = typeHandler;
+      this.setter = setter;
+      this.invoker = invoker;
+      this.callSetterOnNull = callSetterOnNull;
+    }
+
+    void set(Object target, Object value) {
+      try {
+        if (setter != null) {
+          setter.invokeExact(target, value);
+        } else {
+          try {
+            invoker.invoke(target, new Object[] { value });
+          } catch (Throwable t) {
+            throw ExceptionUtil.unwrapThrowable(t);
+          }
+        }
+      } catch (Throwable t) {
+        throw new ReflectionException("Could not set property '" + property + "' of '" + target.getClass()
+            + "' with value '" + value + "' Cause: " + t.toString(), t);
+      }
+    }
+
+  }
+
+}
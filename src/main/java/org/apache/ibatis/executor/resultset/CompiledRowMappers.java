@@ -0,0 +1,100 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.type.JdbcType;
+
+/**
+ * Row mappers compiled for each pair of result map and result set column layout, shared by all statements of a
+ * configuration. Only used when the {@code compiledRowMapping} setting is enabled.
+ *
+ * @since 3.5.12
+ */
+public class CompiledRowMappers {
+
+  private static final int MAX_LAYOUTS = 4096;
+
+  private final Map<Layout, CompiledRowMapper> mappers = new ConcurrentHashMap<>();
+
+  CompiledRowMapper get(ResultMap resultMap, ResultSetWrapper rsw) {
+    return mappers.get(new Layout(resultMap, rsw));
+  }
+
+  void put(ResultMap resultMap, ResultSetWrapper rsw, CompiledRowMapper mapper) {
+    if (mappers.size() < MAX_LAYOUTS) {
+      mappers.putIfAbsent(new Layout(resultMap, rsw), mapper);
+    }
+  }
+
+  /**
+   * Drops all compiled mappers.
+   */
+  public void clear() {
+    mappers.clear();
+  }
+
+  /**
+   * Gets the number of compiled column layouts.
+   *
+   * @return the number of compiled column layouts
+   */
+  public int size() {
+    return mappers.size();
+  }
+
+  private static final class Layout {
+
+    private final ResultMap resultMap;
+    private final List<String> columnNames;
+    private final List<String> classNames;
+    private final List<JdbcType> jdbcTypes;
+    private final int hashCode;
+
+    Layout(ResultMap resultMap, ResultSetWrapper rsw) {
+      this.resultMap = resultMap;
+      this.columnNames = rsw.getColumnNames();
+      this.classNames = rsw.getClassNames();
+      this.jdbcTypes = rsw.getJdbcTypes();
+      this.hashCode = 31 * (31 * (31 * System.identityHashCode(resultMap) + columnNames.hashCode()) + classNames.hashCode())
+          + jdbcTypes.hashCode();
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Layout)) {
+        return false;
+      }
+      Layout other = (Layout) obj;
+      return resultMap == other.resultMap && hashCode == other.hashCode && columnNames.equals(other.columnNames)
+          && classNames.equals(other.classNames) && jdbcTypes.equals(other.jdbcTypes);
+    }
+
+  }
+
+}
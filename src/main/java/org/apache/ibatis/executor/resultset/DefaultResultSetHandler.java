@@ -24,6 +24,7 @@ import java.sql.Statement;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -56,8 +57,10 @@ import org.apache.ibatis.mapping.ResultMap;
 import org.apache.ibatis.mapping.ResultMapping;
 import org.apache.ibatis.reflection.MetaClass;
 import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.Reflector;
 import org.apache.ibatis.reflection.ReflectorFactory;
 import org.apache.ibatis.reflection.factory.ObjectFactory;
+import org.apache.ibatis.reflection.wrapper.BeanWrapper;
 import org.apache.ibatis.session.AutoMappingBehavior;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultContext;
@@ -355,10 +358,16 @@ public class DefaultResultSetHandler implements ResultSetHandler {
       throws SQLException {
     DefaultResultContext<Object> resultContext = new DefaultResultContext<>();
     ResultSet resultSet = rsw.getResultSet();
+    CompiledRowMapper compiledRowMapper = getCompiledRowMapper(rsw, resultMap);
     skipRows(resultSet, rowBounds);
     while (shouldProcessMoreRows(resultContext, rowBounds) && !resultSet.isClosed() && resultSet.next()) {
-      ResultMap discriminatedResultMap = resolveDiscriminatedResultMap(resultSet, resultMap, null);
-      Object rowValue = getRowValue(rsw, discriminatedResultMap, null);
+      Object rowValue;
+      if (compiledRowMapper != null) {
+        rowValue = compiledRowMapper.map(resultSet);
+      } else {
+        ResultMap discriminatedResultMap = resolveDiscriminatedResultMap(resultSet, resultMap, null);
+        rowValue = getRowValue(rsw, discriminatedResultMap, null);
+      }
       storeObject(resultHandler, resultContext, rowValue, parentMapping, resultSet);
     }
   }
@@ -395,6 +404,77 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     }
   }
 
+  //
+  // COMPILED ROW MAPPER FOR SIMPLE RESULT MAP
+  //
+
+  private CompiledRowMapper getCompiledRowMapper(ResultSetWrapper rsw, ResultMap resultMap) throws SQLException {
+    if (!configuration.isCompiledRowMapping() || resultMap.getDiscriminator() != null) {
+      return null;
+    }
+    CompiledRowMappers compiledRowMappers = configuration.getCompiledRowMappers();
+    CompiledRowMapper compiledRowMapper = compiledRowMappers.get(resultMap, rsw);
+    if (compiledRowMapper == null) {
+      compiledRowMapper = compileRowMapper(rsw, resultMap);
+      compiledRowMappers.put(resultMap, rsw, compiledRowMapper);
+    }
+    return compiledRowMapper == CompiledRowMapper.UNSUPPORTED ? null : compiledRowMapper;
+  }
+
+  private CompiledRowMapper compileRowMapper(ResultSetWrapper rsw, ResultMap resultMap) throws SQLException {
+    final Class<?> resultType = resultMap.getType();
+    if (hasTypeHandlerForResultObject(rsw, resultType) || resultMap.hasNestedResultMaps() || resultMap.hasNestedQueries()
+        || !resultMap.getConstructorResultMappings().isEmpty() || resultType.isInterface()
+        || Map.class.isAssignableFrom(resultType) || Collection.class.isAssignableFrom(resultType)
+        || !MetaClass.forClass(resultType, reflectorFactory).hasDefaultConstructor()) {
+      return CompiledRowMapper.UNSUPPORTED;
+    }
+    final MetaObject metaObject = configuration.newMetaObject(objectFactory.create(resultType));
+    if (!(metaObject.getObjectWrapper() instanceof BeanWrapper)) {
+      return CompiledRowMapper.UNSUPPORTED;
+    }
+    final Reflector reflector = reflectorFactory.findForClass(resultType);
+    final List<String> columnNames = rsw.getColumnNames();
+    final List<CompiledRowMapper.Column> columns = new ArrayList<>();
+    if (shouldApplyAutomaticMappings(resultMap, false)) {
+      for (UnMappedColumnAutoMapping mapping : createAutomaticMappings(rsw, resultMap, metaObject, null)) {
+        if (!reflector.hasSetter(mapping.property)) {
+          // nested property path
+          return CompiledRowMapper.UNSUPPORTED;
+        }
+        columns.add(CompiledRowMapper.column(reflector, mapping.property, columnNames.indexOf(mapping.column) + 1,
+            mapping.typeHandler, configuration.isCallSettersOnNulls()));
+      }
+    }
+    final List<String> mappedColumnNames = rsw.getMappedColumnNames(resultMap, null);
+    for (ResultMapping propertyMapping : resultMap.getPropertyResultMappings()) {
+      if (propertyMapping.isCompositeResult() || propertyMapping.getResultSet() != null) {
+        return CompiledRowMapper.UNSUPPORTED;
+      }
+      final String column = propertyMapping.getColumn();
+      final String property = propertyMapping.getProperty();
+      if (column == null || property == null || !mappedColumnNames.contains(column.toUpperCase(Locale.ENGLISH))) {
+        continue;
+      }
+      if (!reflector.hasSetter(property) || propertyMapping.getTypeHandler() == null) {
+        return CompiledRowMapper.UNSUPPORTED;
+      }
+      columns.add(CompiledRowMapper.column(reflector, property, indexOfColumn(columnNames, column),
+          propertyMapping.getTypeHandler(), configuration.isCallSettersOnNulls()));
+    }
+    return new CompiledRowMapper(resultType, objectFactory, columns.toArray(new CompiledRowMapper.Column[0]),
+        configuration.isReturnInstanceForEmptyRow());
+  }
+
+  private int indexOfColumn(List<String> columnNames, String column) {
+    for (int i = 0; i < columnNames.size(); i++) {
+      if (columnNames.get(i).equalsIgnoreCase(column)) {
+        return i + 1;
+      }
+    }
+    throw new ExecutorException("Column '" + column + "' was not found in " + columnNames);
+  }
+
   //
   // GET VALUE FROM ROW FOR SIMPLE RESULT MAP
   //
@@ -24,12 +24,18 @@ import java.util.Properties;
 import org.apache.ibatis.builder.InitializingObject;
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheMetrics;
+import org.apache.ibatis.cache.TableVersions;
 import org.apache.ibatis.cache.decorators.BlockingCache;
 import org.apache.ibatis.cache.decorators.LoggingCache;
 import org.apache.ibatis.cache.decorators.LruCache;
 import org.apache.ibatis.cache.decorators.ScheduledCache;
 import org.apache.ibatis.cache.decorators.SerializedCache;
 import org.apache.ibatis.cache.decorators.SynchronizedCache;
+import org.apache.ibatis.cache.decorators.TableDependencyCache;
+import org.apache.ibatis.cache.decorators.TtlCache;
+import org.apache.ibatis.cache.impl.ConcurrentPerpetualCache;
+import org.apache.ibatis.cache.impl.OffHeapCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.reflection.SystemMetaObject;
@@ -43,9 +49,12 @@ public class CacheBuilder {
   private final List<Class<? extends Cache>> decorators;
   private Integer size;
   private Long clearInterval;
+  private Long timeToLive;
   private boolean readWrite;
   private Properties properties;
   private boolean blocking;
+  private TableVersions tableVersions;
+  private CacheMetrics metrics;
 
   public CacheBuilder(String id) {
     this.id = id;
@@ -74,6 +83,19 @@ public class CacheBuilder {
     return this;
   }
 
+  /**
+   * Sets the time to live of each entry.
+   *
+   * @param timeToLive
+   *          the time to live in milliseconds, or {@code null} to keep entries until they are evicted or flushed
+   * @return this builder
+   * @since 3.5.12
+   */
+  public CacheBuilder timeToLive(Long timeToLive) {
+    this.timeToLive = timeToLive;
+    return this;
+  }
+
   public CacheBuilder readWrite(boolean readWrite) {
     this.readWrite = readWrite;
     return this;
@@ -84,6 +106,32 @@ public class CacheBuilder {
     return this;
   }
 
+  /**
+   * Sets the table versions the entries are checked against when the table invalidation is used.
+   *
+   * @param tableVersions
+   *          the table versions, or {@code null} to invalidate by namespace only
+   * @return this builder
+   * @since 3.5.12
+   */
+  public CacheBuilder tableVersions(TableVersions tableVersions) {
+    this.tableVersions = tableVersions;
+    return this;
+  }
+
+  /**
+   * Sets the statistics the cache records in.
+   *
+   * @param metrics
+   *          the statistics, or {@code null} to record in new ones
+   * @return this builder
+   * @since 3.5.12
+   */
+  public CacheBuilder metrics(CacheMetrics metrics) {
+    this.metrics = metrics;
+    return this;
+  }
+
   public CacheBuilder properties(Properties properties) {
     this.properties = properties;
     return this;
@@ -91,18 +139,35 @@ public class CacheBuilder {
 
   public Cache build() {
     setDefaultImplementations();
-    Cache cache = newBaseCacheInstance(implementation, id);
+    if (metrics == null) {
+      metrics = new CacheMetrics(id);
+    }
+    // the cache is shared by all sessions, so the default store is the thread safe one
+    Cache cache = newBaseCacheInstance(
+        PerpetualCache.class.equals(implementation) ? ConcurrentPerpetualCache.class : implementation, id);
     setCacheProperties(cache);
     // issue #352, do not apply decorators to custom caches
-    if (PerpetualCache.class.equals(cache.getClass())) {
+    if (ConcurrentPerpetualCache.class.equals(cache.getClass())) {
       for (Class<? extends Cache> decorator : decorators) {
         cache = newCacheDecoratorInstance(decorator, cache);
         setCacheProperties(cache);
+        setCacheListener(cache);
+      }
+      cache = setStandardDecorators(cache, readWrite);
+    } else if (OffHeapCache.class.equals(cache.getClass())) {
+      // evicts by its byte budget and always returns copies, so no eviction or serialization decorators
+      setCacheListener(cache);
+      cache = setStandardDecorators(cache, false);
+    } else {
+      boolean logging = LoggingCache.class.isAssignableFrom(cache.getClass());
+      if (tableVersions != null) {
+        cache = new TableDependencyCache(cache, tableVersions);
+      }
+      if (!logging) {
+        cache = new LoggingCache(cache, metrics);
       }
-      cache = setStandardDecorators(cache);
-    } else if (!LoggingCache.class.isAssignableFrom(cache.getClass())) {
-      cache = new LoggingCache(cache);
     }
+    metrics.setCache(cache);
     return cache;
   }
 
@@ -115,7 +180,7 @@ public class CacheBuilder {
     }
   }
 
-  private Cache setStandardDecorators(Cache cache) {
+  private Cache setStandardDecorators(Cache cache, boolean serialized) {
     try {
       MetaObject metaCache = SystemMetaObject.forObject(cache);
       if (size != null && metaCache.hasSetter("size")) {
@@ -125,13 +190,27 @@ public class CacheBuilder {
         cache = new ScheduledCache(cache);
         ((ScheduledCache) cache).setClearInterval(clearInterval);
       }
-      if (readWrite) {
+      if (timeToLive != null) {
+        cache = new TtlCache(cache);
+        ((TtlCache) cache).setTimeToLive(timeToLive);
+        setCacheProperties(cache);
+        setCacheListener(cache);
+      }
+      if (serialized) {
         cache = new SerializedCache(cache);
+        setCacheProperties(cache);
+        setCacheListener(cache);
+      }
+      if (tableVersions != null) {
+        cache = new TableDependencyCache(cache, tableVersions);
+      }
+      cache = new LoggingCache(cache, metrics);
+      if (!cache.isThreadSafe()) {
+        cache = new SynchronizedCache(cache);
       }
-      cache = new LoggingCache(cache);
-      cache = new SynchronizedCache(cache);
       if (blocking) {
         cache = new BlockingCache(cache);
+        setCacheProperties(cache);
       }
       return cache;
     } catch (Exception e) {
@@ -139,6 +218,13 @@ public class CacheBuilder {
     }
   }
 
+  private void setCacheListener(Cache cache) {
+    MetaObject metaCache = SystemMetaObject.forObject(cache);
+    if (metaCache.hasSetter("cacheListener")) {
+      metaCache.setValue("cacheListener", metrics);
+    }
+  }
+
   private void setCacheProperties(Cache cache) {
     if (properties != null) {
       MetaObject metaCache = SystemMetaObject.forObject(cache);
@@ -20,6 +20,7 @@ import java.util.Collections;
 import java.util.List;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.SqlTables;
 import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
 import org.apache.ibatis.executor.keygen.KeyGenerator;
 import org.apache.ibatis.executor.keygen.NoKeyGenerator;
@@ -56,6 +57,11 @@ public final class MappedStatement {
   private Log statementLog;
   private LanguageDriver lang;
   private String[] resultSets;
+  private String[] readTables;
+  private String[] writeTables;
+  // the tables last found in the SQL, which only changes between runs when the statement is dynamic
+  private volatile FoundTables foundReadTables;
+  private volatile FoundTables foundWriteTables;
 
   MappedStatement() {
     // constructor disabled
@@ -174,6 +180,34 @@ public final class MappedStatement {
       return this;
     }
 
+    /**
+     * Declares the tables the statement reads, instead of inferring them from its SQL.
+     *
+     * @param readTables
+     *          the table names separated by commas
+     * @return the builder
+     * @see org.apache.ibatis.session.CacheInvalidation#TABLE
+     * @since 3.5.12
+     */
+    public Builder readTables(String readTables) {
+      mappedStatement.readTables = SqlTables.parseTables(readTables);
+      return this;
+    }
+
+    /**
+     * Declares the tables the statement writes, instead of inferring them from its SQL.
+     *
+     * @param writeTables
+     *          the table names separated by commas
+     * @return the builder
+     * @see org.apache.ibatis.session.CacheInvalidation#TABLE
+     * @since 3.5.12
+     */
+    public Builder writeTables(String writeTables) {
+      mappedStatement.writeTables = SqlTables.parseTables(writeTables);
+      return this;
+    }
+
     /**
      * Resul sets.
      *
@@ -290,6 +324,68 @@ public final class MappedStatement {
     return resultSets;
   }
 
+  /**
+   * Gets the tables the statement declares it reads.
+   *
+   * @return the table names in upper case, or {@code null} when they are inferred from the SQL
+   * @since 3.5.12
+   */
+  public String[] getReadTables() {
+    return readTables;
+  }
+
+  /**
+   * Gets the tables the statement declares it writes.
+   *
+   * @return the table names in upper case, or {@code null} when they are inferred from the SQL
+   * @since 3.5.12
+   */
+  public String[] getWriteTables() {
+    return writeTables;
+  }
+
+  /**
+   * Gets the tables the statement reads: the declared ones, or the ones found in the SQL it runs. The SQL is only
+   * scanned again when it differs from the previous run, so the SQL of a static statement is scanned once.
+   *
+   * @param sql
+   *          the SQL the statement runs
+   * @return the table names in upper case
+   * @since 3.5.12
+   */
+  public String[] findReadTables(String sql) {
+    if (readTables != null) {
+      return readTables;
+    }
+    FoundTables found = foundReadTables;
+    if (found == null || !found.sql.equals(sql)) {
+      found = new FoundTables(sql, SqlTables.readTables(sql));
+      foundReadTables = found;
+    }
+    return found.tables;
+  }
+
+  /**
+   * Gets the tables the statement writes: the declared ones, or the ones found in the SQL it runs. The SQL is only
+   * scanned again when it differs from the previous run, so the SQL of a static statement is scanned once.
+   *
+   * @param sql
+   *          the SQL the statement runs
+   * @return the table names in upper case, or {@code null} if they cannot be found
+   * @since 3.5.12
+   */
+  public String[] findWriteTables(String sql) {
+    if (writeTables != null) {
+      return writeTables;
+    }
+    FoundTables found = foundWriteTables;
+    if (found == null || !found.sql.equals(sql)) {
+      found = new FoundTables(sql, SqlTables.writeTables(sql));
+      foundWriteTables = found;
+    }
+    return found.tables;
+  }
+
   /**
    * Gets the resul sets.
    *
@@ -330,4 +426,16 @@ public final class MappedStatement {
     }
   }
 
+  private static final class FoundTables {
+
+    private final String sql;
+    private final String[] tables;
+
+    FoundTables(String sql, String[] tables) {
+      this.sql = sql;
+      this.tables = tables;
+    }
+
+  }
+
 }
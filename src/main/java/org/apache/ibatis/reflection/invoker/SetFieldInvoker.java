@@ -48,4 +48,14 @@ public class SetFieldInvoker implements Invoker {
   public Class<?> getType() {
     return field.getType();
   }
+
+  /**
+   * Gets the field this invoker assigns.
+   *
+   * @return the field
+   * @since 3.5.12
+   */
+  public Field getField() {
+    return field;
+  }
 }
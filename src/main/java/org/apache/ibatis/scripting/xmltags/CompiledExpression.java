@@ -0,0 +1,512 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.scripting.xmltags;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ognl.OgnlOps;
+
+import org.apache.ibatis.reflection.DefaultReflectorFactory;
+import org.apache.ibatis.reflection.Reflector;
+import org.apache.ibatis.reflection.ReflectorFactory;
+
+/**
+ * An expression of the common OGNL subset used in dynamic SQL, evaluated with direct accessor calls instead of the
+ * OGNL interpreter.
+ * <p>
+ * Supported are property paths, {@code null}/boolean/number/string literals, {@code ==}, {@code !=}, {@code <},
+ * {@code >}, {@code <=}, {@code >=} (and their {@code eq}, {@code neq}, {@code lt}, {@code gt}, {@code lte},
+ * {@code gte} forms), {@code and}, {@code or}, {@code not} (and {@code &&}, {@code ||}, {@code !}), parentheses and
+ * the {@code size()} and {@code isEmpty()} methods. Operators delegate to {@link OgnlOps} so the results are the same
+ * as OGNL's. Any other expression is not compiled, and any value the compiled form cannot handle (e.g. a property of
+ * a list or of a {@code null} value) makes {@link #getValue(Map)} return {@link #FALLBACK} so that the caller
+ * evaluates the expression with OGNL instead.
+ *
+ * @since 3.5.12
+ */
+abstract class CompiledExpression {
+
+  /**
+   * Marker returned by {@link #compile(String)} for an expression outside the supported subset.
+   */
+  static final CompiledExpression NOT_COMPILED = new CompiledExpression() {
+    @Override
+    Object getValue(Map<String, Object> root) {
+      return FALLBACK;
+    }
+  };
+
+  /**
+   * Marker returned by {@link #getValue(Map)} when the expression must be evaluated with OGNL.
+   */
+  static final Object FALLBACK = new Object();
+
+  private static final ReflectorFactory REFLECTOR_FACTORY = new DefaultReflectorFactory();
+  private static final DynamicContext.ContextAccessor CONTEXT_ACCESSOR = new DynamicContext.ContextAccessor();
+  private static final Set<String> MAP_PSEUDO_PROPERTIES = new HashSet<>(
+      Arrays.asList("size", "isEmpty", "keys", "keySet", "values"));
+  private static final Set<String> RESERVED_WORDS = new HashSet<>(
+      Arrays.asList("shl", "shr", "ushr", "band", "bor", "xor", "bnot", "in", "instanceof", "new"));
+
+  /**
+   * Evaluates the expression against the dynamic context bindings.
+   *
+   * @param root
+   *          the bindings of a {@link DynamicContext}
+   * @return the value, or {@link #FALLBACK}
+   */
+  abstract Object getValue(Map<String, Object> root);
+
+  /**
+   * Compiles an expression.
+   *
+   * @param expression
+   *          the OGNL expression
+   * @return the compiled expression, or {@link #NOT_COMPILED} when it is outside the supported subset
+   */
+  static CompiledExpression compile(String expression) {
+    List<String> tokens = tokenize(expression);
+    if (tokens == null || tokens.isEmpty()) {
+      return NOT_COMPILED;
+    }
+    Parser parser = new Parser(tokens);
+    CompiledExpression compiled = parser.parseOr();
+    return compiled == null || !parser.atEnd() ? NOT_COMPILED : compiled;
+  }
+
+  private static List<String> tokenize(String expression) {
+    List<String> tokens = new ArrayList<>();
+    int length = expression.length();
+    int i = 0;
+    while (i < length) {
+      char c = expression.charAt(i);
+      if (Character.isWhitespace(c)) {
+        i++;
+      } else if (Character.isJavaIdentifierStart(c)) {
+        int start = i;
+        while (i < length && Character.isJavaIdentifierPart(expression.charAt(i))) {
+          i++;
+        }
+        tokens.add(expression.substring(start, i));
+      } else if (Character.isDigit(c)) {
+        int start = i;
+        while (i < length && (Character.isDigit(expression.charAt(i)) || expression.charAt(i) == '.')) {
+          i++;
+        }
+        if (i < length && Character.isJavaIdentifierPart(expression.charAt(i))) {
+          // typed literals like 1L or 1.0B
+          return null;
+        }
+        tokens.add(expression.substring(start, i));
+      } else if (c == '\'' || c == '"') {
+        int end = expression.indexOf(c, i + 1);
+        if (end < 0 || expression.lastIndexOf('\\', end) > i) {
+          return null;
+        }
+        tokens.add(expression.substring(i, end + 1));
+        i = end + 1;
+      } else if (i + 1 < length && isTwoCharOperator(expression.substring(i, i + 2))) {
+        tokens.add(expression.substring(i, i + 2));
+        i += 2;
+      } else if ("<>!.()".indexOf(c) >= 0) {
+        tokens.add(String.valueOf(c));
+        i++;
+      } else {
+        return null;
+      }
+    }
+    return tokens;
+  }
+
+  private static boolean isTwoCharOperator(String s) {
+    return "==".equals(s) || "!=".equals(s) || "<=".equals(s) || ">=".equals(s) || "&&".equals(s) || "||".equals(s);
+  }
+
+  private static Object getProperty(Object target, String name, boolean root) {
+    if (root) {
+      return CONTEXT_ACCESSOR.getProperty(null, target, name);
+    }
+    if (target == null || target instanceof Collection || target instanceof Iterator
+        || target instanceof Enumeration || target.getClass().isArray()) {
+      return FALLBACK;
+    }
+    if (target instanceof Map) {
+      return MAP_PSEUDO_PROPERTIES.contains(name) ? FALLBACK : ((Map<?, ?>) target).get(name);
+    }
+    Reflector reflector = REFLECTOR_FACTORY.findForClass(target.getClass());
+    if (!reflector.hasGetter(name)) {
+      return FALLBACK;
+    }
+    try {
+      return reflector.getGetInvoker(name).invoke(target, null);
+    } catch (Exception e) {
+      return FALLBACK;
+    }
+  }
+
+  private static Object invokeMethod(Object target, String name) {
+    if ("size".equals(name)) {
+      if (target instanceof Collection) {
+        return ((Collection<?>) target).size();
+      } else if (target instanceof Map) {
+        return ((Map<?, ?>) target).size();
+      }
+    } else if ("isEmpty".equals(name)) {
+      if (target instanceof Collection) {
+        return ((Collection<?>) target).isEmpty();
+      } else if (target instanceof Map) {
+        return ((Map<?, ?>) target).isEmpty();
+      } else if (target instanceof String) {
+        return ((String) target).isEmpty();
+      }
+    }
+    return FALLBACK;
+  }
+
+  private static final class Parser {
+
+    private final List<String> tokens;
+    private int position;
+
+    Parser(List<String> tokens) {
+      this.tokens = tokens;
+    }
+
+    boolean atEnd() {
+      return position == tokens.size();
+    }
+
+    private String peek() {
+      return position < tokens.size() ? tokens.get(position) : null;
+    }
+
+    private boolean accept(String... candidates) {
+      String token = peek();
+      for (String candidate : candidates) {
+        if (candidate.equals(token)) {
+          position++;
+          return true;
+        }
+      }
+      return false;
+    }
+
+    CompiledExpression parseOr() {
+      List<CompiledExpression> operands = new ArrayList<>();
+      do {
+        CompiledExpression operand = parseAnd();
+        if (operand == null) {
+          return null;
+        }
+        operands.add(operand);
+      } while (accept("or", "||"));
+      return operands.size() == 1 ? operands.get(0) : new Logical(operands, false);
+    }
+
+    private CompiledExpression parseAnd() {
+      List<CompiledExpression> operands = new ArrayList<>();
+      do {
+        CompiledExpression operand = parseEquality();
+        if (operand == null) {
+          return null;
+        }
+        operands.add(operand);
+      } while (accept("and", "&&"));
+      return operands.size() == 1 ? operands.get(0) : new Logical(operands, true);
+    }
+
+    private CompiledExpression parseEquality() {
+      CompiledExpression left = parseRelational();
+      while (left != null) {
+        Operator operator;
+        if (accept("==", "eq")) {
+          operator = Operator.EQ;
+        } else if (accept("!=", "neq")) {
+          operator = Operator.NEQ;
+        } else {
+          break;
+        }
+        CompiledExpression right = parseRelational();
+        left = right == null ? null : new Comparison(operator, left, right);
+      }
+      return left;
+    }
+
+    private CompiledExpression parseRelational() {
+      CompiledExpression left = parseUnary();
+      while (left != null) {
+        Operator operator;
+        if (accept("<", "lt")) {
+          operator = Operator.LT;
+        } else if (accept(">", "gt")) {
+          operator = Operator.GT;
+        } else if (accept("<=", "lte")) {
+          operator = Operator.LTE;
+        } else if (accept(">=", "gte")) {
+          operator = Operator.GTE;
+        } else {
+          break;
+        }
+        CompiledExpression right = parseUnary();
+        left = right == null ? null : new Comparison(operator, left, right);
+      }
+      return left;
+    }
+
+    private CompiledExpression parseUnary() {
+      if (accept("!", "not")) {
+        CompiledExpression operand = parseUnary();
+        return operand == null ? null : new Not(operand);
+      }
+      return parsePrimary();
+    }
+
+    private CompiledExpression parsePrimary() {
+      String token = peek();
+      if (token == null) {
+        return null;
+      }
+      if (accept("(")) {
+        CompiledExpression inner = parseOr();
+        return inner != null && accept(")") ? inner : null;
+      }
+      char first = token.charAt(0);
+      if (first == '\'' || first == '"') {
+        position++;
+        String value = token.substring(1, token.length() - 1);
+        // OGNL reads a single quoted single character as a Character
+        return new Literal(first == '\'' && value.length() == 1 ? (Object) value.charAt(0) : value);
+      }
+      if (Character.isDigit(first)) {
+        position++;
+        return parseNumber(token);
+      }
+      if (!Character.isJavaIdentifierStart(first)) {
+        return null;
+      }
+      switch (token) {
+        case "null":
+          position++;
+          return new Literal(null);
+        case "true":
+          position++;
+          return new Literal(Boolean.TRUE);
+        case "false":
+          position++;
+          return new Literal(Boolean.FALSE);
+        default:
+          return parsePath();
+      }
+    }
+
+    private CompiledExpression parseNumber(String token) {
+      int dot = token.indexOf('.');
+      if (dot < 0) {
+        return token.length() > 9 ? null : new Literal(Integer.valueOf(token));
+      }
+      if (dot == token.length() - 1 || token.indexOf('.', dot + 1) >= 0) {
+        return null;
+      }
+      return new Literal(Double.valueOf(token));
+    }
+
+    private CompiledExpression parsePath() {
+      List<String> names = new ArrayList<>();
+      List<Boolean> calls = new ArrayList<>();
+      do {
+        String name = peek();
+        if (name == null || !Character.isJavaIdentifierStart(name.charAt(0)) || isKeyword(name)) {
+          return null;
+        }
+        position++;
+        boolean call = accept("(");
+        if (call && (names.isEmpty() || !accept(")") || !("size".equals(name) || "isEmpty".equals(name)))) {
+          return null;
+        }
+        names.add(name);
+        calls.add(call);
+      } while (accept("."));
+      return new Path(names.toArray(new String[0]), calls.toArray(new Boolean[0]));
+    }
+
+    private boolean isKeyword(String name) {
+      switch (name) {
+        case "and":
+        case "or":
+        case "not":
+        case "eq":
+        case "neq":
+        case "lt":
+        case "gt":
+        case "lte":
+        case "gte":
+        case "null":
+        case "true":
+        case "false":
+          return true;
+        default:
+          return RESERVED_WORDS.contains(name);
+      }
+    }
+
+  }
+
+  private static final class Literal extends CompiledExpression {
+
+    private final Object value;
+
+    Literal(Object value) {
+      this.value = value;
+    }
+
+    @Override
+    Object getValue(Map<String, Object> root) {
+      return value;
+    }
+
+  }
+
+  private static final class Path extends CompiledExpression {
+
+    private final String[] names;
+    private final Boolean[] calls;
+
+    Path(String[] names, Boolean[] calls) {
+      this.names = names;
+      this.calls = calls;
+    }
+
+    @Override
+    Object getValue(Map<String, Object> root) {
+      Object value = root;
+      for (int i = 0; i < names.length; i++) {
+        value = calls[i] ? invokeMethod(value, names[i]) : getProperty(value, names[i], i == 0);
+        if (value == FALLBACK) {
+          return FALLBACK;
+        }
+      }
+      return value;
+    }
+
+  }
+
+  private static final class Not extends CompiledExpression {
+
+    private final CompiledExpression operand;
+
+    Not(CompiledExpression operand) {
+      this.operand = operand;
+    }
+
+    @Override
+    Object getValue(Map<String, Object> root) {
+      Object value = operand.getValue(root);
+      if (value == FALLBACK) {
+        return FALLBACK;
+      }
+      return OgnlOps.booleanValue(value) ? Boolean.FALSE : Boolean.TRUE;
+    }
+
+  }
+
+  /**
+   * {@code and}/{@code or} return the last operand evaluated, like OGNL.
+   */
+  private static final class Logical extends CompiledExpression {
+
+    private final CompiledExpression[] operands;
+    private final boolean and;
+
+    Logical(List<CompiledExpression> operands, boolean and) {
+      this.operands = operands.toArray(new CompiledExpression[0]);
+      this.and = and;
+    }
+
+    @Override
+    Object getValue(Map<String, Object> root) {
+      Object value = null;
+      for (CompiledExpression operand : operands) {
+        value = operand.getValue(root);
+        if (value == FALLBACK || OgnlOps.booleanValue(value) != and) {
+          return value;
+        }
+      }
+      return value;
+    }
+
+  }
+
+  private enum Operator {
+    EQ, NEQ, LT, GT, LTE, GTE
+  }
+
+  private static final class Comparison extends CompiledExpression {
+
+    private final Operator operator;
+    private final CompiledExpression left;
+    private final CompiledExpression right;
+
+    Comparison(Operator operator, CompiledExpression left, CompiledExpression right) {
+      this.operator = operator;
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    Object getValue(Map<String, Object> root) {
+      Object leftValue = left.getValue(root);
+      if (leftValue == FALLBACK) {
+        return FALLBACK;
+      }
+      Object rightValue = right.getValue(root);
+      if (rightValue == FALLBACK) {
+        return FALLBACK;
+      }
+      boolean result;
+      switch (operator) {
+        case EQ:
+          result = OgnlOps.equal(leftValue, rightValue);
+          break;
+        case NEQ:
+          result = !OgnlOps.equal(leftValue, rightValue);
+          break;
+        case LT:
+          result = OgnlOps.less(leftValue, rightValue);
+          break;
+        case GT:
+          result = OgnlOps.greater(leftValue, rightValue);
+          break;
+        case LTE:
+          result = !OgnlOps.greater(leftValue, rightValue);
+          break;
+        default:
+          result = !OgnlOps.less(leftValue, rightValue);
+          break;
+      }
+      return result ? Boolean.TRUE : Boolean.FALSE;
+    }
+
+  }
+
+}
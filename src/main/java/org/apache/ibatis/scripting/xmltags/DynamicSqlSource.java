@@ -15,9 +15,15 @@
  */
 package org.apache.ibatis.scripting.xmltags;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.apache.ibatis.builder.SqlSourceBuilder;
 import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.session.Configuration;
 
 /**
@@ -25,8 +31,11 @@ import org.apache.ibatis.session.Configuration;
  */
 public class DynamicSqlSource implements SqlSource {
 
+  private static final int MAX_SHAPES = 256;
+
   private final Configuration configuration;
   private final SqlNode rootSqlNode;
+  private final Map<Shape, ParsedShape> shapes = new ConcurrentHashMap<>();
 
   public DynamicSqlSource(Configuration configuration, SqlNode rootSqlNode) {
     this.configuration = configuration;
@@ -37,12 +46,91 @@ public class DynamicSqlSource implements SqlSource {
   public BoundSql getBoundSql(Object parameterObject) {
     DynamicContext context = new DynamicContext(configuration, parameterObject);
     rootSqlNode.apply(context);
-    SqlSourceBuilder sqlSourceParser = new SqlSourceBuilder(configuration);
     Class<?> parameterType = parameterObject == null ? Object.class : parameterObject.getClass();
-    SqlSource sqlSource = sqlSourceParser.parse(context.getSql(), parameterType, context.getBindings());
-    BoundSql boundSql = sqlSource.getBoundSql(parameterObject);
+    // The generated text identifies the combination of branches taken, so its placeholders are parsed only once.
+    Shape shape = new Shape(context.getSql(), parameterType);
+    ParsedShape parsedShape = shapes.get(shape);
+    if (parsedShape == null || !parsedShape.matches(configuration, context.getBindings())) {
+      SqlSourceBuilder sqlSourceParser = new SqlSourceBuilder(configuration);
+      SqlSource sqlSource = sqlSourceParser.parse(shape.sql, parameterType, context.getBindings());
+      parsedShape = new ParsedShape(configuration, sqlSource, context.getBindings());
+      if (shapes.size() < MAX_SHAPES) {
+        shapes.put(shape, parsedShape);
+      }
+    }
+    BoundSql boundSql = parsedShape.sqlSource.getBoundSql(parameterObject);
     context.getBindings().forEach(boundSql::setAdditionalParameter);
     return boundSql;
   }
 
+  private static final class Shape {
+
+    private final String sql;
+    private final Class<?> parameterType;
+
+    Shape(String sql, Class<?> parameterType) {
+      this.sql = sql;
+      this.parameterType = parameterType;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * sql.hashCode() + parameterType.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Shape)) {
+        return false;
+      }
+      Shape other = (Shape) obj;
+      return parameterType == other.parameterType && sql.equals(other.sql);
+    }
+
+  }
+
+  /**
+   * Placeholders parsed for one shape. Parameter types taken from the bindings (e.g. foreach items) depend on the
+   * runtime values, so they are recorded and checked again before the parsed result is reused.
+   */
+  private static final class ParsedShape {
+
+    private final SqlSource sqlSource;
+    private final String[] properties;
+    private final Class<?>[] bindingTypes;
+
+    ParsedShape(Configuration configuration, SqlSource sqlSource, Map<String, Object> bindings) {
+      this.sqlSource = sqlSource;
+      List<ParameterMapping> parameterMappings = sqlSource.getBoundSql(null).getParameterMappings();
+      this.properties = new String[parameterMappings.size()];
+      this.bindingTypes = new Class<?>[parameterMappings.size()];
+      MetaObject metaBindings = properties.length == 0 ? null : configuration.newMetaObject(bindings);
+      for (int i = 0; i < properties.length; i++) {
+        properties[i] = parameterMappings.get(i).getProperty();
+        bindingTypes[i] = bindingType(metaBindings, properties[i]);
+      }
+    }
+
+    boolean matches(Configuration configuration, Map<String, Object> bindings) {
+      if (properties.length == 0) {
+        return true;
+      }
+      MetaObject metaBindings = configuration.newMetaObject(bindings);
+      for (int i = 0; i < properties.length; i++) {
+        if (bindingTypes[i] != bindingType(metaBindings, properties[i])) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private static Class<?> bindingType(MetaObject metaBindings, String property) {
+      return metaBindings.hasGetter(property) ? metaBindings.getGetterType(property) : null;
+    }
+
+  }
+
 }
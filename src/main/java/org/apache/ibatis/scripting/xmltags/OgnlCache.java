@@ -25,6 +25,9 @@ import org.apache.ibatis.builder.BuilderException;
 
 /**
  * Caches OGNL parsed expressions.
+ * <p>
+ * Expressions of the common subset supported by {@link CompiledExpression} are evaluated without the OGNL interpreter
+ * when the root is a {@link DynamicContext} binding map; OGNL remains the fallback for everything else.
  *
  * @author Eduardo Macarron
  *
@@ -35,12 +38,19 @@ public final class OgnlCache {
   private static final OgnlMemberAccess MEMBER_ACCESS = new OgnlMemberAccess();
   private static final OgnlClassResolver CLASS_RESOLVER = new OgnlClassResolver();
   private static final Map<String, Object> expressionCache = new ConcurrentHashMap<>();
+  private static final Map<String, CompiledExpression> compiledExpressionCache = new ConcurrentHashMap<>();
 
   private OgnlCache() {
     // Prevent Instantiation of Static Class
   }
 
   public static Object getValue(String expression, Object root) {
+    if (root instanceof DynamicContext.ContextMap) {
+      Object value = getCompiledValue(expression, (DynamicContext.ContextMap) root);
+      if (value != CompiledExpression.FALLBACK) {
+        return value;
+      }
+    }
     try {
       Map context = Ognl.createDefaultContext(root, MEMBER_ACCESS, CLASS_RESOLVER, null);
       return Ognl.getValue(parseExpression(expression), context, root);
@@ -49,6 +59,20 @@ public final class OgnlCache {
     }
   }
 
+  private static Object getCompiledValue(String expression, Map<String, Object> root) {
+    CompiledExpression compiled = compiledExpressionCache.get(expression);
+    if (compiled == null) {
+      compiled = CompiledExpression.compile(expression);
+      compiledExpressionCache.put(expression, compiled);
+    }
+    try {
+      return compiled.getValue(root);
+    } catch (RuntimeException e) {
+      // let OGNL evaluate it again and report the error in its own terms
+      return CompiledExpression.FALLBACK;
+    }
+  }
+
   private static Object parseExpression(String expression) throws OgnlException {
     Object node = expressionCache.get(expression);
     if (node == null) {
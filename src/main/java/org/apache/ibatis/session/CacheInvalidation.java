@@ -0,0 +1,35 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.session;
+
+/**
+ * How the second level cache finds the entries a statement makes stale.
+ *
+ * @since 3.5.12
+ */
+public enum CacheInvalidation {
+  /**
+   * A statement that flushes the cache clears the whole cache of its namespace.
+   */
+  NAMESPACE,
+  /**
+   * Cached entries depend on the tables their statement reads, and a committed statement that writes tables makes the
+   * entries of every namespace that read them stale. The tables are declared with the {@code readTables} and
+   * {@code writeTables} attributes of the statement, or inferred from its SQL. A statement whose written tables cannot
+   * be inferred clears the cache of its namespace, as with {@link #NAMESPACE}.
+   */
+  TABLE
+}
@@ -15,6 +15,7 @@
  */
 package org.apache.ibatis.session;
 
+import java.lang.management.ManagementFactory;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
@@ -25,8 +26,16 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
 import org.apache.ibatis.binding.MapperRegistry;
 import org.apache.ibatis.builder.CacheRefResolver;
 import org.apache.ibatis.builder.IncompleteElementException;
@@ -34,13 +43,20 @@ import org.apache.ibatis.builder.ResultMapResolver;
 import org.apache.ibatis.builder.annotation.MethodResolver;
 import org.apache.ibatis.builder.xml.XMLStatementBuilder;
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheMetrics;
+import org.apache.ibatis.cache.TableVersions;
 import org.apache.ibatis.cache.decorators.FifoCache;
 import org.apache.ibatis.cache.decorators.LruCache;
 import org.apache.ibatis.cache.decorators.SoftCache;
+import org.apache.ibatis.cache.decorators.TinyLfuCache;
 import org.apache.ibatis.cache.decorators.WeakCache;
+import org.apache.ibatis.cache.impl.OffHeapCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.datasource.jndi.JndiDataSourceFactory;
+import org.apache.ibatis.datasource.pooled.ConcurrentPooledDataSourceFactory;
 import org.apache.ibatis.datasource.pooled.PooledDataSourceFactory;
+import org.apache.ibatis.datasource.routing.RoutingDataSourceFactory;
 import org.apache.ibatis.datasource.unpooled.UnpooledDataSourceFactory;
 import org.apache.ibatis.executor.BatchExecutor;
 import org.apache.ibatis.executor.CachingExecutor;
@@ -52,6 +68,7 @@ import org.apache.ibatis.executor.loader.ProxyFactory;
 import org.apache.ibatis.executor.loader.cglib.CglibProxyFactory;
 import org.apache.ibatis.executor.loader.javassist.JavassistProxyFactory;
 import org.apache.ibatis.executor.parameter.ParameterHandler;
+import org.apache.ibatis.executor.resultset.CompiledRowMappers;
 import org.apache.ibatis.executor.resultset.DefaultResultSetHandler;
 import org.apache.ibatis.executor.resultset.ResultSetHandler;
 import org.apache.ibatis.executor.statement.RoutingStatementHandler;
@@ -116,16 +133,22 @@ public class Configuration {
   protected boolean shrinkWhitespacesInSql;
   protected boolean nullableOnForEach;
   protected boolean argNameBasedConstructorAutoMapping;
+  protected boolean compiledRowMapping;
 
   protected String logPrefix;
   protected Class<? extends Log> logImpl;
   protected Class<? extends VFS> vfsImpl;
   protected Class<?> defaultSqlProviderType;
   protected LocalCacheScope localCacheScope = LocalCacheScope.SESSION;
+  protected CacheInvalidation cacheInvalidation = CacheInvalidation.NAMESPACE;
+  protected boolean cacheJmxEnabled;
   protected JdbcType jdbcTypeForNull = JdbcType.OTHER;
   protected Set<String> lazyLoadTriggerMethods = new HashSet<>(Arrays.asList("equals", "clone", "hashCode", "toString"));
   protected Integer defaultStatementTimeout;
   protected Integer defaultFetchSize;
+  protected int batchInsertRowsPerStatement = 1;
+  protected int batchInsertMaxParameters;
+  protected java.util.concurrent.Executor asyncExecutor;
   protected ResultSetType defaultResultSetType;
   protected ExecutorType defaultExecutorType = ExecutorType.SIMPLE;
   protected AutoMappingBehavior autoMappingBehavior = AutoMappingBehavior.PARTIAL;
@@ -158,6 +181,8 @@ public class Configuration {
       .conflictMessageProducer((savedValue, targetValue) ->
           ". please check " + savedValue.getResource() + " and " + targetValue.getResource());
   protected final Map<String, Cache> caches = new StrictMap<>("Caches collection");
+  protected final TableVersions tableVersions = new TableVersions();
+  protected final Map<String, CacheMetrics> cacheMetrics = new HashMap<>();
   protected final Map<String, ResultMap> resultMaps = new StrictMap<>("Result Maps collection");
   protected final Map<String, ParameterMap> parameterMaps = new StrictMap<>("Parameter Maps collection");
   protected final Map<String, KeyGenerator> keyGenerators = new StrictMap<>("Key Generators collection");
@@ -177,6 +202,8 @@ public class Configuration {
    */
   protected final Map<String, String> cacheRefMap = new HashMap<>();
 
+  protected final CompiledRowMappers compiledRowMappers = new CompiledRowMappers();
+
   public Configuration(Environment environment) {
     this();
     this.environment = environment;
@@ -188,11 +215,15 @@ public class Configuration {
 
     typeAliasRegistry.registerAlias("JNDI", JndiDataSourceFactory.class);
     typeAliasRegistry.registerAlias("POOLED", PooledDataSourceFactory.class);
+    typeAliasRegistry.registerAlias("CONCURRENT_POOLED", ConcurrentPooledDataSourceFactory.class);
     typeAliasRegistry.registerAlias("UNPOOLED", UnpooledDataSourceFactory.class);
+    typeAliasRegistry.registerAlias("ROUTING", RoutingDataSourceFactory.class);
 
     typeAliasRegistry.registerAlias("PERPETUAL", PerpetualCache.class);
+    typeAliasRegistry.registerAlias("OFF_HEAP", OffHeapCache.class);
     typeAliasRegistry.registerAlias("FIFO", FifoCache.class);
     typeAliasRegistry.registerAlias("LRU", LruCache.class);
+    typeAliasRegistry.registerAlias("TINY_LFU", TinyLfuCache.class);
     typeAliasRegistry.registerAlias("SOFT", SoftCache.class);
     typeAliasRegistry.registerAlias("WEAK", WeakCache.class);
 
@@ -329,6 +360,39 @@ public class Configuration {
     this.argNameBasedConstructorAutoMapping = argNameBasedConstructorAutoMapping;
   }
 
+  /**
+   * Returns whether rows of flat result maps are mapped by row mappers compiled per column layout.
+   *
+   * <p>Default is {@code false}.
+   *
+   * @return If compiled, set to {@code true}
+   * @since 3.5.12
+   */
+  public boolean isCompiledRowMapping() {
+    return compiledRowMapping;
+  }
+
+  /**
+   * Sets whether rows of flat result maps are mapped by row mappers compiled per column layout. Result maps with
+   * nested result maps, nested queries, constructor mappings or a discriminator are always mapped the regular way.
+   *
+   * @param compiledRowMapping If compiled, set to {@code true}
+   * @since 3.5.12
+   */
+  public void setCompiledRowMapping(boolean compiledRowMapping) {
+    this.compiledRowMapping = compiledRowMapping;
+  }
+
+  /**
+   * Gets the row mappers compiled so far.
+   *
+   * @return the compiled row mappers
+   * @since 3.5.12
+   */
+  public CompiledRowMappers getCompiledRowMappers() {
+    return compiledRowMappers;
+  }
+
   public String getDatabaseId() {
     return databaseId;
   }
@@ -510,6 +574,79 @@ public class Configuration {
     this.defaultFetchSize = defaultFetchSize;
   }
 
+  /**
+   * Gets the number of rows a batch executor combines into one multi-row {@code INSERT} statement.
+   *
+   * @return the number of rows per statement, {@code 1} when inserts are not combined
+   * @since 3.5.12
+   */
+  public int getBatchInsertRowsPerStatement() {
+    return batchInsertRowsPerStatement;
+  }
+
+  /**
+   * Sets the number of rows a batch executor combines into one multi-row {@code INSERT} statement. When greater than
+   * {@code 1}, consecutive executions of the same {@code INSERT ... VALUES (...)} statement are rewritten as
+   * {@code INSERT ... VALUES (...), (...), ...} before being added to the JDBC batch.
+   *
+   * <p>Default is {@code 1}.
+   *
+   * @param batchInsertRowsPerStatement
+   *          the number of rows per statement
+   * @since 3.5.12
+   */
+  public void setBatchInsertRowsPerStatement(int batchInsertRowsPerStatement) {
+    this.batchInsertRowsPerStatement = batchInsertRowsPerStatement;
+  }
+
+  /**
+   * Gets the maximum number of bind parameters of a multi-row {@code INSERT} statement.
+   *
+   * @return the maximum number of parameters, {@code 0} when unlimited
+   * @since 3.5.12
+   */
+  public int getBatchInsertMaxParameters() {
+    return batchInsertMaxParameters;
+  }
+
+  /**
+   * Sets the maximum number of bind parameters of a multi-row {@code INSERT} statement, for drivers that limit them
+   * (e.g. 2100 for SQL Server). Fewer rows are combined when the limit would be exceeded.
+   *
+   * <p>Default is {@code 0} (unlimited).
+   *
+   * @param batchInsertMaxParameters
+   *          the maximum number of parameters
+   * @since 3.5.12
+   */
+  public void setBatchInsertMaxParameters(int batchInsertMaxParameters) {
+    this.batchInsertMaxParameters = batchInsertMaxParameters;
+  }
+
+  /**
+   * Gets the executor running the asynchronous operations of sessions and mapper methods returning
+   * {@link CompletableFuture}.
+   *
+   * @return the executor set with {@link #setAsyncExecutor(java.util.concurrent.Executor)}, or else an executor starting a virtual thread
+   *         per task on Java 21 and later and a cached pool of daemon threads on earlier versions
+   * @since 3.5.12
+   */
+  public java.util.concurrent.Executor getAsyncExecutor() {
+    return asyncExecutor == null ? DefaultAsyncExecutorHolder.INSTANCE : asyncExecutor;
+  }
+
+  /**
+   * Sets the executor running the asynchronous operations of sessions and mapper methods returning
+   * {@link CompletableFuture}. The executor is not shut down by MyBatis.
+   *
+   * @param asyncExecutor
+   *          the executor, {@code null} to use the default one
+   * @since 3.5.12
+   */
+  public void setAsyncExecutor(java.util.concurrent.Executor asyncExecutor) {
+    this.asyncExecutor = asyncExecutor;
+  }
+
   /**
    * Gets the default result set type.
    *
@@ -547,6 +684,58 @@ public class Configuration {
     this.localCacheScope = localCacheScope;
   }
 
+  /**
+   * Gets the way the second level caches are invalidated by statements that write.
+   *
+   * @return the cache invalidation mode
+   * @since 3.5.12
+   */
+  public CacheInvalidation getCacheInvalidation() {
+    return cacheInvalidation;
+  }
+
+  /**
+   * Sets the way the second level caches are invalidated by statements that write.
+   *
+   * @param cacheInvalidation
+   *          the cache invalidation mode
+   * @since 3.5.12
+   */
+  public void setCacheInvalidation(CacheInvalidation cacheInvalidation) {
+    this.cacheInvalidation = cacheInvalidation;
+  }
+
+  public boolean isCacheJmxEnabled() {
+    return cacheJmxEnabled;
+  }
+
+  /**
+   * Sets whether the {@link CacheMetrics} of the second level caches are registered with the platform MBean server, as
+   * {@code org.apache.ibatis:type=Cache,name=<namespace>}. A cache registered by another configuration under the same
+   * name is replaced.
+   *
+   * @param cacheJmxEnabled
+   *          {@code true} to register the statistics of the caches, {@code false} to unregister them
+   * @since 3.5.12
+   */
+  public void setCacheJmxEnabled(boolean cacheJmxEnabled) {
+    this.cacheJmxEnabled = cacheJmxEnabled;
+    for (CacheMetrics metrics : cacheMetrics.values()) {
+      registerCacheMetrics(metrics, cacheJmxEnabled);
+    }
+  }
+
+  /**
+   * Gets the table versions shared by the caches and executors of this configuration when
+   * {@link CacheInvalidation#TABLE} is used.
+   *
+   * @return the table versions
+   * @since 3.5.12
+   */
+  public TableVersions getTableVersions() {
+    return tableVersions;
+  }
+
   public JdbcType getJdbcTypeForNull() {
     return jdbcTypeForNull;
   }
@@ -707,7 +896,8 @@ public class Configuration {
       executor = new SimpleExecutor(this, transaction);
     }
     if (cacheEnabled) {
-      executor = new CachingExecutor(executor);
+      executor = cacheInvalidation == CacheInvalidation.TABLE
+          ? new CachingExecutor(executor, tableVersions) : new CachingExecutor(executor);
     }
     executor = (Executor) interceptorChain.pluginAll(executor);
     return executor;
@@ -753,6 +943,57 @@ public class Configuration {
     return caches.containsKey(id);
   }
 
+  /**
+   * Adds the statistics of a second level cache, and registers them with JMX when {@code cacheJmxEnabled} is set.
+   *
+   * @param metrics
+   *          the statistics
+   * @since 3.5.12
+   */
+  public void addCacheMetrics(CacheMetrics metrics) {
+    cacheMetrics.put(metrics.getId(), metrics);
+    if (cacheJmxEnabled) {
+      registerCacheMetrics(metrics, true);
+    }
+  }
+
+  /**
+   * Gets the statistics of all the second level caches.
+   *
+   * @return the statistics
+   * @since 3.5.12
+   */
+  public Collection<CacheMetrics> getCacheMetrics() {
+    return cacheMetrics.values();
+  }
+
+  /**
+   * Gets the statistics of a second level cache.
+   *
+   * @param id
+   *          the id of the cache, i.e. its namespace
+   * @return the statistics, or {@code null} if there is no such cache
+   * @since 3.5.12
+   */
+  public CacheMetrics getCacheMetrics(String id) {
+    return cacheMetrics.get(id);
+  }
+
+  private void registerCacheMetrics(CacheMetrics metrics, boolean register) {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      ObjectName name = new ObjectName("org.apache.ibatis:type=Cache,name=" + ObjectName.quote(metrics.getId()));
+      if (server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+      if (register) {
+        server.registerMBean(metrics, name);
+      }
+    } catch (JMException e) {
+      throw new CacheException("Error registering the statistics of the cache '" + metrics.getId() + "'. Cause: " + e, e);
+    }
+  }
+
   public void addResultMap(ResultMap rm) {
     resultMaps.put(rm.getId(), rm);
     checkLocallyForDiscriminatedNestedResultMaps(rm);
@@ -998,6 +1239,26 @@ public class Configuration {
     }
   }
 
+  private static class DefaultAsyncExecutorHolder {
+
+    private static final ExecutorService INSTANCE = newDefaultAsyncExecutor();
+
+    private static ExecutorService newDefaultAsyncExecutor() {
+      try {
+        // Java 21+
+        return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+      } catch (ReflectiveOperationException e) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newCachedThreadPool(runnable -> {
+          Thread thread = new Thread(runnable, "mybatis-async-" + threadNumber.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+      }
+    }
+
+  }
+
   protected static class StrictMap<V> extends HashMap<String, V> {
 
     private static final long serialVersionUID = -4950446264854982944L;
@@ -19,6 +19,8 @@ import java.io.Closeable;
 import java.sql.Connection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.executor.BatchResult;
@@ -287,4 +289,94 @@ public interface SqlSession extends Closeable {
    * @return Connection
    */
   Connection getConnection();
+
+  /**
+   * Runs an operation against this session on the executor returned by {@link Configuration#getAsyncExecutor()}.
+   * Sessions are not thread safe: operations submitted to the same session run one after another, and the session
+   * must not be used from other threads until the returned future completes.
+   * @param <T> the result type
+   * @param operation the operation to run against this session
+   * @return a future completed with the result of the operation, or exceptionally with the exception it threw
+   * @since 3.5.12
+   */
+  default <T> CompletableFuture<T> executeAsync(Function<SqlSession, T> operation) {
+    return CompletableFuture.supplyAsync(() -> operation.apply(this), getConfiguration().getAsyncExecutor());
+  }
+
+  /**
+   * Retrieve a single row mapped from the statement key and parameter without blocking the calling thread.
+   * @param <T> the returned object type
+   * @param statement Unique identifier matching the statement to use.
+   * @param parameter A parameter object to pass to the statement.
+   * @return a future of the mapped object
+   * @since 3.5.12
+   * @see #executeAsync(Function)
+   */
+  default <T> CompletableFuture<T> selectOneAsync(String statement, Object parameter) {
+    return executeAsync(session -> session.selectOne(statement, parameter));
+  }
+
+  /**
+   * Retrieve a list of mapped objects from the statement key and parameter without blocking the calling thread.
+   * @param <E> the returned list element type
+   * @param statement Unique identifier matching the statement to use.
+   * @param parameter A parameter object to pass to the statement.
+   * @return a future of the list of mapped objects
+   * @since 3.5.12
+   * @see #executeAsync(Function)
+   */
+  default <E> CompletableFuture<List<E>> selectListAsync(String statement, Object parameter) {
+    return executeAsync(session -> session.selectList(statement, parameter));
+  }
+
+  /**
+   * Retrieve a list of mapped objects from the statement key and parameter, within the specified row bounds, without
+   * blocking the calling thread.
+   * @param <E> the returned list element type
+   * @param statement Unique identifier matching the statement to use.
+   * @param parameter A parameter object to pass to the statement.
+   * @param rowBounds  Bounds to limit object retrieval
+   * @return a future of the list of mapped objects
+   * @since 3.5.12
+   * @see #executeAsync(Function)
+   */
+  default <E> CompletableFuture<List<E>> selectListAsync(String statement, Object parameter, RowBounds rowBounds) {
+    return executeAsync(session -> session.selectList(statement, parameter, rowBounds));
+  }
+
+  /**
+   * Execute an insert statement with the given parameter object without blocking the calling thread.
+   * @param statement Unique identifier matching the statement to execute.
+   * @param parameter A parameter object to pass to the statement.
+   * @return a future of the number of rows affected by the insert
+   * @since 3.5.12
+   * @see #executeAsync(Function)
+   */
+  default CompletableFuture<Integer> insertAsync(String statement, Object parameter) {
+    return executeAsync(session -> session.insert(statement, parameter));
+  }
+
+  /**
+   * Execute an update statement without blocking the calling thread.
+   * @param statement Unique identifier matching the statement to execute.
+   * @param parameter A parameter object to pass to the statement.
+   * @return a future of the number of rows affected by the update
+   * @since 3.5.12
+   * @see #executeAsync(Function)
+   */
+  default CompletableFuture<Integer> updateAsync(String statement, Object parameter) {
+    return executeAsync(session -> session.update(statement, parameter));
+  }
+
+  /**
+   * Execute a delete statement without blocking the calling thread.
+   * @param statement Unique identifier matching the statement to execute.
+   * @param parameter A parameter object to pass to the statement.
+   * @return a future of the number of rows affected by the delete
+   * @since 3.5.12
+   * @see #executeAsync(Function)
+   */
+  default CompletableFuture<Integer> deleteAsync(String statement, Object parameter) {
+    return executeAsync(session -> session.delete(statement, parameter));
+  }
 }
@@ -24,6 +24,8 @@ import java.sql.Connection;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.executor.BatchResult;
@@ -337,6 +339,21 @@ public class SqlSessionManager implements SqlSessionFactory, SqlSession {
     }
   }
 
+  @Override
+  public <T> CompletableFuture<T> executeAsync(Function<SqlSession, T> operation) {
+    final SqlSession sqlSession = localSqlSession.get();
+    if (sqlSession != null) {
+      return sqlSession.executeAsync(operation);
+    }
+    return CompletableFuture.supplyAsync(() -> {
+      try (SqlSession autoSqlSession = openSession()) {
+        final T result = operation.apply(autoSqlSession);
+        autoSqlSession.commit();
+        return result;
+      }
+    }, getConfiguration().getAsyncExecutor());
+  }
+
   private class SqlSessionInterceptor implements InvocationHandler {
     public SqlSessionInterceptor() {
         // Prevent Synthetic Access
@@ -22,6 +22,12 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import org.apache.ibatis.binding.BindingException;
 import org.apache.ibatis.cursor.Cursor;
@@ -53,6 +59,8 @@ public class DefaultSqlSession implements SqlSession {
   private final boolean autoCommit;
   private boolean dirty;
   private List<Cursor<?>> cursorList;
+  private final AtomicReference<CompletableFuture<?>> lastAsyncOperation = new AtomicReference<>();
+  private volatile Thread asyncThread;
 
   public DefaultSqlSession(Configuration configuration, Executor executor, boolean autoCommit) {
     this.configuration = configuration;
@@ -216,6 +224,7 @@ public class DefaultSqlSession implements SqlSession {
 
   @Override
   public void commit(boolean force) {
+    awaitAsyncOperations();
     try {
       executor.commit(isCommitOrRollbackRequired(force));
       dirty = false;
@@ -233,6 +242,7 @@ public class DefaultSqlSession implements SqlSession {
 
   @Override
   public void rollback(boolean force) {
+    awaitAsyncOperations();
     try {
       executor.rollback(isCommitOrRollbackRequired(force));
       dirty = false;
@@ -245,6 +255,7 @@ public class DefaultSqlSession implements SqlSession {
 
   @Override
   public List<BatchResult> flushStatements() {
+    awaitAsyncOperations();
     try {
       return executor.flushStatements();
     } catch (Exception e) {
@@ -254,8 +265,48 @@ public class DefaultSqlSession implements SqlSession {
     }
   }
 
+  @Override
+  public <T> CompletableFuture<T> executeAsync(Function<SqlSession, T> operation) {
+    Supplier<T> task = () -> {
+      asyncThread = Thread.currentThread();
+      try {
+        return operation.apply(this);
+      } finally {
+        asyncThread = null;
+      }
+    };
+    synchronized (this) {
+      // operations of a session run one after another, whatever the outcome of the previous one
+      CompletableFuture<?> previous = lastAsyncOperation.get();
+      CompletableFuture<T> future = previous == null
+          ? CompletableFuture.supplyAsync(task, configuration.getAsyncExecutor())
+          : previous.handle((result, e) -> null)
+              .thenApplyAsync(ignored -> task.get(), configuration.getAsyncExecutor());
+      lastAsyncOperation.set(future);
+      return future;
+    }
+  }
+
+  private void awaitAsyncOperations() {
+    if (asyncThread == Thread.currentThread()) {
+      // called by an asynchronous operation of this session
+      return;
+    }
+    CompletableFuture<?> pending;
+    while ((pending = lastAsyncOperation.get()) != null) {
+      try {
+        pending.join();
+      } catch (CompletionException | CancellationException e) {
+        // already reported through the future of the operation
+      }
+      // cleared only if no operation was submitted during the wait, otherwise that one is awaited too
+      lastAsyncOperation.compareAndSet(pending, null);
+    }
+  }
+
   @Override
   public void close() {
+    awaitAsyncOperations();
     try {
       executor.close(isCommitOrRollbackRequired(false));
       closeCursors();
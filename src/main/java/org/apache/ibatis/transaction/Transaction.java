@@ -18,6 +18,8 @@ package org.apache.ibatis.transaction;
 import java.sql.Connection;
 import java.sql.SQLException;
 
+import org.apache.ibatis.mapping.MappedStatement;
+
 /**
  * Wraps a database connection.
  * Handles the connection lifecycle that comprises: its creation, preparation, commit/rollback and close.
@@ -34,6 +36,21 @@ public interface Transaction {
    */
   Connection getConnection() throws SQLException;
 
+  /**
+   * Retrieve the database connection a statement should run on. Transactions that send statements to different
+   * databases, e.g. reads to a replica, override this method.
+   *
+   * @param ms
+   *          the statement to run
+   * @return DataBase connection
+   * @throws SQLException
+   *           the SQL exception
+   * @since 3.5.12
+   */
+  default Connection getConnection(MappedStatement ms) throws SQLException {
+    return getConnection();
+  }
+
   /**
    * Commit inner database connection.
    * @throws SQLException
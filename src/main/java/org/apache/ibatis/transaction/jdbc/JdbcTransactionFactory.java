@@ -20,12 +20,14 @@ import java.util.Properties;
 
 import javax.sql.DataSource;
 
+import org.apache.ibatis.datasource.routing.RoutingDataSource;
+import org.apache.ibatis.datasource.routing.RoutingTransaction;
 import org.apache.ibatis.session.TransactionIsolationLevel;
 import org.apache.ibatis.transaction.Transaction;
 import org.apache.ibatis.transaction.TransactionFactory;
 
 /**
- * Creates {@link JdbcTransaction} instances.
+ * Creates {@link JdbcTransaction} instances, or {@link RoutingTransaction} instances over a {@link RoutingDataSource}.
  *
  * @author Clinton Begin
  *
@@ -53,6 +55,9 @@ public class JdbcTransactionFactory implements TransactionFactory {
 
   @Override
   public Transaction newTransaction(DataSource ds, TransactionIsolationLevel level, boolean autoCommit) {
+    if (ds instanceof RoutingDataSource) {
+      return new RoutingTransaction((RoutingDataSource) ds, level, autoCommit, skipSetAutoCommitOnClose);
+    }
     return new JdbcTransaction(ds, level, autoCommit, skipSetAutoCommitOnClose);
   }
 }
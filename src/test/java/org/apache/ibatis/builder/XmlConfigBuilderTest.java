@@ -54,6 +54,7 @@ import org.apache.ibatis.scripting.defaults.RawLanguageDriver;
 import org.apache.ibatis.scripting.xmltags.XMLLanguageDriver;
 import org.apache.ibatis.session.AutoMappingBehavior;
 import org.apache.ibatis.session.AutoMappingUnknownColumnBehavior;
+import org.apache.ibatis.session.CacheInvalidation;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.session.LocalCacheScope;
@@ -105,6 +106,11 @@ class XmlConfigBuilderTest {
       assertThat(config.isArgNameBasedConstructorAutoMapping()).isFalse();
       assertThat(config.getDefaultSqlProviderType()).isNull();
       assertThat(config.isNullableOnForEach()).isFalse();
+      assertThat(config.isCompiledRowMapping()).isFalse();
+      assertThat(config.getBatchInsertRowsPerStatement()).isEqualTo(1);
+      assertThat(config.getBatchInsertMaxParameters()).isZero();
+      assertThat(config.getCacheInvalidation()).isEqualTo(CacheInvalidation.NAMESPACE);
+      assertThat(config.isCacheJmxEnabled()).isFalse();
     }
   }
 
@@ -204,6 +210,11 @@ class XmlConfigBuilderTest {
       assertThat(config.isArgNameBasedConstructorAutoMapping()).isTrue();
       assertThat(config.getDefaultSqlProviderType().getName()).isEqualTo(MySqlProvider.class.getName());
       assertThat(config.isNullableOnForEach()).isTrue();
+      assertThat(config.isCompiledRowMapping()).isTrue();
+      assertThat(config.getBatchInsertRowsPerStatement()).isEqualTo(50);
+      assertThat(config.getBatchInsertMaxParameters()).isEqualTo(1000);
+      assertThat(config.getCacheInvalidation()).isEqualTo(CacheInvalidation.TABLE);
+      assertThat(config.isCacheJmxEnabled()).isTrue();
 
       assertThat(config.getTypeAliasRegistry().getTypeAliases().get("blogauthor")).isEqualTo(Author.class);
       assertThat(config.getTypeAliasRegistry().getTypeAliases().get("blog")).isEqualTo(Blog.class);
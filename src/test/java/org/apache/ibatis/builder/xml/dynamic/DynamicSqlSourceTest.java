@@ -16,6 +16,7 @@
 package org.apache.ibatis.builder.xml.dynamic;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 import java.io.IOException;
 import java.io.Reader;
@@ -376,6 +377,44 @@ class DynamicSqlSourceTest extends BaseDataTest {
     assertEquals("__frch_u_0", boundSql.getParameterMappings().get(3).getProperty());
   }
 
+  @Test
+  void shouldReuseParameterMappingsForSameShape() throws Exception {
+    DynamicSqlSource source = createDynamicSqlSource(
+        new TextSqlNode("SELECT * FROM BLOG"),
+        new WhereSqlNode(new Configuration(), mixedContents(
+            new IfSqlNode(mixedContents(new TextSqlNode("and ID = #{id}")), "id != null"),
+            new IfSqlNode(mixedContents(new TextSqlNode("and NAME = #{name}")), "name != null"))));
+    Map<String, Object> first = new HashMap<>();
+    first.put("id", 1);
+    Map<String, Object> second = new HashMap<>();
+    second.put("id", 2);
+    Map<String, Object> other = new HashMap<>();
+    other.put("name", "Steve");
+    BoundSql firstBoundSql = source.getBoundSql(first);
+    BoundSql secondBoundSql = source.getBoundSql(second);
+    BoundSql otherBoundSql = source.getBoundSql(other);
+    assertEquals("SELECT * FROM BLOG WHERE  ID = ?", firstBoundSql.getSql());
+    assertSame(firstBoundSql.getParameterMappings(), secondBoundSql.getParameterMappings());
+    assertEquals("SELECT * FROM BLOG WHERE  NAME = ?", otherBoundSql.getSql());
+    assertEquals("name", otherBoundSql.getParameterMappings().get(0).getProperty());
+  }
+
+  @Test
+  void shouldReparseWhenBindingTypesChange() throws Exception {
+    DynamicSqlSource source = createDynamicSqlSource(
+        new TextSqlNode("SELECT * FROM BLOG WHERE ID in"),
+        new ForEachSqlNode(new Configuration(), mixedContents(new TextSqlNode("#{item}")), "list", null, "item", "(", ")", ","));
+    Map<String, Object> integers = new HashMap<>();
+    integers.put("list", Arrays.asList(1, 2));
+    Map<String, Object> strings = new HashMap<>();
+    strings.put("list", Arrays.asList("1", "2"));
+    BoundSql integerBoundSql = source.getBoundSql(integers);
+    BoundSql stringBoundSql = source.getBoundSql(strings);
+    assertEquals(integerBoundSql.getSql(), stringBoundSql.getSql());
+    assertEquals(Integer.class, integerBoundSql.getParameterMappings().get(0).getJavaType());
+    assertEquals(String.class, stringBoundSql.getParameterMappings().get(0).getJavaType());
+  }
+
   private DynamicSqlSource createDynamicSqlSource(SqlNode... contents) throws IOException, SQLException {
     createBlogDataSource();
     final String resource = "org/apache/ibatis/builder/MapperConfig.xml";
@@ -0,0 +1,184 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+import org.apache.ibatis.cache.serializer.BinaryCacheSerializer;
+import org.apache.ibatis.cache.serializer.JavaCacheSerializer;
+import org.apache.ibatis.domain.blog.Author;
+import org.apache.ibatis.domain.blog.ImmutableAuthor;
+import org.apache.ibatis.domain.blog.Section;
+import org.junit.jupiter.api.Test;
+
+class BinaryCacheSerializerTest {
+
+  private final BinaryCacheSerializer serializer = new BinaryCacheSerializer();
+
+  @Test
+  void shouldRoundTripValues() {
+    Timestamp timestamp = new Timestamp(1000L);
+    timestamp.setNanos(123456789);
+    List<Object> values = Arrays.asList(null, "text", -1, Long.MAX_VALUE, (short) 2, (byte) 3, true, 'c', 1.5d,
+        2.5f, new BigDecimal("-12.345"), new Date(42L), new java.sql.Date(43L), timestamp, LocalDate.of(2022, 1, 2),
+        LocalDateTime.of(2022, 1, 2, 3, 4, 5, 6), Section.NEWS, new int[] { 1, 2 }, new String[] { "a", null },
+        new byte[] { 4, 5 });
+    for (UnaryOperator<Object> copier : copiers()) {
+      List<Object> copy = castList(copier.apply(new ArrayList<>(values)));
+      for (int i = 0; i < values.size(); i++) {
+        if (values.get(i) != null && values.get(i).getClass().isArray()) {
+          assertTrue(Arrays.deepEquals(new Object[] { values.get(i) }, new Object[] { copy.get(i) }));
+        } else {
+          assertEquals(values.get(i), copy.get(i));
+        }
+      }
+    }
+  }
+
+  @Test
+  void shouldCopyBeans() {
+    Author author = new Author(101, "jim", "********", "jim@ibatis.apache.org", "", Section.NEWS);
+    for (UnaryOperator<Object> copier : copiers()) {
+      Author copy = (Author) copier.apply(author);
+      assertEquals(author, copy);
+      assertNotSame(author, copy);
+    }
+  }
+
+  @Test
+  void shouldKeepSharedAndCyclicReferences() {
+    Blog blog = new Blog();
+    blog.title = "Blog";
+    Post first = new Post(blog, "first");
+    Post second = new Post(blog, "second");
+    blog.posts.add(first);
+    blog.posts.add(second);
+    blog.postsBySubject.put("first", first);
+    for (UnaryOperator<Object> copier : copiers()) {
+      Blog copy = (Blog) copier.apply(blog);
+      assertEquals("Blog", copy.title);
+      assertEquals(2, copy.posts.size());
+      assertSame(copy, copy.posts.get(0).blog);
+      assertSame(copy.posts.get(0), copy.postsBySubject.get("first"));
+      assertEquals("second", copy.posts.get(1).subject);
+      assertNotSame(blog.posts, copy.posts);
+    }
+  }
+
+  @Test
+  void shouldUseJavaSerializationForOtherObjects() {
+    ImmutableAuthor author = new ImmutableAuthor(101, "jim", "********", "jim@ibatis.apache.org", "", Section.NEWS);
+    List<Object> value = new ArrayList<>(Arrays.asList(author, author, Arrays.asList(1, 2)));
+    for (UnaryOperator<Object> copier : copiers()) {
+      List<Object> copy = castList(copier.apply(value));
+      ImmutableAuthor authorCopy = (ImmutableAuthor) copy.get(0);
+      assertNotSame(author, authorCopy);
+      assertSame(authorCopy, copy.get(1));
+      assertEquals(author.getUsername(), authorCopy.getUsername());
+      assertEquals(author.getFavouriteSection(), authorCopy.getFavouriteSection());
+      assertEquals(Arrays.asList(1, 2), copy.get(2));
+    }
+  }
+
+  @Test
+  void shouldNotCopyTransientFields() {
+    Blog blog = new Blog();
+    blog.title = "Blog";
+    blog.views = 10;
+    for (UnaryOperator<Object> copier : copiers()) {
+      assertEquals(0, ((Blog) copier.apply(blog)).views);
+    }
+  }
+
+  @Test
+  void shouldBeSmallerThanJavaSerialization() {
+    List<Author> authors = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      authors.add(new Author(i, "user" + i, "********", "user" + i + "@ibatis.apache.org", "", Section.NEWS));
+    }
+    int binaryLength = serializer.serialize(authors).length;
+    int javaLength = new JavaCacheSerializer().serialize(authors).length;
+    assertTrue(binaryLength < javaLength, binaryLength + " bytes vs " + javaLength + " bytes");
+  }
+
+  @Test
+  void shouldCopyNull() {
+    assertNull(serializer.copy(null));
+    assertNull(serializer.deserialize(serializer.serialize(null)));
+  }
+
+  @Test
+  void shouldCopyArrays() {
+    long[] versions = { 1L, 2L };
+    String[][] tables = { { "BLOG" }, { "POST", "AUTHOR" } };
+    for (UnaryOperator<Object> copier : copiers()) {
+      assertArrayEquals(versions, (long[]) copier.apply(versions));
+      assertArrayEquals(tables, (String[][]) copier.apply(tables));
+    }
+  }
+
+  private List<UnaryOperator<Object>> copiers() {
+    return Arrays.asList(serializer::copy, value -> serializer.deserialize(serializer.serialize(value)));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<Object> castList(Object value) {
+    return (List<Object>) value;
+  }
+
+  static class Blog implements Serializable {
+    private static final long serialVersionUID = 1L;
+    String title;
+    transient int views;
+    List<Post> posts = new ArrayList<>();
+    Map<String, Post> postsBySubject = new HashMap<>();
+    LinkedHashSet<String> tags = new LinkedHashSet<>(Arrays.asList("a", "b"));
+  }
+
+  static class Post implements Serializable {
+    private static final long serialVersionUID = 1L;
+    Blog blog;
+    String subject;
+
+    Post() {
+    }
+
+    Post(Blog blog, String subject) {
+      this.blog = blog;
+      this.subject = subject;
+    }
+  }
+
+}
@@ -0,0 +1,159 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.cache.decorators.BlockingCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.junit.jupiter.api.Test;
+
+class BlockingCacheTest {
+
+  @Test
+  void shouldShareConcurrentLoadsOfAKey() throws Exception {
+    BlockingCache cache = loadingCache();
+    AtomicInteger loads = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    try {
+      Future<?>[] results = new Future<?>[4];
+      for (int i = 0; i < results.length; i++) {
+        results[i] = pool.submit(() -> {
+          Object value = cache.getObject("key", () -> {
+            loads.incrementAndGet();
+            release.await();
+            return "value";
+          }, Runnable::run);
+          return value == null ? cache.getObject("key") : value;
+        });
+      }
+      Thread.sleep(200);
+      release.countDown();
+      for (Future<?> result : results) {
+        assertEquals("value", result.get(5, TimeUnit.SECONDS));
+      }
+      assertEquals(1, loads.get());
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  void shouldReturnStaleValueWhileRefreshing() throws Exception {
+    BlockingCache cache = loadingCache();
+    cache.setRefreshAfter(100);
+    AtomicInteger loads = new AtomicInteger();
+    cache.getObject("key", () -> "value" + loads.incrementAndGet(), Runnable::run);
+    assertEquals("value1", cache.getObject("key", () -> "value" + loads.incrementAndGet(), Runnable::run));
+    Thread.sleep(200);
+    ExecutorService pool = Executors.newSingleThreadExecutor();
+    try {
+      CountDownLatch release = new CountDownLatch(1);
+      assertEquals("value1", cache.getObject("key", () -> {
+        release.await();
+        return "value" + loads.incrementAndGet();
+      }, pool));
+      // a single refresh is running
+      assertEquals("value1", cache.getObject("key", () -> "value" + loads.incrementAndGet(), pool));
+      release.countDown();
+      pool.shutdown();
+      assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+      assertEquals(2, loads.get());
+      assertEquals("value2", cache.getObject("key"));
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  void shouldLetAWaiterLoadWhenTheLoadFails() throws Exception {
+    BlockingCache cache = loadingCache();
+    CountDownLatch failing = new CountDownLatch(1);
+    ExecutorService pool = Executors.newSingleThreadExecutor();
+    try {
+      Future<?> failed = pool.submit(() -> cache.getObject("key", () -> {
+        failing.countDown();
+        Thread.sleep(200);
+        throw new IllegalStateException("failed");
+      }, Runnable::run));
+      failing.await();
+      assertNull(cache.getObject("key", () -> "value", Runnable::run));
+      assertEquals("value", cache.getObject("key"));
+      Exception e = assertThrows(Exception.class, () -> failed.get(5, TimeUnit.SECONDS));
+      assertTrue(e.getCause() instanceof IllegalStateException);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  void shouldLoadItselfWhenTheWaitTimesOut() throws Exception {
+    BlockingCache cache = loadingCache();
+    cache.setTimeout(100);
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService pool = Executors.newSingleThreadExecutor();
+    try {
+      pool.submit(() -> cache.getObject("key", () -> {
+        loading.countDown();
+        release.await();
+        return "slow";
+      }, Runnable::run));
+      loading.await();
+      assertNull(cache.getObject("key", () -> "fast", Runnable::run));
+      assertEquals("fast", cache.getObject("key"));
+    } finally {
+      release.countDown();
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  void shouldNotPutALoadStartedBeforeAClear() throws Exception {
+    BlockingCache cache = loadingCache();
+    assertNull(cache.getObject("key", () -> {
+      cache.clear();
+      return "value";
+    }, Runnable::run));
+    assertNull(cache.getObject("key"));
+  }
+
+  @Test
+  void shouldNotLockInLoadingMode() {
+    BlockingCache cache = loadingCache();
+    assertNull(cache.getObject("key"));
+    assertNull(cache.getObject("key"));
+    cache.putObject("key", null);
+    assertNull(cache.removeObject("key"));
+    cache.putObject("key", "value");
+    assertEquals("value", cache.getObject("key"));
+  }
+
+  private static BlockingCache loadingCache() {
+    BlockingCache cache = new BlockingCache(new PerpetualCache("default"));
+    cache.setLoading(true);
+    return cache;
+  }
+
+}
@@ -86,6 +86,24 @@ class CacheKeyTest {
     assertEquals(key1, key2);
   }
 
+  @Test
+  void shouldCompareKeysWithManyComponents() throws Exception {
+    CacheKey key1 = new CacheKey();
+    CacheKey key2 = new CacheKey();
+    for (int i = 0; i < 100; i++) {
+      key1.update("component" + i);
+      key2.update("component" + i);
+    }
+    assertEquals(100, key1.getUpdateCount());
+    assertEquals(key1, key2);
+    assertEquals(key1.hashCode(), key2.hashCode());
+    CacheKey clonedKey = key1.clone();
+    clonedKey.update("more");
+    key1.update("other");
+    assertEquals(101, clonedKey.getUpdateCount());
+    assertNotEquals(key1, clonedKey);
+  }
+
   @Test
   void throwExceptionWhenTryingToUpdateNullCacheKey() {
     CacheKey cacheKey = CacheKey.NULL_CACHE_KEY;
@@ -0,0 +1,123 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.ibatis.cache.decorators.LoggingCache;
+import org.apache.ibatis.cache.decorators.LruCache;
+import org.apache.ibatis.cache.decorators.TtlCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.junit.jupiter.api.Test;
+
+class CacheMetricsTest {
+
+  @Test
+  void shouldCountHitsMissesPutsAndClears() {
+    CacheMetrics metrics = new CacheMetrics("default");
+    Cache cache = new LoggingCache(new PerpetualCache("default"), metrics);
+    metrics.setCache(cache);
+    cache.putObject(0, 0);
+    cache.putObject(1, null);
+    cache.getObject(0);
+    cache.getObject(0);
+    cache.getObject(2);
+    CacheStats stats = metrics.snapshot();
+    assertEquals(3, stats.getRequestCount());
+    assertEquals(2, stats.getHitCount());
+    assertEquals(1, stats.getMissCount());
+    assertEquals(2.0 / 3, stats.getHitRatio(), 0.0001);
+    assertEquals(1, stats.getPutCount());
+    assertEquals(2, stats.getSize());
+    assertEquals(-1, stats.getByteSize());
+    cache.clear();
+    assertEquals(1, metrics.getClearCount());
+    assertEquals(0, metrics.getSize());
+  }
+
+  @Test
+  void shouldCountEvictionsAndEstimateBytes() {
+    CacheMetrics metrics = new CacheMetrics("default");
+    Cache cache = new CacheBuilder("default").size(10).readWrite(true).metrics(metrics).build();
+    for (int i = 0; i < 15; i++) {
+      cache.putObject(i, "value" + i);
+    }
+    assertEquals(15, metrics.getPutCount());
+    assertEquals(5, metrics.getEvictionCount());
+    assertEquals(10, metrics.getSize());
+    assertTrue(metrics.getByteSize() > 10 * "value0".length());
+  }
+
+  @Test
+  void shouldCountExpirations() throws Exception {
+    CacheMetrics metrics = new CacheMetrics("default");
+    TtlCache cache = new TtlCache(new PerpetualCache("default"));
+    cache.setTimeToLive(50);
+    cache.setCacheListener(metrics);
+    cache.putObject(0, 0);
+    Thread.sleep(100);
+    assertNull(cache.getObject(0));
+    assertEquals(1, metrics.getExpirationCount());
+    assertEquals(0, metrics.getEvictionCount());
+  }
+
+  @Test
+  void shouldForwardEventsToListeners() {
+    CacheMetrics metrics = new CacheMetrics("default");
+    List<String> events = new ArrayList<>();
+    CacheListener listener = new CacheListener() {
+      @Override
+      public void hit() {
+        events.add("hit");
+      }
+
+      @Override
+      public void miss() {
+        events.add("miss");
+      }
+
+      @Override
+      public void evicted() {
+        events.add("evicted");
+      }
+
+      @Override
+      public void loaded(long loadMicros) {
+        events.add("loaded " + loadMicros);
+      }
+    };
+    metrics.addListener(listener);
+    LruCache lru = new LruCache(new PerpetualCache("default"));
+    lru.setSize(1);
+    lru.setCacheListener(metrics);
+    Cache cache = new LoggingCache(lru, metrics);
+    cache.getObject(0);
+    metrics.loaded(42);
+    cache.putObject(0, 0);
+    cache.getObject(0);
+    cache.putObject(1, 1);
+    metrics.removeListener(listener);
+    cache.getObject(1);
+    assertEquals(Arrays.asList("miss", "loaded 42", "hit", "evicted"), events);
+    assertEquals(42, metrics.getAverageLoadTime(), 0.0001);
+  }
+
+}
@@ -0,0 +1,122 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.ibatis.cache.decorators.SynchronizedCache;
+import org.apache.ibatis.cache.impl.OffHeapCache;
+import org.junit.jupiter.api.Test;
+
+class OffHeapCacheTest {
+
+  @Test
+  void shouldReturnCopiesOfStoredValues() {
+    Cache cache = new OffHeapCache("default");
+    List<String> value = new ArrayList<>(Arrays.asList("a", "b", "c"));
+    cache.putObject(0, value);
+    Object copy = cache.getObject(0);
+    assertEquals(value, copy);
+    assertNotSame(value, copy);
+  }
+
+  @Test
+  void shouldStoreValuesSpanningSeveralBlocks() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setBlockSize(16);
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      builder.append(i);
+    }
+    cache.putObject("key", builder.toString());
+    assertEquals(builder.toString(), cache.getObject("key"));
+    assertTrue(cache.getUsedBytes() > 16);
+  }
+
+  @Test
+  void shouldEvictLeastRecentlyUsedWhenBudgetIsExceeded() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setBlockSize(128);
+    cache.setSize(128 * 5);
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, i);
+    }
+    assertEquals(5, cache.getSize());
+    cache.getObject(0);
+    cache.putObject(5, 5);
+    assertEquals(5, cache.getSize());
+    assertEquals(0, cache.getObject(0));
+    assertNull(cache.getObject(1));
+    assertEquals(5, cache.getObject(5));
+    assertTrue(cache.getAllocatedBytes() <= 128 * 5);
+  }
+
+  @Test
+  void shouldNotCacheValuesLargerThanBudget() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setBlockSize(64);
+    cache.setSize(128);
+    cache.putObject("small", 1);
+    cache.putObject("large", new byte[1024]);
+    assertEquals(1, cache.getObject("small"));
+    assertNull(cache.getObject("large"));
+  }
+
+  @Test
+  void shouldReplaceExistingValue() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.putObject(0, "first");
+    long used = cache.getUsedBytes();
+    cache.putObject(0, "second");
+    assertEquals("second", cache.getObject(0));
+    assertEquals(1, cache.getSize());
+    assertEquals(used + 1, cache.getUsedBytes());
+  }
+
+  @Test
+  void shouldRemoveItemOnDemand() {
+    Cache cache = new SynchronizedCache(new OffHeapCache("default"));
+    cache.putObject(0, 0);
+    assertNotNull(cache.getObject(0));
+    cache.removeObject(0);
+    assertNull(cache.getObject(0));
+  }
+
+  @Test
+  void shouldFlushAllItemsOnDemand() {
+    OffHeapCache cache = new OffHeapCache("default");
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, i);
+    }
+    cache.clear();
+    assertNull(cache.getObject(0));
+    assertNull(cache.getObject(4));
+    assertEquals(0, cache.getUsedBytes());
+    cache.putObject(0, 0);
+    assertEquals(0, cache.getObject(0));
+  }
+
+  @Test
+  void shouldRejectNonSerializableValues() {
+    Cache cache = new OffHeapCache("default");
+    assertThrows(CacheException.class, () -> cache.putObject(0, new Object()));
+  }
+
+}
@@ -19,6 +19,7 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import org.apache.ibatis.cache.decorators.SerializedCache;
 import org.apache.ibatis.cache.decorators.SynchronizedCache;
+import org.apache.ibatis.cache.impl.ConcurrentPerpetualCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.junit.jupiter.api.Test;
 
@@ -69,6 +70,23 @@ class PerpetualCacheTest {
     assertNull(cache.getObject(4));
   }
 
+  @Test
+  void shouldOnlyBeThreadSafeInTheConcurrentVariant() {
+    assertFalse(new PerpetualCache("default").isThreadSafe());
+    assertTrue(new ConcurrentPerpetualCache("default").isThreadSafe());
+  }
+
+  @Test
+  void shouldAcceptNullKeysAndValues() {
+    Cache cache = new ConcurrentPerpetualCache("default");
+    cache.putObject(null, 1);
+    cache.putObject(1, null);
+    assertEquals(1, cache.getObject(null));
+    assertNull(cache.getObject(1));
+    assertEquals(2, cache.getSize());
+    assertEquals(1, cache.removeObject(null));
+  }
+
   @Test
   void shouldDemonstrateIdIsNull() {
     Cache cache = new PerpetualCache(null);
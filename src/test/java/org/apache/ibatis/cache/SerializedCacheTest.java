@@ -16,6 +16,7 @@
 package org.apache.ibatis.cache;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.io.Serializable;
@@ -23,6 +24,7 @@ import java.util.Objects;
 
 import org.apache.ibatis.cache.decorators.SerializedCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.cache.serializer.BinaryCacheSerializer;
 import org.junit.jupiter.api.Test;
 
 class SerializedCacheTest {
@@ -49,6 +51,34 @@ class SerializedCacheTest {
     }
   }
 
+  @Test
+  void shouldReturnCopiesWithBinarySerializer() {
+    SerializedCache cache = new SerializedCache(new PerpetualCache("default"), new BinaryCacheSerializer());
+    CachingObject object = new CachingObject(1);
+    cache.putObject(0, object);
+    object.x = 2;
+    CachingObject copy = (CachingObject) cache.getObject(0);
+    assertEquals(new CachingObject(1), copy);
+    copy.x = 3;
+    assertEquals(new CachingObject(1), cache.getObject(0));
+  }
+
+  @Test
+  void shouldReturnCopiesOfSnapshots() {
+    SerializedCache cache = new SerializedCache(new PerpetualCache("default"));
+    cache.setSerializer("BINARY");
+    cache.setSnapshot(true);
+    CachingObject object = new CachingObject(1);
+    cache.putObject(0, object);
+    object.x = 2;
+    CachingObject copy = (CachingObject) cache.getObject(0);
+    assertEquals(new CachingObject(1), copy);
+    copy.x = 3;
+    assertEquals(new CachingObject(1), cache.getObject(0));
+    cache.putObject(1, null);
+    assertNull(cache.getObject(1));
+  }
+
   @Test
   void throwExceptionWhenTryingToCacheNonSerializableObject() {
     SerializedCache cache = new SerializedCache(new PerpetualCache("default"));
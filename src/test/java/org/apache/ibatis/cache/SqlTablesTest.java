@@ -0,0 +1,76 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+class SqlTablesTest {
+
+  @Test
+  void shouldReadTablesOfSelect() {
+    assertArrayEquals(new String[] { "BLOG" }, SqlTables.readTables("select * from blog where id = ?"));
+    assertArrayEquals(new String[] { "BLOG", "AUTHOR" },
+        SqlTables.readTables("select * from blog b, author a where b.author_id = a.id"));
+    assertArrayEquals(new String[] { "BLOG", "AUTHOR", "POST" }, SqlTables.readTables(
+        "select * from Blog b left outer join \"author\" a on a.id = b.author_id join blog_schema.post p using (blog_id)"));
+  }
+
+  @Test
+  void shouldReadTablesOfSubqueries() {
+    assertArrayEquals(new String[] { "BLOG", "POST" },
+        SqlTables.readTables("select * from blog where id in (select blog_id from post where subject = 'from author')"));
+  }
+
+  @Test
+  void shouldReadAnyTableWhenUnknown() {
+    assertArrayEquals(new String[] { TableVersions.ANY_TABLE }, SqlTables.readTables("select 1"));
+    assertArrayEquals(new String[] { "BLOG", TableVersions.ANY_TABLE },
+        SqlTables.readTables("select * from blog b join table(posts_of(b.id)) p on 1 = 1"));
+  }
+
+  @Test
+  void shouldWriteTablesOfModifications() {
+    assertArrayEquals(new String[] { "BLOG" }, SqlTables.writeTables("insert into blog (id) values (?)"));
+    assertArrayEquals(new String[] { "BLOG" }, SqlTables.writeTables("update blog set title = ? where id = ?"));
+    assertArrayEquals(new String[] { "BLOG" }, SqlTables.writeTables("delete from blog where id = ?"));
+    assertArrayEquals(new String[] { "BLOG" },
+        SqlTables.writeTables("merge into blog b using post p on (b.id = p.blog_id) when matched then delete"));
+    assertArrayEquals(new String[] { "BLOG" }, SqlTables.writeTables("truncate table blog"));
+  }
+
+  @Test
+  void shouldWriteTablesOfEachStatement() {
+    assertArrayEquals(new String[] { "POST", "BLOG" },
+        SqlTables.writeTables("delete from post where blog_id = ?; delete from blog where id = ?"));
+  }
+
+  @Test
+  void shouldNotWriteTablesOfSelect() {
+    assertNull(SqlTables.writeTables("select * from blog"));
+    assertNull(SqlTables.writeTables("{call update_blogs()}"));
+  }
+
+  @Test
+  void shouldParseDeclaredTables() {
+    assertArrayEquals(new String[] { "BLOG", "AUTHOR" }, SqlTables.parseTables(" blog, schema.Author "));
+    assertNull(SqlTables.parseTables(" "));
+    assertNull(SqlTables.parseTables(null));
+  }
+
+}
@@ -0,0 +1,103 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.apache.ibatis.cache.decorators.TtlCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.junit.jupiter.api.Test;
+
+class TtlCacheTest {
+
+  @Test
+  void shouldExpireEachEntryOnItsOwn() throws Exception {
+    TtlCache cache = new TtlCache(new PerpetualCache("DefaultCache"));
+    cache.setTimeToLive(500);
+    cache.putObject(0, 0);
+    Thread.sleep(300);
+    cache.putObject(1, 1);
+    assertEquals(0, cache.getObject(0));
+    Thread.sleep(300);
+    assertNull(cache.getObject(0));
+    assertEquals(1, cache.getObject(1));
+    Thread.sleep(300);
+    assertNull(cache.getObject(1));
+  }
+
+  @Test
+  void shouldRemoveExpiredEntriesThatAreNotAskedFor() throws Exception {
+    TtlCache cache = new TtlCache(new PerpetualCache("DefaultCache"));
+    cache.setTimeToLive(100);
+    for (int i = 0; i < 100; i++) {
+      cache.putObject(i, i);
+    }
+    assertEquals(100, cache.getSize());
+    Thread.sleep(300);
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  void shouldSpreadExpiriesWithJitter() throws Exception {
+    TtlCache cache = new TtlCache(new PerpetualCache("DefaultCache"));
+    cache.setTimeToLive(2000);
+    cache.setJitter(0.5);
+    for (int i = 0; i < 100; i++) {
+      cache.putObject(i, i);
+    }
+    Thread.sleep(1500);
+    int size = cache.getSize();
+    assertTrue(size > 0 && size < 100, "size " + size);
+  }
+
+  @Test
+  void shouldMissOnceToRefreshAhead() throws Exception {
+    TtlCache cache = new TtlCache(new PerpetualCache("DefaultCache"));
+    cache.setTimeToLive(1000);
+    cache.setRefreshAhead(0.5);
+    cache.putObject(0, 0);
+    assertEquals(0, cache.getObject(0));
+    Thread.sleep(600);
+    assertNull(cache.getObject(0));
+    assertEquals(0, cache.getObject(0));
+    cache.putObject(0, 1);
+    assertEquals(1, cache.getObject(0));
+  }
+
+  @Test
+  void shouldRemoveAndClearOnDemand() {
+    TtlCache cache = new TtlCache(new PerpetualCache("DefaultCache"));
+    cache.setTimeToLive(60000);
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, i);
+    }
+    cache.removeObject(0);
+    assertNull(cache.getObject(0));
+    assertEquals(4, cache.getObject(4));
+    cache.clear();
+    assertNull(cache.getObject(4));
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  void shouldRejectInvalidSettings() {
+    TtlCache cache = new TtlCache(new PerpetualCache("DefaultCache"));
+    assertThrows(CacheException.class, () -> cache.setTimeToLive(0));
+    assertThrows(CacheException.class, () -> cache.setJitter(1));
+    assertThrows(CacheException.class, () -> cache.setRefreshAhead(-0.1));
+  }
+
+}
@@ -0,0 +1,250 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.datasource.DataSourceFactory;
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.Configuration;
+import org.hsqldb.jdbc.JDBCConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ConcurrentPooledDataSourceTest {
+
+  private ConcurrentPooledDataSource ds;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    Properties props = Resources.getResourceAsProperties(BaseDataTest.JPETSTORE_PROPERTIES);
+    ds = new ConcurrentPooledDataSource(props.getProperty("driver"), props.getProperty("url"),
+        props.getProperty("username"), props.getProperty("password"));
+  }
+
+  @AfterEach
+  void tearDown() {
+    ds.forceCloseAll();
+  }
+
+  @Test
+  void shouldNotMakeReturningThreadsWaitForAConnectionBeingOpened() throws Exception {
+    Properties props = Resources.getResourceAsProperties(BaseDataTest.JPETSTORE_PROPERTIES);
+    CountDownLatch opening = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger opened = new AtomicInteger();
+    ds = new ConcurrentPooledDataSource(new UnpooledDataSource(props.getProperty("driver"), props.getProperty("url"),
+        props.getProperty("username"), props.getProperty("password")) {
+      @Override
+      public Connection getConnection() throws SQLException {
+        if (opened.incrementAndGet() == 2) {
+          opening.countDown();
+          try {
+            release.await(5, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        return super.getConnection();
+      }
+    });
+    ds.setPoolMaximumActiveConnections(2);
+    Connection first = ds.getConnection();
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<Connection> second = executor.submit(() -> ds.getConnection());
+      assertTrue(opening.await(5, TimeUnit.SECONDS));
+      executor.submit(() -> {
+        first.close();
+        return null;
+      }).get(1, TimeUnit.SECONDS);
+      release.countDown();
+      second.get(5, TimeUnit.SECONDS).close();
+    } finally {
+      release.countDown();
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void shouldProperlyMaintainPoolOf3ActiveAnd2IdleConnections() throws Exception {
+    ds.setPoolMaximumActiveConnections(3);
+    ds.setPoolMaximumIdleConnections(2);
+    List<Connection> connections = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      connections.add(ds.getConnection());
+    }
+    assertEquals(3, ds.getPoolState().getActiveConnectionCount());
+    for (Connection c : connections) {
+      c.close();
+    }
+    assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+    assertEquals(2, ds.getPoolState().getIdleConnectionCount());
+    assertEquals(3, ds.getPoolState().getRequestCount());
+    assertEquals(0, ds.getPoolState().getBadConnectionCount());
+    assertEquals(0, ds.getPoolState().getHadToWaitCount());
+    assertNotNull(ds.getPoolState().toString());
+  }
+
+  @Test
+  void shouldWarmUpThePool() throws Exception {
+    ds.setPoolWarmUpConnections(3);
+    ds.setPoolConnectionInitSql("SET SCHEMA INFORMATION_SCHEMA");
+    assertFalse(ds.isPoolReady());
+    ds.warmUp().get(5, TimeUnit.SECONDS);
+    assertTrue(ds.isPoolReady());
+    assertEquals(3, ds.getPoolState().getIdleConnectionCount());
+    try (Connection connection = ds.getConnection()) {
+      assertEquals("INFORMATION_SCHEMA", connection.getSchema());
+    }
+    assertEquals(3, ds.getPoolState().getIdleConnectionCount());
+  }
+
+  @Test
+  void shouldReuseTheConnectionReturnedByTheSameThread() throws Exception {
+    Connection c1 = ds.getConnection();
+    Connection real1 = PooledDataSource.unwrapConnection(c1);
+    c1.close();
+    Connection c2 = ds.getConnection();
+    assertSame(real1, PooledDataSource.unwrapConnection(c2));
+    assertNotSame(c1, c2);
+    c2.close();
+  }
+
+  @Test
+  void shouldRejectUseOfAConnectionAfterItWasClosed() throws Exception {
+    Connection c = ds.getConnection();
+    c.close();
+    assertThrows(SQLException.class, c::createStatement);
+    c.close();
+    assertEquals(1, ds.getPoolState().getBadConnectionCount());
+    c.toString();
+  }
+
+  @Test
+  void shouldHandOffReturnedConnectionToWaitingThread() throws Exception {
+    ds.setPoolMaximumActiveConnections(1);
+    ds.setPoolTimeToWait(10000);
+    Connection held = ds.getConnection();
+    Connection real = PooledDataSource.unwrapConnection(held);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Connection> waiting = executor.submit(() -> PooledDataSource.unwrapConnection(ds.getConnection()));
+      while (ds.getPoolState().getHadToWaitCount() == 0) {
+        Thread.sleep(10);
+      }
+      held.close();
+      assertSame(real, waiting.get(5, TimeUnit.SECONDS));
+      assertEquals(1, ds.getPoolState().getActiveConnectionCount());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void shouldClaimOverdueConnection() throws Exception {
+    ds.setPoolMaximumActiveConnections(1);
+    ds.setPoolMaximumCheckoutTime(50);
+    ds.setPoolTimeToWait(20);
+    Connection leaked = ds.getConnection();
+    Thread.sleep(100);
+    Connection c = ds.getConnection();
+    assertSame(PooledDataSource.unwrapConnection(leaked), PooledDataSource.unwrapConnection(c));
+    assertThrows(SQLException.class, leaked::createStatement);
+    assertEquals(1, ds.getPoolState().getClaimedOverdueConnectionCount());
+    c.close();
+  }
+
+  @Test
+  void shouldNeverExceedMaximumActiveConnectionsUnderContention() throws Exception {
+    int threads = 16;
+    ds.setPoolMaximumActiveConnections(4);
+    ds.setPoolMaximumIdleConnections(4);
+    ds.setPoolTimeToWait(10000);
+    AtomicInteger inUse = new AtomicInteger();
+    AtomicInteger maxInUse = new AtomicInteger();
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        futures.add(executor.submit(() -> {
+          start.await();
+          for (int j = 0; j < 200; j++) {
+            try (Connection c = ds.getConnection()) {
+              maxInUse.accumulateAndGet(inUse.incrementAndGet(), Math::max);
+              assertTrue(c.isValid(1));
+              inUse.decrementAndGet();
+            }
+          }
+          return null;
+        }));
+      }
+      start.countDown();
+      for (Future<?> future : futures) {
+        future.get(60, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertTrue(maxInUse.get() <= 4);
+    assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+    assertEquals(threads * 200, ds.getPoolState().getRequestCount());
+    assertEquals(0, ds.getPoolState().getBadConnectionCount());
+  }
+
+  @Test
+  void shouldInvalidateCheckedOutConnectionsOnForceCloseAll() throws Exception {
+    Connection c = ds.getConnection();
+    ds.forceCloseAll();
+    assertThrows(SQLException.class, c::createStatement);
+    assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+    assertEquals(0, ds.getPoolState().getIdleConnectionCount());
+    Connection another = ds.getConnection();
+    assertTrue(PooledDataSource.unwrapConnection(another) instanceof JDBCConnection);
+    another.close();
+  }
+
+  @Test
+  void shouldBeConfigurableThroughTypeAlias() throws Exception {
+    DataSourceFactory factory = (DataSourceFactory) new Configuration().getTypeAliasRegistry()
+        .resolveAlias("CONCURRENT_POOLED").getDeclaredConstructor().newInstance();
+    Properties props = Resources.getResourceAsProperties(BaseDataTest.JPETSTORE_PROPERTIES);
+    props.setProperty("poolMaximumActiveConnections", "7");
+    props.setProperty("poolPingEnabled", "true");
+    factory.setProperties(props);
+    ConcurrentPooledDataSource dataSource = (ConcurrentPooledDataSource) factory.getDataSource();
+    assertEquals(7, dataSource.getPoolMaximumActiveConnections());
+    assertTrue(dataSource.isPoolPingEnabled());
+  }
+
+}
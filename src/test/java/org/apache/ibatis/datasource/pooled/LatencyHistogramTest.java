@@ -0,0 +1,71 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+  @Test
+  void shouldReportPercentilesWithinThePrecisionOfTheBuckets() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 10000; i++) {
+      histogram.record(i);
+    }
+    assertEquals(10000, histogram.getCount());
+    assertEquals(10000, histogram.getMax());
+    assertEquals(5000.5, histogram.getMean(), 0.001);
+    assertWithinPrecision(5000, histogram.getValueAtPercentile(50));
+    assertWithinPrecision(9900, histogram.getValueAtPercentile(99));
+    assertEquals(10000, histogram.getValueAtPercentile(100));
+  }
+
+  @Test
+  void shouldKeepSmallValuesExact() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(-5);
+    histogram.record(3);
+    histogram.record(7);
+    assertEquals(0, histogram.getValueAtPercentile(0));
+    assertEquals(3, histogram.getValueAtPercentile(50));
+    assertEquals(7, histogram.getValueAtPercentile(100));
+  }
+
+  @Test
+  void shouldMapEveryBucketBackToItsValues() {
+    for (long value : new long[] { 0, 31, 32, 33, 63, 64, 1000, 123456789, Long.MAX_VALUE }) {
+      int index = LatencyHistogram.bucketIndex(value);
+      assertTrue(LatencyHistogram.lowestEquivalentValue(index) <= value);
+      assertTrue(LatencyHistogram.highestEquivalentValue(index) >= value);
+    }
+  }
+
+  @Test
+  void shouldReportZeroWhenEmpty() {
+    LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+    assertEquals(0, snapshot.getCount());
+    assertEquals(0, snapshot.getP99());
+    assertEquals(0, snapshot.getMax());
+  }
+
+  private static void assertWithinPrecision(long expected, long actual) {
+    assertTrue(Math.abs(actual - expected) <= expected / 32, "expected about " + expected + " but was " + actual);
+  }
+
+}
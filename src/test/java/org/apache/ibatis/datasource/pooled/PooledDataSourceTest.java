@@ -0,0 +1,772 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.apache.ibatis.io.Resources;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PooledDataSourceTest {
+
+  private SlowUnpooledDataSource unpooledDataSource;
+  private PooledDataSource ds;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    Properties props = Resources.getResourceAsProperties(BaseDataTest.JPETSTORE_PROPERTIES);
+    unpooledDataSource = new SlowUnpooledDataSource(props.getProperty("driver"), props.getProperty("url"),
+        props.getProperty("username"), props.getProperty("password"));
+    ds = new PooledDataSource(unpooledDataSource);
+  }
+
+  @AfterEach
+  void tearDown() {
+    unpooledDataSource.release();
+    ds.forceCloseAll();
+  }
+
+  @Test
+  void shouldNotHoldThePoolLockWhileOpeningAConnection() throws Exception {
+    Connection first = ds.getConnection();
+    unpooledDataSource.blockNextConnection();
+    CompletableFuture<Connection> second = CompletableFuture.supplyAsync(() -> {
+      try {
+        return ds.getConnection();
+      } catch (SQLException e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    assertTrue(unpooledDataSource.awaitBlocked());
+    assertEquals(1, ds.getPoolState().getPendingConnectionCount());
+
+    // returning and checking out an idle connection must not wait for the login in progress
+    CompletableFuture.runAsync(() -> {
+      try {
+        first.close();
+        ds.getConnection().close();
+      } catch (SQLException e) {
+        throw new IllegalStateException(e);
+      }
+    }).get(5, TimeUnit.SECONDS);
+    assertEquals(1, ds.getPoolState().getIdleConnectionCount());
+
+    unpooledDataSource.release();
+    second.get(5, TimeUnit.SECONDS).close();
+    assertEquals(0, ds.getPoolState().getPendingConnectionCount());
+    assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+  }
+
+  @Test
+  void shouldCountConnectionsBeingOpenedTowardsTheMaximum() throws Exception {
+    ds.setPoolMaximumActiveConnections(1);
+    ds.setPoolTimeToWait(50);
+    unpooledDataSource.blockNextConnection();
+    CompletableFuture<Connection> first = CompletableFuture.supplyAsync(() -> {
+      try {
+        return ds.getConnection();
+      } catch (SQLException e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    assertTrue(unpooledDataSource.awaitBlocked());
+    CompletableFuture<Connection> second = CompletableFuture.supplyAsync(() -> {
+      try {
+        return ds.getConnection();
+      } catch (SQLException e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    Thread.sleep(200);
+    assertEquals(1, unpooledDataSource.openedConnections.get());
+    assertTrue(ds.getPoolState().getHadToWaitCount() > 0);
+
+    unpooledDataSource.release();
+    Connection connection = first.get(5, TimeUnit.SECONDS);
+    Connection realConnection = PooledDataSource.unwrapConnection(connection);
+    connection.close();
+    assertSame(realConnection, PooledDataSource.unwrapConnection(second.get(5, TimeUnit.SECONDS)));
+    assertEquals(1, unpooledDataSource.openedConnections.get());
+  }
+
+  @Test
+  void shouldReleaseTheSlotWhenOpeningAConnectionFails() throws Exception {
+    ds.setPoolMaximumActiveConnections(1);
+    unpooledDataSource.failNextConnection();
+    assertThrows(SQLException.class, ds::getConnection);
+    assertEquals(0, ds.getPoolState().getPendingConnectionCount());
+    assertNotNull(ds.getConnection());
+  }
+
+  @Test
+  void shouldOpenConnectionsInBackground() throws Exception {
+    ds.setPoolBackgroundConnectionCreation(true);
+    Connection connection = ds.getConnection();
+    awaitIdleConnections(ds, 1);
+    assertEquals(0, ds.getPoolState().getPendingConnectionCount());
+    connection.close();
+    assertEquals(2, unpooledDataSource.openedConnections.get());
+  }
+
+  @Test
+  void shouldKeepTheMinimumOfIdleConnectionsOpen() throws Exception {
+    Properties props = Resources.getResourceAsProperties(BaseDataTest.JPETSTORE_PROPERTIES);
+    props.setProperty("poolMaintenanceInterval", "20");
+    props.setProperty("poolMinimumIdleConnections", "2");
+    PooledDataSourceFactory factory = new PooledDataSourceFactory();
+    factory.setProperties(props);
+    PooledDataSource maintained = (PooledDataSource) factory.getDataSource();
+    try {
+      assertEquals(20, maintained.getPoolMaintenanceInterval());
+      awaitIdleConnections(maintained, 2);
+      maintained.getConnection();
+      awaitIdleConnections(maintained, 2);
+      assertEquals(1, maintained.getPoolState().getActiveConnectionCount());
+    } finally {
+      maintained.setPoolMaintenanceInterval(0);
+      maintained.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldEvictIdleConnectionsAboveTheMinimum() throws Exception {
+    ds.setPoolMinimumIdleConnections(1);
+    ds.setPoolMaximumIdleTime(50);
+    List<Connection> connections = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      connections.add(ds.getConnection());
+    }
+    for (Connection connection : connections) {
+      connection.close();
+    }
+    assertEquals(3, ds.getPoolState().getIdleConnectionCount());
+    ds.setPoolMaintenanceInterval(20);
+    try {
+      awaitIdleConnections(ds, 1);
+      Thread.sleep(100);
+      assertEquals(1, ds.getPoolState().getIdleConnectionCount());
+    } finally {
+      ds.setPoolMaintenanceInterval(0);
+    }
+  }
+
+  @Test
+  void shouldRetireConnectionsPastTheirLifetime() throws Exception {
+    ds.setPoolMaximumConnectionLifetime(50);
+    Connection connection = ds.getConnection();
+    Connection realConnection = PooledDataSource.unwrapConnection(connection);
+    Thread.sleep(100);
+    connection.close();
+    assertEquals(0, ds.getPoolState().getIdleConnectionCount());
+    assertTrue(realConnection.isClosed());
+  }
+
+  @Test
+  void shouldDiscardBrokenIdleConnectionsOnKeepalive() throws Exception {
+    ds.setPoolKeepaliveTime(10);
+    Connection connection = ds.getConnection();
+    Connection realConnection = PooledDataSource.unwrapConnection(connection);
+    connection.close();
+    realConnection.close();
+    assertEquals(1, ds.getPoolState().getIdleConnectionCount());
+    ds.setPoolMaintenanceInterval(20);
+    try {
+      awaitIdleConnections(ds, 0);
+      assertEquals(1, ds.getPoolState().getBadConnectionCount());
+    } finally {
+      ds.setPoolMaintenanceInterval(0);
+    }
+  }
+
+  @Test
+  void shouldReuseCachedStatementsAcrossCheckouts() throws Exception {
+    ds.setPoolStatementCacheSize(10);
+    String sql = "SELECT COUNT(*) FROM INFORMATION_SCHEMA.SYSTEM_USERS WHERE USER_NAME = ?";
+    PreparedStatement realStatement;
+    try (Connection connection = ds.getConnection()) {
+      PreparedStatement statement = connection.prepareStatement(sql);
+      realStatement = statement.unwrap(PreparedStatement.class);
+      assertSame(connection, statement.getConnection());
+      statement.setString(1, "SA");
+      statement.setMaxRows(1);
+      statement.executeQuery().close();
+      statement.close();
+      assertTrue(statement.isClosed());
+      assertThrows(SQLException.class, statement::executeQuery);
+    }
+    try (Connection connection = ds.getConnection()) {
+      try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        assertSame(realStatement, statement.unwrap(PreparedStatement.class));
+        assertEquals(0, statement.getMaxRows());
+        // parameters were cleared when the statement was returned to the cache
+        assertThrows(SQLException.class, statement::executeQuery);
+      }
+      try (PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_SCROLL_INSENSITIVE,
+          ResultSet.CONCUR_READ_ONLY)) {
+        assertNotSame(realStatement, statement.unwrap(PreparedStatement.class));
+      }
+    }
+    assertFalse(realStatement.isClosed());
+  }
+
+  @Test
+  void shouldResetCachedStatementsThatAreClosed() throws Exception {
+    ds.setPoolStatementCacheSize(10);
+    String sql = "SELECT 1 FROM INFORMATION_SCHEMA.SYSTEM_USERS";
+    try (Connection connection = ds.getConnection()) {
+      PreparedStatement statement = connection.prepareStatement(sql);
+      PreparedStatement realStatement = statement.unwrap(PreparedStatement.class);
+      statement.setLargeMaxRows(1);
+      ResultSet resultSet = statement.executeQuery();
+      statement.close();
+      assertTrue(resultSet.isClosed());
+      try (PreparedStatement cached = connection.prepareStatement(sql)) {
+        assertSame(realStatement, cached.unwrap(PreparedStatement.class));
+        assertEquals(0, cached.getLargeMaxRows());
+        cached.setCursorName("C");
+      }
+      // a cursor name cannot be reset, so the statement was closed instead of being cached again
+      assertTrue(realStatement.isClosed());
+      try (PreparedStatement prepared = connection.prepareStatement(sql)) {
+        assertNotSame(realStatement, prepared.unwrap(PreparedStatement.class));
+      }
+    }
+  }
+
+  @Test
+  void shouldKeepCachedStatementsOfAClaimedOverdueConnection() throws Exception {
+    ds.setPoolStatementCacheSize(10);
+    ds.setPoolMaximumActiveConnections(1);
+    ds.setPoolMaximumCheckoutTime(50);
+    ds.setPoolTimeToWait(20);
+    String sql = "SELECT 1 FROM INFORMATION_SCHEMA.SYSTEM_USERS";
+    Connection leaked = ds.getConnection();
+    PreparedStatement realStatement;
+    try (PreparedStatement statement = leaked.prepareStatement(sql)) {
+      realStatement = statement.unwrap(PreparedStatement.class);
+    }
+    Thread.sleep(100);
+    try (Connection connection = ds.getConnection()) {
+      assertEquals(1, ds.getPoolState().getClaimedOverdueConnectionCount());
+      try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        assertSame(realStatement, statement.unwrap(PreparedStatement.class));
+      }
+    }
+    assertFalse(realStatement.isClosed());
+  }
+
+  @Test
+  void shouldOnlyKeepTheResultSetsOfTheLastExecutionOfACachedStatement() throws Exception {
+    ds.setPoolStatementCacheSize(10);
+    try (Connection connection = ds.getConnection();
+        PreparedStatement statement = connection.prepareStatement("SELECT 1 FROM INFORMATION_SCHEMA.SYSTEM_USERS")) {
+      for (int i = 0; i < 100; i++) {
+        statement.executeQuery().close();
+        statement.getResultSet();
+      }
+      Field resultSets = Proxy.getInvocationHandler(statement).getClass().getDeclaredField("resultSets");
+      resultSets.setAccessible(true);
+      assertEquals(1, ((List<?>) resultSets.get(Proxy.getInvocationHandler(statement))).size());
+    }
+  }
+
+  @Test
+  void shouldCloseLeastRecentlyUsedStatementsWhenTheCacheIsFull() throws Exception {
+    ds.setPoolStatementCacheSize(1);
+    try (Connection connection = ds.getConnection()) {
+      PreparedStatement first = connection.prepareStatement("SELECT 1 FROM INFORMATION_SCHEMA.SYSTEM_USERS");
+      PreparedStatement realFirst = first.unwrap(PreparedStatement.class);
+      PreparedStatement second = connection.prepareStatement("SELECT 2 FROM INFORMATION_SCHEMA.SYSTEM_USERS");
+      PreparedStatement realSecond = second.unwrap(PreparedStatement.class);
+      first.close();
+      second.close();
+      assertTrue(realFirst.isClosed());
+      assertFalse(realSecond.isClosed());
+    }
+  }
+
+  @Test
+  void shouldRecordPoolMetrics() throws Exception {
+    ds.setPoolMaximumActiveConnections(1);
+    ds.setPoolTimeToWait(50);
+    AtomicInteger created = new AtomicInteger();
+    AtomicInteger acquired = new AtomicInteger();
+    AtomicInteger released = new AtomicInteger();
+    AtomicInteger timedOut = new AtomicInteger();
+    ds.getPoolMetrics().addListener(new PoolListener() {
+      @Override
+      public void connectionCreated(long creationMicros) {
+        created.incrementAndGet();
+      }
+
+      @Override
+      public void connectionAcquired(long waitMicros) {
+        acquired.incrementAndGet();
+      }
+
+      @Override
+      public void connectionReleased(long checkoutMicros) {
+        released.incrementAndGet();
+      }
+
+      @Override
+      public void acquireTimedOut() {
+        timedOut.incrementAndGet();
+      }
+    });
+
+    Connection connection = ds.getConnection();
+    assertEquals(1, ds.getPoolMetrics().getActiveConnections());
+    CompletableFuture<Connection> waiting = CompletableFuture.supplyAsync(() -> {
+      try {
+        return ds.getConnection();
+      } catch (SQLException e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    Thread.sleep(300);
+    // the waiting thread wakes up every poolTimeToWait to look for a connection again
+    long deadline = System.currentTimeMillis() + 5000;
+    while (ds.getPoolMetrics().getWaitingThreads() != 1 && System.currentTimeMillis() < deadline) {
+      Thread.yield();
+    }
+    assertEquals(1, ds.getPoolMetrics().getWaitingThreads());
+    connection.close();
+    waiting.get(5, TimeUnit.SECONDS).close();
+
+    PoolMetrics metrics = ds.getPoolMetrics();
+    assertEquals(0, metrics.getWaitingThreads());
+    assertEquals(1, metrics.getIdleConnections());
+    assertEquals(2, metrics.getRequestCount());
+    assertTrue(metrics.getTimeoutCount() > 0);
+    assertEquals(1, metrics.getCreationTime().getCount());
+    assertEquals(2, metrics.getCheckoutTime().getCount());
+    assertTrue(metrics.getAcquireTime().getMax() >= TimeUnit.MILLISECONDS.toMicros(250));
+    assertTrue(metrics.getAcquireTime().getP99() >= metrics.getAcquireTime().getP50());
+    assertEquals(1, created.get());
+    assertEquals(2, acquired.get());
+    assertEquals(2, released.get());
+    assertEquals(metrics.getTimeoutCount(), timedOut.get());
+  }
+
+  @Test
+  void shouldPublishPoolMetricsThroughJmx() throws Exception {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName("org.apache.ibatis:type=PooledDataSource,name=\"jpetstore\"");
+    ds.setPoolJmxName("jpetstore");
+    try {
+      assertEquals("jpetstore", ds.getPoolJmxName());
+      ds.getConnection().close();
+      assertEquals(1, server.getAttribute(name, "IdleConnections"));
+      assertEquals(1L, server.getAttribute(name, "RequestCount"));
+      CompositeData acquireTime = (CompositeData) server.getAttribute(name, "AcquireTime");
+      assertEquals(1L, acquireTime.get("count"));
+    } finally {
+      ds.setPoolJmxName(null);
+    }
+    assertFalse(server.isRegistered(name));
+  }
+
+  @Test
+  void shouldHandReturnedConnectionsToWaitersInArrivalOrder() throws Exception {
+    ds.setPoolMaximumActiveConnections(1);
+    ds.setPoolTimeToWait(20);
+    Connection connection = ds.getConnection();
+    List<Integer> order = new CopyOnWriteArrayList<>();
+    List<CompletableFuture<Void>> waiting = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      int id = i;
+      waiting.add(CompletableFuture.runAsync(() -> {
+        try (Connection c = ds.getConnection()) {
+          order.add(id);
+        } catch (SQLException e) {
+          throw new IllegalStateException(e);
+        }
+      }));
+      awaitWaitingThreads(ds, i + 1);
+    }
+    // waiters wake up every poolTimeToWait, but must not overtake each other
+    Thread.sleep(100);
+    connection.close();
+    CompletableFuture.allOf(waiting.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+    assertEquals(Arrays.asList(0, 1, 2), order);
+    assertEquals(1, unpooledDataSource.openedConnections.get());
+  }
+
+  @Test
+  void shouldRejectRequestsBeyondTheMaximumOfWaiters() throws Exception {
+    ds.setPoolMaximumActiveConnections(1);
+    ds.setPoolMaximumWaiters(1);
+    Connection connection = ds.getConnection();
+    CompletableFuture<Connection> waiting = CompletableFuture.supplyAsync(() -> {
+      try {
+        return ds.getConnection();
+      } catch (SQLException e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    awaitWaitingThreads(ds, 1);
+    assertThrows(SQLTransientConnectionException.class, ds::getConnection);
+    assertEquals(1, ds.getPoolMetrics().getRejectedCount());
+    connection.close();
+    waiting.get(5, TimeUnit.SECONDS).close();
+  }
+
+  @Test
+  void shouldGiveUpAfterTheMaximumWaitTime() throws Exception {
+    ds.setPoolMaximumActiveConnections(1);
+    ds.setPoolMaximumWaitTime(100);
+    Connection connection = ds.getConnection();
+    long start = System.currentTimeMillis();
+    assertThrows(SQLTransientConnectionException.class, ds::getConnection);
+    assertTrue(System.currentTimeMillis() - start >= 100);
+    assertEquals(0, ds.getPoolMetrics().getWaitingThreads());
+    // the request that gave up must not receive the connection
+    connection.close();
+    assertEquals(1, ds.getPoolState().getIdleConnectionCount());
+    assertNotNull(ds.getConnection());
+  }
+
+  @Test
+  void shouldReportConnectionsCheckedOutForLongerThanTheLeakDetectionThreshold() throws Exception {
+    List<Throwable> checkoutSites = new CopyOnWriteArrayList<>();
+    ds.getPoolMetrics().addListener(new PoolListener() {
+      @Override
+      public void connectionLeaked(long checkoutMicros, Throwable checkoutSite) {
+        checkoutSites.add(checkoutSite);
+      }
+    });
+    ds.setPoolLeakDetectionThreshold(50);
+    Connection leaked = ds.getConnection();
+    ds.getConnection().close();
+
+    long deadline = System.currentTimeMillis() + 5000;
+    while (checkoutSites.isEmpty() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Thread.sleep(150);
+    assertEquals(1, checkoutSites.size());
+    assertTrue(Arrays.stream(checkoutSites.get(0).getStackTrace())
+        .anyMatch(element -> element.getClassName().equals(PooledDataSourceTest.class.getName())));
+    assertEquals(1, ds.getPoolMetrics().getLeakCount());
+    List<String> suspects = ds.getPoolMetrics().getLeakSuspects();
+    assertEquals(1, suspects.size());
+    assertTrue(suspects.get(0).contains(PooledDataSourceTest.class.getName()));
+
+    leaked.close();
+    assertTrue(ds.getPoolMetrics().getLeakSuspects().isEmpty());
+    ds.setPoolLeakDetectionThreshold(0);
+  }
+
+  @Test
+  void shouldNotRecordTheCheckoutSiteWhenLeakDetectionIsDisabled() throws Exception {
+    Connection connection = ds.getConnection();
+    PooledConnection pooledConnection = (PooledConnection) Proxy.getInvocationHandler(connection);
+    assertNull(pooledConnection.checkoutSite);
+    connection.close();
+  }
+
+  @Test
+  void shouldNotCallTheDriverToResetAConnectionLeftInAutoCommitMode() throws Exception {
+    unpooledDataSource.recordCalls();
+    try (Connection connection = ds.getConnection()) {
+      assertTrue(connection.getAutoCommit());
+      try (PreparedStatement statement = connection.prepareStatement("SELECT 1 FROM INFORMATION_SCHEMA.SYSTEM_USERS")) {
+        statement.executeQuery().close();
+      }
+    }
+    assertEquals(Arrays.asList("isClosed", "getAutoCommit", "prepareStatement"), unpooledDataSource.calls);
+    unpooledDataSource.calls.clear();
+    try (Connection connection = ds.getConnection()) {
+      assertTrue(connection.getAutoCommit());
+    }
+    // only the checkout checks the connection; the pool knows the auto-commit mode
+    assertEquals(Arrays.asList("isClosed"), unpooledDataSource.calls);
+  }
+
+  @Test
+  void shouldRollBackConnectionsReturnedOutsideAutoCommitMode() throws Exception {
+    unpooledDataSource.recordCalls();
+    try (Connection connection = ds.getConnection()) {
+      connection.setAutoCommit(false);
+      try (PreparedStatement statement = connection.prepareStatement("SELECT 1 FROM INFORMATION_SCHEMA.SYSTEM_USERS")) {
+        statement.executeQuery().close();
+        connection.commit();
+        unpooledDataSource.calls.clear();
+        // a statement prepared before the commit starts a new transaction
+        statement.executeQuery().close();
+      }
+    }
+    assertEquals(Arrays.asList("rollback"), unpooledDataSource.calls);
+  }
+
+  @Test
+  void shouldCloseConnectionsThatCannotBeRolledBack() throws Exception {
+    unpooledDataSource.recordCalls();
+    Connection connection = ds.getConnection();
+    Connection realConnection = ((PooledConnection) Proxy.getInvocationHandler(connection)).getRealConnection();
+    connection.setAutoCommit(false);
+    unpooledDataSource.failRollback();
+    assertThrows(SQLException.class, connection::close);
+    assertTrue(realConnection.isClosed());
+    assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+    assertEquals(0, ds.getPoolState().getIdleConnectionCount());
+    assertEquals(0, ds.getPoolState().getPendingConnectionCount());
+    assertEquals(1, ds.getPoolState().getBadConnectionCount());
+  }
+
+  @Test
+  void shouldNotCallTheDriverToRestoreAnUnchangedConnectionState() throws Exception {
+    unpooledDataSource.recordCalls();
+    for (int i = 0; i < 2; i++) {
+      unpooledDataSource.calls.clear();
+      // what a JdbcTransaction does with the connection of a short transaction
+      try (Connection connection = ds.getConnection()) {
+        connection.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        connection.setAutoCommit(false);
+        try (PreparedStatement statement = connection.prepareStatement("SELECT 1 FROM INFORMATION_SCHEMA.SYSTEM_USERS")) {
+          statement.executeQuery().close();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+      }
+    }
+    // the isolation level is known, the auto-commit mode does change
+    assertEquals(Arrays.asList("isClosed", "setAutoCommit", "prepareStatement", "commit", "setAutoCommit"),
+        unpooledDataSource.calls);
+    try (Connection connection = ds.getConnection()) {
+      assertTrue(connection.getAutoCommit());
+      connection.setAutoCommit(false);
+      assertFalse(PooledDataSource.unwrapConnection(connection).getAutoCommit());
+    }
+  }
+
+  @Test
+  void shouldApplyTheAutoCommitModeToCachedStatements() throws Exception {
+    ds.setPoolStatementCacheSize(10);
+    try (Connection connection = ds.getConnection(); Statement statement = connection.createStatement()) {
+      statement.execute("CREATE TABLE POOLED_AUTO_COMMIT (ID INT)");
+    }
+    try {
+      try (Connection connection = ds.getConnection()) {
+        connection.setAutoCommit(false);
+        insert(connection, 1);
+        connection.rollback();
+        insert(connection, 2);
+        // enabling auto-commit commits the open transaction
+        connection.setAutoCommit(true);
+      }
+      try (Connection connection = ds.getConnection();
+          PreparedStatement statement = connection.prepareStatement("SELECT ID FROM POOLED_AUTO_COMMIT");
+          ResultSet rs = statement.executeQuery()) {
+        assertTrue(rs.next());
+        assertEquals(2, rs.getInt(1));
+        assertFalse(rs.next());
+      }
+    } finally {
+      try (Connection connection = ds.getConnection(); Statement statement = connection.createStatement()) {
+        statement.execute("DROP TABLE POOLED_AUTO_COMMIT");
+      }
+    }
+  }
+
+  private static void insert(Connection connection, int id) throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement("INSERT INTO POOLED_AUTO_COMMIT VALUES (?)")) {
+      statement.setInt(1, id);
+      statement.executeUpdate();
+    }
+  }
+
+  @Test
+  void shouldRollBackConnectionsThatWereUnwrapped() throws Exception {
+    unpooledDataSource.recordCalls();
+    try (Connection connection = ds.getConnection()) {
+      connection.setAutoCommit(false);
+      PooledDataSource.unwrapConnection(connection);
+    }
+    assertEquals(Arrays.asList("isClosed", "getAutoCommit", "setAutoCommit", "getAutoCommit", "rollback"),
+        unpooledDataSource.calls);
+  }
+
+  @Test
+  void shouldReportReadyOnlyOnceTheWarmUpFilledThePool() throws Exception {
+    ds.setPoolWarmUpConnections(3);
+    ds.setPoolConnectionInitSql("SET SCHEMA INFORMATION_SCHEMA;");
+    assertFalse(ds.isPoolReady());
+    unpooledDataSource.blockNextConnection();
+    CompletableFuture<Void> warmUp = ds.warmUp();
+    assertTrue(unpooledDataSource.awaitBlocked());
+    // the other connections are opened while the first one is blocked
+    awaitIdleConnections(ds, 2);
+    assertSame(warmUp, ds.warmUp());
+    assertFalse(ds.isPoolReady());
+    unpooledDataSource.release();
+    warmUp.get(5, TimeUnit.SECONDS);
+    assertTrue(ds.isPoolReady());
+    assertTrue(ds.getPoolMetrics().isReady());
+    assertEquals(3, ds.getPoolState().getIdleConnectionCount());
+    try (Connection connection = ds.getConnection()) {
+      assertEquals("INFORMATION_SCHEMA", connection.getSchema());
+    }
+    assertEquals(3, unpooledDataSource.openedConnections.get());
+  }
+
+  @Test
+  void shouldNotReportReadyWhenTheWarmUpFails() throws Exception {
+    ds.setPoolWarmUpConnections(1);
+    unpooledDataSource.failNextConnection();
+    ExecutionException e = assertThrows(ExecutionException.class, () -> ds.warmUp().get(5, TimeUnit.SECONDS));
+    assertTrue(e.getCause() instanceof SQLException);
+    assertFalse(ds.isPoolReady());
+    assertEquals(0, ds.getPoolState().getIdleConnectionCount());
+    assertEquals(0, ds.getPoolState().getPendingConnectionCount());
+    ds.warmUp().get(5, TimeUnit.SECONDS);
+    assertTrue(ds.isPoolReady());
+    assertEquals(1, ds.getPoolState().getIdleConnectionCount());
+  }
+
+  private static void awaitWaitingThreads(PooledDataSource dataSource, int expected) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (dataSource.getPoolMetrics().getWaitingThreads() != expected && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(expected, dataSource.getPoolMetrics().getWaitingThreads());
+  }
+
+  private static void awaitIdleConnections(PooledDataSource dataSource, int expected) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (dataSource.getPoolState().getIdleConnectionCount() != expected && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(expected, dataSource.getPoolState().getIdleConnectionCount());
+  }
+
+  private static class SlowUnpooledDataSource extends UnpooledDataSource {
+
+    private volatile boolean blockNext;
+    private volatile CountDownLatch blocked = new CountDownLatch(0);
+    private volatile CountDownLatch release = new CountDownLatch(0);
+    private volatile boolean fail;
+    private final AtomicInteger openedConnections = new AtomicInteger();
+    private volatile boolean recordCalls;
+    private volatile boolean failRollback;
+    final List<String> calls = new CopyOnWriteArrayList<>();
+
+    SlowUnpooledDataSource(String driver, String url, String username, String password) {
+      super(driver, url, username, password);
+    }
+
+    void blockNextConnection() {
+      blocked = new CountDownLatch(1);
+      release = new CountDownLatch(1);
+      blockNext = true;
+    }
+
+    void failNextConnection() {
+      fail = true;
+    }
+
+    boolean awaitBlocked() throws InterruptedException {
+      return blocked.await(5, TimeUnit.SECONDS);
+    }
+
+    void release() {
+      release.countDown();
+    }
+
+    void recordCalls() {
+      recordCalls = true;
+    }
+
+    void failRollback() {
+      failRollback = true;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+      if (fail) {
+        fail = false;
+        throw new SQLException("login failed");
+      }
+      openedConnections.incrementAndGet();
+      if (blockNext) {
+        blockNext = false;
+        blocked.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      Connection connection = super.getConnection();
+      if (!recordCalls) {
+        return connection;
+      }
+      return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+          (proxy, method, args) -> {
+            if (!Object.class.equals(method.getDeclaringClass())) {
+              calls.add(method.getName());
+            }
+            if (failRollback && "rollback".equals(method.getName())) {
+              throw new SQLException("rollback failed");
+            }
+            try {
+              return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+              throw e.getCause();
+            }
+          });
+    }
+
+  }
+
+}
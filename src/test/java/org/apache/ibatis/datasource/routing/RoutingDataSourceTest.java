@@ -0,0 +1,187 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.routing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Properties;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.executor.keygen.SelectKeyGenerator;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.transaction.Transaction;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RoutingDataSourceTest {
+
+  private DataSource primary;
+  private DataSource replica1;
+  private DataSource replica2;
+  private RoutingDataSource routingDataSource;
+
+  @BeforeEach
+  void setUp() throws SQLException {
+    primary = mockDataSource();
+    replica1 = mockDataSource();
+    replica2 = mockDataSource();
+    routingDataSource = new RoutingDataSource(primary, Arrays.asList(replica1, replica2));
+  }
+
+  @Test
+  void shouldSendWritesToThePrimary() throws SQLException {
+    routingDataSource.getConnection();
+    verify(primary).getConnection();
+  }
+
+  @Test
+  void shouldSpreadReadsAcrossReplicasInTurn() throws SQLException {
+    for (int i = 0; i < 4; i++) {
+      routingDataSource.getReadConnection().close();
+    }
+    verify(replica1, times(2)).getConnection();
+    verify(replica2, times(2)).getConnection();
+  }
+
+  @Test
+  void shouldPickTheReplicaWithTheFewestOutstandingConnections() throws SQLException {
+    routingDataSource.setLoadBalancing(LoadBalancing.LEAST_OUTSTANDING);
+    Connection first = routingDataSource.getReadConnection();
+    Connection second = routingDataSource.getReadConnection();
+    first.close();
+    routingDataSource.getReadConnection();
+    routingDataSource.getReadConnection();
+    verify(replica1, times(2)).getConnection();
+    verify(replica2, times(2)).getConnection();
+    second.close();
+  }
+
+  @Test
+  void shouldEjectAFailingReplicaAndFallBackToThePrimary() throws SQLException {
+    when(replica1.getConnection()).thenThrow(new SQLException("down"));
+    when(replica2.getConnection()).thenThrow(new SQLException("down"));
+    routingDataSource.getReadConnection();
+    verify(primary).getConnection();
+    assertEquals(0, routingDataSource.getAvailableReplicaCount());
+  }
+
+  @Test
+  void shouldReadmitHealthyReplicas() throws SQLException {
+    Connection broken = mock(Connection.class);
+    when(replica1.getConnection()).thenReturn(broken);
+    routingDataSource.checkReplicas();
+    assertEquals(1, routingDataSource.getAvailableReplicaCount());
+    when(broken.isValid(5)).thenReturn(true);
+    routingDataSource.checkReplicas();
+    assertEquals(2, routingDataSource.getAvailableReplicaCount());
+  }
+
+  @Test
+  void shouldRouteSelectsToAReplicaUntilTheTransactionWrites() throws SQLException {
+    Configuration configuration = new Configuration();
+    MappedStatement select = mappedStatement(configuration, "select", SqlCommandType.SELECT);
+    MappedStatement update = mappedStatement(configuration, "update", SqlCommandType.UPDATE);
+    MappedStatement selectKey = mappedStatement(configuration, "insert" + SelectKeyGenerator.SELECT_KEY_SUFFIX,
+        SqlCommandType.SELECT);
+    Transaction transaction = new JdbcTransactionFactory().newTransaction(routingDataSource, null, true);
+
+    Connection read = transaction.getConnection(select);
+    assertSame(read, transaction.getConnection(select));
+    Connection write = transaction.getConnection(selectKey);
+    assertSame(write, transaction.getConnection(update));
+    // reads its own writes
+    assertSame(write, transaction.getConnection(select));
+    transaction.commit();
+    assertSame(read, transaction.getConnection(select));
+    transaction.close();
+
+    verify(primary).getConnection();
+    verify(replica1).getConnection();
+    verify(write).close();
+  }
+
+  @Test
+  void shouldRunAllStatementsOfATransactionOnThePrimaryOutsideAutoCommitMode() throws SQLException {
+    Configuration configuration = new Configuration();
+    MappedStatement select = mappedStatement(configuration, "select", SqlCommandType.SELECT);
+    Transaction transaction = new JdbcTransactionFactory().newTransaction(routingDataSource, null, false);
+
+    Connection connection = transaction.getConnection(select);
+    assertSame(connection, transaction.getConnection());
+    transaction.close();
+
+    verify(primary).getConnection();
+    verify(replica1, never()).getConnection();
+    verify(replica2, never()).getConnection();
+  }
+
+  @Test
+  void shouldCreatePooledPrimaryAndReplicasFromProperties() {
+    Properties properties = new Properties();
+    properties.setProperty("driver", "org.hsqldb.jdbcDriver");
+    properties.setProperty("username", "sa");
+    properties.setProperty("primary.url", "jdbc:hsqldb:mem:primary");
+    properties.setProperty("replica.1.url", "jdbc:hsqldb:mem:replica1");
+    properties.setProperty("replica.2.url", "jdbc:hsqldb:mem:replica2");
+    properties.setProperty("replica.2.username", "reader");
+    properties.setProperty("loadBalancing", "latency_weighted");
+    RoutingDataSourceFactory factory = new RoutingDataSourceFactory();
+    factory.setProperties(properties);
+
+    RoutingDataSource dataSource = (RoutingDataSource) factory.getDataSource();
+    assertEquals(LoadBalancing.LATENCY_WEIGHTED, dataSource.getLoadBalancing());
+    assertEquals("jdbc:hsqldb:mem:primary", ((PooledDataSource) dataSource.getPrimary()).getUrl());
+    assertEquals(2, dataSource.getReplicas().size());
+    PooledDataSource second = (PooledDataSource) dataSource.getReplicas().get(1);
+    assertEquals("jdbc:hsqldb:mem:replica2", second.getUrl());
+    assertEquals("reader", second.getUsername());
+    assertTrue(dataSource.getReplicas().get(0) instanceof PooledDataSource);
+  }
+
+  private static MappedStatement mappedStatement(Configuration configuration, String id, SqlCommandType type) {
+    return new MappedStatement.Builder(configuration, id, new StaticSqlSource(configuration, "some statement"), type)
+        .build();
+  }
+
+  private static DataSource mockDataSource() throws SQLException {
+    DataSource dataSource = mock(DataSource.class);
+    when(dataSource.getConnection()).thenAnswer(invocation -> {
+      Connection connection = mock(Connection.class);
+      when(connection.getAutoCommit()).thenReturn(true);
+      when(connection.isValid(anyInt())).thenReturn(true);
+      return connection;
+    });
+    return dataSource;
+  }
+
+}
@@ -23,18 +23,22 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javassist.util.proxy.Proxy;
 
 import javax.sql.DataSource;
 
 import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.cache.CacheKey;
 import org.apache.ibatis.domain.blog.Author;
 import org.apache.ibatis.domain.blog.Blog;
 import org.apache.ibatis.domain.blog.Post;
 import org.apache.ibatis.domain.blog.Section;
+import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.LocalCacheScope;
 import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.transaction.Transaction;
 import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
@@ -130,6 +134,35 @@ class BaseExecutorTest extends BaseDataTest {
     }
   }
 
+  @Test
+  void shouldNotBuildCacheKeyWhenLocalCacheIsStatementScoped() throws Exception {
+    config.setLocalCacheScope(LocalCacheScope.STATEMENT);
+    AtomicInteger cacheKeys = new AtomicInteger();
+    Executor executor = new SimpleExecutor(config, new JdbcTransaction(ds, null, false)) {
+      @Override
+      public CacheKey createCacheKey(MappedStatement ms, Object parameterObject, RowBounds rowBounds, BoundSql boundSql) {
+        cacheKeys.incrementAndGet();
+        return super.createCacheKey(ms, parameterObject, rowBounds, boundSql);
+      }
+    };
+    try {
+      MappedStatement selectStatement = ExecutorTestHelper.prepareSelectAllAuthorsAutoMappedStatement(config);
+      List<Author> authors = executor.query(selectStatement, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+      assertEquals(2, authors.size());
+      authors = executor.query(selectStatement, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+      assertEquals(2, authors.size());
+      assertEquals(0, cacheKeys.get());
+
+      config.setLocalCacheScope(LocalCacheScope.SESSION);
+      executor.query(selectStatement, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+      assertEquals(1, cacheKeys.get());
+    } finally {
+      config.setLocalCacheScope(LocalCacheScope.SESSION);
+      executor.rollback(true);
+      executor.close(false);
+    }
+  }
+
   @Test
   void shouldInsertNewAuthorWithAutoKey() throws Exception {
 
@@ -19,11 +19,20 @@ import static com.googlecode.catchexception.apis.BDDCatchException.*;
 import static org.assertj.core.api.BDDAssertions.then;
 
 import java.lang.reflect.Field;
+import java.util.Properties;
 
 import org.apache.ibatis.builder.InitializingObject;
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.decorators.LoggingCache;
+import org.apache.ibatis.cache.decorators.LruCache;
+import org.apache.ibatis.cache.decorators.SerializedCache;
+import org.apache.ibatis.cache.decorators.SynchronizedCache;
+import org.apache.ibatis.cache.decorators.TinyLfuCache;
+import org.apache.ibatis.cache.decorators.TtlCache;
+import org.apache.ibatis.cache.impl.OffHeapCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.cache.serializer.BinaryCacheSerializer;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
 
@@ -43,6 +52,64 @@ class CacheBuilderTest {
       .hasMessage("Failed cache initialization for 'test' on 'org.apache.ibatis.mapping.CacheBuilderTest$InitializingFailureCache'");
   }
 
+  @Test
+  void testSynchronizedOnlyWhenNotThreadSafe() {
+    Cache lru = new CacheBuilder("test").addDecorator(LruCache.class).build();
+    Cache tinyLfu = new CacheBuilder("test").addDecorator(TinyLfuCache.class).readWrite(true).build();
+
+    Assertions.assertThat(lru).isInstanceOf(SynchronizedCache.class);
+    Assertions.assertThat(tinyLfu).isInstanceOf(LoggingCache.class);
+    Assertions.assertThat(tinyLfu.isThreadSafe()).isTrue();
+  }
+
+  @Test
+  void testOffHeapCacheSizeIsByteBudget() {
+    Cache cache = new CacheBuilder("test").implementation(OffHeapCache.class).addDecorator(LruCache.class)
+        .size(4096).readWrite(true).build();
+
+    Assertions.assertThat(cache).isInstanceOf(SynchronizedCache.class);
+    LoggingCache loggingCache = unwrap(cache);
+    OffHeapCache offHeapCache = unwrap(loggingCache);
+    Assertions.assertThat(offHeapCache.getMaxBytes()).isEqualTo(4096L);
+  }
+
+  @Test
+  void testSerializedCacheProperties() {
+    Properties props = new Properties();
+    props.setProperty("serializer", "BINARY");
+    props.setProperty("snapshot", "true");
+    Cache cache = new CacheBuilder("test").readWrite(true).properties(props).build();
+
+    LoggingCache loggingCache = unwrap(cache);
+    SerializedCache serializedCache = unwrap(loggingCache);
+    Assertions.assertThat(serializedCache.isSnapshot()).isTrue();
+    Assertions.assertThat((Object) unwrapSerializer(serializedCache)).isInstanceOf(BinaryCacheSerializer.class);
+  }
+
+  @Test
+  void testTimeToLive() {
+    Properties props = new Properties();
+    props.setProperty("jitter", "0.2");
+    props.setProperty("refreshAhead", "0.1");
+    Cache cache = new CacheBuilder("test").timeToLive(60000L).properties(props).build();
+
+    LoggingCache loggingCache = unwrap(cache);
+    TtlCache ttlCache = unwrap(loggingCache);
+    Assertions.assertThat(ttlCache.getTimeToLive()).isEqualTo(60000L);
+    Assertions.assertThat(ttlCache.getJitter()).isEqualTo(0.2);
+    Assertions.assertThat(ttlCache.getRefreshAhead()).isEqualTo(0.1);
+  }
+
+  private Object unwrapSerializer(SerializedCache cache) {
+    try {
+      Field field = SerializedCache.class.getDeclaredField("serializer");
+      field.setAccessible(true);
+      return field.get(cache);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
   @SuppressWarnings("unchecked")
   private <T> T unwrap(Cache cache) {
     Field field;
@@ -0,0 +1,95 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.scripting.xmltags;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import ognl.Ognl;
+
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class CompiledExpressionTest {
+
+  @ParameterizedTest
+  @ValueSource(strings = { "name", "name != null", "name == null", "name == 'Steve'", "name eq \"Steve\"",
+      "age > 18", "age >= 30", "age < 30.5", "age lte 29", "age == 30L", "nothing == null", "!active",
+      "not active and age > 1", "active or name == null", "(age > 40 || active) && name != null",
+      "criteria.name == 'x'", "criteria.name.isEmpty()", "ids.size() > 2", "ids != null and ids.size() == 3",
+      "map.key == 1", "map.size() == 1", "name and age", "nothing or age", "_parameter.age == 30",
+      "_databaseId == null", "initial == 'S'" })
+  void shouldEvaluateLikeOgnl(String expression) throws Exception {
+    Map<String, Object> bindings = bindings();
+    Object expected = Ognl.getValue(Ognl.parseExpression(expression),
+        Ognl.createDefaultContext(bindings, new OgnlMemberAccess(), new OgnlClassResolver(), null), bindings);
+    assertEquals(expected, OgnlCache.getValue(expression, bindings));
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = { "name", "name != null and age > 18", "criteria.name.isEmpty()", "ids.size() > 2",
+      "!active || initial == 'S'" })
+  void shouldCompileSupportedExpressions(String expression) {
+    assertNotSame(CompiledExpression.NOT_COMPILED, CompiledExpression.compile(expression));
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = { "name + 'x'", "ids[0]", "age == 30L", "name.length()", "@java.lang.Math@max(1, 2)",
+      "#this", "name in {'a'}", "'a\\'b'", "age - 1", "active ? 1 : 2", "size()" })
+  void shouldNotCompileOtherExpressions(String expression) {
+    assertSame(CompiledExpression.NOT_COMPILED, CompiledExpression.compile(expression));
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = { "ids.size", "map.size", "nothing.name" })
+  void shouldFallBackWhenCompiledFormCannotHandleValue(String expression) {
+    Map<String, Object> bindings = bindings();
+    assertSame(CompiledExpression.FALLBACK, CompiledExpression.compile(expression).getValue(bindings));
+  }
+
+  private static Map<String, Object> bindings() {
+    Map<String, Object> parameter = new HashMap<>();
+    parameter.put("name", "Steve");
+    parameter.put("age", 30);
+    parameter.put("active", Boolean.TRUE);
+    parameter.put("initial", 'S');
+    parameter.put("criteria", new Criteria(""));
+    parameter.put("ids", Arrays.asList(1, 2, 3));
+    parameter.put("map", Collections.singletonMap("key", 1L));
+    parameter.put("nothing", null);
+    return new DynamicContext(new Configuration(), parameter).getBindings();
+  }
+
+  static class Criteria {
+    private final String name;
+
+    Criteria(String name) {
+      this.name = name;
+    }
+
+    public String getName() {
+      return name;
+    }
+  }
+
+}
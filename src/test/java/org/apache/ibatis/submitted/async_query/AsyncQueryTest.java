@@ -0,0 +1,193 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.async_query;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Reader;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.session.SqlSessionManager;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class AsyncQueryTest {
+
+  private static SqlSessionFactory sqlSessionFactory;
+  private static ExecutorService executor;
+
+  @BeforeAll
+  static void setUp() throws Exception {
+    // create a SqlSessionFactory
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/async_query/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    executor = Executors.newFixedThreadPool(2, runnable -> new Thread(runnable, "async-query-test"));
+    sqlSessionFactory.getConfiguration().setAsyncExecutor(executor);
+  }
+
+  @AfterAll
+  static void tearDown() {
+    executor.shutdown();
+  }
+
+  @BeforeEach
+  void populateDatabase() throws Exception {
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/async_query/CreateDB.sql");
+  }
+
+  @Test
+  void shouldReturnFuturesFromMapperMethods() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      assertEquals("User1", mapper.getUser(1).join().getName());
+      assertNull(mapper.getUser(3).join());
+      assertEquals("User2", mapper.findUser(2).join().get().getName());
+      assertFalse(mapper.findUser(3).join().isPresent());
+      List<User> users = mapper.getUsers().join();
+      assertEquals(2, users.size());
+      Map<Integer, User> userMap = mapper.getUserMap().join();
+      assertEquals("User2", userMap.get(2).getName());
+      assertEquals(2, mapper.countUsers().join());
+    }
+  }
+
+  @Test
+  void shouldRunOnConfiguredExecutor() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      String threadName = sqlSession.executeAsync(session -> Thread.currentThread().getName()).join();
+      assertEquals("async-query-test", threadName);
+    }
+  }
+
+  @Test
+  void shouldSelectAndUpdateAsynchronously() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      CompletableFuture<Integer> inserted = sqlSession.insertAsync("org.apache.ibatis.submitted.async_query.Mapper.insertUser",
+          new User(3, "User3"));
+      CompletableFuture<User> user = sqlSession.selectOneAsync("org.apache.ibatis.submitted.async_query.Mapper.getUser", 3);
+      CompletableFuture<List<User>> users = sqlSession.selectListAsync("org.apache.ibatis.submitted.async_query.Mapper.getUsers", null);
+      // operations of a session run in submission order
+      assertEquals(1, inserted.join());
+      assertEquals("User3", user.join().getName());
+      assertEquals(3, users.join().size());
+    }
+  }
+
+  @Test
+  void shouldWaitForPendingOperationsOnCommit() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      CompletableFuture<Integer> inserted = mapper.insertUser(new User(3, "User3"));
+      CompletableFuture<Void> deleted = mapper.deleteUser(1);
+      sqlSession.commit();
+      assertTrue(inserted.isDone());
+      assertTrue(deleted.isDone());
+      assertNull(deleted.join());
+    }
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      assertNull(mapper.getUser(1).join());
+      assertEquals("User3", mapper.getUser(3).join().getName());
+    }
+  }
+
+  @Test
+  void shouldWaitForOperationsSubmittedDuringCommit() throws Exception {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      CountDownLatch first = new CountDownLatch(1);
+      CountDownLatch second = new CountDownLatch(1);
+      sqlSession.executeAsync(session -> await(first));
+      Thread committer = new Thread(sqlSession::commit);
+      committer.start();
+      Thread.sleep(100);
+      CompletableFuture<Boolean> failed = sqlSession.executeAsync(session -> {
+        await(second);
+        throw new IllegalStateException("failed");
+      });
+      first.countDown();
+      committer.join(200);
+      assertTrue(committer.isAlive());
+      second.countDown();
+      committer.join(5000);
+      assertFalse(committer.isAlive());
+      assertTrue(failed.isCompletedExceptionally());
+    }
+  }
+
+  private static boolean await(CountDownLatch latch) {
+    try {
+      return latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  @Test
+  void shouldRollbackPendingOperationsOnClose() {
+    CompletableFuture<Integer> inserted;
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      inserted = sqlSession.getMapper(Mapper.class).insertUser(new User(3, "User3"));
+    }
+    assertEquals(1, inserted.join());
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      assertEquals(2, sqlSession.getMapper(Mapper.class).countUsers().join());
+    }
+  }
+
+  @Test
+  void shouldCompleteExceptionallyAndKeepSessionUsable() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      CompletableFuture<List<User>> failed = mapper.getFromMissingTable();
+      CompletableFuture<List<User>> users = mapper.getUsers();
+      CompletionException e = assertThrows(CompletionException.class, failed::join);
+      assertTrue(e.getCause() instanceof PersistenceException);
+      assertEquals(2, users.join().size());
+    }
+  }
+
+  @Test
+  void shouldRunInOwnSessionWhenNoManagedSessionIsStarted() {
+    SqlSessionManager manager = SqlSessionManager.newInstance(sqlSessionFactory);
+    assertEquals(1, manager.getMapper(Mapper.class).insertUser(new User(3, "User3")).join());
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      assertEquals(3, sqlSession.getMapper(Mapper.class).countUsers().join());
+    }
+  }
+
+}
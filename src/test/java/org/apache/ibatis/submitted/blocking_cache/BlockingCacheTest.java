@@ -15,12 +15,22 @@
  */
 package org.apache.ibatis.submitted.blocking_cache;
 
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
 import java.io.Reader;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
+import javax.sql.DataSource;
+
 import org.apache.ibatis.BaseDataTest;
 import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.SqlSessionFactory;
 import org.apache.ibatis.session.SqlSessionFactoryBuilder;
@@ -99,4 +109,43 @@ class BlockingCacheTest {
       mapper.findAll();
     }
   }
+
+  @Test
+  void shouldShareLoadsBeforeCommit() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Person> persons = sqlSession.getMapper(LoadingPersonMapper.class).findAll();
+      Assertions.assertEquals(2, persons.size());
+      // put in the cache without waiting for the commit
+      Assertions.assertEquals(1,
+          sqlSessionFactory.getConfiguration().getCache(LoadingPersonMapper.class.getName()).getSize());
+      try (SqlSession otherSession = sqlSessionFactory.openSession()) {
+        Assertions.assertEquals(2, otherSession.getMapper(LoadingPersonMapper.class).findAll().size());
+      }
+    }
+  }
+
+  @Test
+  void shouldLoadWithTheConnectionOfTheSession() throws Exception {
+    Configuration configuration = sqlSessionFactory.getConfiguration();
+    Environment environment = configuration.getEnvironment();
+    try (Connection connection = environment.getDataSource().getConnection()) {
+      DataSource exhausted = mock(DataSource.class);
+      when(exhausted.getConnection()).thenThrow(new SQLException("no connection left"));
+      configuration.setEnvironment(new Environment(environment.getId(), environment.getTransactionFactory(), exhausted));
+      try (SqlSession sqlSession = sqlSessionFactory.openSession(connection)) {
+        Assertions.assertEquals(2, sqlSession.getMapper(LoadingPersonMapper.class).findAll().size());
+      }
+    }
+  }
+
+  @Test
+  void shouldNotLoadOutsideATransactionWithWrites() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      LoadingPersonMapper mapper = sqlSession.getMapper(LoadingPersonMapper.class);
+      mapper.delete(1);
+      Assertions.assertEquals(1, mapper.findAll().size());
+      sqlSession.rollback();
+      Assertions.assertEquals(2, mapper.findAll().size());
+    }
+  }
 }
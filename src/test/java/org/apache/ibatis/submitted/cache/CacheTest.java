@@ -19,8 +19,11 @@ import static com.googlecode.catchexception.apis.BDDCatchException.*;
 import static org.assertj.core.api.BDDAssertions.then;
 
 import java.io.Reader;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.Field;
 
+import javax.management.ObjectName;
+
 import org.apache.ibatis.BaseDataTest;
 import org.apache.ibatis.annotations.CacheNamespace;
 import org.apache.ibatis.annotations.CacheNamespaceRef;
@@ -28,7 +31,9 @@ import org.apache.ibatis.annotations.Property;
 import org.apache.ibatis.builder.BuilderException;
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheStats;
 import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.SqlSessionFactory;
 import org.apache.ibatis.session.SqlSessionFactoryBuilder;
@@ -115,6 +120,33 @@ class CacheTest {
     }
   }
 
+  @Test
+  void shouldRecordStatistics() throws Exception {
+    Configuration configuration = sqlSessionFactory.getConfiguration();
+    configuration.setCacheJmxEnabled(true);
+    try {
+      for (int i = 0; i < 3; i++) {
+        try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+          sqlSession.getMapper(PersonMapper.class).findAll();
+        }
+      }
+      CacheStats stats = configuration.getCacheMetrics(PersonMapper.class.getName()).snapshot();
+      Assertions.assertEquals(3, stats.getRequestCount());
+      Assertions.assertEquals(2, stats.getHitCount());
+      Assertions.assertEquals(1, stats.getMissCount());
+      Assertions.assertEquals(1, stats.getPutCount());
+      Assertions.assertEquals(1, stats.getLoadCount());
+      Assertions.assertEquals(1, stats.getSize());
+      Assertions.assertTrue(stats.getByteSize() > 0);
+
+      ObjectName name = new ObjectName(
+          "org.apache.ibatis:type=Cache,name=" + ObjectName.quote(PersonMapper.class.getName()));
+      Assertions.assertEquals(2L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "HitCount"));
+    } finally {
+      configuration.setCacheJmxEnabled(false);
+    }
+  }
+
   /*
    * Test Plan with Autocommit on:
    *  1) SqlSession 1 executes "select * from A".
@@ -0,0 +1,149 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.compiled_row_mapping;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Reader;
+import java.util.List;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class CompiledRowMappingTest {
+
+  private static SqlSessionFactory sqlSessionFactory;
+
+  @BeforeAll
+  static void setUp() throws Exception {
+    // create a SqlSessionFactory
+    try (Reader reader = Resources
+        .getResourceAsReader("org/apache/ibatis/submitted/compiled_row_mapping/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+
+    // populate in-memory database
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/compiled_row_mapping/CreateDB.sql");
+  }
+
+  @Test
+  void shouldMapExplicitResultMap() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      List<User> users = mapper.getUsersMapped();
+      assertUsers(users);
+      assertTrue(sqlSessionFactory.getConfiguration().getCompiledRowMappers().size() > 0);
+    }
+  }
+
+  @Test
+  void shouldAutoMapColumns() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      List<User> users = mapper.getUsersAutoMapped();
+      assertUsers(users);
+    }
+  }
+
+  @Test
+  void shouldProduceSameRowsAsReflectiveMapping() {
+    List<User> compiled;
+    List<User> reflective;
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      compiled = sqlSession.getMapper(Mapper.class).getUsersAutoMapped();
+    }
+    sqlSessionFactory.getConfiguration().setCompiledRowMapping(false);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      reflective = sqlSession.getMapper(Mapper.class).getUsersAutoMapped();
+    } finally {
+      sqlSessionFactory.getConfiguration().setCompiledRowMapping(true);
+    }
+    assertEquals(reflective.size(), compiled.size());
+    for (int i = 0; i < compiled.size(); i++) {
+      assertEquals(reflective.get(i).getId(), compiled.get(i).getId());
+      assertEquals(reflective.get(i).getName(), compiled.get(i).getName());
+      assertEquals(reflective.get(i).getEmail(), compiled.get(i).getEmail());
+      assertEquals(reflective.get(i).getCreatedBy(), compiled.get(i).getCreatedBy());
+      assertEquals(reflective.get(i).nullReceived, compiled.get(i).nullReceived);
+    }
+  }
+
+  @Test
+  void shouldReturnNullForEmptyRows() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      List<User> users = mapper.getEmptyRows();
+      assertEquals(3, users.size());
+      users.forEach(user -> assertNull(user));
+    }
+  }
+
+  @Test
+  void shouldFallBackForNestedResultMap() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      List<User> users = mapper.getUsersWithGroup();
+      assertEquals(3, users.size());
+      assertEquals("User1", users.get(0).getName());
+      assertEquals(Integer.valueOf(10), users.get(0).getGroup().getId());
+      assertEquals("Group10", users.get(0).getGroup().getName());
+      assertEquals(Integer.valueOf(20), users.get(2).getGroup().getId());
+    }
+  }
+
+  @Test
+  void shouldFallBackForConstructorMapping() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      List<User> users = mapper.getUsersByConstructor();
+      assertEquals(3, users.size());
+      assertEquals(1, users.get(0).getId());
+      assertEquals("User1", users.get(0).getName());
+      assertNull(users.get(1).getName());
+    }
+  }
+
+  private static void assertUsers(List<User> users) {
+    assertEquals(3, users.size());
+
+    User user1 = users.get(0);
+    assertEquals(1, user1.getId());
+    assertEquals("User1", user1.getName());
+    assertEquals("user1@example.com", user1.getEmail());
+    assertEquals("admin", user1.getCreatedBy());
+    assertFalse(user1.nullReceived);
+
+    User user2 = users.get(1);
+    assertEquals(2, user2.getId());
+    assertNull(user2.getName());
+    assertTrue(user2.nullReceived);
+
+    User user3 = users.get(2);
+    assertEquals(3, user3.getId());
+    assertNull(user3.getEmail());
+    assertNull(user3.getCreatedBy());
+  }
+
+}
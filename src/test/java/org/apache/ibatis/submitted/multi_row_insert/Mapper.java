@@ -0,0 +1,47 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.multi_row_insert;
+
+import java.util.List;
+
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+public interface Mapper {
+
+  @Insert("insert into users (name, email) values (#{name}, #{email})")
+  @Options(useGeneratedKeys = true, keyProperty = "id")
+  int insertUser(User user);
+
+  @Insert("insert into users (name, email) values (#{name}, 'fixed')")
+  int insertUserWithFixedEmail(User user);
+
+  @Insert("insert into users (name, email) values (#{name}, #{email}), (#{name}, #{email})")
+  int insertUserTwice(User user);
+
+  @Update("update users set email = #{email} where name = #{name}")
+  int updateEmail(User user);
+
+  @Select("select * from users order by id")
+  List<User> getUsers();
+
+  @Delete("delete from users")
+  int deleteUsers();
+
+}
@@ -0,0 +1,160 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.multi_row_insert;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class MultiRowInsertTest {
+
+  private static SqlSessionFactory sqlSessionFactory;
+
+  @BeforeAll
+  static void setUp() throws Exception {
+    // create a SqlSessionFactory
+    try (Reader reader = Resources
+        .getResourceAsReader("org/apache/ibatis/submitted/multi_row_insert/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+
+    // populate in-memory database
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/multi_row_insert/CreateDB.sql");
+  }
+
+  @AfterEach
+  void cleanUp() {
+    sqlSessionFactory.getConfiguration().setBatchInsertMaxParameters(0);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+      sqlSession.getMapper(Mapper.class).deleteUsers();
+    }
+  }
+
+  @Test
+  void shouldGroupConsecutiveInsertsAndAssignGeneratedKeys() {
+    List<User> users = new ArrayList<>();
+    for (int i = 0; i < 7; i++) {
+      users.add(new User("User" + i, "user" + i + "@example.com"));
+    }
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      users.forEach(mapper::insertUser);
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(2, results.size());
+      assertEquals("insert into users (name, email) values (?, ?), (?, ?), (?, ?)", results.get(0).getSql());
+      assertEquals(6, results.get(0).getParameterObjects().size());
+      assertEquals(2, results.get(0).getUpdateCounts().length);
+      assertEquals("insert into users (name, email) values (?, ?)", results.get(1).getSql());
+      assertEquals(1, results.get(1).getParameterObjects().size());
+      sqlSession.commit();
+
+      List<User> saved = mapper.getUsers();
+      assertEquals(7, saved.size());
+      for (int i = 0; i < 7; i++) {
+        assertNotNull(users.get(i).getId());
+        assertEquals(saved.get(i).getId(), users.get(i).getId());
+        assertEquals("User" + i, saved.get(i).getName());
+        assertEquals("user" + i + "@example.com", saved.get(i).getEmail());
+      }
+      assertEquals(7, new HashSet<>(saved).size());
+    }
+  }
+
+  @Test
+  void shouldLimitRowsByParameterCount() {
+    sqlSessionFactory.getConfiguration().setBatchInsertMaxParameters(5);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      for (int i = 0; i < 4; i++) {
+        mapper.insertUser(new User("User" + i, null));
+      }
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(1, results.size());
+      assertEquals("insert into users (name, email) values (?, ?), (?, ?)", results.get(0).getSql());
+      assertEquals(4, results.get(0).getParameterObjects().size());
+      sqlSession.commit();
+      assertEquals(4, mapper.getUsers().size());
+    }
+  }
+
+  @Test
+  void shouldKeepStatementOrderWhenAnotherStatementIsInterleaved() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      mapper.insertUserWithFixedEmail(new User("User1", null));
+      mapper.insertUserWithFixedEmail(new User("User2", null));
+      mapper.updateEmail(new User("User1", "changed"));
+      mapper.insertUserWithFixedEmail(new User("User3", null));
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(3, results.size());
+      assertEquals("insert into users (name, email) values (?, 'fixed'), (?, 'fixed')", results.get(0).getSql());
+      assertEquals("update users set email = ? where name = ?", results.get(1).getSql());
+      assertEquals("insert into users (name, email) values (?, 'fixed')", results.get(2).getSql());
+      sqlSession.commit();
+
+      List<User> saved = mapper.getUsers();
+      assertEquals(3, saved.size());
+      assertEquals("changed", saved.get(0).getEmail());
+      assertEquals("fixed", saved.get(1).getEmail());
+      assertEquals("fixed", saved.get(2).getEmail());
+    }
+  }
+
+  @Test
+  void shouldBatchInsertsThatCannotBeMerged() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      for (int i = 0; i < 3; i++) {
+        mapper.insertUserTwice(new User("User" + i, null));
+      }
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(1, results.size());
+      assertEquals("insert into users (name, email) values (?, ?), (?, ?)", results.get(0).getSql());
+      assertEquals(3, results.get(0).getParameterObjects().size());
+      sqlSession.commit();
+      assertEquals(6, mapper.getUsers().size());
+    }
+  }
+
+  @Test
+  void shouldDiscardPendingRowsOnRollback() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      mapper.insertUser(new User("User1", null));
+      mapper.insertUser(new User("User2", null));
+      sqlSession.rollback(true);
+      assertEquals(0, sqlSession.flushStatements().size());
+      assertEquals(0, mapper.getUsers().size());
+    }
+  }
+
+}
@@ -0,0 +1,37 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.table_invalidation;
+
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
+
+public interface PetMapper {
+
+  String getPetName(int id);
+
+  String getOwnerName(int id);
+
+  void updatePetName(@Param("id") int id, @Param("name") String name);
+
+  @Update("<script>update pet <set><if test='name != null'>name = #{name}</if></set> where id = #{id}</script>")
+  void updatePet(@Param("id") int id, @Param("name") String name);
+
+  @Update("update pet set owner_id = owner_id where 1 = 0")
+  @Options(writeTables = "person")
+  void touchOwners();
+
+}
@@ -0,0 +1,206 @@
+/*
+ *    Copyright 2009-2022 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.table_invalidation;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.executor.CachingExecutor;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.SimpleExecutor;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.session.defaults.DefaultSqlSession;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TableInvalidationTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    try (Reader reader = Resources
+        .getResourceAsReader("org/apache/ibatis/submitted/table_invalidation/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/table_invalidation/CreateDB.sql");
+  }
+
+  @Test
+  void shouldKeepEntriesOfTablesNotWritten() throws Exception {
+    assertEquals("Rex", getPetName());
+    // changed behind the cache, so only a cache hit still returns the old name
+    executeBehindTheCache("update pet set name = 'Max' where id = 1");
+    updatePersonName("Paul");
+    assertEquals("Rex", getPetName());
+  }
+
+  @Test
+  void shouldEvictEntriesOfWrittenTablesInOtherNamespaces() {
+    assertEquals("John", getOwnerName());
+    updatePersonName("Paul");
+    assertEquals("Paul", getOwnerName());
+  }
+
+  @Test
+  void shouldEvictEntriesOfWrittenTablesInOwnNamespace() {
+    assertEquals("Rex", getPetName());
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      sqlSession.getMapper(PetMapper.class).updatePetName(1, "Max");
+      sqlSession.commit();
+    }
+    assertEquals("Max", getPetName());
+  }
+
+  @Test
+  void shouldEvictEntriesOfTablesWrittenByDynamicSql() {
+    assertEquals("Rex", getPetName());
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      sqlSession.getMapper(PetMapper.class).updatePet(1, "Max");
+      sqlSession.commit();
+    }
+    assertEquals("Max", getPetName());
+  }
+
+  @Test
+  void shouldEvictEntriesOfTablesWrittenThroughAnExecutorNotReportingItsSql() {
+    assertEquals("John", getOwnerName());
+    Configuration configuration = sqlSessionFactory.getConfiguration();
+    JdbcTransaction transaction = new JdbcTransaction(configuration.getEnvironment().getDataSource(), null, false);
+    Executor executor = new CachingExecutor(new SimpleExecutor(configuration, transaction) {
+      @Override
+      public int doUpdate(MappedStatement ms, Object parameter) throws SQLException {
+        int count = super.doUpdate(ms, parameter);
+        setUpdateBoundSql(null);
+        return count;
+      }
+    }, configuration.getTableVersions());
+    try (SqlSession sqlSession = new DefaultSqlSession(configuration, executor, false)) {
+      sqlSession.getMapper(PersonMapper.class).updatePersonName(1, "Paul");
+      sqlSession.commit();
+    }
+    assertEquals("Paul", getOwnerName());
+  }
+
+  @Test
+  void shouldScanTheSqlOfAStatementOnlyWhenItChanges() {
+    MappedStatement ms = sqlSessionFactory.getConfiguration()
+        .getMappedStatement(PetMapper.class.getName() + ".getPetName");
+    String[] tables = ms.findReadTables(ms.getBoundSql(1).getSql());
+    assertArrayEquals(new String[] { "PET" }, tables);
+    assertSame(tables, ms.findReadTables(ms.getBoundSql(2).getSql()));
+    assertArrayEquals(new String[] { "PERSON" }, ms.findReadTables("select name from person"));
+  }
+
+  @Test
+  void shouldNotEvictBeforeCommit() throws Exception {
+    assertEquals("John", getOwnerName());
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      sqlSession.getMapper(PersonMapper.class).updatePersonName(1, "Paul");
+      sqlSession.rollback();
+    }
+    executeBehindTheCache("update person set name = 'Paul' where id = 1");
+    assertEquals("John", getOwnerName());
+  }
+
+  @Test
+  void shouldNotReturnEntriesOfTablesWrittenInTheSameSession() {
+    assertEquals("John", getOwnerName());
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      sqlSession.getMapper(PersonMapper.class).updatePersonName(1, "Paul");
+      assertEquals("Paul", sqlSession.getMapper(PetMapper.class).getOwnerName(1));
+      sqlSession.commit();
+    }
+    assertEquals("Paul", getOwnerName());
+  }
+
+  @Test
+  void shouldUseTablesDeclaredInXml() throws Exception {
+    assertEquals("Rex", getPetName());
+    assertEquals("John", getPersonName());
+    executeBehindTheCache("update pet set name = 'Max' where id = 1");
+    executeBehindTheCache("update person set name = 'Paul' where id = 1");
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      sqlSession.getMapper(PersonMapper.class).touchPets();
+      sqlSession.commit();
+    }
+    assertEquals("Max", getPetName());
+    assertEquals("John", getPersonName());
+  }
+
+  @Test
+  void shouldUseTablesDeclaredInAnnotation() throws Exception {
+    assertEquals("Rex", getPetName());
+    assertEquals("John", getPersonName());
+    executeBehindTheCache("update pet set name = 'Max' where id = 1");
+    executeBehindTheCache("update person set name = 'Paul' where id = 1");
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      sqlSession.getMapper(PetMapper.class).touchOwners();
+      sqlSession.commit();
+    }
+    assertEquals("Rex", getPetName());
+    assertEquals("Paul", getPersonName());
+  }
+
+  private String getPetName() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      return sqlSession.getMapper(PetMapper.class).getPetName(1);
+    }
+  }
+
+  private String getOwnerName() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      return sqlSession.getMapper(PetMapper.class).getOwnerName(1);
+    }
+  }
+
+  private String getPersonName() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      return sqlSession.getMapper(PersonMapper.class).getPersonName(1);
+    }
+  }
+
+  private void updatePersonName(String name) {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      sqlSession.getMapper(PersonMapper.class).updatePersonName(1, name);
+      sqlSession.commit();
+    }
+  }
+
+  private void executeBehindTheCache(String sql) throws Exception {
+    DataSource dataSource = sqlSessionFactory.getConfiguration().getEnvironment().getDataSource();
+    try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+      stmt.executeUpdate(sql);
+    }
+  }
+
+}
@@ -0,0 +1,30 @@
+--
+--    Copyright 2009-2022 the original author or authors.
+--
+--    Licensed under the Apache License, Version 2.0 (the "License");
+--    you may not use this file except in compliance with the License.
+--    You may obtain a copy of the License at
+--
+--       https://www.apache.org/licenses/LICENSE-2.0
+--
+--    Unless required by applicable law or agreed to in writing, software
+--    distributed under the License is distributed on an "AS IS" BASIS,
+--    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+--    See the License for the specific language governing permissions and
+--    limitations under the License.
+--
+
+drop table users if exists;
+
+create table users (
+  id int,
+  name varchar(20),
+  email varchar(40),
+  created_by varchar(20),
+  group_id int,
+  group_name varchar(20)
+);
+
+insert into users values(1, 'User1', 'user1@example.com', 'admin', 10, 'Group10');
+insert into users values(2, null, 'user2@example.com', 'admin', 10, 'Group10');
+insert into users values(3, 'User3', null, null, 20, 'Group20');